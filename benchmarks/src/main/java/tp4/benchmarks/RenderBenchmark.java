@@ -0,0 +1,87 @@
+package tp4.benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tp4.Board;
+import tp4.EngineType;
+import tp4.FrameSnapshot;
+import tp4.GridRenderer;
+
+/**
+ * Mesure de l'affichage d'une image, sans fenêtre : {@code MainWindow.displayGrid()} lit la dernière copie publiée
+ * et la donne à {@code GridRenderer.updateImage()}, puis Swing dessine la composante. Ici, la composante est dessinée
+ * dans une image hors écran de la taille de la vue de {@code MainWindow} (1000 x 1000 pixels). Deux générations
+ * successives sont affichées en alternance, donc chaque image change les pixels des cellules qui ont changé d'état.
+ * La copie de la grille par le fil de simulation ({@code FrameSnapshot}) est mesurée séparément.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+	private static final int VIEW_SIZE = 1000;
+
+	@Param({ "100", "1000" })
+	public int size;
+
+	private Board board;
+	private FrameSnapshot[] snapshots;
+	private int frame;
+
+	private GridRenderer renderer;
+	private BufferedImage screen;
+	private Graphics2D graphics;
+
+	@Setup
+	public void createRenderer() {
+		board = new Board(size, 0.35, 1, EngineType.PACKED, 42);
+		snapshots = new FrameSnapshot[2];
+		for (int i = 0; i < snapshots.length; i++) {
+			board.nextGeneration();
+			board.updateBoard();
+			snapshots[i] = new FrameSnapshot(board, i + 1, null);
+		}
+
+		renderer = new GridRenderer(board.getSideLength(), VIEW_SIZE, VIEW_SIZE);
+		renderer.setSize(VIEW_SIZE, VIEW_SIZE);
+		renderer.fitToView();
+
+		screen = new BufferedImage(VIEW_SIZE, VIEW_SIZE, BufferedImage.TYPE_INT_RGB);
+		graphics = screen.createGraphics();
+	}
+
+	@TearDown
+	public void disposeGraphics() {
+		graphics.dispose();
+	}
+
+	@Benchmark
+	public BufferedImage displayFrame() {
+		renderer.updateImage(snapshots[frame++ & 1]);
+		renderer.paint(graphics);
+		return screen;
+	}
+
+	@Benchmark
+	public FrameSnapshot copySnapshot() {
+		return new FrameSnapshot(board, 0, null);
+	}
+}
@@ -0,0 +1,67 @@
+package tp4.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tp4.Board;
+import tp4.EngineType;
+import tp4.Rule;
+
+/**
+ * Mesure du calcul d'une génération selon la règle d'évolution (voir {@code Rule}), pour comparer les règles compilées
+ * au calcul spécialisé de la règle de Conway. Les combinaisons de règle et de moteur qui ne sont pas supportées
+ * (par exemple une règle « Generations » avec le moteur PACKED) sont ignorées. Comme pour {@code StepBenchmark},
+ * la grille est recréée avant chaque itération.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleBenchmark {
+
+	@Param({ "B3/S23", "B36/S23", "B3678/S34678", "B2/S/C3", "R5,C0,M1,S34..58,B34..45,NM" })
+	public String rule;
+
+	@Param({ "CELL", "PACKED", "SPARSE" })
+	public EngineType engine;
+
+	@Param({ "1000" })
+	public int size;
+
+	private Board board;
+	private boolean supported;
+
+	@Setup(Level.Iteration)
+	public void createBoard() {
+		board = new Board(size, 0.35, 1, engine, 42);
+		try {
+			board.setRule(Rule.parse(rule));
+			supported = true;
+		} catch (IllegalArgumentException e) {
+			supported = false;
+		}
+	}
+
+	@Benchmark
+	public long nextGeneration() {
+		if (!supported) return 0;
+
+		board.nextGeneration();
+		board.updateBoard();
+		return board.countLivingCells();
+	}
+}
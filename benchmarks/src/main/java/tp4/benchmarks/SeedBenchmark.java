@@ -0,0 +1,64 @@
+package tp4.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tp4.Board;
+import tp4.EngineType;
+import tp4.PopulationSeeder;
+
+/**
+ * Mesure de la création de la population initiale. {@code Board.createRandomPopulation()} est privée : elle est mesurée
+ * avec le constructeur de {@code Board} (création de la grille comprise), et le tirage seul est mesuré directement
+ * avec {@code PopulationSeeder}, sans grille.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeedBenchmark {
+
+	@Param({ "500", "2000" })
+	public int size;
+
+	@Param({ "0.1", "0.5" })
+	public double density;
+
+	private long seed;
+
+	/**
+	 * Moteur de calcul, utilisé seulement par {@code createBoard} : le tirage seul ne dépend pas du moteur.
+	 */
+	@State(Scope.Thread)
+	public static class Engine {
+		@Param({ "CELL", "PACKED" })
+		public EngineType engine;
+	}
+
+	@Benchmark
+	public Board createBoard(Engine engine) {
+		return new Board(size, density, 1, engine.engine, seed++);
+	}
+
+	@Benchmark
+	public long seedExactCount() {
+		int wordsPerRow = (size + 63) >>> 6;
+		long[] words = new long[size * wordsPerRow];
+
+		new PopulationSeeder(seed++).seedExactCount(size, size, (long) Math.ceil(density * size * size),
+				(row, col) -> words[row * wordsPerRow + (col >>> 6)] |= 1L << col);
+		return words[words.length / 2];
+	}
+}
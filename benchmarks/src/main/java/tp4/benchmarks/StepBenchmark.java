@@ -0,0 +1,62 @@
+package tp4.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tp4.Board;
+import tp4.EngineType;
+
+/**
+ * Mesure du calcul d'une génération ({@code Board.nextGeneration()} puis {@code Board.updateBoard()}) selon la taille
+ * de la grille, son taux de remplissage initial et le moteur de calcul. Une grille aléatoire se vide rapidement, donc
+ * la grille est recréée avant chaque itération : toutes les itérations mesurent les mêmes premières générations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StepBenchmark {
+
+	@Param({ "100", "500", "2000" })
+	public int size;
+
+	@Param({ "0.1", "0.35", "0.5" })
+	public double density;
+
+	@Param({ "CELL", "PACKED", "HASHLIFE", "SPARSE", "OFFHEAP" })
+	public EngineType engine;
+
+	private Board board;
+
+	@Setup(Level.Iteration)
+	public void createBoard() {
+		board = new Board(size, density, 1, engine, 42);
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeBoard() {
+		board.close();
+	}
+
+	@Benchmark
+	public long nextGeneration() {
+		board.nextGeneration();
+		board.updateBoard();
+		return board.countLivingCells();
+	}
+}
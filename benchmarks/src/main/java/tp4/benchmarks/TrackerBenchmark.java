@@ -0,0 +1,68 @@
+package tp4.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tp4.Board;
+import tp4.EngineType;
+import tp4.GenerationTracker;
+
+/**
+ * Mesure du suivi des générations : le nombre de cellules vivantes, lu par le board ou par {@code GenerationTracker},
+ * et une génération complète avec {@code GenerationTracker.trackInfo()}. La différence entre {@code stepAndTrack}
+ * et {@code StepBenchmark.nextGeneration} donne le coût du suivi (empreinte, liste des changements et recherche
+ * d'une répétition).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackerBenchmark {
+
+	@Param({ "500", "2000" })
+	public int size;
+
+	@Param({ "CELL", "PACKED" })
+	public EngineType engine;
+
+	private Board board;
+	private GenerationTracker tracker;
+
+	@Setup(Level.Iteration)
+	public void createBoard() {
+		board = new Board(size, 0.35, 1, engine, 42);
+		tracker = new GenerationTracker(board);
+	}
+
+	@Benchmark
+	public long countLivingCells() {
+		return board.countLivingCells();
+	}
+
+	@Benchmark
+	public long trackerCountLivingCells() {
+		return tracker.countLivingCells();
+	}
+
+	@Benchmark
+	public int stepAndTrack() {
+		board.nextGeneration();
+		board.updateBoard();
+		tracker.trackInfo();
+		return tracker.getGenerationCounter();
+	}
+}
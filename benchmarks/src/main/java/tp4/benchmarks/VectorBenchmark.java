@@ -0,0 +1,61 @@
+package tp4.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tp4.Board;
+import tp4.EngineType;
+
+/**
+ * Mesure du calcul vectoriel (SIMD) de la règle de Conway avec le moteur CELL (voir {@code Board.setVectorized()}),
+ * comparé au calcul cellule par cellule. La machine virtuelle de mesure est lancée avec le module
+ * {@code jdk.incubator.vector} ; si le noyau vectoriel n'a pas pu être chargé, les mesures {@code vectorized=true}
+ * sont ignorées. Comme pour {@code StepBenchmark}, la grille est recréée avant chaque itération.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class VectorBenchmark {
+
+	@Param({ "500", "2000" })
+	public int size;
+
+	@Param({ "0.1", "0.35" })
+	public double density;
+
+	@Param({ "false", "true" })
+	public boolean vectorized;
+
+	private Board board;
+	private boolean supported;
+
+	@Setup(Level.Iteration)
+	public void createBoard() {
+		board = new Board(size, density, 1, EngineType.CELL, 42);
+		supported = board.setVectorized(vectorized) == vectorized;
+	}
+
+	@Benchmark
+	public long nextGeneration() {
+		if (!supported) return 0;
+
+		board.nextGeneration();
+		board.updateBoard();
+		return board.countLivingCells();
+	}
+}
@@ -0,0 +1,53 @@
+package tp4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Tests de {@code Board.jumpGenerations()} : un saut doit donner exactement la même grille que le même nombre
+ * de générations calculées une à la fois, à partir de la même population initiale.
+ */
+class BoardJumpTest {
+
+	private static final int SIZE = 200;
+	private static final double DENSITY = 0.35;
+	private static final long SEED = 5;
+	private static final int GENERATIONS = 100;
+
+	@ParameterizedTest
+	@EnumSource(value = EngineType.class, names = { "CELL", "PACKED", "HASHLIFE", "OFFHEAP" })
+	void jumpMatchesSingleSteps(EngineType type) {
+		assertJumpMatchesSteps(type, HashLife.DEFAULT_MAX_NODES);
+	}
+
+	/**
+	 * Avec une petite limite de noeuds, les sauts de HashLife sont abandonnés et recommencés plus petits.
+	 */
+	@Test
+	void hashLifeJumpMatchesSingleStepsWithSmallNodeLimit() {
+		assertJumpMatchesSteps(EngineType.HASHLIFE, 30_000);
+	}
+
+	private static void assertJumpMatchesSteps(EngineType type, int maxNodes) {
+		try (Board stepped = new Board(SIZE, DENSITY, 1, type, SEED); Board jumped = new Board(SIZE, DENSITY, 1, type, SEED)) {
+			stepped.setMaxNodes(maxNodes);
+			jumped.setMaxNodes(maxNodes);
+
+			for (int i = 0; i < GENERATIONS; i++) {
+				stepped.nextGeneration();
+				stepped.updateBoard();
+			}
+			jumped.jumpGenerations(GENERATIONS);
+
+			for (int row = 0; row < SIZE; row++) {
+				for (int w = 0; w < (SIZE + 63) >>> 6; w++)
+					assertEquals(stepped.getRowWord(row, w), jumped.getRowWord(row, w), "Ligne " + row + ", mot " + w);
+			}
+			assertEquals(stepped.countLivingCells(), jumped.countLivingCells());
+			assertEquals(stepped.getStateHash(), jumped.getStateHash());
+		}
+	}
+}
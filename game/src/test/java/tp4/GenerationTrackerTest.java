@@ -0,0 +1,56 @@
+package tp4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la détection de stabilité de {@code GenerationTracker}.
+ */
+class GenerationTrackerTest {
+
+	// Assez petit pour que la grille seule demande plus de noeuds : le cache de HashLife est vidé à chaque génération
+	private static final int MAX_NODES = 200;
+
+	/**
+	 * Une grille de clignotants (période 2) dont le cache HashLife est vidé à chaque génération doit être détectée,
+	 * et le suivi ne doit pas retenir les noeuds des instantanés d'avant les vidages.
+	 */
+	@Test
+	void detectsOscillatorWhenHashLifeCacheIsFlushed() {
+		Board board = new Board(256, 0, 1, EngineType.HASHLIFE, 1L);
+		Random random = new Random(7);
+
+		// Un clignotant, horizontal ou vertical, dans environ la moitié des cases de 6 x 6 cellules
+		for (int row = 2; row < 250; row += 6) {
+			for (int col = 2; col < 250; col += 6) {
+				if (random.nextBoolean()) continue;
+
+				boolean horizontal = random.nextBoolean();
+				for (int i = 0; i < 3; i++) board.setAlive(row + (horizontal ? 1 : i), col + (horizontal ? i : 1), true);
+			}
+		}
+		board.setMaxNodes(MAX_NODES);
+		assertTrue(board.getNodeCount() > MAX_NODES, "La grille doit dépasser la limite de noeuds à elle seule");
+
+		GenerationTracker tracker = new GenerationTracker(board);
+		WeakReference<Object> firstSnapshot = new WeakReference<Object>(board.getStateSnapshot());
+
+		for (int generation = 0; generation < 16 && tracker.getStabilityGeneration() < 0; generation++) {
+			board.nextGeneration();
+			board.updateBoard();
+			tracker.trackInfo();
+		}
+		assertEquals(2, tracker.getPeriod());
+
+		for (int i = 0; i < 10 && firstSnapshot.get() != null; i++) System.gc();
+		assertNull(firstSnapshot.get(), "L'instantané d'avant le vidage du cache ne doit plus être retenu");
+
+		board.close();
+	}
+}
@@ -0,0 +1,563 @@
+package tp4;
+
+import java.util.Arrays;
+
+/**
+ * Cette classe est un moteur de calcul compact pour le jeu de la vie. Au lieu de créer un objet {@code Cell} par cellule,
+ * chaque ligne de la grille est stockée sous forme de mots de 64 bits : le bit {@code b} du mot {@code w} représente la
+ * cellule de la colonne {@code 64 * w + b}. Une grille de 10 000 x 10 000 cellules occupe donc environ 12 Mo au lieu de plusieurs Go.
+ *
+ * La génération suivante est calculée avec des additionneurs binaires appliqués sur des mots entiers, ce qui permet
+ * d'évaluer 64 cellules à la fois. Comme pour {@code GridArray}, la grille est entourée d'une bordure de cellules mortes :
+ * une ligne vide est ajoutée au-dessus et en-dessous de la grille, et les bits situés au-delà de la dernière colonne restent
+ * toujours à 0. Avec un autre mode de bords que {@code BoundaryMode.DEAD}, les deux lignes de la bordure reçoivent une copie
+ * des lignes qu'elles représentent avant chaque génération, et seuls le premier et le dernier mot de chaque ligne lisent
+ * leur voisin de l'autre côté du bord.
+ */
+public class BitGrid implements GridEngine {
+
+	private final int sideLength;
+
+	/**
+	 * Nombre de mots de 64 bits nécessaires pour stocker une ligne.
+	 */
+	private final int wordsPerRow;
+
+	/**
+	 * Masque des bits valides du dernier mot d'une ligne. Les bits en dehors de la grille doivent rester morts.
+	 */
+	private final long lastWordMask;
+
+	/**
+	 * Les deux tableaux contiennent {@code sideLength + 2} lignes : la première et la dernière ligne forment
+	 * la bordure et restent vides. {@code currentWords} contient la génération actuelle, {@code nextWords} reçoit
+	 * la génération suivante avant que les deux tableaux soient échangés.
+	 */
+	private long[] currentWords;
+	private long[] nextWords;
+	
+	private ParallelStepper stepper;
+	
+	/**
+	 * Nombre de lignes dans une tuile. Une tuile fait la largeur d'un mot (64 colonnes) sur {@code TILE_ROWS} lignes.
+	 */
+	private static final int TILE_ROWS = 32;
+	
+	/**
+	 * Tuiles modifiées lors de la dernière génération. Une tuile dont le voisinage n'a pas changé n'est pas recalculée.
+	 */
+	private final TileTracker tileTracker;
+	
+	/**
+	 * Nombre de cellules vivantes, actualisé à chaque génération avec le nombre de naissances et de morts.
+	 */
+	private long population;
+	private long birthCount, deathCount;
+	
+	// Naissances et morts de chaque rangée de tuiles, additionnées à la fin de la génération
+	private final long[] tileRowBirths, tileRowDeaths;
+	
+	/**
+	 * Empreinte de l'état actuel (voir {@code GridEngine.getStateHash()}), actualisée avec les clés des cellules
+	 * qui changent d'état. Chaque rangée de tuiles calcule sa part de l'empreinte et sa propre liste de changements.
+	 */
+	private long stateHash;
+	private final long[] tileRowHashes;
+	
+	private boolean changeTracking;
+	private final CellChangeLog changeLog = new CellChangeLog();
+	private CellChangeLog[] tileRowLogs;
+	
+	/**
+	 * Règle d'évolution. La règle de Conway est calculée par {@code applyRule()}; les autres règles semblables au jeu
+	 * de la vie le sont à partir de leurs masques de naissance et de survie.
+	 */
+	private Rule rule = Rule.CONWAY;
+	private boolean conway = true;
+	private int birthMask, survivalMask;
+	
+	/**
+	 * Comportement des bords. Position dans le dernier mot d'une ligne du bit de la dernière colonne, qui reçoit
+	 * la voisine à l'est de cette colonne.
+	 */
+	private BoundaryMode boundaryMode = BoundaryMode.DEAD;
+	private final int lastColumnBit;
+
+	/**
+	 * Constructeur avec paramètre. Toutes les cellules sont mortes au départ.
+	 * @param sideLength Nombre de cellules actives sur un côté de la grille
+	 */
+	public BitGrid(int sideLength) {
+		this.sideLength = sideLength;
+		this.wordsPerRow = (sideLength + 63) >>> 6;
+
+		int lastBits = sideLength & 63;
+		this.lastWordMask = lastBits == 0 ? -1L : (1L << lastBits) - 1;
+		this.lastColumnBit = (sideLength - 1) & 63;
+
+		currentWords = new long[(sideLength + 2) * wordsPerRow];
+		nextWords = new long[(sideLength + 2) * wordsPerRow];
+		tileTracker = new TileTracker((sideLength + TILE_ROWS - 1) / TILE_ROWS, wordsPerRow);
+		tileRowBirths = new long[(sideLength + TILE_ROWS - 1) / TILE_ROWS];
+		tileRowDeaths = new long[(sideLength + TILE_ROWS - 1) / TILE_ROWS];
+		tileRowHashes = new long[(sideLength + TILE_ROWS - 1) / TILE_ROWS];
+	}
+
+	/**
+	 * @param row ligne de la cellule
+	 * @return Position du premier mot de la ligne donnée dans les tableaux de mots (la ligne 0 est la bordure)
+	 */
+	private int rowOffset(int row) {
+		return (row + 1) * wordsPerRow;
+	}
+
+	@Override
+	public int getSideLength() {
+		return sideLength;
+	}
+
+	@Override
+	public boolean isAlive(int row, int col) {
+		return (currentWords[rowOffset(row) + (col >>> 6)] & (1L << col)) != 0;
+	}
+
+	@Override
+	public void setAlive(int row, int col, boolean state) {
+		int index = rowOffset(row) + (col >>> 6);
+		long word = currentWords[index];
+
+		if (state)
+			currentWords[index] |= 1L << col;
+		else
+			currentWords[index] &= ~(1L << col);
+		
+		population += Long.bitCount(currentWords[index]) - Long.bitCount(word);
+		if (word != currentWords[index]) stateHash ^= CellChangeLog.hashKey(row, col);
+		
+		tileTracker.markDirty(row / TILE_ROWS, col >>> 6);
+	}
+
+	@Override
+	public long getWord(int row, int wordIndex) {
+		return currentWords[rowOffset(row) + wordIndex];
+	}
+
+	@Override
+	public void setWord(int row, int wordIndex, long word) {
+		int index = rowOffset(row) + wordIndex;
+		long updated = wordIndex == wordsPerRow - 1 ? word & lastWordMask : word;
+		
+		population += Long.bitCount(updated) - Long.bitCount(currentWords[index]);
+		for (long changes = updated ^ currentWords[index]; changes != 0; changes &= changes - 1)
+			stateHash ^= CellChangeLog.hashKey(row, (wordIndex << 6) + Long.numberOfTrailingZeros(changes));
+		
+		currentWords[index] = updated;
+		tileTracker.markDirty(row / TILE_ROWS, wordIndex);
+	}
+
+	@Override
+	public void nextGeneration() {
+		int tileRowCount = (sideLength + TILE_ROWS - 1) / TILE_ROWS;
+		if (boundaryMode != BoundaryMode.DEAD) fillGhostRows();
+		tileTracker.beginGeneration();
+		
+		if (stepper != null)
+			stepper.forEachBand(0, tileRowCount, 1, this::computeTileRows);
+		else
+			computeTileRows(0, tileRowCount);
+		
+		tileTracker.endGeneration();
+		swapBuffers();
+		
+		birthCount = 0;
+		deathCount = 0;
+		changeLog.clear();
+		for (int tileRow = 0; tileRow < tileRowCount; tileRow++) {
+			birthCount += tileRowBirths[tileRow];
+			deathCount += tileRowDeaths[tileRow];
+			stateHash ^= tileRowHashes[tileRow];
+			
+			if (changeTracking) changeLog.addAll(tileRowLogs[tileRow]);
+		}
+		population += birthCount - deathCount;
+	}
+	
+	/**
+	 * Cette méthode calcule la génération suivante des rangées de tuiles {@code fromTileRow} (inclusivement)
+	 * à {@code toTileRow} (exclusivement).
+	 * @param fromTileRow première rangée de tuiles à calculer
+	 * @param toTileRow rangée suivant la dernière rangée de tuiles à calculer
+	 */
+	private void computeTileRows(int fromTileRow, int toTileRow) {
+		for (int tileRow = fromTileRow; tileRow < toTileRow; tileRow++) 
+			computeRows(tileRow * TILE_ROWS, Math.min((tileRow + 1) * TILE_ROWS, sideLength), tileRow);
+	}
+	
+	@Override
+	public void setStepper(ParallelStepper stepper) {
+		this.stepper = stepper;
+	}
+
+	/**
+	 * Cette méthode calcule la génération suivante des lignes {@code fromRow} (inclusivement) à {@code toRow} (exclusivement)
+	 * et l'écrit dans {@code nextWords}. Pour chaque mot, les 8 voisins de chaque cellule sont obtenus en décalant
+	 * les mots de la ligne du haut, de la ligne actuelle et de la ligne du bas d'une position vers la gauche et vers la droite.
+	 * Les mots qui appartiennent à une tuile stable sont ignorés : {@code nextWords} contient déjà leur valeur.
+	 * @param fromRow première ligne à calculer
+	 * @param toRow ligne suivant la dernière ligne à calculer
+	 * @param tileRow rangée de tuiles qui contient les lignes à calculer
+	 */
+	private void computeRows(int fromRow, int toRow, int tileRow) {
+		long[] src = currentWords;
+		long[] dst = nextWords;
+		int lastWord = wordsPerRow - 1;
+		long births = 0, deaths = 0, hash = 0;
+		
+		CellChangeLog log = changeTracking ? tileRowLogs[tileRow] : null;
+		if (log != null) log.clear();
+
+		for (int row = fromRow; row < toRow; row++) {
+			int center = rowOffset(row);
+			int above = center - wordsPerRow;
+			int below = center + wordsPerRow;
+
+			for (int w = 0; w <= lastWord; w++) {
+				if (!tileTracker.isActive(tileRow, w)) continue;
+				
+				boolean hasWest = w > 0, hasEast = w < lastWord;
+
+				long up = src[above + w];
+				long mid = src[center + w];
+				long down = src[below + w];
+
+				// Voisins à l'ouest : chaque bit est décalé d'une colonne, en récupérant le dernier bit du mot précédent
+				long upWest = (up << 1) | (hasWest ? src[above + w - 1] >>> 63 : westGhost(src, above));
+				long midWest = (mid << 1) | (hasWest ? src[center + w - 1] >>> 63 : westGhost(src, center));
+				long downWest = (down << 1) | (hasWest ? src[below + w - 1] >>> 63 : westGhost(src, below));
+
+				// Voisins à l'est : même principe en récupérant le premier bit du mot suivant
+				long upEast = (up >>> 1) | (hasEast ? src[above + w + 1] << 63 : eastGhost(src, above) << lastColumnBit);
+				long midEast = (mid >>> 1) | (hasEast ? src[center + w + 1] << 63 : eastGhost(src, center) << lastColumnBit);
+				long downEast = (down >>> 1) | (hasEast ? src[below + w + 1] << 63 : eastGhost(src, below) << lastColumnBit);
+
+				long result = conway ? applyRule(upWest, up, upEast, midWest, mid, midEast, downWest, down, downEast)
+						: applyRule(birthMask, survivalMask, upWest, up, upEast, midWest, mid, midEast, downWest, down, downEast);
+				if (w == lastWord) result &= lastWordMask;
+				
+				dst[center + w] = result;
+				
+				if (result != mid) {
+					tileTracker.markChanged(tileRow, w);
+					births += Long.bitCount(result & ~mid);
+					deaths += Long.bitCount(mid & ~result);
+					
+					// Appliquer la clé de chaque cellule qui a changé d'état
+					for (long changes = result ^ mid; changes != 0; changes &= changes - 1) {
+						int col = (w << 6) + Long.numberOfTrailingZeros(changes);
+						
+						hash ^= CellChangeLog.hashKey(row, col);
+						if (log != null) log.add(row, col);
+					}
+				}
+			}
+		}
+		tileRowBirths[tileRow] = births;
+		tileRowDeaths[tileRow] = deaths;
+		tileRowHashes[tileRow] = hash;
+	}
+
+	/**
+	 * @param words tableau de mots
+	 * @param rowStart position du premier mot d'une ligne
+	 * @return État (0 ou 1) de la cellule à l'ouest de la première colonne de la ligne, selon {@code boundaryMode}
+	 */
+	private long westGhost(long[] words, int rowStart) {
+		switch (boundaryMode) {
+		case TORUS:
+		case KLEIN:
+			return (words[rowStart + wordsPerRow - 1] >>> lastColumnBit) & 1;
+		case MIRROR:
+			return words[rowStart] & 1;
+		default:
+			return 0;
+		}
+	}
+	
+	/**
+	 * @param words tableau de mots
+	 * @param rowStart position du premier mot d'une ligne
+	 * @return État (0 ou 1) de la cellule à l'est de la dernière colonne de la ligne, selon {@code boundaryMode}
+	 */
+	private long eastGhost(long[] words, int rowStart) {
+		switch (boundaryMode) {
+		case TORUS:
+		case KLEIN:
+			return words[rowStart] & 1;
+		case MIRROR:
+			return (words[rowStart + wordsPerRow - 1] >>> lastColumnBit) & 1;
+		default:
+			return 0;
+		}
+	}
+	
+	/**
+	 * Cette méthode copie dans les deux lignes de la bordure de {@code currentWords} les lignes qu'elles représentent
+	 * selon {@code boundaryMode} : la dernière et la première ligne pour un tore, les mêmes lignes inversées de gauche
+	 * à droite pour une bouteille de Klein, et la première et la dernière ligne pour un miroir.
+	 */
+	private void fillGhostRows() {
+		int top = rowOffset(-1), bottom = rowOffset(sideLength);
+		
+		switch (boundaryMode) {
+		case TORUS:
+			System.arraycopy(currentWords, rowOffset(sideLength - 1), currentWords, top, wordsPerRow);
+			System.arraycopy(currentWords, rowOffset(0), currentWords, bottom, wordsPerRow);
+			break;
+		case KLEIN:
+			reverseRow(rowOffset(sideLength - 1), top);
+			reverseRow(rowOffset(0), bottom);
+			break;
+		case MIRROR:
+			System.arraycopy(currentWords, rowOffset(0), currentWords, top, wordsPerRow);
+			System.arraycopy(currentWords, rowOffset(sideLength - 1), currentWords, bottom, wordsPerRow);
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * Cette méthode écrit une ligne de {@code currentWords} inversée de gauche à droite : la colonne {@code c} devient
+	 * la colonne {@code sideLength - 1 - c}. Les mots sont inversés avec {@code Long.reverse()}, puis décalés du nombre
+	 * de bits inutilisés du dernier mot.
+	 * @param from position du premier mot de la ligne à inverser
+	 * @param to position du premier mot de la ligne à écrire
+	 */
+	private void reverseRow(int from, int to) {
+		int padding = (wordsPerRow << 6) - sideLength;
+		
+		for (int w = 0; w < wordsPerRow; w++) {
+			long word = Long.reverse(currentWords[from + wordsPerRow - 1 - w]) >>> padding;
+			if (padding != 0 && w + 1 < wordsPerRow)
+				word |= Long.reverse(currentWords[from + wordsPerRow - 2 - w]) << (64 - padding);
+			
+			currentWords[to + w] = word;
+		}
+	}
+
+	/**
+	 * Inverser de gauche à droite une ligne copiée hors de la grille, comme {@code reverseRow(int, int)}.
+	 * @param row mots d'une ligne de {@code sideLength} cellules
+	 * @param sideLength nombre de cellules de la ligne
+	 * @return Nouveau tableau contenant la ligne inversée
+	 */
+	static long[] reverseRow(long[] row, int sideLength) {
+		int wordsPerRow = row.length;
+		int padding = (wordsPerRow << 6) - sideLength;
+		long[] reversed = new long[wordsPerRow];
+		
+		for (int w = 0; w < wordsPerRow; w++) {
+			reversed[w] = Long.reverse(row[wordsPerRow - 1 - w]) >>> padding;
+			if (padding != 0 && w + 1 < wordsPerRow) reversed[w] |= Long.reverse(row[wordsPerRow - 2 - w]) << (64 - padding);
+		}
+		return reversed;
+	}
+
+	/**
+	 * Cette méthode applique les règles du jeu de la vie sur 64 cellules à la fois. Le nombre de voisins de chaque cellule
+	 * est additionné bit par bit à l'aide d'additionneurs complets, sans jamais séparer les cellules du mot.
+	 * Une cellule est vivante à la génération suivante si elle a 3 voisins, ou si elle est vivante et a 2 voisins.
+	 * @return Mot contenant l'état suivant des 64 cellules du mot {@code mid}
+	 */
+	static long applyRule(long upWest, long up, long upEast,
+			long midWest, long mid, long midEast,
+			long downWest, long down, long downEast) {
+
+		// Somme de chaque ligne (valeur entre 0 et 3) : bit de poids 1 et bit de poids 2
+		long upOnes = upWest ^ up ^ upEast;
+		long upTwos = (upWest & up) | (upEast & (upWest ^ up));
+		long midOnes = midWest ^ midEast;
+		long midTwos = midWest & midEast;
+		long downOnes = downWest ^ down ^ downEast;
+		long downTwos = (downWest & down) | (downEast & (downWest ^ down));
+
+		// Addition des bits de poids 1 des 3 lignes
+		long ones = upOnes ^ midOnes ^ downOnes;
+		long onesCarry = (upOnes & midOnes) | (downOnes & (upOnes ^ midOnes));
+
+		// Addition des bits de poids 2 des 3 lignes et de la retenue précédente
+		long twosSum = upTwos ^ midTwos ^ downTwos;
+		long twosCarry = (upTwos & midTwos) | (downTwos & (upTwos ^ midTwos));
+		long twos = twosSum ^ onesCarry;
+		long fours = twosCarry | (twosSum & onesCarry);
+
+		// 2 ou 3 voisins : bit de poids 2 actif et aucun bit de poids supérieur
+		return twos & ~fours & (ones | mid);
+	}
+
+	/**
+	 * Cette méthode applique une règle semblable au jeu de la vie sur 64 cellules à la fois. Le nombre de voisins
+	 * de chaque cellule est additionné comme dans {@code applyRule()}, mais sur 4 bits complets (de 0 à 8). Chaque nombre
+	 * de voisins qui fait partie de la règle est ensuite comparé à ces 4 bits pour toutes les cellules du mot.
+	 * @param births masque des nombres de voisins qui font naître une cellule (voir {@code Rule.getBirthMask()})
+	 * @param survivals masque des nombres de voisins qui gardent une cellule en vie
+	 * @return Mot contenant l'état suivant des 64 cellules du mot {@code mid}
+	 */
+	static long applyRule(int births, int survivals, long upWest, long up, long upEast,
+			long midWest, long mid, long midEast,
+			long downWest, long down, long downEast) {
+
+		long upOnes = upWest ^ up ^ upEast;
+		long upTwos = (upWest & up) | (upEast & (upWest ^ up));
+		long midOnes = midWest ^ midEast;
+		long midTwos = midWest & midEast;
+		long downOnes = downWest ^ down ^ downEast;
+		long downTwos = (downWest & down) | (downEast & (downWest ^ down));
+
+		long ones = upOnes ^ midOnes ^ downOnes;
+		long onesCarry = (upOnes & midOnes) | (downOnes & (upOnes ^ midOnes));
+
+		// Les retenues de poids 4 sont additionnées entre elles pour obtenir les bits de poids 4 et 8
+		long twosSum = upTwos ^ midTwos ^ downTwos;
+		long twosCarry = (upTwos & midTwos) | (downTwos & (upTwos ^ midTwos));
+		long twos = twosSum ^ onesCarry;
+		long foursCarry = twosSum & onesCarry;
+		long fours = twosCarry ^ foursCarry;
+		long eights = twosCarry & foursCarry;
+
+		long result = 0;
+		for (int counts = births | survivals; counts != 0; counts &= counts - 1) {
+			int count = Integer.numberOfTrailingZeros(counts);
+
+			long matches = ((count & 1) != 0 ? ones : ~ones) & ((count & 2) != 0 ? twos : ~twos)
+					& ((count & 4) != 0 ? fours : ~fours) & ((count & 8) != 0 ? eights : ~eights);
+			long cells = ((births >>> count) & 1) != 0 ? ~mid : 0;
+			if (((survivals >>> count) & 1) != 0) cells |= mid;
+
+			result |= matches & cells;
+		}
+		return result;
+	}
+
+	/**
+	 * Rendre vivante une cellule de la génération actuelle sans actualiser le nombre de cellules vivantes, l'empreinte
+	 * ni le suivi des tuiles. Plusieurs fils d'exécution peuvent remplir des lignes différentes en même temps, puisque
+	 * chacun n'écrit que les mots de ses lignes; {@code recountCells()} doit être appelée une fois qu'ils ont terminé.
+	 * @param row ligne de la cellule
+	 * @param col colonne de la cellule
+	 */
+	void seedAlive(int row, int col) {
+		currentWords[rowOffset(row) + (col >>> 6)] |= 1L << col;
+	}
+
+	/**
+	 * Recalculer le nombre de cellules vivantes et l'empreinte de la génération actuelle en parcourant tous les mots,
+	 * par exemple après un remplissage par {@code seedAlive()}. Toutes les tuiles seront calculées à la prochaine
+	 * génération.
+	 */
+	void recountCells() {
+		population = 0;
+		stateHash = 0;
+
+		for (int row = 0; row < sideLength; row++) {
+			for (int w = 0; w < wordsPerRow; w++) {
+				long word = currentWords[rowOffset(row) + w];
+
+				population += Long.bitCount(word);
+				for (; word != 0; word &= word - 1)
+					stateHash ^= CellChangeLog.hashKey(row, (w << 6) + Long.numberOfTrailingZeros(word));
+			}
+		}
+		tileTracker.markAllDirty();
+	}
+
+	/**
+	 * Échanger la génération actuelle et la génération suivante.
+	 */
+	private void swapBuffers() {
+		long[] temp = currentWords;
+		currentWords = nextWords;
+		nextWords = temp;
+	}
+
+	/**
+	 * Seules les règles semblables au jeu de la vie sont supportées (voir {@code Rule.isLifeLike()}).
+	 */
+	@Override
+	public void setRule(Rule rule) {
+		if (!rule.isLifeLike())
+			throw new IllegalArgumentException("Le moteur PACKED supporte seulement les règles B/S à deux états : " + rule);
+		
+		this.rule = rule;
+		conway = rule.isConway();
+		birthMask = rule.getBirthMask();
+		survivalMask = rule.getSurvivalMask();
+		
+		// Les tuiles stables ne le sont peut-être plus avec la nouvelle règle
+		tileTracker.markAllDirty();
+	}
+	
+	@Override
+	public Rule getRule() {
+		return rule;
+	}
+	
+	@Override
+	public void setBoundaryMode(BoundaryMode boundaryMode) {
+		this.boundaryMode = boundaryMode;
+		
+		// Avec des bords morts, les lignes de la bordure ne sont plus remplies et doivent rester vides
+		if (boundaryMode == BoundaryMode.DEAD) {
+			Arrays.fill(currentWords, 0, wordsPerRow, 0);
+			Arrays.fill(currentWords, rowOffset(sideLength), rowOffset(sideLength + 1), 0);
+			Arrays.fill(nextWords, 0, wordsPerRow, 0);
+			Arrays.fill(nextWords, rowOffset(sideLength), rowOffset(sideLength + 1), 0);
+		}
+		tileTracker.setEdgeDepth(boundaryMode.connectsOppositeEdges() ? 1 : 0);
+	}
+	
+	@Override
+	public BoundaryMode getBoundaryMode() {
+		return boundaryMode;
+	}
+
+	@Override
+	public TileTracker getTileTracker() {
+		return tileTracker;
+	}
+	
+	@Override
+	public long countLivingCells() {
+		return population;
+	}
+	
+	@Override
+	public long getBirthCount() {
+		return birthCount;
+	}
+	
+	@Override
+	public long getDeathCount() {
+		return deathCount;
+	}
+	
+	@Override
+	public long getStateHash() {
+		return stateHash;
+	}
+	
+	@Override
+	public void setChangeTracking(boolean enabled) {
+		changeTracking = enabled;
+		
+		if (enabled && tileRowLogs == null) {
+			tileRowLogs = new CellChangeLog[tileRowHashes.length];
+			for (int i = 0; i < tileRowLogs.length; i++) tileRowLogs[i] = new CellChangeLog();
+		}
+	}
+	
+	@Override
+	public CellChangeLog getChangeLog() {
+		return changeTracking ? changeLog : null;
+	}
+}
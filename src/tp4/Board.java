@@ -1,13 +1,15 @@
 package tp4;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
 
 /**
  * La classe {@code Board} contient toutes les methodes nécessaires au fonctionnement du "Jeu de la vie".
  * Les propriétés de cette classe déterminent l'état de départ de la grille, qui va évoluer à partir de ces informations.
  */
-public class Board {
+public class Board implements AutoCloseable {
 	
 	// Reglages du grid board
 	private int sideLength;
@@ -25,10 +27,88 @@ public class Board {
 	 */
 	private final int GRID_BORDER = 2;
 	
+	/**
+	 * Longueur des côtés d'une tuile (en cellules). Les tuiles dont le voisinage n'a pas changé lors de la
+	 * génération précédente ne sont pas recalculées (voir {@code TileTracker}).
+	 */
+	private final int TILE_SIZE = 32;
+	
+	/**
+	 * Nombre de cellules actives à partir duquel la population initiale est créée en parallèle.
+	 */
+	private final long PARALLEL_SEED_THRESHOLD = 1L << 24;
+	
 	// 
 	private GridArray gridArray;
 	private Cell[][] cellGrid;
 	private ArrayList<Cell> activeCellList;
+	private CellStateBuffer stateBuffer;
+	private TileTracker tileTracker;
+	
+	// Générateur de la population initiale
+	private PopulationSeeder seeder;
+	
+	/**
+	 * Nombre de cellules vivantes de la grille {@code Cell}. Cette valeur n'est pas recomptée à chaque génération :
+	 * elle est actualisée avec le nombre de naissances et de morts calculé en même temps que la génération.
+	 */
+	private long population;
+	private long birthCount, deathCount;
+	
+	// Naissances et morts de chaque rangée de tuiles, additionnées à la fin de la génération
+	private long[] tileRowBirths, tileRowDeaths;
+	
+	/**
+	 * Empreinte de la grille {@code Cell} (voir {@code GridEngine.getStateHash()}). Comme la population, elle est
+	 * actualisée avec les clés des cellules qui changent d'état, calculées par rangée de tuiles.
+	 */
+	private long stateHash;
+	private long[] tileRowHashes;
+	
+	// Cellules qui ont changé d'état lors de la dernière génération, si leur enregistrement est activé
+	private boolean changeTracking;
+	private CellChangeLog changeLog;
+	private CellChangeLog[] tileRowLogs;
+	
+	/**
+	 * Moteur de calcul utilisé pour faire évoluer la grille. Avec {@code EngineType.CELL}, il n'y a pas de moteur
+	 * et les générations sont calculées directement sur les objets {@code Cell}. Avec les autres types, {@code cellGrid}
+	 * et {@code activeCellList} forment seulement une vue de l'état du moteur, construite au premier accès.
+	 */
+	private EngineType engineType;
+	private GridEngine engine;
+	
+	/**
+	 * Répartit le calcul des générations sur plusieurs fils d'exécution. Lorsque {@code stepper} est {@code null},
+	 * les générations sont calculées en série.
+	 */
+	private ParallelStepper stepper;
+
+	// Vrai si stepper a été créé par la grille (voir setThreadCount()), qui doit alors l'arrêter
+	private boolean ownsStepper = false;
+	
+	/**
+	 * Règle d'évolution de la grille {@code Cell}. Avec une règle « Generations », {@code stateBuffer} contient aussi
+	 * les états des cellules mourantes (2 et plus), qui sont considérées comme vivantes par {@code isAlive()} et dans
+	 * le nombre de cellules vivantes, comme dans Golly. Avec un moteur de calcul, la règle est celle du moteur.
+	 */
+	private Rule rule = Rule.CONWAY;
+	
+	/**
+	 * Comportement des bords de la grille {@code Cell}. Avec un autre mode que {@code BoundaryMode.DEAD}, les cellules
+	 * limitantes de {@code stateBuffer} forment le halo de la grille : elles reçoivent avant chaque génération une copie
+	 * des cellules qu'elles représentent (voir {@code fillHalo()}), et ne sont donc plus toujours mortes dans {@code cellGrid}.
+	 */
+	private BoundaryMode boundaryMode = BoundaryMode.DEAD;
+	
+	/**
+	 * Noyau vectoriel partagé par toutes les grilles, ou {@code null} si la machine virtuelle n'a pas été lancée avec
+	 * {@code --add-modules jdk.incubator.vector} (voir {@code TileKernel}).
+	 */
+	private static final TileKernel VECTOR_KERNEL = TileKernel.loadVectorKernel();
+	
+	// Noyau utilisé pour la règle de Conway, ou null pour le calcul cellule par cellule
+	private TileKernel tileKernel = VECTOR_KERNEL;
 
 	/**
 	 * Constructeur sans parametres. Réglages par défaut. Création d'une grille faisant 100 x 100 cellules,
@@ -38,6 +118,8 @@ public class Board {
 		this.sideLength = DEFAULT_SIDELENGTH + GRID_BORDER;
 		this.initialPopulation = DEFAULT_INITIALPOPULATION;
 		this.displayRate = DEFAULT_DISPLAYRATE;
+		this.engineType = EngineType.CELL;
+		this.seeder = new PopulationSeeder();
 		
 		createBoard();
 	}
@@ -50,9 +132,40 @@ public class Board {
 	 * @param displayRate
 	 */
 	public Board(int sideLength, double initialPopulation, int displayRate) {
+		this(sideLength, initialPopulation, displayRate, EngineType.CELL);
+	}
+	
+	/**
+	 * Constructeur avec parametres. Une nouvelle grille est créée selon les réglages
+	 * et évoluera avec le moteur de calcul donné.
+	 * @param sideLength longueur des côtés de la grille 
+	 * @param initialPopulation Taux de remplissage initial de la grille
+	 * @param displayRate Intervalle d'affichage de l'état de la grille
+	 * @param engineType Moteur de calcul utilisé pour faire évoluer la grille
+	 */
+	public Board(int sideLength, double initialPopulation, int displayRate, EngineType engineType) {
+		this(sideLength, initialPopulation, displayRate, engineType, new PopulationSeeder());
+	}
+	
+	/**
+	 * Constructeur avec parametres. Une nouvelle grille est créée selon les réglages, et sa population initiale
+	 * est déterminée par le germe donné : deux grilles créées avec les mêmes paramètres sont identiques.
+	 * @param sideLength longueur des côtés de la grille 
+	 * @param initialPopulation Taux de remplissage initial de la grille
+	 * @param displayRate Intervalle d'affichage de l'état de la grille
+	 * @param engineType Moteur de calcul utilisé pour faire évoluer la grille
+	 * @param seed Germe du générateur de la population initiale
+	 */
+	public Board(int sideLength, double initialPopulation, int displayRate, EngineType engineType, long seed) {
+		this(sideLength, initialPopulation, displayRate, engineType, new PopulationSeeder(seed));
+	}
+	
+	private Board(int sideLength, double initialPopulation, int displayRate, EngineType engineType, PopulationSeeder seeder) {
 		this.sideLength = sideLength + GRID_BORDER;
 		this.initialPopulation = initialPopulation;
 		this.displayRate = displayRate;
+		this.engineType = engineType;
+		this.seeder = seeder;
 		
 		createBoard();
 	}
@@ -62,99 +175,876 @@ public class Board {
 	 */
 	private void createBoard() {
 		// Construire une nouvelle grille
-		gridArray = new GridArray(sideLength);
-		cellGrid = gridArray.getCellGrid();
-		activeCellList = gridArray.getActiveCellList();
+		if (engineType == EngineType.PACKED) {
+			engine = new BitGrid(sideLength - GRID_BORDER);
+		} else if (engineType == EngineType.HASHLIFE) {
+			engine = new HashLife(sideLength - GRID_BORDER);
+		} else if (engineType == EngineType.SPARSE) {
+			engine = new SparseGrid(sideLength - GRID_BORDER);
+		} else if (engineType == EngineType.OFFHEAP) {
+			try {
+				engine = new OffHeapGrid(sideLength - GRID_BORDER);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Fichier de travail de la grille impossible à créer", e);
+			}
+		} else if (engineType == EngineType.DISTRIBUTED) {
+			try {
+				engine = new DistributedGrid(sideLength - GRID_BORDER);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Processus de calcul de la grille impossibles à joindre", e);
+			}
+		} else {
+			createCellGrid();
+			
+			tileTracker = new TileTracker(getTilesPerSide(), getTilesPerSide());
+			tileRowBirths = new long[getTilesPerSide()];
+			tileRowDeaths = new long[getTilesPerSide()];
+			tileRowHashes = new long[getTilesPerSide()];
+		}
 		
 		// Créér l'état initial de la grille
 		createRandomPopulation();
 		updateBoard();
+		
+		// La population initiale et son empreinte sont calculées une seule fois
+		if (engine == null) scanCellStates();
+	}
+	
+	/**
+	 * Méthode qui recalcule le nombre de cellules vivantes et l'empreinte de la grille {@code Cell} en parcourant
+	 * toutes les cellules. Les états qui n'existent pas dans la règle actuelle deviennent des cellules mortes.
+	 */
+	private void scanCellStates() {
+		byte[] states = stateBuffer.getCurrentStates();
+		population = 0;
+		stateHash = 0;
+		
+		for (int row = 1; row < sideLength - 1; row++) {
+			for (int col = 1; col < sideLength - 1; col++) {
+				int index = row * sideLength + col;
+				
+				if ((states[index] & 0xFF) >= rule.getStateCount()) states[index] = 0;
+				if (states[index] == 0) continue;
+				
+				population++;
+				stateHash ^= CellChangeLog.hashKey(row - 1, col - 1, states[index] & 0xFF);
+			}
+		}
+	}
+	
+	/**
+	 * Méthode qui construit la grille d'objets {@code Cell}. Lorsqu'un moteur de calcul est utilisé,
+	 * cette grille est seulement une vue de l'état du moteur.
+	 */
+	private void createCellGrid() {
+		gridArray = new GridArray(sideLength);
+		cellGrid = gridArray.getCellGrid();
+		activeCellList = gridArray.getActiveCellList();
+		stateBuffer = gridArray.getStateBuffer();
+	}
+	
+	/**
+	 * Méthode qui copie l'état actuel du moteur de calcul dans la vue {@code cellGrid}.
+	 */
+	private void updateCellView() {
+		if (stepper != null)
+			stepper.forEachBand(1, sideLength - 1, this::updateCellView);
+		else
+			updateCellView(1, sideLength - 1);
+	}
+	
+	/**
+	 * Méthode qui copie l'état actuel du moteur de calcul dans les lignes données de la vue {@code cellGrid}.
+	 * @param fromRow première ligne à copier
+	 * @param toRow ligne suivant la dernière ligne à copier
+	 */
+	private void updateCellView(int fromRow, int toRow) {
+		for (int row = fromRow; row < toRow; row++) {
+			for (int col = 1; col < sideLength - 1; col++) {
+				stateBuffer.setCurrentState(row * sideLength + col, engine.isAlive(row - 1, col - 1));
+			}
+		}
 	}
 
 	/**
 	 * Méthode qui attribue un état 'vivant' aléatoirement a un nombre fixé de cellules actives.
 	 * Le nombre de cellules vivantes au depart depend du parametre {@code initialPopulation}.
+	 * Chaque cellule n'est visitée qu'une seule fois (voir {@code PopulationSeeder}). Pour les très grandes grilles,
+	 * chaque cellule est plutôt rendue vivante avec la probabilité {@code initialPopulation}, ce qui permet de remplir
+	 * les lignes en parallèle; le nombre de cellules vivantes est alors seulement approximatif.
 	 */
 	private void createRandomPopulation() {
-		Random random = new Random();
+		// Une grille vide (par exemple avant de restaurer une sauvegarde) n'a pas besoin d'être parcourue
+		if (initialPopulation <= 0) return;
 		
-		// ArrayList qui contient un nombre donné d'indices aleatoires
-		ArrayList<Integer> initialLiveCells = new ArrayList<Integer>();
+		int activeSideLength = sideLength - GRID_BORDER;
+		long activeCellCount = (long) activeSideLength * activeSideLength;
 		
-		double population = initialPopulation * activeCellList.size();
+		// Les lignes de ces grilles peuvent être modifiées en même temps
+		boolean rowsAreIndependent = engineType == EngineType.CELL || engineType == EngineType.PACKED;
 		
-		do { 
-			int randomCell = random.nextInt(activeCellList.size());
+		if (activeCellCount >= PARALLEL_SEED_THRESHOLD && rowsAreIndependent) {
+			ParallelStepper seedStepper = new ParallelStepper(Runtime.getRuntime().availableProcessors());
 			
-			// Ajouter un index aleatoire et unique
-			if (!initialLiveCells.contains(randomCell)) {
-				initialLiveCells.add(randomCell); 
-				
-				// Activer la cellule qui se retrouve à l'indice aleatoire
-				activeCellList.get(randomCell).setAlive();
+			if (engine instanceof BitGrid) {
+				// Les fils n'écrivent que les mots de leurs lignes : les compteurs partagés sont recalculés ensuite
+				BitGrid bitGrid = (BitGrid) engine;
+				seeder.seedDensity(activeSideLength, activeSideLength, initialPopulation, bitGrid::seedAlive, seedStepper);
+				bitGrid.recountCells();
+			} else {
+				seeder.seedDensity(activeSideLength, activeSideLength, initialPopulation, this::activateCell, seedStepper);
 			}
-		} while (initialLiveCells.size() < population);
+			seedStepper.shutdown();
+		} else {
+			long population = (long) Math.ceil(initialPopulation * activeCellCount);
+			seeder.seedExactCount(activeSideLength, activeSideLength, population, this::activateCell);
+		}
+	}
+	
+	/**
+	 * Activer la cellule active à la position donnée lors de la création de la population initiale.
+	 * @param row ligne de la cellule (sans la bordure)
+	 * @param col colonne de la cellule (sans la bordure)
+	 */
+	private void activateCell(int row, int col) {
+		if (engine != null) 
+			engine.setAlive(row, col, true);
+		else
+			stateBuffer.setNextState((row + 1) * sideLength + col + 1, true);
 	}
 	
 	/**
 	 * Cette méthode permet de compter le nombre de voisins (cellule active et vivante) qui entourent la cellule à la position donnée.
 	 * Puisque la bordure est composée de cellules limitantes (cellules mortes qui occupent une position réelle dans {@code cellGrid}), 
 	 * il est quand même possible d'évaluer le voisinage d'une cellule active qui touche la bordure sans mettre de restrictions et 
-	 * sans dépasser les limites réelles de {@code cellGrid}.
-	 * @param row ligne de la cellule donnée
-	 * @param col colonne de la cellule donnée
+	 * sans dépasser les limites réelles de {@code cellGrid}. Les états sont lus directement dans la génération actuelle 
+	 * de {@code stateBuffer}, où une cellule vivante vaut 1.
+	 * @param states États de la génération actuelle
+	 * @param index indice de la cellule donnée dans {@code states}
 	 * @return Nombre de voisins vivants autour de la cellule donnée
 	 */
-	private int countNeighborCells(int row, int col) {
+	private int countNeighborCells(byte[] states, int index) {
+		int above = index - sideLength, below = index + sideLength;
 		
-		// Compteur commence à -1 pour ne pas compter la cellule centrale 
-		int neighborCellCounter = cellGrid[row][col].isAlive() ? -1 : 0;
+		return states[above - 1] + states[above] + states[above + 1]
+				+ states[index - 1] + states[index + 1]
+				+ states[below - 1] + states[below] + states[below + 1];
+	}
+	
+	/**
+	 * Cette méthode attribue un nouvel état à chaque cellule active
+	 * selon la règle de la grille (voir {@code setRule()}).
+	 */
+	public void nextGeneration() {
+		if (engine != null) {
+			engine.nextGeneration();
+			return;
+		}
+		
+		if (boundaryMode != BoundaryMode.DEAD) fillHalo(stateBuffer.getCurrentStates());
+		tileTracker.beginGeneration();
+		
+		if (stepper != null)
+			stepper.forEachBand(0, getTilesPerSide(), 1, this::computeTileRows);
+		else
+			computeTileRows(0, getTilesPerSide());
+		
+		tileTracker.endGeneration();
+		
+		birthCount = 0;
+		deathCount = 0;
+		if (changeTracking) changeLog.clear();
+		
+		for (int tileRow = 0; tileRow < getTilesPerSide(); tileRow++) {
+			birthCount += tileRowBirths[tileRow];
+			deathCount += tileRowDeaths[tileRow];
+			stateHash ^= tileRowHashes[tileRow];
+			
+			if (changeTracking) changeLog.addAll(tileRowLogs[tileRow]);
+		}
+		population += birthCount - deathCount;
+	}
+	
+	/**
+	 * Cette méthode remplit les cellules limitantes (le halo) avec l'état des cellules qu'elles représentent selon
+	 * {@code boundaryMode}. Seules les {@code 4 * sideLength} cellules du halo sont parcourues : les cellules actives
+	 * lisent ensuite leurs voisines sans jamais vérifier si elles touchent un bord. Avec des bords morts, le halo est vidé.
+	 * @param states tableau d'états à compléter
+	 */
+	private void fillHalo(byte[] states) {
+		int last = sideLength - 1;
+		
+		for (int i = 0; i < sideLength; i++) {
+			states[i] = (byte) haloState(states, 0, i);
+			states[last * sideLength + i] = (byte) haloState(states, last, i);
+			states[i * sideLength] = (byte) haloState(states, i, 0);
+			states[i * sideLength + last] = (byte) haloState(states, i, last);
+		}
+	}
+	
+	/**
+	 * @param states tableau d'états
+	 * @param row ligne d'une position quelconque, bordure comprise (les cellules actives vont de 1 à {@code sideLength - 2})
+	 * @param col colonne de la position
+	 * @return État de la cellule active qui apparaît à cette position selon {@code boundaryMode}, ou 0 si la position est morte
+	 */
+	private int haloState(byte[] states, int row, int col) {
+		long cell = boundaryMode.map(row - 1, col - 1, sideLength - GRID_BORDER);
+		if (cell < 0) return 0;
+		
+		return states[(CellChangeLog.unpackRow(cell) + 1) * sideLength + CellChangeLog.unpackCol(cell) + 1] & 0xFF;
+	}
+	
+	/**
+	 * @return Nombre de tuiles nécessaires pour couvrir un côté de la grille (sans la bordure)
+	 */
+	private int getTilesPerSide() {
+		return (sideLength - GRID_BORDER + TILE_SIZE - 1) / TILE_SIZE;
+	}
+	
+	/**
+	 * Cette méthode calcule les tuiles des rangées {@code fromTileRow} (inclusivement) à {@code toTileRow} (exclusivement).
+	 * Les tuiles dont le voisinage n'a pas changé sont ignorées. Plusieurs rangées de tuiles peuvent être calculées en même temps.
+	 * @param fromTileRow première rangée de tuiles à calculer
+	 * @param toTileRow rangée suivant la dernière rangée de tuiles à calculer
+	 */
+	private void computeTileRows(int fromTileRow, int toTileRow) {
+		int lastActive = sideLength - 1;
 		
-		// Évaluer seulement les cellules actives
-		if (!cellGrid[row][col].isBorderCell()) {
-			for (int i = -1; i < 2 ; i++) {
-				for (int j = -1; j < 2; j++) {
+		boolean conway = rule.isConway(), lifeLike = rule.isLifeLike();
+		
+		// Sommes des cellules vivantes d'une tuile et de son voisinage, pour les règles de plus grande portée
+		int areaSide = TILE_SIZE + 2 * rule.getRange() + 1;
+		int[] area = lifeLike ? null : new int[areaSide * areaSide];
+		
+		for (int tileRow = fromTileRow; tileRow < toTileRow; tileRow++) {
+			tileRowBirths[tileRow] = 0;
+			tileRowDeaths[tileRow] = 0;
+			tileRowHashes[tileRow] = 0;
+			if (changeTracking) tileRowLogs[tileRow].clear();
+			
+			for (int tileCol = 0; tileCol < getTilesPerSide(); tileCol++) {
+				if (!tileTracker.isActive(tileRow, tileCol)) continue;
+				
+				int fromRow = tileRow * TILE_SIZE + 1, fromCol = tileCol * TILE_SIZE + 1;
+				
+				int toRow = Math.min(fromRow + TILE_SIZE, lastActive), toCol = Math.min(fromCol + TILE_SIZE, lastActive);
+				boolean changed;
+				
+				if (conway && tileKernel != null)
+					changed = computeTileWithKernel(tileRow, fromRow, toRow, fromCol, toCol);
+				else if (conway)
+					changed = computeTile(tileRow, fromRow, toRow, fromCol, toCol);
+				else if (lifeLike)
+					changed = computeTileWithMasks(tileRow, fromRow, toRow, fromCol, toCol);
+				else
+					changed = computeTileWithArea(tileRow, fromRow, toRow, fromCol, toCol, area);
+				
+				if (changed) tileTracker.markChanged(tileRow, tileCol);
+			}
+		}
+	}
+	
+	/**
+	 * Cette méthode écrit le nouvel état des cellules actives d'une tuile dans la génération suivante de {@code stateBuffer}. 
+	 * Toutes les cellules de la tuile sont écrites, même celles dont l'état ne change pas, puisque la génération suivante 
+	 * contient encore l'état d'il y a deux générations. Les naissances, les morts et les clés des cellules qui changent
+	 * d'état sont ajoutées à celles de sa rangée de tuiles.
+	 * @param tileRow rangée de tuiles qui contient la tuile
+	 * @param fromRow première ligne de la tuile
+	 * @param toRow ligne suivant la dernière ligne de la tuile
+	 * @param fromCol première colonne de la tuile
+	 * @param toCol colonne suivant la dernière colonne de la tuile
+	 * @return {@code true} si au moins une cellule de la tuile a changé d'état
+	 */
+	private boolean computeTile(int tileRow, int fromRow, int toRow, int fromCol, int toCol) {
+		byte[] states = stateBuffer.getCurrentStates();
+		byte[] nextStates = stateBuffer.getNextStates();
+		int neighbors, births = 0, deaths = 0;
+		long hash = 0;
+	
+		for (int i = fromRow; i < toRow; i++) {
+			for (int index = i * sideLength + fromCol; index < i * sideLength + toCol; index++) {
+				neighbors = countNeighborCells(states, index);
+				
+				// Regles du jeu de la vie
+				nextStates[index] = (byte) (neighbors == 3 || (neighbors == 2 && states[index] != 0) ? 1 : 0);
+				births += nextStates[index] & ~states[index];
+				deaths += states[index] & ~nextStates[index];
+				
+				if (nextStates[index] != states[index]) {
+					int col = index - i * sideLength;
 					
-					if (cellGrid[row + i][col + j].isAlive()) neighborCellCounter++;
+					hash ^= CellChangeLog.hashKey(i - 1, col - 1);
+					if (changeTracking) tileRowLogs[tileRow].add(i - 1, col - 1);
 				}
 			}
 		}
-		return neighborCellCounter;
+		tileRowBirths[tileRow] += births;
+		tileRowDeaths[tileRow] += deaths;
+		tileRowHashes[tileRow] ^= hash;
+		
+		return births + deaths != 0;
 	}
 	
 	/**
-	 * Cette méthode attribue un nouvel état à chaque cellule active
-	 * selon les regles du jeu de la vie de Conway.
+	 * Cette méthode calcule une tuile comme {@code computeTile()}, une ligne à la fois avec {@code tileKernel}.
+	 * Les naissances et les morts de chaque ligne sont données sous forme de masques : seules les cellules qui
+	 * changent d'état sont parcourues pour l'empreinte et l'enregistrement des changements.
+	 * @return {@code true} si au moins une cellule de la tuile a changé d'état
 	 */
-	public void nextGeneration() {
-		int neighbors;
+	private boolean computeTileWithKernel(int tileRow, int fromRow, int toRow, int fromCol, int toCol) {
+		byte[] states = stateBuffer.getCurrentStates();
+		byte[] nextStates = stateBuffer.getNextStates();
+		int births = 0, deaths = 0;
+		long hash = 0;
+		
+		for (int i = fromRow; i < toRow; i++) {
+			long changes = tileKernel.computeRow(states, nextStates, i * sideLength + fromCol, toCol - fromCol, sideLength);
+			int born = (int) changes, died = (int) (changes >>> 32);
+			births += Integer.bitCount(born);
+			deaths += Integer.bitCount(died);
+			
+			for (int changed = born | died; changed != 0; changed &= changed - 1) {
+				int col = fromCol + Integer.numberOfTrailingZeros(changed);
+				
+				hash ^= CellChangeLog.hashKey(i - 1, col - 1);
+				if (changeTracking) tileRowLogs[tileRow].add(i - 1, col - 1);
+			}
+		}
+		tileRowBirths[tileRow] += births;
+		tileRowDeaths[tileRow] += deaths;
+		tileRowHashes[tileRow] ^= hash;
+		
+		return births + deaths != 0;
+	}
 	
-		for (int i = 1; i < cellGrid.length - 1; i++) {
-			for (int j = 1; j < cellGrid.length -1; j++) {
-				neighbors = countNeighborCells(i, j);
+	/**
+	 * Cette méthode calcule une tuile comme {@code computeTile()}, pour les autres règles semblables au jeu de la vie.
+	 * Les ensembles de naissance et de survie de la règle forment deux tables de 9 bits (voir {@code Rule.getBirthMask()}) :
+	 * le nouvel état d'une cellule qui a {@code n} voisins est le bit {@code n} de la table qui correspond à son état,
+	 * lu sans condition ni accès à un tableau.
+	 * @return {@code true} si au moins une cellule de la tuile a changé d'état
+	 */
+	private boolean computeTileWithMasks(int tileRow, int fromRow, int toRow, int fromCol, int toCol) {
+		byte[] states = stateBuffer.getCurrentStates();
+		byte[] nextStates = stateBuffer.getNextStates();
+		int birthMask = rule.getBirthMask(), survivalMask = rule.getSurvivalMask();
+		int births = 0, deaths = 0;
+		long hash = 0;
+	
+		for (int i = fromRow; i < toRow; i++) {
+			for (int index = i * sideLength + fromCol; index < i * sideLength + toCol; index++) {
+				int mask = states[index] != 0 ? survivalMask : birthMask;
+				nextStates[index] = (byte) ((mask >>> countNeighborCells(states, index)) & 1);
+				births += nextStates[index] & ~states[index];
+				deaths += states[index] & ~nextStates[index];
 				
-				// Regles du jeu de la vie
-				if (neighbors != 2) 
-					cellGrid[i][j].setState(neighbors == 3);
+				if (nextStates[index] != states[index]) {
+					int col = index - i * sideLength;
+					
+					hash ^= CellChangeLog.hashKey(i - 1, col - 1);
+					if (changeTracking) tileRowLogs[tileRow].add(i - 1, col - 1);
+				}
+			}
+		}
+		tileRowBirths[tileRow] += births;
+		tileRowDeaths[tileRow] += deaths;
+		tileRowHashes[tileRow] ^= hash;
+		
+		return births + deaths != 0;
+	}
+	
+	/**
+	 * Cette méthode calcule une tuile comme {@code computeTile()}, pour les règles « Generations » et « Larger than Life ».
+	 * Seules les cellules à l'état 1 comptent comme voisines, et le voisinage peut dépasser les 8 cellules adjacentes :
+	 * le nombre de cellules vivantes de chaque rectangle autour de la tuile est donc d'abord calculé dans {@code area}
+	 * (somme cumulée sur les lignes et les colonnes). Le voisinage d'une cellule est ensuite la somme d'un carré
+	 * (voisinage de Moore) ou d'une ligne de cellules par ligne du losange (voisinage de von Neumann), lue en temps constant.
+	 * Les cellules qui passent d'un état non nul à un autre changent l'empreinte, mais ne sont ni des naissances ni des morts.
+	 * @param area tableau d'au moins {@code (TILE_SIZE + 2 * portée + 1)^2} entiers réutilisé d'une tuile à l'autre
+	 * @return {@code true} si au moins une cellule de la tuile a changé d'état
+	 */
+	private boolean computeTileWithArea(int tileRow, int fromRow, int toRow, int fromCol, int toCol, int[] area) {
+		byte[] states = stateBuffer.getCurrentStates();
+		byte[] nextStates = stateBuffer.getNextStates();
+		int range = rule.getRange(), stateCount = rule.getStateCount();
+		boolean moore = rule.getNeighborhood() == Rule.Neighborhood.MOORE, includesCenter = rule.includesCenter();
+		byte[] transitions = rule.getTransitions();
+		int stride = rule.getMaxNeighborCount() + 1;
+		
+		// Rectangle lu autour de la tuile. Avec des bords morts, il s'arrête à la bordure; sinon, les cellules à l'extérieur
+		// de la grille sont lues selon le mode des bords, sauf dans le halo déjà rempli par fillHalo()
+		boolean dead = boundaryMode == BoundaryMode.DEAD;
+		int areaFromRow = dead ? Math.max(0, fromRow - range) : fromRow - range;
+		int areaToRow = dead ? Math.min(sideLength, toRow + range) : toRow + range;
+		int areaFromCol = dead ? Math.max(0, fromCol - range) : fromCol - range;
+		int areaToCol = dead ? Math.min(sideLength, toCol + range) : toCol + range;
+		int width = areaToCol - areaFromCol + 1;
+		boolean direct = areaFromRow >= 0 && areaFromCol >= 0 && areaToRow <= sideLength && areaToCol <= sideLength;
+		
+		// area[(r + 1) * width + c + 1] : cellules vivantes entre (areaFromRow, areaFromCol) et (areaFromRow + r, areaFromCol + c)
+		Arrays.fill(area, 0, width, 0);
+		for (int r = 0; r < areaToRow - areaFromRow; r++) {
+			int rowSum = 0, offset = (r + 1) * width, stateIndex = (areaFromRow + r) * sideLength + areaFromCol;
+			
+			area[offset] = 0;
+			for (int c = 0; c < width - 1; c++) {
+				int state = direct ? states[stateIndex + c] : haloState(states, areaFromRow + r, areaFromCol + c);
+				
+				if (state == 1) rowSum++;
+				area[offset + c + 1] = area[offset - width + c + 1] + rowSum;
+			}
+		}
+		
+		int births = 0, deaths = 0;
+		boolean changed = false;
+		long hash = 0;
+		
+		for (int i = fromRow; i < toRow; i++) {
+			for (int col = fromCol; col < toCol; col++) {
+				int index = i * sideLength + col;
+				int state = states[index] & 0xFF, next;
+				
+				if (state > 1) {
+					// Cellule mourante : elle avance d'un état, peu importe ses voisins
+					next = state + 1 < stateCount ? state + 1 : 0;
+				} else {
+					int neighbors = 0;
+					
+					if (moore) {
+						neighbors = sumArea(area, width, i - range - areaFromRow, i + range + 1 - areaFromRow,
+								col - range - areaFromCol, col + range + 1 - areaFromCol, areaToRow - areaFromRow);
+					} else {
+						for (int dr = -range; dr <= range; dr++) {
+							int r = i + dr - areaFromRow, reach = range - Math.abs(dr);
+							
+							neighbors += sumArea(area, width, r, r + 1, col - reach - areaFromCol,
+									col + reach + 1 - areaFromCol, areaToRow - areaFromRow);
+						}
+					}
+					if (!includesCenter) neighbors -= state;
+					
+					next = transitions[state * stride + neighbors];
+				}
+				
+				nextStates[index] = (byte) next;
+				if (next == state) continue;
+				
+				changed = true;
+				if (state == 0) births++;
+				if (next == 0) deaths++;
+				hash ^= CellChangeLog.hashKey(i - 1, col - 1, state) ^ CellChangeLog.hashKey(i - 1, col - 1, next);
+				if (changeTracking && (state == 0 || next == 0)) tileRowLogs[tileRow].add(i - 1, col - 1);
+			}
+		}
+		tileRowBirths[tileRow] += births;
+		tileRowDeaths[tileRow] += deaths;
+		tileRowHashes[tileRow] ^= hash;
+		
+		return changed;
+	}
+	
+	/**
+	 * @param area sommes cumulées calculées par {@code computeTileWithArea()}
+	 * @param width nombre de colonnes de {@code area}
+	 * @param fromRow première ligne du rectangle, relative au rectangle lu
+	 * @param toRow ligne suivant la dernière ligne du rectangle
+	 * @param fromCol première colonne du rectangle
+	 * @param toCol colonne suivant la dernière colonne du rectangle
+	 * @param rowCount nombre de lignes du rectangle lu
+	 * @return Nombre de cellules vivantes du rectangle, limité au rectangle lu
+	 */
+	private static int sumArea(int[] area, int width, int fromRow, int toRow, int fromCol, int toCol, int rowCount) {
+		fromRow = Math.max(fromRow, 0);
+		toRow = Math.min(toRow, rowCount);
+		fromCol = Math.max(fromCol, 0);
+		toCol = Math.min(toCol, width - 1);
+		if (fromRow >= toRow) return 0;
+		
+		return area[toRow * width + toCol] - area[fromRow * width + toCol]
+				- area[toRow * width + fromCol] + area[fromRow * width + fromCol];
+	}
+	
+	/**
+	 * Cette méthode fait avancer la grille du nombre de générations donné, puis actualise l'état des cellules.
+	 * Avec le moteur HashLife, les générations sont calculées par sauts de puissances de 2, ce qui permet
+	 * d'atteindre des générations très lointaines. Les générations intermédiaires ne sont pas visibles.
+	 * @param generations Nombre de générations à calculer
+	 */
+	public void jumpGenerations(long generations) {
+		if (engine != null) {
+			engine.jumpGenerations(generations);
+			updateBoard();
+		} else {
+			// Chaque génération est rendue actuelle par updateBoard(), comme avec des appels séparés
+			for (long i = 0; i < generations; i++) {
+				nextGeneration();
+				updateBoard();
 			}
 		}
 	}
 	
 	/** 
-	 * Actualiser l'état de toutes les cellules. 
+	 * Actualiser l'état de toutes les cellules. La génération suivante devient la génération actuelle
+	 * par un simple échange des tableaux de {@code stateBuffer}. Lorsqu'un moteur de calcul est utilisé, seule la vue
+	 * {@code cellGrid} est actualisée, et seulement si elle a déjà été demandée.
 	 */
 	public void updateBoard() {
-		activeCellList.forEach((cell) -> cell.updateState());
+		if (engine == null)
+			stateBuffer.swap();
+		else if (cellGrid != null)
+			updateCellView();
+	}
+	
+	/**
+	 * Cette méthode lit l'état d'une cellule sans passer par la vue {@code cellGrid}, qui n'a donc pas besoin d'être
+	 * construite pour afficher une grille calculée par un moteur. Les coordonnées sont celles de {@code cellGrid} :
+	 * les cellules limitantes sont aux lignes et colonnes 0 et {@code sideLength - 1}, et sont toujours mortes.
+	 * @param row ligne de la cellule
+	 * @param col colonne de la cellule
+	 * @return {@code true} si la cellule est vivante dans la génération actuelle
+	 */
+	public boolean isAlive(int row, int col) {
+		if (row < 1 || col < 1 || row >= sideLength - 1 || col >= sideLength - 1) return false;
+		
+		return engine != null ? engine.isAlive(row - 1, col - 1) : stateBuffer.isAlive(row * sideLength + col);
+	}
+	
+	/**
+	 * Cette méthode change l'état d'une cellule active dans la génération actuelle. Le nombre de cellules vivantes
+	 * et l'empreinte de la grille sont actualisés, et la tuile de la cellule sera calculée à la prochaine génération.
+	 * Les coordonnées sont celles de {@code cellGrid}; les cellules limitantes ne peuvent pas être modifiées.
+	 * @param row ligne de la cellule
+	 * @param col colonne de la cellule
+	 * @param state {@code true} pour rendre la cellule vivante
+	 */
+	public void setAlive(int row, int col, boolean state) {
+		if (row < 1 || col < 1 || row >= sideLength - 1 || col >= sideLength - 1) return;
+		
+		if (engine != null) {
+			engine.setAlive(row - 1, col - 1, state);
+			if (cellGrid != null) stateBuffer.setCurrentState(row * sideLength + col, state);
+			return;
+		}
+		
+		// Une cellule mourante (règle « Generations ») redevient vivante ou meurt immédiatement
+		int index = row * sideLength + col;
+		int previous = stateBuffer.getCurrentStates()[index] & 0xFF;
+		if (previous == (state ? 1 : 0)) return;
+		
+		stateBuffer.setCurrentState(index, state);
+		if ((previous != 0) != state) population += state ? 1 : -1;
+		stateHash ^= CellChangeLog.hashKey(row - 1, col - 1, previous) ^ CellChangeLog.hashKey(row - 1, col - 1, state ? 1 : 0);
+		tileTracker.markDirty((row - 1) / TILE_SIZE, (col - 1) / TILE_SIZE);
+	}
+	
+	/**
+	 * Méthode d'altération de la règle d'évolution. Les cellules ne sont pas modifiées, sauf les cellules mourantes
+	 * d'une règle « Generations » qui n'existent plus dans la nouvelle règle : elles deviennent mortes.
+	 * Avec {@code EngineType.CELL}, toutes les règles sont supportées tant que leur portée ne dépasse pas une tuile.
+	 * Les autres moteurs supportent seulement les règles semblables au jeu de la vie (voir {@code GridEngine.setRule()}).
+	 * @param rule nouvelle règle
+	 * @throws IllegalArgumentException si le moteur de la grille ne supporte pas la règle
+	 */
+	public void setRule(Rule rule) {
+		if (engine != null) {
+			engine.setRule(rule);
+			return;
+		}
+		
+		// Une cellule ne doit dépendre que des tuiles voisines de la sienne (voir TileTracker)
+		if (rule.getRange() > TILE_SIZE)
+			throw new IllegalArgumentException("Le moteur CELL supporte une portée d'au plus " + TILE_SIZE + " cellules : " + rule);
+		
+		this.rule = rule;
+		scanCellStates();
+		tileTracker.markAllDirty();
+		updateEdgeDepth();
+	}
+	
+	/**
+	 * @return Règle d'évolution de la grille
+	 */
+	public Rule getRule() {
+		return engine != null ? engine.getRule() : rule;
+	}
+	
+	/**
+	 * Méthode d'altération du comportement des bords de la grille (voir {@code BoundaryMode}). Les cellules ne sont
+	 * pas modifiées. Avec {@code EngineType.CELL}, {@code EngineType.PACKED}, {@code EngineType.OFFHEAP} et
+	 * {@code EngineType.DISTRIBUTED}, tous les modes sont supportés; les autres moteurs supportent seulement des bords morts.
+	 * @param boundaryMode nouveau comportement des bords
+	 * @throws IllegalArgumentException si le moteur de la grille ne supporte pas le mode
+	 */
+	public void setBoundaryMode(BoundaryMode boundaryMode) {
+		if (engine != null) {
+			engine.setBoundaryMode(boundaryMode);
+			return;
+		}
+		
+		this.boundaryMode = boundaryMode;
+		
+		// Le halo de la génération suivante sera rempli avant son calcul; avec des bords morts, il doit rester vide
+		fillHalo(stateBuffer.getCurrentStates());
+		fillHalo(stateBuffer.getNextStates());
+		updateEdgeDepth();
+	}
+	
+	/**
+	 * Cette méthode indique à {@code tileTracker} les tuiles dont les cellules sont voisines du bord opposé. Lorsque la
+	 * dernière tuile d'un côté est plus étroite que la portée de la règle, l'avant-dernière en fait aussi partie.
+	 */
+	private void updateEdgeDepth() {
+		if (!boundaryMode.connectsOppositeEdges()) {
+			tileTracker.setEdgeDepth(0);
+			return;
+		}
+		
+		int lastTileSize = (sideLength - GRID_BORDER - 1) % TILE_SIZE + 1;
+		tileTracker.setEdgeDepth(rule.getRange() > lastTileSize ? 2 : 1);
+	}
+	
+	/**
+	 * @return Comportement des bords de la grille
+	 */
+	public BoundaryMode getBoundaryMode() {
+		return engine != null ? engine.getBoundaryMode() : boundaryMode;
+	}
+	
+	/**
+	 * Lire 64 cellules actives consécutives d'une ligne (voir {@code GridEngine.getWord()}). Contrairement à
+	 * {@code isAlive()}, les coordonnées ne comprennent pas la bordure.
+	 * @param row ligne des cellules (sans la bordure)
+	 * @param wordIndex indice du mot dans la ligne
+	 * @return Mot de 64 bits contenant l'état des cellules
+	 */
+	public long getRowWord(int row, int wordIndex) {
+		if (engine != null) return engine.getWord(row, wordIndex);
+		
+		long word = 0;
+		int fromIndex = (row + 1) * sideLength + (wordIndex << 6) + 1;
+		int bitCount = Math.min(64, getActiveSideLength() - (wordIndex << 6));
+		
+		for (int bit = 0; bit < bitCount; bit++) {
+			if (stateBuffer.isAlive(fromIndex + bit)) word |= 1L << bit;
+		}
+		return word;
+	}
+	
+	/**
+	 * Écrire 64 cellules actives consécutives d'une ligne (voir {@code GridEngine.setWord()}). Les coordonnées
+	 * ne comprennent pas la bordure.
+	 * @param row ligne des cellules (sans la bordure)
+	 * @param wordIndex indice du mot dans la ligne
+	 * @param word nouvel état des cellules
+	 */
+	public void setRowWord(int row, int wordIndex, long word) {
+		if (engine != null && cellGrid == null) {
+			engine.setWord(row, wordIndex, word);
+			return;
+		}
+		
+		for (long changes = word ^ getRowWord(row, wordIndex); changes != 0; changes &= changes - 1) {
+			int bit = Long.numberOfTrailingZeros(changes);
+			
+			setAlive(row + 1, (wordIndex << 6) + bit + 1, (word & (1L << bit)) != 0);
+		}
+	}
+	
+	/**
+	 * Le nombre de cellules vivantes est maintenu à chaque génération, donc cette méthode ne parcourt pas la grille.
+	 * Après {@code nextGeneration()}, la valeur correspond déjà à la nouvelle génération.
+	 * @return Nombre de cellules vivantes dans la génération actuelle
+	 */
+	public long countLivingCells() {
+		return engine != null ? engine.countLivingCells() : population;
+	}
+	
+	/**
+	 * @return Nombre de cellules nées lors de la dernière génération, ou -1 si le moteur ne le calcule pas
+	 */
+	public long getBirthCount() {
+		return engine != null ? engine.getBirthCount() : birthCount;
+	}
+	
+	/**
+	 * @return Nombre de cellules mortes lors de la dernière génération, ou -1 si le moteur ne le calcule pas
+	 */
+	public long getDeathCount() {
+		return engine != null ? engine.getDeathCount() : deathCount;
+	}
+	
+	/**
+	 * @return Empreinte de 64 bits de la génération actuelle (voir {@code GridEngine.getStateHash()})
+	 */
+	public long getStateHash() {
+		return engine != null ? engine.getStateHash() : stateHash;
+	}
+	
+	/**
+	 * Limiter le cache de noeuds du moteur {@code EngineType.HASHLIFE}, même pendant un saut de plusieurs générations
+	 * (voir {@code HashLife.setMaxNodes()}). Les autres moteurs n'ont pas de cache de noeuds.
+	 * @param maxNodes Nombre de noeuds à partir duquel le cache est vidé
+	 * @return {@code true} si le moteur utilise la limite
+	 * @throws IllegalArgumentException si la limite n'est pas positive
+	 */
+	public boolean setMaxNodes(int maxNodes) {
+		if (maxNodes < 1) throw new IllegalArgumentException("Le nombre maximal de noeuds doit être positif");
+		if (!(engine instanceof HashLife)) return false;
+		
+		((HashLife) engine).setMaxNodes(maxNodes);
+		return true;
+	}
+	
+	/**
+	 * @return Nombre de noeuds dans le cache du moteur {@code EngineType.HASHLIFE}, ou -1 avec les autres moteurs
+	 */
+	public int getNodeCount() {
+		return engine instanceof HashLife ? ((HashLife) engine).getNodeCount() : -1;
+	}
+	
+	/**
+	 * Activer ou désactiver le calcul vectoriel (SIMD) de la règle de Conway avec le moteur {@code EngineType.CELL}.
+	 * Il est activé par défaut lorsque le module {@code jdk.incubator.vector} est chargé, sauf avec la propriété
+	 * système {@code tp4.vector=false}. Le résultat est identique au calcul cellule par cellule.
+	 * @param vectorized {@code true} pour utiliser le calcul vectoriel s'il est disponible
+	 * @return {@code true} si le calcul vectoriel est utilisé
+	 */
+	public boolean setVectorized(boolean vectorized) {
+		tileKernel = vectorized ? VECTOR_KERNEL : null;
+		return tileKernel != null;
+	}
+	
+	/**
+	 * @return {@code true} si les générations sont calculées avec le noyau vectoriel (moteur {@code EngineType.CELL}
+	 * et règle de Conway seulement)
+	 */
+	public boolean isVectorized() {
+		return engine == null && tileKernel != null && rule.isConway();
+	}
+	
+	/**
+	 * Activer ou désactiver l'enregistrement des cellules qui changent d'état à chaque génération.
+	 * @param enabled {@code true} pour enregistrer les changements
+	 */
+	public void setChangeTracking(boolean enabled) {
+		if (engine != null) {
+			engine.setChangeTracking(enabled);
+			return;
+		}
+		
+		changeTracking = enabled;
+		if (enabled && changeLog == null) {
+			changeLog = new CellChangeLog();
+			tileRowLogs = new CellChangeLog[getTilesPerSide()];
+			for (int i = 0; i < tileRowLogs.length; i++) tileRowLogs[i] = new CellChangeLog();
+		}
+	}
+	
+	/**
+	 * @return Cellules (sans la bordure) qui ont changé d'état lors de la dernière génération, ou {@code null}
+	 * si les changements ne sont pas enregistrés
+	 */
+	public CellChangeLog getChangeLog() {
+		if (engine != null) return engine.getChangeLog();
+		
+		return changeTracking ? changeLog : null;
+	}
+	
+	/**
+	 * @return Instantané immuable de la génération actuelle, ou {@code null} si le moteur ne le permet pas
+	 * (voir {@code GridEngine.getStateSnapshot()})
+	 */
+	public Object getStateSnapshot() {
+		return engine != null ? engine.getStateSnapshot() : null;
+	}
+	
+	/**
+	 * @return Époque des instantanés de la génération actuelle (voir {@code GridEngine.getSnapshotEpoch()})
+	 */
+	public int getSnapshotEpoch() {
+		return engine != null ? engine.getSnapshotEpoch() : 0;
 	}
 	
+	/**
+	 * Copier exactement l'état actuel de la grille (voir {@code GridEngine.copyState()}). Avec le moteur CELL, la copie
+	 * contient l'état de chaque cellule active, ce qui distingue aussi les états des règles à plusieurs états.
+	 * @return Copie de l'état actuel; deux copies sont égales ({@code Objects.deepEquals()}) seulement si les deux états
+	 * sont identiques
+	 */
+	public Object copyState() {
+		if (engine != null) return engine.copyState();
+		
+		int activeSideLength = getActiveSideLength();
+		byte[] states = stateBuffer.getCurrentStates();
+		byte[] copy = new byte[activeSideLength * activeSideLength];
+		
+		// La bordure n'est pas copiée : son contenu dépend du comportement des bords, pas de l'état de la grille
+		for (int row = 0; row < activeSideLength; row++)
+			System.arraycopy(states, (row + 1) * sideLength + 1, copy, row * activeSideLength, activeSideLength);
+		return copy;
+	}
+	
+	/**
+	 * Méthode d'accès à {@code cellGrid}. Si un moteur de calcul est utilisé, la vue est construite au premier appel.
+	 * @return Matrice contenant les cellules actives et limitantes
+	 */
 	public Cell[][] getCellGrid() {
+		if (cellGrid == null) {
+			createCellGrid();
+			updateCellView();
+		}
 		return cellGrid;
 	}
 	
+	/**
+	 * Méthode d'accès à {@code activeCellList}. Si un moteur de calcul est utilisé, la vue est construite au premier appel.
+	 * @return Liste des cellules actives
+	 */
 	public ArrayList<Cell> getCellList() {
+		getCellGrid();
 		return activeCellList;
 	}
 	
+	/**
+	 * @return Suivi des tuiles modifiées à chaque génération
+	 */
+	public TileTracker getTileTracker() {
+		return engine != null ? engine.getTileTracker() : tileTracker;
+	}
+	
+	/**
+	 * Cette valeur indique quelle portion de la grille est stable : plus elle est élevée, moins la génération
+	 * a demandé de calculs.
+	 * @return Nombre de tuiles qui n'ont pas été recalculées lors de la dernière génération
+	 */
+	public int getSkippedTileCount() {
+		TileTracker tracker = getTileTracker();
+		return tracker == null ? 0 : tracker.getSkippedTileCount();
+	}
+	
+	/**
+	 * @return Germe utilisé pour créer la population initiale
+	 */
+	public long getSeed() {
+		return seeder.getSeed();
+	}
+	
+	/**
+	 * @return Type de moteur de calcul utilisé pour faire évoluer la grille
+	 */
+	public EngineType getEngineType() {
+		return engineType;
+	}
+	
+	/**
+	 * @return Moteur de calcul de la grille, ou {@code null} si la grille évolue directement sur les objets {@code Cell}
+	 */
+	public GridEngine getEngine() {
+		return engine;
+	}
+	
 	/**
 	 * Méthode d'accès à {@code sideLength}. Cette valeur représente le nombre de cellules participantes + les cellules limitantes ({@code GRID_BORDER})
 	 * qui forment les dimensions de la grille carrée.
@@ -164,6 +1054,13 @@ public class Board {
 		return sideLength;
 	}
 	
+	/**
+	 * @return Nombre de cellules actives sur un côté de la grille (sans la bordure)
+	 */
+	public int getActiveSideLength() {
+		return sideLength - GRID_BORDER;
+	}
+	
 	/**
 	 * Méthode d'accès à {@code initialPopulation}. Représente le pourcentage de cellules vivantes au départ.
 	 * @return Valeur entre 0.0 et 1.0 qui determine le taux de remplissage de la grille
@@ -210,4 +1107,53 @@ public class Board {
 	public void setDisplayRate(int displayRate) {
 		this.displayRate = displayRate;
 	}
+	
+	/**
+	 * Méthode d'altération du nombre de fils d'exécution utilisés pour calculer les générations.
+	 * La grille est alors découpée en bandes horizontales traitées en parallèle. Le résultat est
+	 * identique au calcul en série. L'exécuteur créé appartient à la grille, qui l'arrête lorsqu'il est remplacé
+	 * ou lorsque la grille est fermée ({@code close()}).
+	 * @param threadCount Nombre de fils d'exécution ({@code 1} pour un calcul en série)
+	 */
+	public void setThreadCount(int threadCount) {
+		setStepper(threadCount > 1 ? new ParallelStepper(threadCount) : null);
+		ownsStepper = stepper != null;
+	}
+	
+	/**
+	 * Méthode d'altération de l'exécuteur parallèle. Permet par exemple de partager un même
+	 * {@code ForkJoinPool} entre plusieurs grilles. L'exécuteur précédent est arrêté seulement s'il a été créé par
+	 * la grille ({@code setThreadCount()}); l'exécuteur donné reste à la charge de l'appelant.
+	 * @param stepper Exécuteur parallèle, ou {@code null} pour un calcul en série
+	 */
+	public void setStepper(ParallelStepper stepper) {
+		if (ownsStepper) this.stepper.shutdown();
+		
+		this.stepper = stepper;
+		ownsStepper = false;
+		if (engine != null) engine.setStepper(stepper);
+	}
+	
+	/**
+	 * Libérer les ressources du moteur de calcul qui ne sont pas gérées par le ramasse-miettes, comme la mémoire hors
+	 * du tas de {@code EngineType.OFFHEAP} ou les processus de calcul de {@code EngineType.DISTRIBUTED}, et arrêter
+	 * les fils de l'exécuteur parallèle créé par {@code setThreadCount()}. Un exécuteur donné à {@code setStepper()}
+	 * n'est pas arrêté. La grille ne doit plus être utilisée ensuite, et aucun autre fil d'exécution (par exemple
+	 * l'affichage) ne doit la lire pendant sa fermeture.
+	 */
+	@Override
+	public void close() {
+		if (ownsStepper) {
+			stepper.shutdown();
+			ownsStepper = false;
+		}
+		if (engine != null) engine.close();
+	}
+	
+	/**
+	 * @return Nombre de fils d'exécution utilisés pour calculer les générations
+	 */
+	public int getThreadCount() {
+		return stepper == null ? 1 : stepper.getThreadCount();
+	}
 }
\ No newline at end of file
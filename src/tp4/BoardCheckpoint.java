@@ -0,0 +1,215 @@
+package tp4;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Cette classe sauvegarde et restaure l'état complet d'un {@code Board} et de son {@code GenerationTracker} dans
+ * un fichier binaire compact. Le fichier est écrit et lu par projection en mémoire ({@code FileChannel.map()}) :
+ * les cellules sont copiées directement dans les pages du fichier, sans flux intermédiaire.
+ *
+ * Format du fichier (petit-boutiste) :
+ * - en-tête : signature, version, taille de la grille, moteur, intervalle d'affichage, taux de remplissage initial,
+ *   germe, nombre de cellules vivantes sauvegardées, taille de l'historique, longueur de la règle et comportement
+ *   des bords ({@code BoundaryMode});
+ * - règle d'évolution, dans la notation de {@code Rule.toString()} (ASCII);
+ * - historique de {@code GenerationTracker} (compteurs et tampon circulaire, voir {@code writeHistory()});
+ * - cellules : chaque ligne de la grille (sans la bordure) occupe {@code (taille + 63) / 64} mots de 64 bits,
+ *   dans le format de {@code GridEngine.getWord()}.
+ *
+ * La sauvegarde est d'abord écrite dans un fichier temporaire, puis déplacée à la place du fichier précédent :
+ * un arrêt pendant l'écriture ne détruit donc jamais la sauvegarde précédente. Avec {@code EngineType.SPARSE},
+ * seules les cellules de la fenêtre de la grille sont sauvegardées. Les cellules mourantes des règles « Generations »
+ * ne sont pas représentées : ces règles ne peuvent donc pas être sauvegardées.
+ */
+public class BoardCheckpoint {
+
+	// "GOLC" en ASCII
+	private static final int MAGIC = 0x474F4C43;
+	private static final int VERSION = 3;
+
+	private static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 4 + 8 + 8 + 8 + 8 + 4 + 4;
+
+	// Longueur maximale de la notation d'une règle, pour détecter un en-tête corrompu
+	private static final int MAX_RULE_BYTES = 4096;
+
+	// Position du nombre de cellules vivantes dans l'en-tête, écrit après les cellules
+	private static final int POPULATION_OFFSET = 4 + 4 + 4 + 4 + 4 + 8 + 8;
+
+	/**
+	 * Taille maximale d'une zone projetée en mémoire. Une zone ne peut pas dépasser 2 Go, donc les cellules
+	 * des très grandes grilles sont projetées par groupes de lignes.
+	 */
+	private static final long MAX_MAPPED_BYTES = 1L << 30;
+
+	private final Board board;
+	private final GenerationTracker tracker;
+
+	private BoardCheckpoint(Board board, GenerationTracker tracker) {
+		this.board = board;
+		this.tracker = tracker;
+	}
+
+	/**
+	 * Sauvegarder l'état actuel du board et de son historique.
+	 * @param file fichier de sauvegarde, remplacé s'il existe déjà
+	 * @param board grille à sauvegarder
+	 * @param tracker historique des générations du board
+	 * @throws IOException si le fichier ne peut pas être écrit
+	 * @throws IllegalArgumentException si la règle du board a plus de deux états
+	 */
+	public static void save(Path file, Board board, GenerationTracker tracker) throws IOException {
+		if (board.getRule().getStateCount() > 2)
+			throw new IllegalArgumentException("Les règles à plusieurs états ne peuvent pas être sauvegardées : " + board.getRule());
+		
+		int sideLength = board.getActiveSideLength();
+		int wordsPerRow = (sideLength + 63) >>> 6;
+		byte[] rule = board.getRule().toString().getBytes(StandardCharsets.US_ASCII);
+		long historyBytes = tracker.getHistoryByteCount();
+		long cellOffset = HEADER_BYTES + rule.length + historyBytes;
+
+		Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			// En-tête et historique
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, cellOffset);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION);
+			header.putInt(sideLength).putInt(board.getEngineType().ordinal()).putInt(board.getDisplayRate());
+			header.putDouble(board.getInitialPopulation()).putLong(board.getSeed());
+			header.putLong(0).putLong(historyBytes).putInt(rule.length).putInt(board.getBoundaryMode().ordinal());
+			header.put(rule);
+			tracker.writeHistory(header);
+
+			// Cellules, par groupes de lignes
+			long rowBytes = 8L * wordsPerRow;
+			int rowsPerRegion = (int) Math.max(1, Math.min(sideLength, MAX_MAPPED_BYTES / rowBytes));
+			long population = 0;
+
+			for (int fromRow = 0; fromRow < sideLength; fromRow += rowsPerRegion) {
+				int toRow = Math.min(fromRow + rowsPerRegion, sideLength);
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, cellOffset + fromRow * rowBytes,
+						(toRow - fromRow) * rowBytes);
+				LongBuffer words = region.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+
+				for (int row = fromRow; row < toRow; row++) {
+					for (int w = 0; w < wordsPerRow; w++) {
+						long word = board.getRowWord(row, w);
+						words.put(word);
+						population += Long.bitCount(word);
+					}
+				}
+				region.force();
+			}
+
+			// Nombre de cellules sauvegardées, vérifié lors de la restauration
+			header.putLong(POPULATION_OFFSET, population);
+			header.force();
+		}
+
+		Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Restaurer un board et son historique à partir d'une sauvegarde. Le board est recréé avec le même moteur,
+	 * le même germe et les mêmes réglages, puis ses cellules sont remplacées par celles du fichier.
+	 * @param file fichier de sauvegarde
+	 * @return Board et historique restaurés
+	 * @throws IOException si le fichier ne peut pas être lu ou n'est pas une sauvegarde valide
+	 */
+	public static BoardCheckpoint load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_BYTES) throw new IOException("Fichier de sauvegarde incomplet : " + file);
+
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+
+			if (header.getInt() != MAGIC) throw new IOException("Ce fichier n'est pas une sauvegarde de grille : " + file);
+			int version = header.getInt();
+			if (version != VERSION) throw new IOException("Version de sauvegarde non supportée : " + version);
+
+			int sideLength = header.getInt();
+			int engineOrdinal = header.getInt();
+			int displayRate = header.getInt();
+			double initialPopulation = header.getDouble();
+			long seed = header.getLong();
+			long population = header.getLong();
+			long historyBytes = header.getLong();
+			int ruleBytes = header.getInt();
+			int boundaryOrdinal = header.getInt();
+
+			int wordsPerRow = (sideLength + 63) >>> 6;
+			long rowBytes = 8L * wordsPerRow;
+			long cellOffset = HEADER_BYTES + ruleBytes + historyBytes;
+
+			if (engineOrdinal < 0 || engineOrdinal >= EngineType.values().length || sideLength < 1
+					|| ruleBytes < 1 || ruleBytes > MAX_RULE_BYTES || boundaryOrdinal < 0
+					|| boundaryOrdinal >= BoundaryMode.values().length || channel.size() != cellOffset + sideLength * rowBytes)
+				throw new IOException("Fichier de sauvegarde corrompu : " + file);
+
+			byte[] ruleText = new byte[ruleBytes];
+			channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, ruleBytes).get(ruleText);
+			Rule rule;
+			try {
+				rule = Rule.parse(new String(ruleText, StandardCharsets.US_ASCII));
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Fichier de sauvegarde corrompu : " + file, e);
+			}
+
+			// Grille vide, remplie ensuite avec les cellules du fichier
+			Board board = new Board(sideLength, 0.0, displayRate, EngineType.values()[engineOrdinal], seed);
+			board.setInitialPopulation(initialPopulation);
+			board.setRule(rule);
+			board.setBoundaryMode(BoundaryMode.values()[boundaryOrdinal]);
+
+			int rowsPerRegion = (int) Math.max(1, Math.min(sideLength, MAX_MAPPED_BYTES / rowBytes));
+
+			for (int fromRow = 0; fromRow < sideLength; fromRow += rowsPerRegion) {
+				int toRow = Math.min(fromRow + rowsPerRegion, sideLength);
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, cellOffset + fromRow * rowBytes,
+						(toRow - fromRow) * rowBytes);
+				LongBuffer words = region.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+
+				for (int row = fromRow; row < toRow; row++) {
+					for (int w = 0; w < wordsPerRow; w++) {
+						long word = words.get();
+						if (word != 0) board.setRowWord(row, w, word);
+					}
+				}
+			}
+
+			if (board.countLivingCells() != population) throw new IOException("Fichier de sauvegarde corrompu : " + file);
+
+			// L'historique est lu après les cellules, puisque la génération actuelle dépend de la grille restaurée
+			GenerationTracker tracker = new GenerationTracker(board);
+			MappedByteBuffer history = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + ruleBytes, historyBytes);
+			tracker.readHistory(history.order(ByteOrder.LITTLE_ENDIAN));
+
+			return new BoardCheckpoint(board, tracker);
+		}
+	}
+
+	/**
+	 * @return Board restauré
+	 */
+	public Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * @return Historique des générations restauré
+	 */
+	public GenerationTracker getTracker() {
+		return tracker;
+	}
+}
@@ -0,0 +1,75 @@
+package tp4;
+
+/**
+ * Comportement des bords d'une grille bornée : état des cellules situées juste à l'extérieur de la grille, qui servent
+ * de voisines aux cellules du bord. Les moteurs ne créent pas de cellules supplémentaires pour les représenter : avant
+ * chaque génération, seules les lignes et colonnes qui entourent la grille (le halo) sont recopiées selon le mode, puis
+ * l'intérieur est calculé sans aucune condition. Les moteurs {@code SparseGrid} (univers sans limites) et
+ * {@code HashLife} supportent seulement {@code DEAD}.
+ */
+public enum BoundaryMode {
+
+	/**
+	 * Toutes les cellules à l'extérieur de la grille sont mortes. Comportement d'origine.
+	 */
+	DEAD,
+
+	/**
+	 * Le bord gauche est collé au bord droit, et le bord du haut au bord du bas : un motif qui sort d'un côté
+	 * revient de l'autre (tore).
+	 */
+	TORUS,
+
+	/**
+	 * Comme {@code TORUS} pour le bord gauche et le bord droit, mais le bord du haut est collé au bord du bas après
+	 * une symétrie gauche-droite : un motif qui sort par le bas revient par le haut, inversé (bouteille de Klein).
+	 */
+	KLEIN,
+
+	/**
+	 * Chaque cellule à l'extérieur de la grille a l'état de son reflet à l'intérieur, comme si un miroir était
+	 * posé sur chaque bord : la cellule juste à gauche de la colonne 0 a l'état de la colonne 0.
+	 */
+	MIRROR;
+
+	/**
+	 * @return {@code true} si les cellules d'un bord dépendent des cellules du bord opposé
+	 */
+	public boolean connectsOppositeEdges() {
+		return this == TORUS || this == KLEIN;
+	}
+
+	/**
+	 * Cette méthode donne la cellule de la grille qui apparaît à une position quelconque, à l'intérieur ou à l'extérieur
+	 * de la grille. Les coordonnées ne comprennent pas la bordure : la grille va de 0 à {@code size - 1}.
+	 * @param row ligne de la position
+	 * @param col colonne de la position
+	 * @param size nombre de cellules sur un côté de la grille
+	 * @return Coordonnées de la cellule regroupées par {@code CellChangeLog.pack()}, ou -1 si la position est toujours morte
+	 */
+	public long map(int row, int col, int size) {
+		if (row >= 0 && col >= 0 && row < size && col < size) return CellChangeLog.pack(row, col);
+
+		switch (this) {
+		case TORUS:
+			return CellChangeLog.pack(Math.floorMod(row, size), Math.floorMod(col, size));
+		case KLEIN:
+			// Chaque passage par le haut ou le bas inverse les colonnes
+			int wrappedCol = Math.floorMod(col, size);
+			if ((Math.floorDiv(row, size) & 1) != 0) wrappedCol = size - 1 - wrappedCol;
+			return CellChangeLog.pack(Math.floorMod(row, size), wrappedCol);
+		case MIRROR:
+			return CellChangeLog.pack(reflect(row, size), reflect(col, size));
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * @return Reflet de la coordonnée donnée dans l'intervalle de 0 à {@code size - 1}
+	 */
+	private static int reflect(int position, int size) {
+		int period = Math.floorMod(position, 2 * size);
+		return period < size ? period : 2 * size - 1 - period;
+	}
+}
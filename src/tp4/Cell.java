@@ -5,79 +5,64 @@ package tp4;
  * Lorsque plusieurs objets {@code Cell} existent, il est possible de leur attribuer des coordonnées ({@code row, col}) pour les identifier selon leur position.
  * La propriété {@code borderStatus} permettra de distinguer parmi les cellules actives et les cellules limitantes. Les cellules actives et limitantes seront
  * définies selon leur position dans la grille (voir classe {@code arrayGrid}).
+ * L'état de la cellule n'est pas conservé dans l'objet lui-même, mais à la position {@code index} d'un {@code CellStateBuffer}
+ * partagé par toutes les cellules de la grille.
  */
 public class Cell {
 	
-	private boolean state, newState;
 	private boolean borderStatus;
 	private int row, col;
+	
+	// Emplacement de l'état de la cellule
+	private final CellStateBuffer stateBuffer;
+	private final int index;
 
-	/**
-	 * Constructeur sans paramètres. Instance d'une cellule morte au point (0, 0).
-	 */
-	public Cell() {
-		this.state = false;
-		this.row = 0;
-		this.col = 0;
-	}
 	/**
 	 * Constructeur avec paramètres qui initialisent la position de la cellule selon son emplacement dans la grille.
 	 * @param row ligne de la cellule
 	 * @param col colonne de la cellule
+	 * @param stateBuffer Tableaux contenant l'état de toutes les cellules de la grille
+	 * @param index indice de l'état de la cellule dans {@code stateBuffer}
 	 */
-	public Cell(int row, int col) {
-		this.state = false;
+	public Cell(int row, int col, CellStateBuffer stateBuffer, int index) {
 		this.row = row;
 		this.col = col;
-	}
-	
-	/**
-	 * Constructeur avec paramètre qui initialise l'état de la cellule.
-	 * @param state état de la cellule 
-	 */
-	public Cell(boolean state) {
-		this.state = state;
+		this.stateBuffer = stateBuffer;
+		this.index = index;
 	}
 	
 	
 	/**
-	 * Méthode d'altération pour {@code newState}. Une cellule morte a un état {@code false}. Une cellule vivante a un état
-	 * {@code true}. Le nouvel état est enregistré, mais il sera seulement attribué lorsque {@code updateState()} sera appelé.
+	 * Méthode d'altération de l'état de la cellule dans la génération suivante. Une cellule morte a un état {@code false}. Une cellule vivante a un état
+	 * {@code true}. Le nouvel état est enregistré, mais il sera seulement attribué lorsque {@code CellStateBuffer.swap()} sera appelé.
 	 * @param state État de la cellule
 	 */
 	public void setState(boolean state) {
-		newState = state;
+		stateBuffer.setNextState(index, state);
 	}
 	
 	/**
-	 * Méthode d'alteration pour {@code newState}. La cellule sera vivante lorsque {@code updateState()} sera appelé.
+	 * Méthode d'alteration de l'état suivant. La cellule sera vivante lorsque {@code CellStateBuffer.swap()} sera appelé.
 	 */
 	public void setAlive() {
-		newState = true;
+		stateBuffer.setNextState(index, true);
 	}
 	
 	/**
-	 * Méthode d'altération pour {@code newState}. La cellule sera morte lorsque {@code updateState()} sera appelé.
+	 * Méthode d'altération de l'état suivant. La cellule sera morte lorsque {@code CellStateBuffer.swap()} sera appelé.
 	 */
 	public void setDead() {
-		newState = false;
-	}
-	
-	/**
-	 * Cette méthode actualise le nouvel état de la cellule lors de sa generation.
-	 */
-	public void updateState() {
-		this.state = newState;
+		stateBuffer.setNextState(index, false);
 	}
 
 	
 	/**
-	 * Méthode d'accès pour {@code state}. L'état retourné sera celui qui a été attribué au dernier
-	 * appel de {@code updateState()}.
+	 * Méthode d'accès pour l'état de la cellule. L'état retourné sera celui qui a été attribué au dernier
+	 * appel de {@code CellStateBuffer.swap()}.
 	 * @return {@code true} si la cellule est vivante, {@code false} si la cellule est morte.
 	 */
 	public boolean getState() {
-		return state;
+		return stateBuffer.isAlive(index);
 	}
 	
 	/**
@@ -87,7 +72,7 @@ public class Cell {
 	public boolean isAlive() {
 		/* NOTE : isAlive() et getState() agissent de façon identique, mais le nom de ces méthodes
 	 	sert à communiquer le contexte de leur utilisation et facilite donc la lecture du code. */
-		return state; 
+		return stateBuffer.isAlive(index); 
 	}
 	
 	/**
@@ -116,6 +101,14 @@ public class Cell {
 		return col;
 	}
 	
+	/**
+	 * Méthode d'accès pour {@code index}.
+	 * @return Indice de l'état de la cellule dans le {@code CellStateBuffer} de la grille
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
 	/**
 	 * Méthode pour definir le {@code borderStatus} d'une cellule. Permet de distinguer parmi les cellules limitantes ({@code borderStatus = true}) 
 	 * et les cellules actives ({@code borderStatus = false}).
@@ -0,0 +1,130 @@
+package tp4;
+
+import java.util.Arrays;
+
+/**
+ * Cette classe contient la liste des cellules qui ont changé d'état lors d'une génération (naissances et morts).
+ * Chaque cellule est représentée par ses coordonnées regroupées dans un {@code long} : la ligne dans les 32 bits
+ * supérieurs et la colonne dans les 32 bits inférieurs (voir {@code pack()}). Aucun objet n'est créé par cellule.
+ *
+ * Cette classe fournit aussi la clé de hachage de chaque position ({@code hashKey()}). L'empreinte d'une grille est
+ * le OU exclusif des clés de toutes ses cellules vivantes (hachage de Zobrist) : elle peut donc être actualisée
+ * à chaque génération en appliquant seulement les clés des cellules de la liste.
+ */
+public class CellChangeLog {
+
+	private long[] cells;
+	private int size;
+
+	/**
+	 * Constructeur sans paramètre. La liste est vide au départ.
+	 */
+	public CellChangeLog() {
+		cells = new long[64];
+	}
+
+	/**
+	 * @param row ligne de la cellule
+	 * @param col colonne de la cellule
+	 * @return Coordonnées de la cellule regroupées dans un {@code long}
+	 */
+	public static long pack(int row, int col) {
+		return ((long) row << 32) | (col & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @param packedCell coordonnées regroupées par {@code pack()}
+	 * @return Ligne de la cellule
+	 */
+	public static int unpackRow(long packedCell) {
+		return (int) (packedCell >> 32);
+	}
+
+	/**
+	 * @param packedCell coordonnées regroupées par {@code pack()}
+	 * @return Colonne de la cellule
+	 */
+	public static int unpackCol(long packedCell) {
+		return (int) packedCell;
+	}
+
+	/**
+	 * Cette méthode donne une clé pseudo-aléatoire de 64 bits à chaque position de la grille. Les clés sont calculées
+	 * au besoin avec la fonction de mélange de SplitMix64, ce qui évite de garder une table d'une clé par cellule.
+	 * @param row ligne de la cellule
+	 * @param col colonne de la cellule
+	 * @return Clé de hachage de la position
+	 */
+	public static long hashKey(int row, int col) {
+		long z = pack(row, col) + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Clé d'une cellule dans un état donné, pour les règles à plusieurs états (voir {@code Rule.getStateCount()}).
+	 * Une cellule morte ne change pas l'empreinte, et une cellule vivante (état 1) a la même clé qu'avec {@code hashKey(row, col)}.
+	 * Les autres états multiplient la clé par un nombre impair différent, ce qui donne une clé différente pour chaque état.
+	 * @param row ligne de la cellule
+	 * @param col colonne de la cellule
+	 * @param state état de la cellule
+	 * @return Clé de hachage de la position dans l'état donné
+	 */
+	public static long hashKey(int row, int col, int state) {
+		return state == 0 ? 0 : hashKey(row, col) * (2L * state - 1);
+	}
+
+	/**
+	 * Ajouter une cellule à la liste.
+	 * @param row ligne de la cellule
+	 * @param col colonne de la cellule
+	 */
+	public void add(int row, int col) {
+		if (size == cells.length) cells = Arrays.copyOf(cells, size * 2);
+		cells[size++] = pack(row, col);
+	}
+
+	/**
+	 * Ajouter toutes les cellules d'une autre liste à la fin de cette liste.
+	 * @param other liste à ajouter
+	 */
+	public void addAll(CellChangeLog other) {
+		if (size + other.size > cells.length) cells = Arrays.copyOf(cells, Math.max(size + other.size, size * 2));
+
+		System.arraycopy(other.cells, 0, cells, size, other.size);
+		size += other.size;
+	}
+
+	/**
+	 * @param index position dans la liste
+	 * @return Coordonnées regroupées de la cellule à la position donnée
+	 */
+	public long get(int index) {
+		return cells[index];
+	}
+
+	/**
+	 * @return Nombre de cellules dans la liste
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Vider la liste sans libérer sa mémoire, pour la réutiliser à la génération suivante.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return Copie de la liste, qui ne sera pas modifiée par les générations suivantes
+	 */
+	public CellChangeLog copy() {
+		CellChangeLog copy = new CellChangeLog();
+		copy.cells = Arrays.copyOf(cells, Math.max(size, 1));
+		copy.size = size;
+		return copy;
+	}
+}
@@ -0,0 +1,206 @@
+package tp4;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cette classe garde, pour chaque cellule de la grille, la génération de son dernier changement d'état. Elle est
+ * actualisée à partir de la liste des cellules qui ont changé d'état ({@code CellChangeLog}), donc seulement pour
+ * les cellules modifiées, sans parcourir la grille ni créer d'objets. Elle permet de calculer l'âge d'une cellule :
+ * le nombre de générations depuis sa naissance si elle est vivante, ou depuis sa mort sinon.
+ *
+ * Les coordonnées sont celles de {@code Board.getCellGrid()} (bordure comprise). L'historique est écrit seulement par
+ * le fil de simulation, dans deux tableaux créés une seule fois. À chaque image publiée ({@code publish()}), le tableau
+ * écrit est figé et remis à l'interface graphique ({@code View}), et le fil de simulation écrit dans l'autre tableau.
+ * Ce tableau a été figé à une image précédente : il est rattrapé en rejouant les changements enregistrés depuis,
+ * dès que l'interface ne le lit plus.
+ */
+public class CellHistory {
+
+	private final int sideLength;
+	private final int[][] buffers;
+
+	// Tableau écrit par le fil de simulation; l'autre tableau est celui de la dernière image publiée
+	private int back = 1;
+
+	// Vrai si l'interface ne lit plus le tableau écrit, qui contient alors tous les changements enregistrés
+	private boolean backFree = true;
+
+	// Vrai si le tableau écrit doit d'abord être recopié du tableau publié, plutôt que rattrapé par pending
+	private boolean backNeedsCopy = false;
+
+	// Changements qui manquent au tableau écrit tant que l'interface le lit encore
+	private ChangeQueue pending = new ChangeQueue();
+
+	// Changements depuis la dernière image publiée, qui manquent au tableau publié, ou aucun après un débordement
+	private ChangeQueue sincePublish = new ChangeQueue();
+	private boolean sincePublishOverflow = false;
+
+	/**
+	 * État partagé avec l'interface graphique. Le bit 0 est l'indice du tableau de la dernière image publiée, et les
+	 * bits suivants sont l'indice du tableau lu par l'interface plus 1 (0 si l'interface n'en lit aucun).
+	 */
+	private final AtomicInteger handoff = new AtomicInteger(0);
+
+	/**
+	 * Constructeur. Toutes les cellules sont considérées comme ayant changé d'état à la première génération.
+	 * @param sideLength longueur des côtés de la grille, bordure comprise
+	 * @param firstGeneration numéro de la génération actuelle
+	 */
+	public CellHistory(int sideLength, int firstGeneration) {
+		this.sideLength = sideLength;
+		this.buffers = new int[2][sideLength * sideLength];
+		for (int[] buffer : buffers) Arrays.fill(buffer, firstGeneration);
+	}
+
+	/**
+	 * Enregistrer les changements d'une génération. Les coordonnées de la liste n'ont pas de bordure; les cellules
+	 * en dehors de la grille (possibles avec {@code SparseGrid}) sont ignorées.
+	 * @param changeLog cellules qui ont changé d'état lors de la génération
+	 * @param generation numéro de la génération
+	 */
+	public void record(CellChangeLog changeLog, int generation) {
+		checkBackFree();
+		int[] target = buffers[back];
+
+		for (int i = 0; i < changeLog.size(); i++) {
+			int row = CellChangeLog.unpackRow(changeLog.get(i)) + 1;
+			int col = CellChangeLog.unpackCol(changeLog.get(i)) + 1;
+
+			if (row <= 0 || col <= 0 || row >= sideLength - 1 || col >= sideLength - 1) continue;
+
+			int index = row * sideLength + col;
+			if (backFree)
+				target[index] = generation;
+			else
+				pending.add(index, generation);
+			if (!sincePublishOverflow) sincePublish.add(index, generation);
+		}
+
+		// Au-delà d'un changement par deux cellules, recopier tout le tableau coûte moins cher que garder les changements
+		if (!sincePublishOverflow && sincePublish.size() > target.length / 2) {
+			sincePublishOverflow = true;
+			sincePublish.clear();
+		}
+	}
+
+	/**
+	 * Figer l'historique de la génération actuelle pour l'interface graphique. Ce n'est pas possible tant que
+	 * l'interface lit encore le tableau écrit, c'est-à-dire tant qu'elle n'a pas réservé la dernière image publiée :
+	 * l'image doit alors être publiée plus tard.
+	 * @return Historique figé, lisible par l'interface après sa réservation ({@code View.acquire()}), ou {@code null}
+	 * si l'historique ne peut pas être publié maintenant
+	 */
+	public View publish() {
+		if (!checkBackFree()) return null;
+
+		int published = back;
+		int state;
+		do {
+			state = handoff.get();
+		} while (!handoff.compareAndSet(state, (state & ~1) | published));
+
+		// Le nouveau tableau écrit est celui de l'image précédente, auquel manquent les changements depuis sa publication
+		back = 1 - published;
+		backFree = false;
+		backNeedsCopy = sincePublishOverflow;
+
+		ChangeQueue missing = sincePublish;
+		sincePublish = pending;
+		pending = missing;
+		if (backNeedsCopy) pending.clear();
+		sincePublishOverflow = false;
+
+		checkBackFree();
+		return new View(published);
+	}
+
+	/**
+	 * Rattraper le tableau écrit si l'interface ne le lit plus. L'interface peut seulement réserver la dernière image
+	 * publiée : une fois libéré, le tableau écrit le reste jusqu'à la prochaine publication.
+	 * @return {@code true} si le tableau écrit contient tous les changements enregistrés
+	 */
+	private boolean checkBackFree() {
+		if (backFree || (handoff.get() >>> 1) == back + 1) return backFree;
+
+		int[] target = buffers[back];
+		if (backNeedsCopy) {
+			System.arraycopy(buffers[1 - back], 0, target, 0, target.length);
+			backNeedsCopy = false;
+		}
+		pending.applyTo(target);
+		pending.clear();
+		backFree = true;
+		return true;
+	}
+
+	/**
+	 * Historique figé à la génération d'une image publiée. L'interface doit le réserver ({@code acquire()}) avant de
+	 * le lire; il n'est ensuite plus modifié tant que l'interface n'a pas réservé une image plus récente.
+	 */
+	public final class View {
+
+		private final int buffer;
+
+		private View(int buffer) {
+			this.buffer = buffer;
+		}
+
+		/**
+		 * Réserver cet historique pour l'interface graphique, ce qui libère celui de l'image réservée précédemment.
+		 * @return {@code true} si l'historique est réservé, ou {@code false} si une image plus récente a été publiée
+		 * depuis : l'historique peut alors déjà être modifié, et l'image plus récente doit être réservée à la place
+		 */
+		public boolean acquire() {
+			int state;
+			do {
+				state = handoff.get();
+				if ((state & 1) != buffer) return false;
+			} while (!handoff.compareAndSet(state, buffer | ((buffer + 1) << 1)));
+			return true;
+		}
+
+		/**
+		 * @param row ligne de la cellule
+		 * @param col colonne de la cellule
+		 * @return Génération du dernier changement d'état de la cellule
+		 */
+		public int getLastChange(int row, int col) {
+			return buffers[buffer][row * sideLength + col];
+		}
+	}
+
+	/**
+	 * Liste de changements à rejouer (indice de la cellule et génération), dont les tableaux sont réutilisés.
+	 */
+	private static final class ChangeQueue {
+
+		private int[] indices = new int[64];
+		private int[] generations = new int[64];
+		private int size;
+
+		void add(int index, int generation) {
+			if (size == indices.length) {
+				indices = Arrays.copyOf(indices, size * 2);
+				generations = Arrays.copyOf(generations, size * 2);
+			}
+			indices[size] = index;
+			generations[size++] = generation;
+		}
+
+		/**
+		 * Appliquer les changements dans l'ordre où ils ont été enregistrés.
+		 */
+		void applyTo(int[] lastChange) {
+			for (int i = 0; i < size; i++) lastChange[indices[i]] = generations[i];
+		}
+
+		int size() {
+			return size;
+		}
+
+		void clear() {
+			size = 0;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package tp4;
+
+/**
+ * Cette classe contient l'état de toutes les cellules d'une grille dans deux tableaux : la génération actuelle
+ * ({@code currentStates}) et la génération suivante ({@code nextStates}). Une cellule vivante vaut 1 et une cellule morte vaut 0,
+ * ce qui permet d'additionner directement les états des voisins.
+ *
+ * Le calcul d'une génération écrit seulement dans {@code nextStates}. Lorsque toutes les cellules ont été calculées,
+ * les deux tableaux sont échangés par {@code swap()}, sans avoir à parcourir les cellules une deuxième fois.
+ */
+public class CellStateBuffer {
+
+	private byte[] currentStates;
+	private byte[] nextStates;
+
+	/**
+	 * Constructeur avec paramètre. Toutes les cellules sont mortes au départ.
+	 * @param cellCount Nombre total de cellules (actives et limitantes)
+	 */
+	public CellStateBuffer(int cellCount) {
+		currentStates = new byte[cellCount];
+		nextStates = new byte[cellCount];
+	}
+
+	/**
+	 * @param index indice de la cellule
+	 * @return {@code true} si la cellule est vivante dans la génération actuelle
+	 */
+	public boolean isAlive(int index) {
+		return currentStates[index] != 0;
+	}
+
+	/**
+	 * Méthode d'altération de l'état d'une cellule dans la génération suivante.
+	 * Le nouvel état sera visible après le prochain appel de {@code swap()}.
+	 * @param index indice de la cellule
+	 * @param state {@code true} pour une cellule vivante
+	 */
+	public void setNextState(int index, boolean state) {
+		nextStates[index] = (byte) (state ? 1 : 0);
+	}
+
+	/**
+	 * Méthode d'altération de l'état d'une cellule dans la génération actuelle.
+	 * @param index indice de la cellule
+	 * @param state {@code true} pour une cellule vivante
+	 */
+	public void setCurrentState(int index, boolean state) {
+		currentStates[index] = (byte) (state ? 1 : 0);
+	}
+
+	/**
+	 * La génération suivante devient la génération actuelle. L'ancienne génération actuelle
+	 * sera écrasée lors du calcul de la prochaine génération.
+	 */
+	public void swap() {
+		byte[] temp = currentStates;
+		currentStates = nextStates;
+		nextStates = temp;
+	}
+
+	/**
+	 * @return Tableau des états de la génération actuelle (1 = vivante, 0 = morte)
+	 */
+	public byte[] getCurrentStates() {
+		return currentStates;
+	}
+
+	/**
+	 * @return Tableau qui recevra les états de la génération suivante
+	 */
+	public byte[] getNextStates() {
+		return nextStates;
+	}
+}
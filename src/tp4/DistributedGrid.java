@@ -0,0 +1,448 @@
+package tp4;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cette classe est un moteur compact réparti entre plusieurs processus ({@code GridWorker}). La grille est découpée
+ * en bandes de lignes consécutives, une par processus; chaque génération, les processus voisins s'échangent
+ * directement les lignes au bord de leurs bandes (les halos), et ce moteur ne reçoit que les compteurs de chaque
+ * bande. La grille n'est donc jamais rassemblée dans ce processus : seule la ligne lue en dernier est gardée.
+ *
+ * Les processus sont choisis avec la propriété système {@code tp4.workers} :
+ * - un nombre (2 par défaut) : autant de processus sont lancés sur cette machine, avec le même chemin de classes,
+ *   et s'arrêtent avec {@code close()};
+ * - une liste {@code hôte:port,hôte:port,...} : des processus déjà lancés avec {@code java tp4.GridWorker --port P}.
+ *
+ * Les processus calculent toujours toute leur bande, sans suivi des tuiles, et les changements de cellules ne sont
+ * pas enregistrés : les cycles sont détectés par l'empreinte de la grille (voir {@code GenerationTracker}).
+ * L'exécuteur parallèle ({@code setStepper()}) est ignoré, chaque processus ayant ses propres processeurs.
+ * Une connexion interrompue lance une {@code UncheckedIOException}.
+ */
+public class DistributedGrid implements GridEngine {
+
+	/**
+	 * Nombre de processus lancés si la propriété système {@code tp4.workers} n'est pas définie.
+	 */
+	public static final int DEFAULT_WORKERS = 2;
+
+	private final int sideLength;
+	private final int wordsPerRow;
+
+	// Première ligne de la bande de chaque processus, suivie de sideLength
+	private final int[] stripStarts;
+
+	private final Socket[] sockets;
+	private final DataInputStream[] inputs;
+	private final DataOutputStream[] outputs;
+
+	// Processus lancés par ce moteur, arrêtés par close()
+	private final List<Process> processes = new ArrayList<>();
+
+	// Dernière ligne lue, ou -1
+	private int cachedRow = -1;
+	private final long[] cachedWords;
+
+	private long population, stateHash;
+	private long birthCount, deathCount;
+
+	/**
+	 * {@code true} si des cellules ont été modifiées depuis la dernière lecture des compteurs des processus
+	 */
+	private boolean statsStale;
+
+	private Rule rule = Rule.CONWAY;
+	private BoundaryMode boundaryMode = BoundaryMode.DEAD;
+
+	private boolean closed;
+
+	/**
+	 * Constructeur avec paramètre. Toutes les cellules sont mortes au départ. Les processus sont choisis selon
+	 * la propriété système {@code tp4.workers}.
+	 * @param sideLength Nombre de cellules actives sur un côté de la grille
+	 * @throws IOException si un processus ne peut pas être lancé ou joint
+	 */
+	public DistributedGrid(int sideLength) throws IOException {
+		this(sideLength, System.getProperty("tp4.workers", String.valueOf(DEFAULT_WORKERS)));
+	}
+
+	/**
+	 * Constructeur avec paramètres. Toutes les cellules sont mortes au départ.
+	 * @param sideLength Nombre de cellules actives sur un côté de la grille
+	 * @param workers nombre de processus à lancer, ou liste {@code hôte:port} de processus déjà lancés
+	 * @throws IOException si un processus ne peut pas être lancé ou joint
+	 */
+	public DistributedGrid(int sideLength, String workers) throws IOException {
+		this.sideLength = sideLength;
+		this.wordsPerRow = (sideLength + 63) >>> 6;
+		this.cachedWords = new long[wordsPerRow];
+
+		List<InetSocketAddress> addresses = new ArrayList<>();
+		try {
+			if (workers.trim().matches("\\d+")) {
+				int count = Math.min(Integer.parseInt(workers.trim()), sideLength);
+				if (count < 1) throw new IllegalArgumentException("Nombre de processus invalide : " + workers);
+
+				for (int i = 0; i < count; i++) addresses.add(launchWorker());
+			} else {
+				for (String address : workers.split(",")) addresses.add(parseAddress(address.trim()));
+
+				// Une bande contient au moins une ligne
+				if (addresses.size() > sideLength) addresses = addresses.subList(0, sideLength);
+			}
+
+			int count = addresses.size();
+			stripStarts = new int[count + 1];
+			for (int k = 0; k <= count; k++) stripStarts[k] = (int) ((long) k * sideLength / count);
+
+			sockets = new Socket[count];
+			inputs = new DataInputStream[count];
+			outputs = new DataOutputStream[count];
+			connect(addresses);
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Lancer un processus {@code GridWorker} sur cette machine, avec la même machine virtuelle et le même chemin de
+	 * classes que ce processus, et lire son port d'écoute.
+	 * @return Adresse du processus
+	 */
+	private InetSocketAddress launchWorker() throws IOException {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				GridWorker.class.getName(), "--port", "0", "--once")
+				.redirectError(ProcessBuilder.Redirect.INHERIT)
+				.start();
+		processes.add(process);
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+		String line = reader.readLine();
+		if (line == null || !line.startsWith(GridWorker.PORT_LINE))
+			throw new IOException("Le processus de calcul n'a pas démarré : " + line);
+
+		int port = Integer.parseInt(line.substring(GridWorker.PORT_LINE.length()).trim());
+		return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+	}
+
+	/**
+	 * @param address adresse {@code hôte:port}
+	 * @return Adresse du processus
+	 */
+	private static InetSocketAddress parseAddress(String address) {
+		int colon = address.lastIndexOf(':');
+		if (colon <= 0) throw new IllegalArgumentException("Adresse de processus invalide (hôte:port attendu) : " + address);
+
+		return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+	}
+
+	/**
+	 * Se connecter à tous les processus et leur envoyer leur bande. Chaque processus est relié au suivant, et le
+	 * dernier au premier : les réponses ne sont lues qu'une fois toutes les bandes envoyées, puisqu'un processus
+	 * attend la connexion de son voisin du dessus avant de répondre.
+	 */
+	private void connect(List<InetSocketAddress> addresses) throws IOException {
+		int count = addresses.size();
+
+		for (int k = 0; k < count; k++) {
+			sockets[k] = new Socket(addresses.get(k).getAddress(), addresses.get(k).getPort());
+			sockets[k].setTcpNoDelay(true);
+			sockets[k].getOutputStream().write(GridWorker.COORDINATOR);
+			inputs[k] = new DataInputStream(new BufferedInputStream(sockets[k].getInputStream()));
+			outputs[k] = new DataOutputStream(new BufferedOutputStream(sockets[k].getOutputStream()));
+		}
+
+		for (int k = 0; k < count; k++) {
+			InetSocketAddress down = addresses.get((k + 1) % count);
+
+			outputs[k].writeByte(GridWorker.INIT);
+			outputs[k].writeInt(sideLength);
+			outputs[k].writeInt(stripStarts[k]);
+			outputs[k].writeInt(stripStarts[k + 1] - stripStarts[k]);
+			outputs[k].writeUTF(count == 1 ? "" : down.getAddress().getHostAddress());
+			outputs[k].writeInt(down.getPort());
+			outputs[k].flush();
+		}
+
+		for (int k = 0; k < count; k++) {
+			if (inputs[k].read() != GridWorker.INIT) throw new IOException("Le processus " + addresses.get(k) + " a refusé sa bande");
+		}
+	}
+
+	/**
+	 * @return Nombre de processus de calcul
+	 */
+	public int getWorkerCount() {
+		return sockets.length;
+	}
+
+	/**
+	 * @param row ligne de la grille
+	 * @return Indice du processus dont la bande contient la ligne
+	 */
+	private int workerOf(int row) {
+		int low = 0, high = sockets.length - 1;
+
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (stripStarts[middle] <= row) low = middle;
+			else high = middle - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * @return Flux vers le processus qui possède la ligne
+	 * @throws IllegalStateException si le moteur a été fermé
+	 */
+	private DataOutputStream outputOf(int row) {
+		if (closed) throw new IllegalStateException("Les processus de calcul de la grille ont été arrêtés");
+
+		return outputs[workerOf(row)];
+	}
+
+	@Override
+	public int getSideLength() {
+		return sideLength;
+	}
+
+	/**
+	 * @return Nombre de lignes de chaque bande, dans l'ordre des processus
+	 */
+	public int[] getStripHeights() {
+		int[] heights = new int[sockets.length];
+		for (int k = 0; k < heights.length; k++) heights[k] = stripStarts[k + 1] - stripStarts[k];
+		return heights;
+	}
+
+	@Override
+	public boolean isAlive(int row, int col) {
+		return (getWord(row, col >>> 6) & (1L << col)) != 0;
+	}
+
+	/**
+	 * La ligne entière est lue auprès de son processus et gardée jusqu'à la prochaine modification : lire une grille
+	 * ligne par ligne ne demande qu'un échange par ligne.
+	 */
+	@Override
+	public long getWord(int row, int wordIndex) {
+		if (row != cachedRow) {
+			int worker = workerOf(row);
+
+			try {
+				DataOutputStream output = outputOf(row);
+				output.writeByte(GridWorker.GET_ROW);
+				output.writeInt(row);
+				output.flush();
+
+				for (int w = 0; w < wordsPerRow; w++) cachedWords[w] = inputs[worker].readLong();
+			} catch (IOException e) {
+				cachedRow = -1;
+				throw new UncheckedIOException("Ligne " + row + " impossible à lire", e);
+			}
+			cachedRow = row;
+		}
+		return cachedWords[wordIndex];
+	}
+
+	/**
+	 * Les modifications sont envoyées sans attendre de réponse; elles sont transmises au plus tard à la prochaine
+	 * lecture ou génération.
+	 */
+	@Override
+	public void setAlive(int row, int col, boolean state) {
+		try {
+			DataOutputStream output = outputOf(row);
+			output.writeByte(GridWorker.SET_CELL);
+			output.writeInt(row);
+			output.writeInt(col);
+			output.writeBoolean(state);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cellule impossible à modifier", e);
+		}
+		cachedRow = -1;
+		statsStale = true;
+	}
+
+	@Override
+	public void setWord(int row, int wordIndex, long word) {
+		try {
+			DataOutputStream output = outputOf(row);
+			output.writeByte(GridWorker.SET_WORD);
+			output.writeInt(row);
+			output.writeInt(wordIndex);
+			output.writeLong(word);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cellules impossibles à modifier", e);
+		}
+		cachedRow = -1;
+		statsStale = true;
+	}
+
+	/**
+	 * Tous les processus reçoivent la commande avant qu'une seule réponse soit lue : les bandes sont calculées
+	 * en même temps, et les halos circulent directement entre processus voisins.
+	 */
+	@Override
+	public void nextGeneration() {
+		long births = 0, deaths = 0, living = 0, hash = 0;
+
+		try {
+			for (int k = 0; k < sockets.length; k++) {
+				outputOf(stripStarts[k]).writeByte(GridWorker.STEP);
+				outputs[k].flush();
+			}
+			for (DataInputStream input : inputs) {
+				births += input.readLong();
+				deaths += input.readLong();
+				living += input.readLong();
+				hash ^= input.readLong();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Génération impossible à calculer", e);
+		}
+
+		birthCount = births;
+		deathCount = deaths;
+		population = living;
+		stateHash = hash;
+		statsStale = false;
+		cachedRow = -1;
+	}
+
+	/**
+	 * Lire la population et l'empreinte de chaque bande après des modifications de cellules.
+	 */
+	private void refreshStats() {
+		if (!statsStale) return;
+
+		long living = 0, hash = 0;
+		try {
+			for (int k = 0; k < sockets.length; k++) {
+				outputOf(stripStarts[k]).writeByte(GridWorker.STATS);
+				outputs[k].flush();
+			}
+			for (DataInputStream input : inputs) {
+				living += input.readLong();
+				hash ^= input.readLong();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Compteurs de la grille impossibles à lire", e);
+		}
+
+		population = living;
+		stateHash = hash;
+		statsStale = false;
+	}
+
+	/**
+	 * Envoyer une commande sans réponse à tous les processus.
+	 */
+	private void broadcast(int command, String text, int value) {
+		try {
+			for (int k = 0; k < sockets.length; k++) {
+				DataOutputStream output = outputOf(stripStarts[k]);
+				output.writeByte(command);
+				if (text != null) output.writeUTF(text);
+				else output.writeInt(value);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Commande impossible à envoyer aux processus", e);
+		}
+	}
+
+	/**
+	 * Seules les règles semblables au jeu de la vie sont supportées (voir {@code Rule.isLifeLike()}).
+	 */
+	@Override
+	public void setRule(Rule rule) {
+		if (!rule.isLifeLike())
+			throw new IllegalArgumentException("Le moteur DISTRIBUTED supporte seulement les règles B/S à deux états : " + rule);
+
+		broadcast(GridWorker.SET_RULE, rule.toString(), 0);
+		this.rule = rule;
+	}
+
+	@Override
+	public Rule getRule() {
+		return rule;
+	}
+
+	@Override
+	public void setBoundaryMode(BoundaryMode boundaryMode) {
+		broadcast(GridWorker.SET_BOUNDARY, null, boundaryMode.ordinal());
+		this.boundaryMode = boundaryMode;
+	}
+
+	@Override
+	public BoundaryMode getBoundaryMode() {
+		return boundaryMode;
+	}
+
+	@Override
+	public long countLivingCells() {
+		refreshStats();
+		return population;
+	}
+
+	@Override
+	public long getBirthCount() {
+		return birthCount;
+	}
+
+	@Override
+	public long getDeathCount() {
+		return deathCount;
+	}
+
+	@Override
+	public long getStateHash() {
+		refreshStats();
+		return stateHash;
+	}
+
+	/**
+	 * Fermer les connexions. Les processus lancés par ce moteur s'arrêtent d'eux-mêmes; ceux qui ne se sont pas
+	 * arrêtés après quelques secondes sont tués. Toute utilisation de la grille lance ensuite une
+	 * {@code IllegalStateException}.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+
+		if (sockets != null) {
+			for (Socket socket : sockets) {
+				try {
+					if (socket != null) socket.close();
+				} catch (IOException e) {
+					// Le processus s'arrête aussi quand la connexion est perdue
+				}
+			}
+		}
+		for (Process process : processes) {
+			try {
+				if (!process.waitFor(5, TimeUnit.SECONDS)) process.destroyForcibly();
+			} catch (InterruptedException e) {
+				process.destroyForcibly();
+				Thread.currentThread().interrupt();
+			}
+		}
+		processes.clear();
+	}
+}
@@ -0,0 +1,44 @@
+package tp4;
+
+/**
+ * Types de moteurs de calcul disponibles pour faire évoluer un {@code Board}.
+ */
+public enum EngineType {
+
+	/**
+	 * Moteur d'origine. Chaque cellule est un objet {@code Cell} placé dans la grille de {@code GridArray}.
+	 */
+	CELL,
+
+	/**
+	 * Moteur compact. Chaque ligne de la grille est stockée en mots de 64 bits (voir {@code BitGrid}).
+	 * Les objets {@code Cell} sont seulement construits si une vue de la grille est demandée.
+	 */
+	PACKED,
+
+	/**
+	 * Moteur HashLife. La grille est un arbre quaternaire dont les noeuds identiques sont partagés (voir {@code HashLife}).
+	 * Permet d'avancer de plusieurs puissances de 2 générations d'un coup avec {@code Board.jumpGenerations()}.
+	 */
+	HASHLIFE,
+
+	/**
+	 * Moteur sans limites. Seuls les blocs de 64 x 64 cellules qui contiennent des cellules vivantes existent
+	 * en mémoire (voir {@code SparseGrid}). Les motifs peuvent sortir de la grille affichée.
+	 */
+	SPARSE,
+
+	/**
+	 * Moteur compact hors du tas Java. Les mots de 64 bits de {@code PACKED} sont stockés en mémoire directe ou dans
+	 * un fichier projeté en mémoire (voir {@code OffHeapGrid}), pour les grilles trop grandes pour le tas.
+	 * La mémoire est libérée par {@code Board.close()}.
+	 */
+	OFFHEAP,
+
+	/**
+	 * Moteur compact réparti. La grille est découpée en bandes de lignes calculées par plusieurs processus
+	 * ({@code GridWorker}) qui s'échangent les lignes de leurs bords (voir {@code DistributedGrid}). Les processus
+	 * sont choisis avec la propriété système {@code tp4.workers} et arrêtés par {@code Board.close()}.
+	 */
+	DISTRIBUTED
+}
@@ -0,0 +1,115 @@
+package tp4;
+
+/**
+ * Cette classe est une copie immuable de l'état de la grille à une génération donnée. Elle est créée par le fil de
+ * simulation ({@code SimulationThread}) et lue par l'interface graphique : l'affichage ne lit donc jamais le board
+ * pendant qu'une génération est calculée. Les cellules sont regroupées par mots de 64 bits, comme dans {@code BitGrid},
+ * et utilisent les coordonnées de {@code Board.getCellGrid()} (bordure comprise).
+ */
+public final class FrameSnapshot {
+
+	private final long generation;
+	private final long liveCellCount;
+	private final int sideLength;
+	private final int wordsPerRow;
+	private final long[] words;
+	private final BoundaryMode boundaryMode;
+	private final CellHistory.View cellHistory;
+
+	/**
+	 * Constructeur. Copie l'état actuel de toutes les cellules du board, 64 cellules à la fois
+	 * (voir {@code Board.getRowWord()}).
+	 * @param board grille à copier
+	 * @param generation numéro de la génération actuelle
+	 * @param cellHistory historique figé à la même génération (voir {@code CellHistory.publish()}), ou {@code null}
+	 */
+	public FrameSnapshot(Board board, long generation, CellHistory.View cellHistory) {
+		this.generation = generation;
+		this.cellHistory = cellHistory;
+		this.liveCellCount = board.countLivingCells();
+		this.sideLength = board.getSideLength();
+		this.wordsPerRow = (sideLength + 63) >>> 6;
+		this.words = new long[sideLength * wordsPerRow];
+		this.boundaryMode = board.getBoundaryMode();
+
+		// Les lignes actives sont copiées mot par mot, décalées d'une colonne pour la bordure (toujours morte)
+		int activeSideLength = board.getActiveSideLength();
+		int activeWordsPerRow = (activeSideLength + 63) >>> 6;
+
+		for (int row = 0; row < activeSideLength; row++) {
+			int rowStart = (row + 1) * wordsPerRow;
+
+			for (int w = 0; w < activeWordsPerRow; w++) {
+				long word = board.getRowWord(row, w);
+
+				words[rowStart + w] |= word << 1;
+				if (w + 1 < wordsPerRow) words[rowStart + w + 1] |= word >>> 63;
+			}
+		}
+	}
+
+	/**
+	 * @param row ligne de la cellule
+	 * @param col colonne de la cellule
+	 * @return {@code true} si la cellule était vivante lors de la copie
+	 */
+	public boolean isAlive(int row, int col) {
+		return (words[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+	}
+
+	/**
+	 * Les voisins en dehors de la grille sont lus selon le comportement des bords lors de la copie (voir {@code BoundaryMode}).
+	 * @param row ligne de la cellule
+	 * @param col colonne de la cellule
+	 * @return Nombre de voisins vivants de la cellule lors de la copie
+	 */
+	public int countNeighbors(int row, int col) {
+		int neighbors = 0;
+
+		for (int i = row - 1; i <= row + 1; i++) {
+			for (int j = col - 1; j <= col + 1; j++) {
+				if (i == row && j == col) continue;
+				
+				long cell = boundaryMode.map(i - 1, j - 1, sideLength - 2);
+				if (cell >= 0 && isAlive(CellChangeLog.unpackRow(cell) + 1, CellChangeLog.unpackCol(cell) + 1)) neighbors++;
+			}
+		}
+		return neighbors;
+	}
+	
+	/**
+	 * @return Comportement des bords de la grille lors de la copie
+	 */
+	public BoundaryMode getBoundaryMode() {
+		return boundaryMode;
+	}
+
+	/**
+	 * @return Génération du dernier changement de chaque cellule lors de la copie, ou {@code null} si le moteur
+	 * n'enregistre pas les changements. L'historique doit être réservé avant d'être lu (voir {@code CellHistory.View.acquire()})
+	 */
+	public CellHistory.View getCellHistory() {
+		return cellHistory;
+	}
+
+	/**
+	 * @return Numéro de la génération copiée
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return Nombre de cellules vivantes lors de la copie
+	 */
+	public long getLiveCellCount() {
+		return liveCellCount;
+	}
+
+	/**
+	 * @return Longueur des côtés de la grille, bordure comprise
+	 */
+	public int getSideLength() {
+		return sideLength;
+	}
+}
@@ -0,0 +1,394 @@
+package tp4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Cette classe relit un journal écrit par {@code GenerationRecorder}. À l'ouverture, seuls les en-têtes des blocs
+ * sont lus, pour construire l'index des générations de chaque bloc. {@code seek()} atteint ensuite n'importe quelle
+ * génération en décompressant le bloc de la dernière image clé qui la précède, puis en appliquant les changements
+ * des générations suivantes; {@code next()} avance d'une génération à la fois.
+ *
+ * La grille est gardée sous forme de mots de 64 bits (voir {@code GridEngine.getWord()}), sans bordure. Un dernier
+ * bloc incomplet (par exemple après un arrêt brutal pendant l'enregistrement) est ignoré.
+ */
+public class GenerationLogReader implements Closeable {
+
+	private final FileChannel channel;
+	private final int sideLength;
+	private final int wordsPerRow;
+	private final int keyframeInterval;
+
+	// Index des blocs complets du journal
+	private int blockCount;
+	private long[] blockOffsets = new long[16];
+	private long[] blockFirstGenerations = new long[16];
+	private int[] blockRecordCounts = new int[16];
+	private boolean[] blockKeyframes = new boolean[16];
+
+	// Grille à la génération actuelle, vide avant le premier appel de seek() ou next()
+	private final long[] words;
+	private long generation = -1;
+	private boolean positioned;
+	private CellChangeLog changes = new CellChangeLog();
+	private boolean changesKnown;
+
+	// Bloc actuellement décompressé et position du prochain enregistrement dans ce bloc
+	private int currentBlock = -1;
+	private int recordIndex;
+	private byte[] blockData = new byte[0];
+	private int blockLength;
+	private int position;
+	private final Inflater inflater = new Inflater();
+	private final CRC32 checksum = new CRC32();
+
+	/**
+	 * Constructeur. Ouvre le journal et lit l'index de ses blocs.
+	 * @param file fichier du journal
+	 * @throws IOException si le fichier ne peut pas être lu ou n'est pas un journal de générations
+	 */
+	public GenerationLogReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+
+		try {
+			ByteBuffer header = readFully(0, GenerationRecorder.HEADER_BYTES);
+			if (header == null || header.getInt() != GenerationRecorder.MAGIC)
+				throw new IOException("Ce fichier n'est pas un journal de générations : " + file);
+			int version = header.getInt();
+			if (version != GenerationRecorder.VERSION) throw new IOException("Version de journal non supportée : " + version);
+
+			sideLength = header.getInt();
+			keyframeInterval = header.getInt();
+			if (sideLength < 1) throw new IOException("Journal de générations corrompu : " + file);
+
+			wordsPerRow = (sideLength + 63) >>> 6;
+			words = new long[sideLength * wordsPerRow];
+			readIndex();
+
+			if (blockCount == 0 || !blockKeyframes[0]) throw new IOException("Journal de générations vide : " + file);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Lire l'en-tête de chaque bloc, sans décompresser les données. La lecture s'arrête au premier bloc incomplet.
+	 * @throws IOException si le fichier ne peut pas être lu
+	 */
+	private void readIndex() throws IOException {
+		long offset = GenerationRecorder.HEADER_BYTES;
+		long size = channel.size();
+
+		while (offset + GenerationRecorder.BLOCK_HEADER_BYTES <= size) {
+			ByteBuffer header = readFully(offset, GenerationRecorder.BLOCK_HEADER_BYTES);
+			long firstGeneration = header.getLong();
+			int recordCount = header.getInt();
+			boolean keyframe = header.getInt() != 0;
+			header.getInt();
+			int compressedLength = header.getInt();
+
+			if (recordCount < 1 || compressedLength < 0
+					|| offset + GenerationRecorder.BLOCK_HEADER_BYTES + compressedLength > size) break;
+
+			if (blockCount == blockOffsets.length) {
+				int capacity = blockCount * 2;
+				blockOffsets = Arrays.copyOf(blockOffsets, capacity);
+				blockFirstGenerations = Arrays.copyOf(blockFirstGenerations, capacity);
+				blockRecordCounts = Arrays.copyOf(blockRecordCounts, capacity);
+				blockKeyframes = Arrays.copyOf(blockKeyframes, capacity);
+			}
+			blockOffsets[blockCount] = offset;
+			blockFirstGenerations[blockCount] = firstGeneration;
+			blockRecordCounts[blockCount] = recordCount;
+			blockKeyframes[blockCount] = keyframe;
+			blockCount++;
+
+			offset += GenerationRecorder.BLOCK_HEADER_BYTES + compressedLength;
+		}
+	}
+
+	/**
+	 * @param offset position dans le fichier
+	 * @param length nombre d'octets à lire
+	 * @return Octets lus (petit-boutiste), ou {@code null} si le fichier se termine avant
+	 * @throws IOException si le fichier ne peut pas être lu
+	 */
+	private ByteBuffer readFully(long offset, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) return null;
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Se placer à une génération du journal. Si la génération actuelle la précède et qu'aucune image clé ne les sépare,
+	 * la lecture continue à partir de la génération actuelle; sinon, elle reprend à la dernière image clé.
+	 * @param target génération à atteindre
+	 * @throws IOException si le journal ne peut pas être lu ou est corrompu
+	 * @throws IllegalArgumentException si la génération n'est pas dans le journal
+	 */
+	public void seek(long target) throws IOException {
+		int block = findBlock(target);
+
+		// Des générations sautées pendant l'enregistrement (voir Board.jumpGenerations()) sont absentes du journal
+		if (target < getFirstGeneration() || target >= blockFirstGenerations[block] + blockRecordCounts[block])
+			throw new IllegalArgumentException("Génération absente du journal : " + target);
+
+		int keyframeBlock = block;
+		while (!blockKeyframes[keyframeBlock]) keyframeBlock--;
+
+		if (!positioned || generation > target || blockFirstGenerations[keyframeBlock] > generation) {
+			loadBlock(keyframeBlock);
+			readRecord();
+		}
+		while (generation < target) next();
+	}
+
+	/**
+	 * @param target génération à atteindre
+	 * @return Indice du dernier bloc dont la première génération est inférieure ou égale (0 si aucun bloc)
+	 */
+	private int findBlock(long target) {
+		int low = 0, high = blockCount - 1;
+
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (blockFirstGenerations[middle] <= target) low = middle;
+			else high = middle - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Avancer d'une génération.
+	 * @return {@code false} si la génération actuelle est la dernière du journal
+	 * @throws IOException si le journal ne peut pas être lu ou est corrompu
+	 */
+	public boolean next() throws IOException {
+		if (!positioned) {
+			seek(getFirstGeneration());
+			return true;
+		}
+		if (generation == getLastGeneration()) return false;
+
+		if (recordIndex == blockRecordCounts[currentBlock]) loadBlock(currentBlock + 1);
+		readRecord();
+		return true;
+	}
+
+	/**
+	 * Décompresser un bloc et vérifier sa somme de contrôle.
+	 * @param block indice du bloc
+	 * @throws IOException si le bloc ne peut pas être lu ou est corrompu
+	 */
+	private void loadBlock(int block) throws IOException {
+		ByteBuffer header = readFully(blockOffsets[block], GenerationRecorder.BLOCK_HEADER_BYTES);
+		header.position(8 + 4 + 4);
+		int rawLength = header.getInt();
+		int compressedLength = header.getInt();
+		int expectedChecksum = header.getInt();
+		if (rawLength < 1) throw corrupted(block);
+
+		ByteBuffer compressed = readFully(blockOffsets[block] + GenerationRecorder.BLOCK_HEADER_BYTES, compressedLength);
+		if (blockData.length < rawLength) blockData = new byte[rawLength];
+
+		inflater.reset();
+		inflater.setInput(compressed.array(), 0, compressedLength);
+		try {
+			int length = 0;
+			while (length < rawLength && !inflater.finished()) {
+				int count = inflater.inflate(blockData, length, rawLength - length);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+				length += count;
+			}
+			checksum.reset();
+			checksum.update(blockData, 0, length);
+			if (length != rawLength || (int) checksum.getValue() != expectedChecksum) throw corrupted(block);
+		} catch (DataFormatException e) {
+			throw corrupted(block);
+		}
+
+		currentBlock = block;
+		blockLength = rawLength;
+		recordIndex = 0;
+		position = 0;
+	}
+
+	/**
+	 * Appliquer l'enregistrement suivant du bloc actuel : une image clé remplace la grille, une liste de changements
+	 * inverse l'état de chaque cellule de la liste.
+	 * @throws IOException si l'enregistrement est corrompu
+	 */
+	private void readRecord() throws IOException {
+		long recordGeneration = blockFirstGenerations[currentBlock] + recordIndex;
+		if (position == blockLength) throw corrupted(currentBlock);
+		byte type = blockData[position++];
+		changes.clear();
+
+		if (type == GenerationRecorder.KEYFRAME_RECORD) {
+			if (position + 8L * words.length > blockLength) throw corrupted(currentBlock);
+
+			// Les changements ne sont connus que si la génération précédente était déjà lue
+			changesKnown = positioned && generation == recordGeneration - 1;
+
+			for (int i = 0; i < words.length; i++) {
+				long word = 0;
+				for (int b = 0; b < 8; b++) word |= (blockData[position++] & 0xFFL) << (b << 3);
+
+				if (changesKnown) {
+					for (long diff = word ^ words[i]; diff != 0; diff &= diff - 1)
+						changes.add(i / wordsPerRow, ((i % wordsPerRow) << 6) + Long.numberOfTrailingZeros(diff));
+				}
+				words[i] = word;
+			}
+		} else if (type == GenerationRecorder.DELTA_RECORD) {
+			if (!positioned) throw corrupted(currentBlock);
+
+			long count = readVarint();
+			long cellPosition = -1;
+			for (long i = 0; i < count; i++) {
+				cellPosition += readVarint() + 1;
+				if (cellPosition >= (long) sideLength * sideLength) throw corrupted(currentBlock);
+
+				int row = (int) (cellPosition / sideLength);
+				int col = (int) (cellPosition % sideLength);
+				words[row * wordsPerRow + (col >>> 6)] ^= 1L << col;
+				changes.add(row, col);
+			}
+			changesKnown = true;
+		} else {
+			throw corrupted(currentBlock);
+		}
+
+		generation = recordGeneration;
+		positioned = true;
+		recordIndex++;
+	}
+
+	/**
+	 * @return Entier positif écrit avec 7 bits par octet (voir {@code GenerationRecorder})
+	 * @throws IOException si l'entier dépasse la fin du bloc
+	 */
+	private long readVarint() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 63; shift += 7) {
+			if (position == blockLength) throw corrupted(currentBlock);
+
+			byte b = blockData[position++];
+			value |= (b & 0x7FL) << shift;
+			if (b >= 0) return value;
+		}
+		throw corrupted(currentBlock);
+	}
+
+	/**
+	 * @param block indice du bloc corrompu
+	 * @return Erreur qui décrit le bloc corrompu
+	 */
+	private IOException corrupted(int block) {
+		return new IOException("Journal de générations corrompu (bloc à la position " + blockOffsets[block] + ")");
+	}
+
+	/**
+	 * Copier la grille de la génération actuelle dans un board de même taille.
+	 * @param board grille où écrire les cellules
+	 */
+	public void copyTo(Board board) {
+		if (board.getActiveSideLength() != sideLength)
+			throw new IllegalArgumentException("La grille n'a pas la taille du journal");
+
+		for (int row = 0; row < sideLength; row++) {
+			for (int w = 0; w < wordsPerRow; w++) board.setRowWord(row, w, words[row * wordsPerRow + w]);
+		}
+	}
+
+	/**
+	 * @param row ligne de la cellule (sans la bordure)
+	 * @param col colonne de la cellule (sans la bordure)
+	 * @return {@code true} si la cellule est vivante à la génération actuelle
+	 */
+	public boolean isAlive(int row, int col) {
+		return (words[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+	}
+
+	/**
+	 * @param row ligne des cellules (sans la bordure)
+	 * @param wordIndex indice du mot dans la ligne
+	 * @return Mot de 64 bits contenant l'état des cellules à la génération actuelle
+	 */
+	public long getWord(int row, int wordIndex) {
+		return words[row * wordsPerRow + wordIndex];
+	}
+
+	/**
+	 * @return Nombre de cellules vivantes à la génération actuelle
+	 */
+	public long countLivingCells() {
+		long population = 0;
+		for (long word : words) population += Long.bitCount(word);
+		return population;
+	}
+
+	/**
+	 * Les cellules de la liste sont triées par ligne puis par colonne.
+	 * @return Cellules qui ont changé d'état pour atteindre la génération actuelle, ou {@code null} si elles sont
+	 * inconnues (lorsque la lecture commence à une image clé)
+	 */
+	public CellChangeLog getChanges() {
+		return changesKnown ? changes : null;
+	}
+
+	/**
+	 * @return Génération actuelle, ou -1 avant le premier appel de {@code seek()} ou {@code next()}
+	 */
+	public long getGeneration() {
+		return positioned ? generation : -1;
+	}
+
+	/**
+	 * @return Première génération du journal
+	 */
+	public long getFirstGeneration() {
+		return blockFirstGenerations[0];
+	}
+
+	/**
+	 * @return Dernière génération complète du journal
+	 */
+	public long getLastGeneration() {
+		return blockFirstGenerations[blockCount - 1] + blockRecordCounts[blockCount - 1] - 1;
+	}
+
+	/**
+	 * @return Nombre de cellules actives sur un côté de la grille
+	 */
+	public int getSideLength() {
+		return sideLength;
+	}
+
+	/**
+	 * @return Nombre de générations entre deux images clés
+	 */
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		channel.close();
+	}
+}
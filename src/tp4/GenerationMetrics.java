@@ -0,0 +1,349 @@
+package tp4;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Cette classe mesure le déroulement de la simulation : durée du calcul de chaque génération ({@code nextGeneration()}),
+ * durée de sa mise à jour ({@code updateBoard()}), durée de l'affichage, nombre de cellules vivantes, et, à intervalle
+ * régulier, le nombre de générations et de cellules calculées par seconde ainsi que la mémoire allouée par seconde.
+ * Chaque mesure est gardée dans un {@code MetricHistogram}. Les mesures sont accessibles par JMX
+ * ({@code GenerationMetricsMXBean}) et résumées dans une ligne du journal {@code tp4.metrics} à chaque intervalle.
+ *
+ * Les mesures sont désactivées par défaut. Désactivées, chaque appel dans la boucle de calcul se limite à la lecture
+ * d'un booléen : {@code startTimer()} ne lit même pas l'horloge. Elles peuvent être activées pendant l'exécution,
+ * par exemple avec JConsole.
+ *
+ * Utilisation dans la boucle de calcul :
+ * <pre>
+ * long start = metrics.startTimer();
+ * board.nextGeneration();
+ * long stepped = metrics.recordStepTime(start);
+ * board.updateBoard();
+ * metrics.recordCommitTime(stepped);
+ * metrics.recordGeneration(board.countLivingCells());
+ * </pre>
+ */
+public class GenerationMetrics implements GenerationMetricsMXBean {
+
+	private static final Logger LOGGER = Logger.getLogger("tp4.metrics");
+
+	private final String name;
+	private final long cellsPerGeneration;
+
+	private volatile boolean enabled;
+
+	// Écrits par le fil de calcul
+	private final MetricHistogram stepTime = new MetricHistogram();
+	private final MetricHistogram commitTime = new MetricHistogram();
+	private final MetricHistogram liveCells = new MetricHistogram();
+	private volatile long generationCount;
+	private volatile long liveCellCount;
+
+	// Écrits par le fil de l'interface graphique
+	private final MetricHistogram renderTime = new MetricHistogram();
+	private final MetricHistogram paintTime = new MetricHistogram();
+
+	// Écrits par le fil des relevés périodiques
+	private final MetricHistogram generationsPerSecond = new MetricHistogram();
+	private final MetricHistogram cellUpdatesPerSecond = new MetricHistogram();
+	private final MetricHistogram allocatedBytesPerSecond = new MetricHistogram();
+
+	// Valeurs du relevé précédent, pour calculer les débits
+	private long lastSampleTime;
+	private long lastGenerationCount;
+	private long lastAllocatedBytes = -1;
+
+	private ScheduledExecutorService reporter;
+	private ObjectName objectName;
+
+	/**
+	 * Constructeur. Les mesures sont désactivées.
+	 * @param name nom des mesures dans JMX et dans le journal
+	 * @param cellsPerGeneration nombre de cellules calculées par génération
+	 */
+	public GenerationMetrics(String name, long cellsPerGeneration) {
+		this.name = name;
+		this.cellsPerGeneration = cellsPerGeneration;
+	}
+
+	/**
+	 * @return Heure actuelle en nanosecondes, ou 0 si les mesures sont désactivées
+	 */
+	public long startTimer() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Enregistrer la durée du calcul d'une génération.
+	 * @param start valeur de {@code startTimer()} avant le calcul
+	 * @return Heure actuelle, qui peut servir de début à la mesure suivante
+	 */
+	public long recordStepTime(long start) {
+		return record(stepTime, start);
+	}
+
+	/**
+	 * Enregistrer la durée de la mise à jour d'une génération ({@code Board.updateBoard()}).
+	 * @param start heure de début de la mise à jour
+	 * @return Heure actuelle, qui peut servir de début à la mesure suivante
+	 */
+	public long recordCommitTime(long start) {
+		return record(commitTime, start);
+	}
+
+	/**
+	 * Enregistrer la durée de l'actualisation de l'image affichée. Appelée par le fil de l'interface graphique.
+	 * @param start valeur de {@code startTimer()} avant l'actualisation
+	 * @return Heure actuelle
+	 */
+	public long recordRenderTime(long start) {
+		return record(renderTime, start);
+	}
+
+	/**
+	 * Enregistrer la durée du dessin de la grille à l'écran. Appelée par le fil de l'interface graphique.
+	 * @param start valeur de {@code startTimer()} avant le dessin
+	 * @return Heure actuelle
+	 */
+	public long recordPaintTime(long start) {
+		return record(paintTime, start);
+	}
+
+	/**
+	 * @param histogram histogramme de la durée
+	 * @param start heure de début de la mesure, ou 0 si elle a commencé pendant que les mesures étaient désactivées
+	 * @return Heure actuelle, ou 0 si les mesures sont désactivées
+	 */
+	private long record(MetricHistogram histogram, long start) {
+		if (!enabled) return 0;
+
+		long now = System.nanoTime();
+		if (start != 0) histogram.record(now - start);
+		return now;
+	}
+
+	/**
+	 * Compter une génération calculée.
+	 * @param liveCellCount nombre de cellules vivantes de la génération
+	 */
+	public void recordGeneration(long liveCellCount) {
+		if (!enabled) return;
+
+		liveCells.record(liveCellCount);
+		this.liveCellCount = liveCellCount;
+		generationCount = generationCount + 1;
+	}
+
+	/**
+	 * Calculer les débits depuis le relevé précédent, puis écrire une ligne dans le journal.
+	 */
+	private void sample() {
+		if (!enabled) {
+			lastSampleTime = 0;
+			return;
+		}
+
+		long now = System.nanoTime();
+		long generations = generationCount;
+		long allocatedBytes = getAllocatedBytes();
+
+		if (lastSampleTime != 0) {
+			double seconds = (now - lastSampleTime) / 1e9;
+			double rate = (generations - lastGenerationCount) / seconds;
+
+			// Un fil terminé depuis le relevé précédent n'est plus compté, donc la différence peut être négative
+			double allocationRate = allocatedBytes >= 0 && lastAllocatedBytes >= 0
+					? Math.max(allocatedBytes - lastAllocatedBytes, 0) / seconds : -1;
+
+			generationsPerSecond.record(Math.round(rate));
+			cellUpdatesPerSecond.record(Math.round(rate * cellsPerGeneration));
+			if (allocationRate >= 0) allocatedBytesPerSecond.record(Math.round(allocationRate));
+
+			if (LOGGER.isLoggable(Level.INFO)) LOGGER.info(formatSummary(rate, allocationRate));
+		}
+		lastSampleTime = now;
+		lastGenerationCount = generations;
+		lastAllocatedBytes = allocatedBytes;
+	}
+
+	/**
+	 * @param rate générations par seconde depuis le relevé précédent
+	 * @param allocationRate octets alloués par seconde depuis le relevé précédent, ou -1 s'ils ne sont pas mesurés
+	 * @return Ligne du journal qui résume les mesures
+	 */
+	private String formatSummary(double rate, double allocationRate) {
+		HistogramSnapshot step = stepTime.snapshot(), commit = commitTime.snapshot(), render = renderTime.snapshot();
+		StringBuilder line = new StringBuilder();
+
+		line.append(String.format(Locale.ROOT, "%s : génération %d, %.1f gén/s, %.3e cellules/s, %d vivantes", name,
+				generationCount, rate, rate * cellsPerGeneration, liveCellCount));
+		line.append(String.format(Locale.ROOT, ", calcul p50 %.3f ms p99 %.3f ms, mise à jour p50 %.3f ms p99 %.3f ms",
+				step.getP50() / 1e6, step.getP99() / 1e6, commit.getP50() / 1e6, commit.getP99() / 1e6));
+
+		// Sans interface graphique, aucune image n'est affichée
+		if (render.getCount() > 0)
+			line.append(String.format(Locale.ROOT, ", affichage p50 %.3f ms p99 %.3f ms", render.getP50() / 1e6, render.getP99() / 1e6));
+
+		if (allocationRate >= 0) line.append(String.format(Locale.ROOT, ", allocation %.1f Mo/s", allocationRate / 1e6));
+		return line.toString();
+	}
+
+	/**
+	 * La mémoire allouée est la somme des allocations de tous les fils en cours d'exécution, si la machine virtuelle
+	 * permet de la mesurer (extension {@code com.sun.management} de HotSpot).
+	 * @return Nombre d'octets alloués depuis le démarrage, ou -1 si la mesure n'est pas disponible
+	 */
+	private static long getAllocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) return -1;
+
+		long total = 0;
+		for (long bytes : allocations.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if (bytes > 0) total += bytes;
+		}
+		return total;
+	}
+
+	/**
+	 * Démarrer les relevés périodiques (débits et ligne du journal) dans un fil d'exécution séparé. Les relevés
+	 * ne font rien tant que les mesures sont désactivées.
+	 * @param intervalMillis intervalle entre deux relevés, en millisecondes
+	 */
+	public synchronized void startReporting(long intervalMillis) {
+		if (reporter != null) return;
+
+		reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "metrics-" + name);
+			thread.setDaemon(true);
+			return thread;
+		});
+		reporter.scheduleAtFixedRate(this::sample, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Arrêter les relevés périodiques.
+	 */
+	public synchronized void stopReporting() {
+		if (reporter == null) return;
+
+		reporter.shutdownNow();
+		reporter = null;
+	}
+
+	/**
+	 * Publier les mesures dans le serveur JMX de la machine virtuelle, sous le nom
+	 * {@code tp4:type=GenerationMetrics,name=<name>}. Une erreur d'enregistrement est écrite dans le journal.
+	 */
+	public synchronized void registerMBean() {
+		if (objectName != null) return;
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("tp4:type=GenerationMetrics,name=" + ObjectName.quote(name));
+			server.registerMBean(this, objectName);
+			this.objectName = objectName;
+		} catch (JMException e) {
+			LOGGER.log(Level.WARNING, "Impossible de publier les mesures dans JMX", e);
+		}
+	}
+
+	/**
+	 * Retirer les mesures du serveur JMX.
+	 */
+	public synchronized void unregisterMBean() {
+		if (objectName == null) return;
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			LOGGER.log(Level.WARNING, "Impossible de retirer les mesures de JMX", e);
+		}
+		objectName = null;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public void reset() {
+		stepTime.reset();
+		commitTime.reset();
+		liveCells.reset();
+		renderTime.reset();
+		paintTime.reset();
+		generationsPerSecond.reset();
+		cellUpdatesPerSecond.reset();
+		allocatedBytesPerSecond.reset();
+	}
+
+	@Override
+	public long getGenerationCount() {
+		return generationCount;
+	}
+
+	@Override
+	public long getLiveCellCount() {
+		return liveCellCount;
+	}
+
+	@Override
+	public HistogramSnapshot getStepTimeNanos() {
+		return stepTime.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getCommitTimeNanos() {
+		return commitTime.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getRenderTimeNanos() {
+		return renderTime.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getPaintTimeNanos() {
+		return paintTime.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getLiveCells() {
+		return liveCells.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getGenerationsPerSecond() {
+		return generationsPerSecond.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getCellUpdatesPerSecond() {
+		return cellUpdatesPerSecond.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getAllocatedBytesPerSecond() {
+		return allocatedBytesPerSecond.snapshot();
+	}
+}
@@ -0,0 +1,38 @@
+package tp4;
+
+/**
+ * Interface JMX de {@code GenerationMetrics}, visible par exemple dans JConsole ou VisualVM sous le nom
+ * {@code tp4:type=GenerationMetrics,name=...}. Chaque histogramme est un attribut composé (nombre de valeurs, minimum,
+ * maximum, moyenne et percentiles). Les mesures peuvent être activées et désactivées pendant l'exécution.
+ */
+public interface GenerationMetricsMXBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Remettre tous les histogrammes à zéro.
+	 */
+	void reset();
+
+	long getGenerationCount();
+
+	long getLiveCellCount();
+
+	HistogramSnapshot getStepTimeNanos();
+
+	HistogramSnapshot getCommitTimeNanos();
+
+	HistogramSnapshot getRenderTimeNanos();
+
+	HistogramSnapshot getPaintTimeNanos();
+
+	HistogramSnapshot getLiveCells();
+
+	HistogramSnapshot getGenerationsPerSecond();
+
+	HistogramSnapshot getCellUpdatesPerSecond();
+
+	HistogramSnapshot getAllocatedBytesPerSecond();
+}
@@ -0,0 +1,388 @@
+package tp4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Cette classe enregistre toutes les générations d'une exécution dans un journal compressé, sans jamais garder
+ * de copie complète de la grille en mémoire. Pour chaque génération, on écrit seulement les cellules qui ont changé
+ * d'état (naissances et morts, voir {@code CellChangeLog}); une image complète de la grille (image clé) est écrite
+ * toutes les {@code keyframeInterval} générations, ce qui permet à {@code GenerationLogReader} d'atteindre n'importe
+ * quelle génération sans relire le journal depuis le début.
+ *
+ * Le fil de simulation appelle {@code record()} après chaque génération. Cette méthode copie seulement les changements
+ * et les place dans une file de taille limitée; l'encodage, la compression et l'écriture sont faits par un fil
+ * d'écriture séparé. Si le disque est plus lent que la simulation, la file se remplit et {@code record()} attend
+ * qu'une place se libère : la simulation ralentit au lieu d'accumuler des générations en mémoire.
+ *
+ * Format du fichier (petit-boutiste), écrit seulement à la fin (aucune donnée n'est réécrite) :
+ * - en-tête : signature, version, nombre de cellules actives sur un côté, intervalle des images clés;
+ * - blocs : numéro de la première génération du bloc, nombre de générations, indicateur d'image clé, taille des
+ *   données avant et après compression, somme de contrôle CRC-32 des données avant compression, puis les données
+ *   compressées par {@code Deflater}.
+ *
+ * Dans les données d'un bloc, chaque génération est un enregistrement :
+ * - image clé : l'octet 1, puis chaque ligne de la grille dans le format de {@code GridEngine.getWord()};
+ * - changements : l'octet 0, le nombre de cellules, puis les cellules triées par ligne et par colonne. Chaque cellule
+ *   est l'écart moins 1 entre sa position ({@code ligne * taille + colonne}) et celle de la cellule précédente, ce qui
+ *   tient habituellement dans un seul octet. Ces nombres sont écrits en entiers de longueur variable (7 bits par octet).
+ * Une image clé commence toujours un nouveau bloc. Un changement d'état inverse une cellule : c'est une naissance
+ * si la cellule était morte, et une mort sinon.
+ */
+public class GenerationRecorder implements Closeable {
+
+	// "GOLD" en ASCII
+	static final int MAGIC = 0x474F4C44;
+	static final int VERSION = 1;
+
+	static final int HEADER_BYTES = 4 + 4 + 4 + 4;
+	static final int BLOCK_HEADER_BYTES = 8 + 4 + 4 + 4 + 4 + 4;
+
+	static final byte DELTA_RECORD = 0;
+	static final byte KEYFRAME_RECORD = 1;
+
+	/**
+	 * Taille des données d'un bloc avant compression. Un bloc est compressé et écrit dès qu'il dépasse cette taille,
+	 * donc un arrêt brutal ne perd au plus que les générations du dernier bloc.
+	 */
+	private static final int BLOCK_BYTES = 1 << 20;
+
+	/**
+	 * Nombre maximal de générations en attente d'écriture. Une image clé occupe autant de mémoire que la grille
+	 * compactée (un bit par cellule), les changements seulement 8 octets par cellule changée.
+	 */
+	private static final int QUEUE_CAPACITY = 256;
+
+	// Marque de fin de la file, placée par close()
+	private static final Record END = new Record(-1, false, null, 0);
+
+	private final Board board;
+	private final int sideLength;
+	private final int wordsPerRow;
+	private final int keyframeInterval;
+	private final long firstGeneration;
+
+	private final FileChannel channel;
+	private final BlockingQueue<Record> queue;
+	private final Thread writer;
+
+	/**
+	 * Dernière grille enregistrée, utilisée pour trouver les changements lorsque le moteur ne les enregistre pas
+	 * (par exemple {@code EngineType.HASHLIFE}). Vaut {@code null} si le board fournit la liste des changements.
+	 */
+	private long[] previousWords;
+
+	// Génération attendue au prochain appel de record()
+	private long nextGeneration;
+
+	// Première erreur du fil d'écriture, renvoyée par record() et close()
+	private volatile IOException failure;
+
+	// Bloc en cours d'encodage, utilisé seulement par le fil d'écriture
+	private byte[] blockData = new byte[BLOCK_BYTES + 1024];
+	private int blockLength;
+	private long blockFirstGeneration;
+	private int blockRecordCount;
+	private boolean blockKeyframe;
+	private byte[] compressed = new byte[BLOCK_BYTES];
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final CRC32 checksum = new CRC32();
+
+	/**
+	 * Une génération en attente d'écriture : une image clé (mots de la grille) ou une liste de cellules changées.
+	 */
+	private static final class Record {
+		final long generation;
+		final boolean keyframe;
+		final long[] data;
+		final int length;
+
+		Record(long generation, boolean keyframe, long[] data, int length) {
+			this.generation = generation;
+			this.keyframe = keyframe;
+			this.data = data;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Constructeur. Crée le journal (un fichier existant est remplacé), démarre le fil d'écriture et enregistre
+	 * la génération actuelle du board comme première image clé.
+	 * @param file fichier du journal
+	 * @param board grille à enregistrer
+	 * @param generation numéro de la génération actuelle
+	 * @param keyframeInterval nombre de générations entre deux images clés
+	 * @throws IOException si le fichier ne peut pas être créé
+	 */
+	public GenerationRecorder(Path file, Board board, long generation, int keyframeInterval) throws IOException {
+		if (keyframeInterval < 1) throw new IllegalArgumentException("L'intervalle des images clés doit être positif");
+
+		this.board = board;
+		this.sideLength = board.getActiveSideLength();
+		this.wordsPerRow = (sideLength + 63) >>> 6;
+		this.keyframeInterval = keyframeInterval;
+		this.firstGeneration = generation;
+		this.nextGeneration = generation;
+
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(sideLength).putInt(keyframeInterval).flip();
+		write(header);
+
+		board.setChangeTracking(true);
+		if (board.getChangeLog() == null) previousWords = new long[sideLength * wordsPerRow];
+
+		queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		writer = new Thread(this::writeRecords, "generation-recorder");
+		writer.setDaemon(true);
+		writer.start();
+
+		record(generation);
+	}
+
+	/**
+	 * Enregistrer la génération actuelle du board. Cette méthode doit être appelée par le fil qui calcule les générations,
+	 * juste après {@code Board.updateBoard()}. Une image clé est écrite à la place des changements si la génération
+	 * est un multiple de {@code keyframeInterval} depuis le début de l'enregistrement, ou si des générations ont été
+	 * sautées depuis le dernier appel.
+	 * @param generation numéro de la génération actuelle
+	 * @throws IOException si le fil d'écriture a échoué, ou si l'attente d'une place dans la file est interrompue
+	 */
+	public void record(long generation) throws IOException {
+		if (failure != null) throw failure;
+
+		Record record;
+		if (generation != nextGeneration || (generation - firstGeneration) % keyframeInterval == 0) {
+			record = copyKeyframe(generation);
+		} else if (previousWords != null) {
+			record = compareWords(generation);
+		} else {
+			record = copyChanges(generation, board.getChangeLog());
+		}
+		nextGeneration = generation + 1;
+
+		try {
+			queue.put(record);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Enregistrement interrompu à la génération " + generation);
+		}
+	}
+
+	/**
+	 * @param generation numéro de la génération actuelle
+	 * @return Image clé contenant tous les mots de la grille
+	 */
+	private Record copyKeyframe(long generation) {
+		long[] words = new long[sideLength * wordsPerRow];
+
+		for (int row = 0; row < sideLength; row++) {
+			for (int w = 0; w < wordsPerRow; w++) words[row * wordsPerRow + w] = board.getRowWord(row, w);
+		}
+		if (previousWords != null) System.arraycopy(words, 0, previousWords, 0, words.length);
+
+		return new Record(generation, true, words, words.length);
+	}
+
+	/**
+	 * Copier la liste des changements du board. Les cellules en dehors de la grille (possibles avec {@code SparseGrid})
+	 * ne sont pas enregistrées, comme dans les images clés.
+	 * @param generation numéro de la génération actuelle
+	 * @param changeLog cellules qui ont changé d'état lors de la génération
+	 * @return Liste des changements de la génération
+	 */
+	private Record copyChanges(long generation, CellChangeLog changeLog) {
+		long[] cells = new long[changeLog.size()];
+		int length = 0;
+
+		for (int i = 0; i < cells.length; i++) {
+			long cell = changeLog.get(i);
+			int row = CellChangeLog.unpackRow(cell);
+			int col = CellChangeLog.unpackCol(cell);
+
+			if (row >= 0 && col >= 0 && row < sideLength && col < sideLength) cells[length++] = cell;
+		}
+		return new Record(generation, false, cells, length);
+	}
+
+	/**
+	 * Trouver les changements en comparant chaque mot de la grille avec la dernière grille enregistrée.
+	 * @param generation numéro de la génération actuelle
+	 * @return Liste des changements de la génération
+	 */
+	private Record compareWords(long generation) {
+		CellChangeLog changes = new CellChangeLog();
+
+		for (int row = 0; row < sideLength; row++) {
+			for (int w = 0; w < wordsPerRow; w++) {
+				long word = board.getRowWord(row, w);
+				int index = row * wordsPerRow + w;
+
+				for (long diff = word ^ previousWords[index]; diff != 0; diff &= diff - 1)
+					changes.add(row, (w << 6) + Long.numberOfTrailingZeros(diff));
+				previousWords[index] = word;
+			}
+		}
+		return copyChanges(generation, changes);
+	}
+
+	/**
+	 * Terminer l'écriture des générations en attente, puis fermer le journal.
+	 * @throws IOException si l'écriture d'une génération a échoué
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (writer.isAlive()) {
+				queue.put(END);
+				writer.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Fermeture du journal interrompue");
+		} finally {
+			deflater.end();
+			channel.close();
+		}
+		if (failure != null) throw failure;
+	}
+
+	/**
+	 * Boucle du fil d'écriture. Après une erreur, les générations restantes sont retirées de la file sans être écrites,
+	 * pour que le fil de simulation ne reste jamais bloqué dans {@code record()}.
+	 */
+	private void writeRecords() {
+		try {
+			while (true) {
+				Record record = queue.take();
+
+				if (record == END) {
+					if (failure == null) {
+						writeBlock();
+						channel.force(false);
+					}
+					return;
+				}
+				if (failure == null) encode(record);
+			}
+		} catch (InterruptedException e) {
+			failure = new InterruptedIOException("Fil d'écriture du journal interrompu");
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * Ajouter une génération au bloc en cours. Une erreur d'écriture est gardée dans {@code failure}.
+	 * @param record génération à encoder
+	 */
+	private void encode(Record record) {
+		try {
+			if (record.keyframe || blockLength >= BLOCK_BYTES) writeBlock();
+
+			if (blockRecordCount == 0) {
+				blockFirstGeneration = record.generation;
+				blockKeyframe = record.keyframe;
+			}
+			blockRecordCount++;
+
+			if (record.keyframe) {
+				ensureCapacity(1 + 8L * record.length);
+				blockData[blockLength++] = KEYFRAME_RECORD;
+				for (int i = 0; i < record.length; i++) {
+					long word = record.data[i];
+					for (int b = 0; b < 8; b++) blockData[blockLength++] = (byte) (word >>> (b << 3));
+				}
+				return;
+			}
+
+			// Au plus 10 octets par nombre de 64 bits
+			long[] cells = record.data;
+			Arrays.sort(cells, 0, record.length);
+			ensureCapacity(1 + 10 + 10L * record.length);
+			blockData[blockLength++] = DELTA_RECORD;
+			writeVarint(record.length);
+
+			long previousPosition = -1;
+			for (int i = 0; i < record.length; i++) {
+				long position = (long) CellChangeLog.unpackRow(cells[i]) * sideLength + CellChangeLog.unpackCol(cells[i]);
+
+				writeVarint(position - previousPosition - 1);
+				previousPosition = position;
+			}
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * @param extraBytes nombre d'octets qui seront ajoutés au bloc en cours
+	 * @throws IOException si le bloc dépasserait la taille maximale d'un tableau
+	 */
+	private void ensureCapacity(long extraBytes) throws IOException {
+		long needed = blockLength + extraBytes;
+		if (needed > Integer.MAX_VALUE - 8) throw new IOException("Génération trop grande pour le journal");
+		if (needed > blockData.length) blockData = Arrays.copyOf(blockData, (int) Math.max(needed, blockData.length * 2L));
+	}
+
+	/**
+	 * @param value entier positif à écrire avec 7 bits par octet, les bits de poids faible en premier
+	 */
+	private void writeVarint(long value) {
+		while ((value & ~0x7FL) != 0) {
+			blockData[blockLength++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		blockData[blockLength++] = (byte) value;
+	}
+
+	/**
+	 * Compresser et écrire le bloc en cours, s'il contient au moins une génération.
+	 * @throws IOException si le bloc ne peut pas être écrit
+	 */
+	private void writeBlock() throws IOException {
+		if (blockRecordCount == 0) return;
+
+		checksum.reset();
+		checksum.update(blockData, 0, blockLength);
+
+		deflater.reset();
+		deflater.setInput(blockData, 0, blockLength);
+		deflater.finish();
+		int compressedLength = 0;
+		while (!deflater.finished()) {
+			if (compressedLength == compressed.length) compressed = Arrays.copyOf(compressed, compressed.length * 2);
+			compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putLong(blockFirstGeneration).putInt(blockRecordCount).putInt(blockKeyframe ? 1 : 0);
+		header.putInt(blockLength).putInt(compressedLength).putInt((int) checksum.getValue()).flip();
+		write(header);
+		write(ByteBuffer.wrap(compressed, 0, compressedLength));
+
+		blockLength = 0;
+		blockRecordCount = 0;
+	}
+
+	/**
+	 * @param buffer octets à écrire à la fin du journal
+	 * @throws IOException si les octets ne peuvent pas être écrits
+	 */
+	private void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) channel.write(buffer);
+	}
+}
@@ -3,7 +3,9 @@
  */
 package tp4;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
 
 import javax.swing.JOptionPane;
 
@@ -13,91 +15,235 @@ import javax.swing.JOptionPane;
  * Cette classe faisait originalement partie de la classe {@code Board}. Cependant, {@code GenerationTracker} n'est pas
  * une classe très versatile vu qu'elle sert principalement à répondre aux exigences du TP4 et fut donc écrite de manière à ce
  * qu'elle puisse être modifiée facilement, ou même supprimée sans trop impacter le programme.
- * Veuillez noter que cette classe possède 2 constantes dont les valeurs ont été choisies plus ou moins arbitrairement, mais
- * qui fonctionnent quand même ({@code MAX_OSCILLATOR_PERIOD} et {@code MIN_STABLE_GENERATIONS}). Ces choix proviennent
- * d'observations personnelles et seront expliquées dans les commentaires.
+ * Veuillez noter que cette classe possède 2 constantes dont les valeurs ont été choisies plus ou moins arbitrairement
+ * ({@code MAX_OSCILLATOR_PERIOD} et {@code MAX_LOGGED_CHANGES}). Ces choix seront expliqués dans les commentaires.
+ *
+ * La stabilité est détectée avec l'empreinte de la grille ({@code Board.getStateHash()}), actualisée par le board à chaque
+ * génération. Les empreintes des dernières générations sont gardées dans un tampon circulaire. Lorsque l'empreinte actuelle
+ * est égale à une empreinte précédente, les deux grilles sont comparées exactement avant de confirmer la répétition : la
+ * première génération répétée et la période sont donc connues dès que la grille se répète pour la première fois.
+ * Si l'historique ne permet pas cette comparaison (voir {@code MAX_LOGGED_CHANGES} et {@code hasExactHistory()}), par
+ * exemple avec une règle à plusieurs états, une copie de la grille actuelle est gardée, et la répétition n'est confirmée
+ * que si la grille lui est identique une période plus tard : la première génération répétée est alors celle de la copie.
+ * Une égalité d'empreintes seule n'est jamais acceptée.
+ *
+ * Tous les compteurs appartiennent à l'instance : plusieurs grilles peuvent être suivies en même temps dans le même
+ * programme (voir {@code SimulationFarm}), chacune par son propre {@code GenerationTracker}. Une instance ne doit être
+ * utilisée que par un seul fil d'exécution à la fois.
  */
 public class GenerationTracker {
 	
-	// Cette classe obtient ses informations de la liste de cellules du board
-	private ArrayList<Cell> activeCellList;
-	
-	private long[] previousLivingCellCountList;
+	// Cette classe obtient ses informations du board
+	private Board board;
 	
 	/**
 	 * Dans le jeu de la vie, un oscillateur est un motif qui se répète après un certain
-	 * nombre de générations (periode). Le nombre de periodes d'oscillation maximal représente
-	 * l'intervalle de generation ou il est possible de detecter la stabilite de la grille.	
-	 * {@code MAX_OSCILLATOR_PERIOD} a une valeur de 20.
-	 * Cette valeur a ete choisie, car, en testant mon programme, je n'ai pas repéré de motif qui se 
-	 * répète sur plus de 20 periodes.
+	 * nombre de générations (periode). Le tampon circulaire garde les {@code MAX_OSCILLATOR_PERIOD} dernières
+	 * générations, donc toute période plus petite que cette valeur est détectée. {@code MAX_OSCILLATOR_PERIOD} a une
+	 * valeur de 256, ce qui dépasse largement la période des oscillateurs qui apparaissent dans une grille aléatoire.
+	 */
+	private final int MAX_OSCILLATOR_PERIOD = 256;
+	
+	/**
+	 * Nombre maximal de changements gardés pour une génération. Au-delà, la liste n'est pas conservée pour limiter
+	 * la mémoire du tampon, et une répétition qui inclut cette génération est vérifiée avec une copie de la grille.
+	 * Une grille qui se répète change habituellement très peu de cellules à chaque génération.
+	 */
+	private final int MAX_LOGGED_CHANGES = 1 << 14;
+	
+	/**
+	 * Nombre maximal de cellules d'une grille copiée pour vérifier une répétition (128 Mio de mots de 64 bits). Les
+	 * grilles plus grandes, par exemple celles du moteur OFFHEAP, ne sont pas copiées dans le tas : une répétition
+	 * qui ne peut pas être vérifiée avec l'historique n'y est pas signalée.
 	 */
-	private int MAX_OSCILLATOR_PERIOD = 20;
+	private final long MAX_COPIED_CELLS = 1L << 30;
 	
 	/**
-	 * Cette variable représente le nombre de générations consécutives minimales que ça prend pour confirmer
-	 * qu'une progression nulle/répétitive soit considérée comme étant permanente, indiquant donc que la
-	 * grille a atteint un point stagnant. la valeur de {@code MIN_STABLE_GENERATIONS} est de 100 generations minimales. 
-	 * Cela semble être une intervalle raisonnable pour s'assurer qu'il n'y a pas de coincidences.
+	 * Tampon circulaire des dernières générations. La génération {@code g} est à l'indice {@code g % MAX_OSCILLATOR_PERIOD},
+	 * donc l'ajout d'une génération ne déplace aucune valeur. Pour chaque génération, on garde l'empreinte, les cellules qui
+	 * ont changé d'état pour l'atteindre (ou {@code null}) et l'instantané du moteur (ou {@code null}).
+	 * Les instantanés d'une époque précédente du moteur sont retirés (voir {@code GridEngine.getSnapshotEpoch()}).
 	 */
-	private int MIN_STABLE_GENERATIONS = 100;
+	private long[] stateHashes;
+	private CellChangeLog[] changeLogs;
+	private Object[] snapshots;
+	private int snapshotEpoch;
+	
+	// Nombre de générations calculées depuis la création du suivi (ou depuis le début de la sauvegarde restaurée)
+	private int generationCounter;
+	
+	// Première génération enregistrée dans le tampon circulaire
+	private int firstRecordedGeneration;
 	
-	// Initialiser les compteurs de la classe
-	private static int consecutivePatternCounter = 0;
-	private static int generationCounter = 0;
-	private static boolean stableGridPattern = false;
+	// Première génération qui se répète et période de la répétition, ou -1 tant que la grille ne se répète pas
+	private long stabilityGeneration = -1;
+	private int period = -1;
+	
+	// Vrai seulement pendant la génération où la répétition a été détectée
+	private boolean stabilityDetected;
 	
 	/**
-	 * Constructeur. {@code GenerationTracker} dépend de la liste de cellules {@code activeCellList}
-	 * de la classe {@code Board}.
+	 * Copie de la génération {@code candidateGeneration}, dont l'empreinte est égale à celle de la génération
+	 * {@code candidatePeriod} générations plus tôt, ou {@code null} si aucune répétition n'attend d'être vérifiée.
+	 */
+	private Object candidateState;
+	private long candidateHash;
+	private long candidateGeneration;
+	private int candidatePeriod;
+	
+	// Naissances et morts de la dernière génération et depuis la création du suivi
+	private long birthCount, deathCount;
+	private long totalBirthCount, totalDeathCount;
+	
+	/**
+	 * Constructeur. {@code GenerationTracker} dépend du nombre de cellules vivantes et de l'empreinte de
+	 * la grille de la classe {@code Board}. La génération actuelle du board est la première génération enregistrée.
 	 */
 	public GenerationTracker(Board board) {
-		activeCellList = board.getCellList();
-		previousLivingCellCountList = new long[MAX_OSCILLATOR_PERIOD];
+		this.board = board;
+		stateHashes = new long[MAX_OSCILLATOR_PERIOD];
+		changeLogs = new CellChangeLog[MAX_OSCILLATOR_PERIOD];
+		snapshots = new Object[MAX_OSCILLATOR_PERIOD];
+		
+		board.setChangeTracking(true);
+		firstRecordedGeneration = generationCounter;
+		recordGeneration(generationCounter);
 	}
 	
 	/**
+	 * Le nombre de cellules vivantes est maintenu par le board à chaque génération (naissances moins morts),
+	 * donc cette méthode peut être appelée aussi souvent que nécessaire sans parcourir la grille.
 	 * @return Nombre de cellules vivantes dans la génération actuelle
 	 */
 	public long countLivingCells() {
-		return activeCellList.stream()
-				.filter(Cell::isAlive)
-				.count();
+		return board.countLivingCells();
 	}
 	
 	/**
-	 * Cette methode contruit et actualise un array qui contient le nombre de cellules vivantes des
-	 * generations precedentes. Les valeurs dans ce array representent l'intervalle sur laquelle
-	 * la stabilité de la grille sera evaluée. Cette intervalle est determinée par {@code MAX_OSCILLATOR_PERIOD}.
-	 * @param currentLivingCellCount
-	 * @return Un array contenant le nombre de cellules vivantes des generation precedentes
+	 * Cette méthode enregistre la génération actuelle dans le tampon circulaire, à la place de la génération
+	 * qui la précède de {@code MAX_OSCILLATOR_PERIOD} générations.
+	 * @param generation numéro de la génération actuelle
 	 */
-	private long[] getPreviousCellCount(long currentLivingCellCount) {
+	private void recordGeneration(long generation) {
+		int slot = (int) (generation % MAX_OSCILLATOR_PERIOD);
+		CellChangeLog changeLog = board.getChangeLog();
 		
-		// Ce array est construit comme etant une file d'elements (queue)
-		// chaque index prend la valeur de l'index precedant lors d'une nouvelle generation
-		for (int i = previousLivingCellCountList.length - 1 ; i > 0 ; i--) {
-			previousLivingCellCountList[i] = previousLivingCellCountList[i - 1];
-			previousLivingCellCountList[0] = currentLivingCellCount;
+		// Les instantanés précédents ne sont plus comparables, et retiendraient la mémoire que le moteur a libérée
+		if (board.getSnapshotEpoch() != snapshotEpoch) {
+			Arrays.fill(snapshots, null);
+			snapshotEpoch = board.getSnapshotEpoch();
 		}
 		
-		return previousLivingCellCountList;
+		stateHashes[slot] = board.getStateHash();
+		snapshots[slot] = board.getStateSnapshot();
+		changeLogs[slot] = changeLog != null && changeLog.size() <= MAX_LOGGED_CHANGES ? changeLog.copy() : null;
 	}
 	
 	/**
-	 * Methode pour determiner si la progression de la grille a atteint sa fin.
-	 * La progression de la grille peut etre mesurée par la variation de nombre de cellules vivantes
-	 * a chaque generation. On considère que la progression stagne lorsque la variation devient nulle 
-	 * ou répétitive pendant plusieurs generations consécutives.
+	 * Methode pour determiner si la progression de la grille a atteint sa fin, c'est-à-dire si la génération actuelle
+	 * est identique à une génération précédente. Puisque chaque génération ne dépend que de la précédente, la grille
+	 * répète ensuite le même cycle pour toujours. La génération précédente la plus récente est vérifiée en premier.
+	 * @param generation numéro de la génération actuelle
 	 */
-
-	private void evaluateGridPattern(long currentLivingCellCount) {
-		for (long previousCount : getPreviousCellCount(currentLivingCellCount)) {
-			stableGridPattern = previousCount == currentLivingCellCount;
+	private void evaluateGridPattern(long generation) {
+		long currentHash = stateHashes[(int) (generation % MAX_OSCILLATOR_PERIOD)];
+		
+		if (candidateState != null) {
+			checkCandidate(generation, currentHash);
+			return;
+		}
+		
+		for (int p = 1; p < MAX_OSCILLATOR_PERIOD && p <= generation - firstRecordedGeneration; p++) {
+			if (stateHashes[(int) ((generation - p) % MAX_OSCILLATOR_PERIOD)] != currentHash) continue;
+			
+			if (!hasExactHistory(generation - p, generation)) {
+				// La grille actuelle sera comparée à la grille de la même phase du cycle suivant
+				if ((long) board.getActiveSideLength() * board.getActiveSideLength() > MAX_COPIED_CELLS) return;
+				
+				candidateState = board.copyState();
+				candidateHash = currentHash;
+				candidateGeneration = generation;
+				candidatePeriod = p;
+				return;
+			}
+			if (isSameGrid(generation - p, generation)) {
+				stabilityGeneration = generation - p;
+				period = p;
+				stabilityDetected = true;
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Cette méthode vérifie la répétition qui attend une période après {@code candidateGeneration}. Si la grille
+	 * actuelle est identique à la copie, la grille se répète à partir de la génération de la copie. Sinon, les deux
+	 * empreintes étaient égales par hasard, et la détection reprend à la génération suivante.
+	 * @param generation numéro de la génération actuelle
+	 * @param currentHash empreinte de la génération actuelle
+	 */
+	private void checkCandidate(long generation, long currentHash) {
+		if (generation < candidateGeneration + candidatePeriod) return;
+		
+		if (currentHash == candidateHash && Objects.deepEquals(candidateState, board.copyState())) {
+			stabilityGeneration = candidateGeneration;
+			period = candidatePeriod;
+			stabilityDetected = true;
 		}
+		candidateState = null;
+	}
+	
+	/**
+	 * Avec une règle à plusieurs états, les listes de changements contiennent seulement les naissances et les morts,
+	 * pas les changements entre deux états non nuls (une cellule mourante qui vieillit) : deux grilles qui diffèrent
+	 * seulement par ces états ne peuvent pas être distinguées. La répétition est alors toujours vérifiée avec une copie
+	 * de la grille ({@code Board.copyState()}), qui contient l'état de chaque cellule.
+	 * @param first génération la plus ancienne
+	 * @param last génération actuelle
+	 * @return {@code true} si le tampon permet de comparer exactement les deux générations avec {@code isSameGrid()}
+	 */
+	private boolean hasExactHistory(long first, long last) {
+		if (board.getRule().getStateCount() > 2) return false;
 		
-		// S'il n'y a pas de variation stable consecutive, le compteur est reinitialisé
-		consecutivePatternCounter = stableGridPattern ? consecutivePatternCounter + 1 : 0;
+		if (snapshots[(int) (first % MAX_OSCILLATOR_PERIOD)] != null && snapshots[(int) (last % MAX_OSCILLATOR_PERIOD)] != null)
+			return true;
+		
+		for (long generation = first + 1; generation <= last; generation++) {
+			if (changeLogs[(int) (generation % MAX_OSCILLATOR_PERIOD)] == null) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Cette méthode vérifie exactement que deux générations dont les empreintes sont égales sont identiques.
+	 * Si le moteur fournit des instantanés, ils sont comparés directement. Sinon, les deux grilles sont identiques
+	 * si chaque cellule a changé d'état un nombre pair de fois entre les deux générations. Le tampon doit contenir
+	 * les instantanés ou toutes les listes de changements nécessaires (voir {@code hasExactHistory()}).
+	 * @param first génération la plus ancienne
+	 * @param last génération actuelle
+	 * @return {@code true} si les deux générations sont identiques
+	 */
+	private boolean isSameGrid(long first, long last) {
+		Object firstSnapshot = snapshots[(int) (first % MAX_OSCILLATOR_PERIOD)];
+		Object lastSnapshot = snapshots[(int) (last % MAX_OSCILLATOR_PERIOD)];
+		
+		if (firstSnapshot != null && lastSnapshot != null) return firstSnapshot.equals(lastSnapshot);
+		
+		// Regrouper tous les changements entre les deux générations
+		CellChangeLog changes = new CellChangeLog();
+		for (long generation = first + 1; generation <= last; generation++) {
+			changes.addAll(changeLogs[(int) (generation % MAX_OSCILLATOR_PERIOD)]);
+		}
+		
+		long[] cells = new long[changes.size()];
+		for (int i = 0; i < cells.length; i++) cells[i] = changes.get(i);
+		Arrays.sort(cells);
+		
+		// Chaque groupe de changements d'une même cellule doit être de taille paire
+		for (int i = 0; i < cells.length; i += 2) {
+			if (i + 1 == cells.length || cells[i] != cells[i + 1]) return false;
+		}
+		return true;
 	}
 	
 	/**
@@ -105,37 +251,173 @@ public class GenerationTracker {
 	 * l'etat de stabilité de la grille a chaque evolution.
 	 */
 	public void trackInfo() {
-		long livingCells = countLivingCells();
-		evaluateGridPattern(livingCells);
-		generationCounter++;	
+		generationCounter++;
+		stabilityDetected = false;
+		
+		recordGeneration(generationCounter);
+		if (stabilityGeneration < 0) evaluateGridPattern(generationCounter);
+		
+		birthCount = board.getBirthCount();
+		deathCount = board.getDeathCount();
+		totalBirthCount += Math.max(birthCount, 0);
+		totalDeathCount += Math.max(deathCount, 0);
 	}
 	
 	/**
-	 * On considère que la progression devient stable lorsque la variation de la 
-	 * grille est nulle ou repetitive pendant au moins 100 generations consecutives.
-	 * @return {@code true} si le programme detecte que l'evolution de la grille est finie
+	 * On considère que la progression devient stable dès que la grille est identique à une génération précédente.
+	 * @return {@code true} seulement pour la génération où le programme detecte que l'evolution de la grille est finie
 	 */
 	public boolean hasReachedStability() {
-		return consecutivePatternCounter == MIN_STABLE_GENERATIONS;
+		return stabilityDetected;
 	}
 	
 	/**
-	 * Cette methode determine la generation a laquelle la grille a commencé a stagner.
+	 * Cette methode indique la generation a laquelle la grille a commencé a se répéter, ainsi que la période.
 	 * Un JOptionPane est affiché pour indiquer le point de stabilité a été atteint.
 	 */
 	public void showStabilityGeneration() {
-		// Vu que MIN_STABLE_GENERATIONS sert juste à tester qu'il existe bien une stabilité constante,
-		// le vrai point de stabilité est la génération dans laquelle le pattern a commencé.
-		int stabilityGeneration = generationCounter - MIN_STABLE_GENERATIONS;
-		JOptionPane.showMessageDialog(null, 
-				"La grille stagne à partir de la " + stabilityGeneration + "ème génération",
-				"POINT DE STABILITÉ", 1);
+		showStabilityGeneration(null);
+	}
+	
+	/**
+	 * Comme {@code showStabilityGeneration()}, en ajoutant au message les objets les plus fréquents de la grille.
+	 * @param census recensement des objets de la grille stabilisée, ou {@code null}
+	 */
+	public void showStabilityGeneration(ObjectCensus census) {
+		String message = "La grille stagne à partir de la " + stabilityGeneration + "ème génération (période de " + period + ")";
+		if (census != null) message += "\n" + census.getObjectCount() + " objet(s) : " + census.summary(8);
+		
+		JOptionPane.showMessageDialog(null, message, "POINT DE STABILITÉ", 1);
+	}
+	
+	/**
+	 * @return Première génération qui se répète, ou -1 si la grille ne s'est pas encore répétée
+	 */
+	public long getStabilityGeneration() {
+		return stabilityGeneration;
+	}
+	
+	/**
+	 * @return Nombre de générations du cycle répété (1 pour une grille figée), ou -1 si la grille ne s'est pas encore répétée
+	 */
+	public int getPeriod() {
+		return period;
+	}
+	
+	/**
+	 * @return Nombre d'octets écrits par {@code writeHistory()}
+	 */
+	long getHistoryByteCount() {
+		long byteCount = 4 + 4 + 8 + 4 + 4 * 8 + 4;
+		
+		for (int slot = 0; slot < MAX_OSCILLATOR_PERIOD; slot++)
+			byteCount += 8 + 4 + (changeLogs[slot] == null ? 0 : 8L * changeLogs[slot].size());
+		return byteCount;
+	}
+	
+	/**
+	 * Écrire les compteurs et le tampon circulaire dans un point de sauvegarde (voir {@code BoardCheckpoint}).
+	 * Les instantanés des moteurs ne sont pas écrits : une répétition qui inclut une génération restaurée est
+	 * vérifiée avec les listes de changements.
+	 * @param buffer zone du fichier où écrire l'historique
+	 */
+	void writeHistory(ByteBuffer buffer) {
+		buffer.putInt(generationCounter);
+		buffer.putInt(firstRecordedGeneration);
+		buffer.putLong(stabilityGeneration);
+		buffer.putInt(period);
+		buffer.putLong(birthCount).putLong(deathCount).putLong(totalBirthCount).putLong(totalDeathCount);
+		buffer.putInt(MAX_OSCILLATOR_PERIOD);
+		
+		for (int slot = 0; slot < MAX_OSCILLATOR_PERIOD; slot++) {
+			CellChangeLog changeLog = changeLogs[slot];
+			
+			buffer.putLong(stateHashes[slot]);
+			buffer.putInt(changeLog == null ? -1 : changeLog.size());
+			for (int i = 0; changeLog != null && i < changeLog.size(); i++) buffer.putLong(changeLog.get(i));
+		}
+	}
+	
+	/**
+	 * Lire les compteurs et le tampon circulaire écrits par {@code writeHistory()}. Le board doit déjà contenir
+	 * la grille restaurée. Si la taille du tampon a changé depuis la sauvegarde, l'historique n'est pas restauré
+	 * et la détection de stabilité recommence à la génération restaurée.
+	 * @param buffer zone du fichier où lire l'historique
+	 */
+	void readHistory(ByteBuffer buffer) {
+		generationCounter = buffer.getInt();
+		firstRecordedGeneration = buffer.getInt();
+		stabilityGeneration = buffer.getLong();
+		period = buffer.getInt();
+		birthCount = buffer.getLong();
+		deathCount = buffer.getLong();
+		totalBirthCount = buffer.getLong();
+		totalDeathCount = buffer.getLong();
+		stabilityDetected = false;
+		candidateState = null;
+		
+		int historySize = buffer.getInt();
+		Arrays.fill(stateHashes, 0);
+		Arrays.fill(changeLogs, null);
+		Arrays.fill(snapshots, null);
+		
+		for (int slot = 0; slot < historySize; slot++) {
+			long stateHash = buffer.getLong();
+			int logSize = buffer.getInt();
+			CellChangeLog changeLog = logSize < 0 ? null : new CellChangeLog();
+			
+			for (int i = 0; i < logSize; i++) {
+				long cell = buffer.getLong();
+				changeLog.add(CellChangeLog.unpackRow(cell), CellChangeLog.unpackCol(cell));
+			}
+			
+			if (historySize == MAX_OSCILLATOR_PERIOD) {
+				stateHashes[slot] = stateHash;
+				changeLogs[slot] = changeLog;
+			}
+		}
+		
+		// Seule la génération actuelle est enregistrée si l'historique n'a pas pu être restauré
+		if (historySize != MAX_OSCILLATOR_PERIOD) {
+			firstRecordedGeneration = generationCounter;
+			recordGeneration(generationCounter);
+		} else {
+			snapshots[generationCounter % MAX_OSCILLATOR_PERIOD] = board.getStateSnapshot();
+		}
 	}
 	
 	/**
-	 * @return Nombre de générations depuis le début du programme
+	 * @return Nombre de générations depuis la création du suivi, ou depuis le début de la sauvegarde restaurée
 	 */
 	public int getGenerationCounter() {
 		return generationCounter;
 	}
+	
+	/**
+	 * @return Nombre de cellules nées lors de la dernière génération, ou -1 si le moteur ne le calcule pas
+	 */
+	public long getBirthCount() {
+		return birthCount;
+	}
+	
+	/**
+	 * @return Nombre de cellules mortes lors de la dernière génération, ou -1 si le moteur ne le calcule pas
+	 */
+	public long getDeathCount() {
+		return deathCount;
+	}
+	
+	/**
+	 * @return Nombre total de naissances depuis la création du suivi
+	 */
+	public long getTotalBirthCount() {
+		return totalBirthCount;
+	}
+	
+	/**
+	 * @return Nombre total de morts depuis la création du suivi
+	 */
+	public long getTotalDeathCount() {
+		return totalDeathCount;
+	}
 }
@@ -31,6 +31,12 @@ public class GridArray {
 	 */
 	private ArrayList<Cell> activeCellList;
 	
+	/**
+	 * Tableaux contenant l'état de toutes les cellules de {@code cellGrid}. L'état de la cellule à la position
+	 * ({@code row}, {@code col}) se trouve à l'indice {@code row * gridSize + col}.
+	 */
+	private CellStateBuffer stateBuffer;
+	
 	
 	/**
 	 * Constructeur avec paramètre. Permet d'initialiser la longueur des dimensions de {@code cellGrid}.
@@ -51,12 +57,13 @@ public class GridArray {
 		// initialiser les tableaux
 		cellGrid = new Cell[gridSize][gridSize];
 		activeCellList = new ArrayList<Cell>();
+		stateBuffer = new CellStateBuffer(gridSize * gridSize);
 		
 		for (int row = 0; row < gridSize; row++) {
 			for (int col = 0; col < gridSize; col++) {
 				
 				// Créer le ArrayList, la array 2d et initialiser les cellules avec leur position
-				activeCellList.add(cellGrid[row][col] = new Cell(row, col));
+				activeCellList.add(cellGrid[row][col] = new Cell(row, col, stateBuffer, row * gridSize + col));
 				assignBorderCellStatus(row, col);
 			}
 		}
@@ -108,4 +115,12 @@ public class GridArray {
 	public ArrayList<Cell> getActiveCellList() {
 		return activeCellList;
 	}
+	
+	/**
+	 * Méthode d'accès pour {@code stateBuffer}.
+	 * @return Les tableaux contenant l'état actuel et l'état suivant de toutes les cellules de la grille
+	 */
+	public CellStateBuffer getStateBuffer() {
+		return stateBuffer;
+	}
 }
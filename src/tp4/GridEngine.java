@@ -0,0 +1,222 @@
+package tp4;
+
+/**
+ * Cette interface représente un moteur de calcul pour le jeu de la vie. Un moteur possède sa propre représentation
+ * de l'état de la grille et sait calculer la génération suivante sans passer par des objets {@code Cell}.
+ * Les coordonnées utilisées par un moteur ne tiennent pas compte de la bordure : la première cellule active
+ * se trouve à la position (0, 0) et la dernière à la position ({@code getSideLength() - 1}, {@code getSideLength() - 1}).
+ */
+public interface GridEngine {
+
+	/**
+	 * @return Nombre de cellules actives sur un côté de la grille (sans la bordure)
+	 */
+	int getSideLength();
+
+	/**
+	 * Méthode permettant de déterminer si une cellule est vivante dans la génération actuelle.
+	 * @param row ligne de la cellule
+	 * @param col colonne de la cellule
+	 * @return {@code true} si la cellule est vivante
+	 */
+	boolean isAlive(int row, int col);
+
+	/**
+	 * Méthode d'altération de l'état d'une cellule dans la génération actuelle.
+	 * @param row ligne de la cellule
+	 * @param col colonne de la cellule
+	 * @param state {@code true} pour une cellule vivante, {@code false} pour une cellule morte
+	 */
+	void setAlive(int row, int col, boolean state);
+
+	/**
+	 * Calculer la génération suivante selon la règle du moteur (voir {@code setRule()}).
+	 * Le nouvel état devient immédiatement l'état actuel.
+	 */
+	void nextGeneration();
+
+	/**
+	 * Méthode d'altération de la règle d'évolution. Les cellules ne sont pas modifiées. Par défaut, un moteur
+	 * applique seulement la règle de Conway.
+	 * @param rule nouvelle règle
+	 * @throws IllegalArgumentException si le moteur ne supporte pas la règle donnée
+	 */
+	default void setRule(Rule rule) {
+		if (!rule.isConway()) throw new IllegalArgumentException("Ce moteur supporte seulement la règle " + Rule.CONWAY);
+	}
+
+	/**
+	 * @return Règle d'évolution du moteur
+	 */
+	default Rule getRule() {
+		return Rule.CONWAY;
+	}
+
+	/**
+	 * Méthode d'altération du comportement des bords de la grille. Les cellules ne sont pas modifiées. Par défaut,
+	 * un moteur supporte seulement des bords morts.
+	 * @param mode nouveau comportement des bords
+	 * @throws IllegalArgumentException si le moteur ne supporte pas le mode donné
+	 */
+	default void setBoundaryMode(BoundaryMode mode) {
+		if (mode != BoundaryMode.DEAD) throw new IllegalArgumentException("Ce moteur supporte seulement des bords morts");
+	}
+
+	/**
+	 * @return Comportement des bords de la grille
+	 */
+	default BoundaryMode getBoundaryMode() {
+		return BoundaryMode.DEAD;
+	}
+
+	/**
+	 * Calculer plusieurs générations d'un coup. Par défaut, les générations sont calculées une à la fois.
+	 * @param generations Nombre de générations à calculer
+	 */
+	default void jumpGenerations(long generations) {
+		for (long i = 0; i < generations; i++) nextGeneration();
+	}
+
+	/**
+	 * Le nombre de cellules vivantes est maintenu par le moteur à chaque génération : sa lecture ne demande
+	 * pas de parcourir la grille.
+	 * @return Nombre de cellules vivantes dans la génération actuelle
+	 */
+	long countLivingCells();
+
+	/**
+	 * @return Nombre de cellules nées lors de la dernière génération, ou -1 si le moteur ne le calcule pas
+	 */
+	default long getBirthCount() {
+		return -1;
+	}
+
+	/**
+	 * @return Nombre de cellules mortes lors de la dernière génération, ou -1 si le moteur ne le calcule pas
+	 */
+	default long getDeathCount() {
+		return -1;
+	}
+
+	/**
+	 * Méthode d'altération de l'exécuteur utilisé pour calculer les générations en parallèle.
+	 * Par défaut, un moteur ignore l'exécuteur et calcule ses générations en série.
+	 * @param stepper Exécuteur parallèle, ou {@code null} pour un calcul en série
+	 */
+	default void setStepper(ParallelStepper stepper) {
+	}
+
+	/**
+	 * @return Suivi des tuiles modifiées par le moteur, ou {@code null} si le moteur recalcule toujours toute la grille
+	 */
+	default TileTracker getTileTracker() {
+		return null;
+	}
+
+	/**
+	 * Deux états identiques d'un même moteur ont toujours la même empreinte; deux états différents ont presque toujours
+	 * des empreintes différentes. Par défaut, l'empreinte est le OU exclusif des clés {@code CellChangeLog.hashKey()} de
+	 * toutes les cellules vivantes, recalculé en parcourant la grille.
+	 * @return Empreinte de 64 bits de l'état actuel de la grille
+	 */
+	default long getStateHash() {
+		long hash = 0;
+
+		for (int row = 0; row < getSideLength(); row++) {
+			for (int col = 0; col < getSideLength(); col++) {
+				if (isAlive(row, col)) hash ^= CellChangeLog.hashKey(row, col);
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Activer ou désactiver l'enregistrement des cellules qui changent d'état à chaque génération.
+	 * Par défaut, un moteur n'enregistre pas les changements.
+	 * @param enabled {@code true} pour enregistrer les changements
+	 */
+	default void setChangeTracking(boolean enabled) {
+	}
+
+	/**
+	 * @return Cellules qui ont changé d'état lors de la dernière génération, ou {@code null} si les changements
+	 * ne sont pas enregistrés. La liste est réutilisée à la génération suivante.
+	 */
+	default CellChangeLog getChangeLog() {
+		return null;
+	}
+
+	/**
+	 * Certains moteurs peuvent fournir, sans copier la grille, un objet qui représente exactement l'état actuel.
+	 * Deux instantanés sont égaux ({@code equals()}) seulement si les deux états sont identiques.
+	 * @return Instantané immuable de l'état actuel, ou {@code null} si le moteur ne le permet pas
+	 */
+	default Object getStateSnapshot() {
+		return null;
+	}
+
+	/**
+	 * Un instantané ({@code getStateSnapshot()}) ne peut être comparé qu'aux instantanés de la même époque. Un moteur
+	 * change d'époque lorsque ses nouveaux instantanés ne sont plus égaux aux anciens pour un même état : les anciens
+	 * doivent alors être oubliés, ce qui libère aussi la mémoire qu'ils retiennent.
+	 * @return Époque des instantanés de l'état actuel
+	 */
+	default int getSnapshotEpoch() {
+		return 0;
+	}
+
+	/**
+	 * Copier exactement l'état actuel de la grille, par exemple pour vérifier plus tard qu'elle s'est répétée. Deux
+	 * copies sont égales ({@code Arrays.equals()}) seulement si les deux états sont identiques. Par défaut, tous les mots
+	 * de la grille sont copiés avec {@code getWord()}, ligne après ligne.
+	 * @return Copie de l'état actuel
+	 */
+	default long[] copyState() {
+		int wordsPerRow = (getSideLength() + 63) >>> 6;
+		long[] words = new long[getSideLength() * wordsPerRow];
+
+		for (int row = 0; row < getSideLength(); row++) {
+			for (int w = 0; w < wordsPerRow; w++) words[row * wordsPerRow + w] = getWord(row, w);
+		}
+		return words;
+	}
+
+	/**
+	 * Lire 64 cellules consécutives d'une ligne. La cellule de la colonne {@code wordIndex * 64 + i} correspond au bit
+	 * {@code i} du mot; les colonnes en dehors de la grille valent 0. Par défaut, chaque cellule est lue avec {@code isAlive()}.
+	 * @param row ligne des cellules
+	 * @param wordIndex indice du mot dans la ligne
+	 * @return Mot de 64 bits contenant l'état des cellules
+	 */
+	default long getWord(int row, int wordIndex) {
+		long word = 0;
+		int fromCol = wordIndex << 6;
+
+		for (int bit = 0; bit < 64 && fromCol + bit < getSideLength(); bit++) {
+			if (isAlive(row, fromCol + bit)) word |= 1L << bit;
+		}
+		return word;
+	}
+
+	/**
+	 * Écrire 64 cellules consécutives d'une ligne, dans le même format que {@code getWord()}. Par défaut, seules
+	 * les cellules qui changent d'état sont écrites avec {@code setAlive()}.
+	 * @param row ligne des cellules
+	 * @param wordIndex indice du mot dans la ligne
+	 * @param word nouvel état des cellules
+	 */
+	default void setWord(int row, int wordIndex, long word) {
+		for (long changes = word ^ getWord(row, wordIndex); changes != 0; changes &= changes - 1) {
+			int bit = Long.numberOfTrailingZeros(changes);
+
+			if ((wordIndex << 6) + bit < getSideLength()) setAlive(row, (wordIndex << 6) + bit, (word & (1L << bit)) != 0);
+		}
+	}
+
+	/**
+	 * Libérer les ressources du moteur qui ne sont pas gérées par le ramasse-miettes. Le moteur ne doit plus être
+	 * utilisé ensuite. Par défaut, un moteur n'a rien à libérer.
+	 */
+	default void close() {
+	}
+}
@@ -0,0 +1,262 @@
+package tp4;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+import javax.swing.JComponent;
+import javax.swing.ToolTipManager;
+
+/**
+ * Cette composante affiche une copie de la grille ({@code FrameSnapshot}) dans une seule image, où chaque cellule (bordure comprise) correspond à un pixel.
+ * Les pixels sont écrits directement dans le tableau {@code int[]} de l'image, et seulement s'ils changent de couleur :
+ * seule la région qui contient des cellules modifiées est redessinée. L'image est agrandie à l'affichage selon le zoom.
+ *
+ * La roulette de la souris change le zoom autour du pointeur, et glisser la souris déplace la vue. Seules les cellules
+ * visibles sont lues à chaque actualisation, ce qui permet d'afficher une partie d'une grille plus grande que l'écran.
+ */
+public class GridRenderer extends JComponent {
+
+	private static final long serialVersionUID = 1L;
+
+	// Couleurs des cellules, au format RGB de l'image
+	private static final int ALIVE_COLOR = Color.black.getRGB();
+	private static final int DEAD_COLOR = Color.white.getRGB();
+	private static final Color BACKGROUND_COLOR = Color.lightGray;
+
+	// Limites du zoom, en pixels d'écran par cellule
+	private static final double MAX_SCALE = 64;
+	private static final double ZOOM_STEP = 1.25;
+
+	private final int sideLength;
+
+	// Dernière copie de la grille affichée, ou null avant le premier affichage
+	private FrameSnapshot snapshot;
+
+	// Mesure de la durée du dessin, ou null si elle n'est pas mesurée
+	private GenerationMetrics metrics;
+
+	private final BufferedImage image;
+	private final int[] pixels;
+
+	/**
+	 * Vue actuelle : nombre de pixels d'écran par cellule et position du coin supérieur gauche de l'image à l'écran.
+	 * La vue est ajustée à la taille de la composante lors du premier affichage.
+	 */
+	private double scale;
+	private double offsetX, offsetY;
+	private boolean viewInitialized = false;
+
+	// Dernière position de la souris pendant un déplacement de la vue
+	private Point dragStart;
+
+	/**
+	 * Constructeur. L'image est créée une seule fois, à la taille de la grille.
+	 * @param sideLength longueur des côtés de la grille, bordure comprise
+	 * @param width largeur préférée de la composante
+	 * @param height hauteur préférée de la composante
+	 */
+	public GridRenderer(int sideLength, int width, int height) {
+		this.sideLength = sideLength;
+
+		image = new BufferedImage(sideLength, sideLength, BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		Arrays.fill(pixels, DEAD_COLOR);
+
+		setPreferredSize(new Dimension(width, height));
+		setOpaque(true);
+		ToolTipManager.sharedInstance().registerComponent(this);
+
+		MouseAdapter mouseHandler = new MouseAdapter() {
+			@Override
+			public void mousePressed(MouseEvent e) {
+				dragStart = e.getPoint();
+			}
+
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				offsetX += e.getX() - dragStart.x;
+				offsetY += e.getY() - dragStart.y;
+				dragStart = e.getPoint();
+				refreshView();
+			}
+
+			@Override
+			public void mouseWheelMoved(MouseWheelEvent e) {
+				zoom(e.getWheelRotation() < 0 ? ZOOM_STEP : 1 / ZOOM_STEP, e.getX(), e.getY());
+			}
+		};
+		addMouseListener(mouseHandler);
+		addMouseMotionListener(mouseHandler);
+		addMouseWheelListener(mouseHandler);
+	}
+
+	/**
+	 * Ajuster la vue pour que toute la grille soit visible et centrée.
+	 */
+	public void fitToView() {
+		int width = getWidth() > 0 ? getWidth() : getPreferredSize().width;
+		int height = getHeight() > 0 ? getHeight() : getPreferredSize().height;
+
+		scale = Math.min((double) width / sideLength, (double) height / sideLength);
+		offsetX = (width - sideLength * scale) / 2;
+		offsetY = (height - sideLength * scale) / 2;
+		viewInitialized = true;
+		refreshView();
+	}
+
+	/**
+	 * Changer le zoom en gardant la cellule sous le point donné à la même position à l'écran.
+	 * La grille ne peut pas devenir plus petite que la moitié de la vue.
+	 * @param factor facteur de zoom
+	 * @param x colonne du point fixe, en pixels
+	 * @param y ligne du point fixe, en pixels
+	 */
+	private void zoom(double factor, int x, int y) {
+		double minScale = Math.min((double) getWidth(), getHeight()) / sideLength / 2;
+		double newScale = Math.max(Math.min(scale * factor, MAX_SCALE), Math.min(minScale, scale));
+
+		offsetX = x - (x - offsetX) * newScale / scale;
+		offsetY = y - (y - offsetY) * newScale / scale;
+		scale = newScale;
+		refreshView();
+	}
+
+	/**
+	 * Redessiner la composante après un changement de vue. Les cellules qui deviennent visibles sont copiées de la dernière
+	 * copie affichée, même si la simulation est suspendue.
+	 */
+	private void refreshView() {
+		if (snapshot != null) updateImage(snapshot);
+		repaint();
+	}
+
+	/**
+	 * Cette méthode copie l'état des cellules visibles dans l'image. Seuls les pixels dont la couleur change sont écrits,
+	 * et seule la région qui les contient est redessinée. Les cellules hors de la vue seront copiées lorsqu'elles deviendront
+	 * visibles, puisque cette méthode est appelée à chaque affichage. Doit être appelée par le fil de l'interface graphique.
+	 * @param snapshot copie de la grille à afficher
+	 */
+	public void updateImage(FrameSnapshot snapshot) {
+		this.snapshot = snapshot;
+		if (!viewInitialized) return;
+
+		Rectangle visible = getVisibleCells();
+		int minRow = Integer.MAX_VALUE, minCol = Integer.MAX_VALUE, maxRow = -1, maxCol = -1;
+
+		for (int row = visible.y; row < visible.y + visible.height; row++) {
+			for (int col = visible.x; col < visible.x + visible.width; col++) {
+				int color = snapshot.isAlive(row, col) ? ALIVE_COLOR : DEAD_COLOR;
+				int index = row * sideLength + col;
+
+				if (pixels[index] == color) continue;
+
+				pixels[index] = color;
+				minRow = Math.min(minRow, row);
+				maxRow = Math.max(maxRow, row);
+				minCol = Math.min(minCol, col);
+				maxCol = Math.max(maxCol, col);
+			}
+		}
+
+		// Redessiner seulement la région modifiée, convertie en pixels d'écran
+		if (maxRow >= 0) {
+			int x = (int) Math.floor(offsetX + minCol * scale), y = (int) Math.floor(offsetY + minRow * scale);
+			int width = (int) Math.ceil(offsetX + (maxCol + 1) * scale) - x;
+			int height = (int) Math.ceil(offsetY + (maxRow + 1) * scale) - y;
+			repaint(x, y, width, height);
+		}
+	}
+
+	/**
+	 * @return Cellules de la grille visibles dans la composante (colonnes en x, lignes en y)
+	 */
+	private Rectangle getVisibleCells() {
+		int fromCol = clamp((int) Math.floor(-offsetX / scale)), toCol = clamp((int) Math.ceil((getWidth() - offsetX) / scale));
+		int fromRow = clamp((int) Math.floor(-offsetY / scale)), toRow = clamp((int) Math.ceil((getHeight() - offsetY) / scale));
+
+		return new Rectangle(fromCol, fromRow, toCol - fromCol, toRow - fromRow);
+	}
+
+	/**
+	 * @return Valeur donnée ramenée entre 0 et {@code sideLength}
+	 */
+	private int clamp(int value) {
+		return Math.max(0, Math.min(value, sideLength));
+	}
+
+	/**
+	 * @param x colonne à l'écran, en pixels
+	 * @param y ligne à l'écran, en pixels
+	 * @return Position de la cellule sous le point donné (colonne en x, ligne en y), ou {@code null} en dehors de la grille
+	 */
+	public Point getCellAt(int x, int y) {
+		int col = (int) Math.floor((x - offsetX) / scale), row = (int) Math.floor((y - offsetY) / scale);
+
+		if (row < 0 || col < 0 || row >= sideLength || col >= sideLength) return null;
+		return new Point(col, row);
+	}
+
+	/**
+	 * L'info-bulle est construite seulement lorsque la souris s'arrête sur une cellule : la position du pointeur est
+	 * convertie en coordonnées de la grille, puis l'état, le nombre de voisins et l'âge de la cellule sont lus à ce moment.
+	 * Aucune information n'est préparée lors de l'affichage des images.
+	 */
+	@Override
+	public String getToolTipText(MouseEvent e) {
+		Point cell = getCellAt(e.getX(), e.getY());
+		if (cell == null || snapshot == null) return null;
+
+		boolean alive = snapshot.isAlive(cell.y, cell.x);
+		StringBuilder info = new StringBuilder("<html>");
+
+		info.append(alive ? "ALIVE" : "DEAD").append(" (").append(cell.x).append(", ").append(cell.y).append(")");
+		info.append("<br>Voisins : ").append(snapshot.countNeighbors(cell.y, cell.x));
+
+		// L'historique a été réservé avec l'image affichée, et reste figé à sa génération
+		CellHistory.View cellHistory = snapshot.getCellHistory();
+		if (cellHistory != null) {
+			long lastChange = cellHistory.getLastChange(cell.y, cell.x);
+			long age = Math.max(snapshot.getGeneration() - lastChange, 0);
+
+			info.append("<br>").append(alive ? "Vivante" : "Morte").append(" depuis ").append(age).append(" génération(s)");
+			info.append("<br>Dernier changement : génération ").append(lastChange);
+		}
+		return info.append("</html>").toString();
+	}
+
+	/**
+	 * Méthode d'altération des mesures de l'affichage.
+	 * @param metrics mesures où enregistrer la durée du dessin de la grille, ou {@code null}
+	 */
+	public void setMetrics(GenerationMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		if (!viewInitialized) fitToView();
+		long start = metrics != null ? metrics.startTimer() : 0;
+
+		Graphics2D g2 = (Graphics2D) g;
+		g2.setColor(BACKGROUND_COLOR);
+		g2.fillRect(0, 0, getWidth(), getHeight());
+
+		// Agrandir les pixels sans les mélanger, pour que chaque cellule reste un carré net
+		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		g2.drawImage(image, (int) Math.round(offsetX), (int) Math.round(offsetY),
+				(int) Math.round(sideLength * scale), (int) Math.round(sideLength * scale), null);
+
+		if (metrics != null) metrics.recordPaintTime(start);
+	}
+}
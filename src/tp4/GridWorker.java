@@ -0,0 +1,469 @@
+package tp4;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Processus de calcul d'une grille répartie ({@code EngineType.DISTRIBUTED}, voir {@code DistributedGrid}). Chaque
+ * processus possède une bande de lignes consécutives de la grille, stockée en mots de 64 bits comme dans
+ * {@code BitGrid}, et l'échange à chaque génération avec les deux processus voisins : il leur envoie sa première et
+ * sa dernière ligne, et reçoit en retour la ligne qui borde sa bande de chaque côté (le halo). Les processus forment
+ * un anneau : le dernier est aussi relié au premier, pour les bords collés ({@code BoundaryMode.TORUS} et
+ * {@code BoundaryMode.KLEIN}).
+ *
+ * Les lignes intérieures de la bande ne dépendent pas du halo : elles sont calculées pendant que les lignes du bord
+ * sont envoyées par un autre fil d'exécution et que celles des voisins arrivent. Seules la première et la dernière
+ * ligne attendent le halo.
+ *
+ * Un processus écoute sur un seul port. Le premier octet d'une connexion indique qui se connecte : le coordinateur
+ * ({@code DistributedGrid}), qui envoie les commandes, ou le processus voisin du dessus, qui envoie ses lignes.
+ *
+ * Exemple : {@code java tp4.GridWorker --port 7000}
+ *
+ * Options :
+ * - {@code --port} : port d'écoute (0 par défaut : un port libre, affiché au démarrage);
+ * - {@code --once} : s'arrêter après la première grille, au lieu d'attendre le coordinateur suivant.
+ */
+public class GridWorker {
+
+	// Premier octet d'une connexion
+	static final int COORDINATOR = 0, NEIGHBOR = 1;
+
+	// Commandes du coordinateur
+	static final int INIT = 1, SET_CELL = 2, SET_WORD = 3, GET_ROW = 4, STATS = 5, STEP = 6, SET_RULE = 7, SET_BOUNDARY = 8;
+
+	/**
+	 * Ligne écrite au démarrage, suivie du port d'écoute. Le coordinateur la lit pour joindre les processus qu'il lance;
+	 * elle ne contient que des caractères ASCII, qui ne dépendent pas de l'encodage de la console.
+	 */
+	static final String PORT_LINE = "Port : ";
+
+	private final ServerSocket server;
+
+	// Grille entière et bande de ce processus (lignes fromRow à fromRow + rowCount - 1)
+	private int sideLength, fromRow, rowCount, wordsPerRow;
+	private long lastWordMask;
+	private int lastColumnBit;
+	private boolean firstStrip, lastStrip;
+
+	/**
+	 * Génération actuelle et génération suivante de la bande, avec une ligne de halo de chaque côté :
+	 * {@code rowCount + 2} lignes de {@code wordsPerRow} mots.
+	 */
+	private long[] currentWords, nextWords;
+
+	private Rule rule = Rule.CONWAY;
+	private boolean conway = true;
+	private int birthMask, survivalMask;
+	private BoundaryMode boundaryMode = BoundaryMode.DEAD;
+
+	// Liens avec les voisins du dessus et du dessous, ou null s'il n'y a qu'un seul processus
+	private Socket upSocket, downSocket;
+	private DataInputStream upInput, downInput;
+	private DataOutputStream upOutput, downOutput;
+
+	// Envoi des lignes du bord pendant le calcul de l'intérieur
+	private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "envoi-halo");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private long population, stateHash;
+	private long births, deaths;
+
+	/**
+	 * Constructeur avec paramètre.
+	 * @param port port d'écoute, ou 0 pour un port libre
+	 * @throws IOException si le port ne peut pas être ouvert
+	 */
+	public GridWorker(int port) throws IOException {
+		server = new ServerSocket(port);
+	}
+
+	/**
+	 * @return Port d'écoute
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Point d'entrée du processus.
+	 * @param args options (voir la description de la classe)
+	 */
+	public static void main(String[] args) {
+		int port = 0;
+		boolean once = false;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--once")) {
+				once = true;
+			} else if (args[i].equals("--port") && i + 1 < args.length) {
+				port = Integer.parseInt(args[++i]);
+			} else {
+				System.err.println("Usage : java tp4.GridWorker [--port P] [--once]");
+				System.exit(1);
+			}
+		}
+
+		try {
+			GridWorker worker = new GridWorker(port);
+			System.out.println(PORT_LINE + worker.getPort());
+			System.out.flush();
+
+			do {
+				worker.serve();
+			} while (!once);
+		} catch (IOException e) {
+			System.err.println("Erreur de communication : " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Attendre un coordinateur et exécuter ses commandes jusqu'à ce qu'il ferme la connexion.
+	 * @throws IOException si une connexion est interrompue ou si une commande est invalide
+	 */
+	public void serve() throws IOException {
+		try (Socket coordinator = accept(COORDINATOR)) {
+			DataInputStream input = new DataInputStream(new BufferedInputStream(coordinator.getInputStream()));
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+
+			for (int command = input.read(); command >= 0; command = input.read()) {
+				execute(command, input, output);
+			}
+		} finally {
+			closeNeighbors();
+		}
+	}
+
+	/**
+	 * Accepter une connexion et vérifier son premier octet.
+	 * @param role {@code COORDINATOR} ou {@code NEIGHBOR}
+	 * @return Connexion acceptée
+	 */
+	private Socket accept(int role) throws IOException {
+		Socket socket = server.accept();
+		socket.setTcpNoDelay(true);
+
+		int received = socket.getInputStream().read();
+		if (received != role) {
+			socket.close();
+			throw new IOException("Connexion inattendue (" + received + " au lieu de " + role + ")");
+		}
+		return socket;
+	}
+
+	/**
+	 * Exécuter une commande du coordinateur. Seules {@code INIT}, {@code GET_ROW}, {@code STATS} et {@code STEP}
+	 * reçoivent une réponse.
+	 */
+	private void execute(int command, DataInputStream input, DataOutputStream output) throws IOException {
+		switch (command) {
+		case INIT:
+			init(input);
+			output.writeByte(INIT);
+			output.flush();
+			break;
+		case SET_CELL:
+			setCell(input.readInt(), input.readInt(), input.readBoolean());
+			break;
+		case SET_WORD:
+			setWord(input.readInt(), input.readInt(), input.readLong());
+			break;
+		case GET_ROW:
+			int row = input.readInt() - fromRow;
+			for (int w = 0; w < wordsPerRow; w++) output.writeLong(currentWords[(row + 1) * wordsPerRow + w]);
+			output.flush();
+			break;
+		case STATS:
+			output.writeLong(population);
+			output.writeLong(stateHash);
+			output.flush();
+			break;
+		case STEP:
+			step();
+			output.writeLong(births);
+			output.writeLong(deaths);
+			output.writeLong(population);
+			output.writeLong(stateHash);
+			output.flush();
+			break;
+		case SET_RULE:
+			setRule(Rule.parse(input.readUTF()));
+			break;
+		case SET_BOUNDARY:
+			boundaryMode = BoundaryMode.values()[input.readInt()];
+			break;
+		default:
+			throw new IOException("Commande inconnue : " + command);
+		}
+	}
+
+	/**
+	 * Recevoir la bande de ce processus et se relier aux voisins : ce processus se connecte à son voisin du dessous,
+	 * puis accepte la connexion de son voisin du dessus. Les connexions sont faites dans le même ordre par tous les
+	 * processus, ce qui ne peut pas bloquer : une connexion est mise en attente même avant d'être acceptée.
+	 */
+	private void init(DataInputStream input) throws IOException {
+		closeNeighbors();
+
+		sideLength = input.readInt();
+		fromRow = input.readInt();
+		rowCount = input.readInt();
+		String downHost = input.readUTF();
+		int downPort = input.readInt();
+
+		wordsPerRow = (sideLength + 63) >>> 6;
+		int lastBits = sideLength & 63;
+		lastWordMask = lastBits == 0 ? -1L : (1L << lastBits) - 1;
+		lastColumnBit = (sideLength - 1) & 63;
+		firstStrip = fromRow == 0;
+		lastStrip = fromRow + rowCount == sideLength;
+
+		currentWords = new long[(rowCount + 2) * wordsPerRow];
+		nextWords = new long[(rowCount + 2) * wordsPerRow];
+		population = 0;
+		stateHash = 0;
+		setRule(Rule.CONWAY);
+		boundaryMode = BoundaryMode.DEAD;
+
+		// Un seul processus n'a pas de voisin : ses halos sont remplis sur place
+		if (downHost.isEmpty()) return;
+
+		downSocket = new Socket(downHost, downPort);
+		downSocket.setTcpNoDelay(true);
+		downSocket.getOutputStream().write(NEIGHBOR);
+		downInput = new DataInputStream(new BufferedInputStream(downSocket.getInputStream()));
+		downOutput = new DataOutputStream(new BufferedOutputStream(downSocket.getOutputStream()));
+
+		upSocket = accept(NEIGHBOR);
+		upInput = new DataInputStream(new BufferedInputStream(upSocket.getInputStream()));
+		upOutput = new DataOutputStream(new BufferedOutputStream(upSocket.getOutputStream()));
+	}
+
+	/**
+	 * Fermer les liens avec les voisins de la grille précédente.
+	 */
+	private void closeNeighbors() throws IOException {
+		if (upSocket != null) upSocket.close();
+		if (downSocket != null) downSocket.close();
+		upSocket = downSocket = null;
+		upInput = downInput = null;
+		upOutput = downOutput = null;
+	}
+
+	private void setRule(Rule rule) {
+		if (!rule.isLifeLike())
+			throw new IllegalArgumentException("Le moteur DISTRIBUTED supporte seulement les règles B/S à deux états : " + rule);
+
+		this.rule = rule;
+		conway = rule.isConway();
+		birthMask = rule.getBirthMask();
+		survivalMask = rule.getSurvivalMask();
+	}
+
+	/**
+	 * Changer l'état d'une cellule de la bande. Les coordonnées sont celles de la grille entière.
+	 */
+	private void setCell(int row, int col, boolean state) {
+		int index = (row - fromRow + 1) * wordsPerRow + (col >>> 6);
+		long word = currentWords[index];
+
+		currentWords[index] = state ? word | (1L << col) : word & ~(1L << col);
+		population += Long.bitCount(currentWords[index]) - Long.bitCount(word);
+		if (word != currentWords[index]) stateHash ^= CellChangeLog.hashKey(row, col);
+	}
+
+	/**
+	 * Écrire 64 cellules d'une ligne de la bande (voir {@code GridEngine.setWord()}).
+	 */
+	private void setWord(int row, int wordIndex, long word) {
+		int index = (row - fromRow + 1) * wordsPerRow + wordIndex;
+		long updated = wordIndex == wordsPerRow - 1 ? word & lastWordMask : word;
+
+		population += Long.bitCount(updated) - Long.bitCount(currentWords[index]);
+		for (long changes = updated ^ currentWords[index]; changes != 0; changes &= changes - 1)
+			stateHash ^= CellChangeLog.hashKey(row, (wordIndex << 6) + Long.numberOfTrailingZeros(changes));
+
+		currentWords[index] = updated;
+	}
+
+	/**
+	 * Calculer la génération suivante de la bande. Les lignes du bord partent vers les voisins, les lignes intérieures
+	 * sont calculées, puis les halos reçus permettent de calculer la première et la dernière ligne.
+	 */
+	private void step() throws IOException {
+		births = 0;
+		deaths = 0;
+
+		long[] top = copyRow(0), bottom = copyRow(rowCount - 1);
+		Future<?> sent = upOutput == null ? null : sender.submit(() -> {
+			writeRow(upOutput, top);
+			writeRow(downOutput, bottom);
+			return null;
+		});
+
+		computeRows(1, rowCount - 1);
+
+		// Halos reçus (ou copiés sur place s'il n'y a qu'un seul processus) : ligne du dessus, puis ligne du dessous
+		long[] above = upInput != null ? readRow(upInput) : bottom;
+		long[] below = downInput != null ? readRow(downInput) : top;
+		setHalo(-1, firstStrip ? boardEdge(above, top) : above);
+		setHalo(rowCount, lastStrip ? boardEdge(below, bottom) : below);
+
+		computeRows(0, 1);
+		if (rowCount > 1) computeRows(rowCount - 1, rowCount);
+
+		if (sent != null) {
+			try {
+				sent.get();
+			} catch (ExecutionException e) {
+				throw new IOException("Envoi du halo impossible", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Envoi du halo interrompu", e);
+			}
+		}
+
+		long[] temp = currentWords;
+		currentWords = nextWords;
+		nextWords = temp;
+		population += births - deaths;
+	}
+
+	/**
+	 * Cette méthode donne le halo d'un bord de la grille entière, selon {@code boundaryMode}. Le halo reçu est la ligne
+	 * du bord opposé, envoyée par le premier ou le dernier processus de l'anneau.
+	 * @param opposite ligne du bord opposé de la grille
+	 * @param own ligne du bord de la grille qui appartient à cette bande
+	 * @return Halo du bord
+	 */
+	private long[] boardEdge(long[] opposite, long[] own) {
+		switch (boundaryMode) {
+		case TORUS:
+			return opposite;
+		case KLEIN:
+			return BitGrid.reverseRow(opposite, sideLength);
+		case MIRROR:
+			return own;
+		default:
+			return new long[wordsPerRow];
+		}
+	}
+
+	private long[] copyRow(int row) {
+		long[] words = new long[wordsPerRow];
+		System.arraycopy(currentWords, (row + 1) * wordsPerRow, words, 0, wordsPerRow);
+		return words;
+	}
+
+	private void setHalo(int row, long[] words) {
+		System.arraycopy(words, 0, currentWords, (row + 1) * wordsPerRow, wordsPerRow);
+	}
+
+	private void writeRow(DataOutputStream output, long[] words) throws IOException {
+		for (long word : words) output.writeLong(word);
+		output.flush();
+	}
+
+	private long[] readRow(DataInputStream input) throws IOException {
+		long[] words = new long[wordsPerRow];
+
+		try {
+			for (int w = 0; w < wordsPerRow; w++) words[w] = input.readLong();
+		} catch (EOFException e) {
+			throw new IOException("Un processus voisin s'est arrêté", e);
+		}
+		return words;
+	}
+
+	/**
+	 * Cette méthode calcule les lignes {@code fromRow} à {@code toRow} de la bande (coordonnées de la bande) comme
+	 * {@code BitGrid.computeRows()}, sans suivi des tuiles : toute la bande est calculée à chaque génération.
+	 */
+	private void computeRows(int from, int to) {
+		int lastWord = wordsPerRow - 1;
+
+		for (int row = from; row < to; row++) {
+			int center = (row + 1) * wordsPerRow, above = center - wordsPerRow, below = center + wordsPerRow;
+
+			for (int w = 0; w <= lastWord; w++) {
+				boolean hasWest = w > 0, hasEast = w < lastWord;
+
+				long up = currentWords[above + w];
+				long mid = currentWords[center + w];
+				long down = currentWords[below + w];
+
+				long upWest = (up << 1) | (hasWest ? currentWords[above + w - 1] >>> 63 : westGhost(above));
+				long midWest = (mid << 1) | (hasWest ? currentWords[center + w - 1] >>> 63 : westGhost(center));
+				long downWest = (down << 1) | (hasWest ? currentWords[below + w - 1] >>> 63 : westGhost(below));
+
+				long upEast = (up >>> 1) | (hasEast ? currentWords[above + w + 1] << 63 : eastGhost(above) << lastColumnBit);
+				long midEast = (mid >>> 1) | (hasEast ? currentWords[center + w + 1] << 63 : eastGhost(center) << lastColumnBit);
+				long downEast = (down >>> 1) | (hasEast ? currentWords[below + w + 1] << 63 : eastGhost(below) << lastColumnBit);
+
+				long result = conway ? BitGrid.applyRule(upWest, up, upEast, midWest, mid, midEast, downWest, down, downEast)
+						: BitGrid.applyRule(birthMask, survivalMask, upWest, up, upEast, midWest, mid, midEast, downWest, down, downEast);
+				if (w == lastWord) result &= lastWordMask;
+
+				nextWords[center + w] = result;
+
+				if (result != mid) {
+					births += Long.bitCount(result & ~mid);
+					deaths += Long.bitCount(mid & ~result);
+
+					for (long changes = result ^ mid; changes != 0; changes &= changes - 1)
+						stateHash ^= CellChangeLog.hashKey(fromRow + row, (w << 6) + Long.numberOfTrailingZeros(changes));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return État (0 ou 1) de la cellule à l'ouest de la première colonne de la ligne, selon {@code boundaryMode}
+	 */
+	private long westGhost(int rowStart) {
+		switch (boundaryMode) {
+		case TORUS:
+		case KLEIN:
+			return (currentWords[rowStart + wordsPerRow - 1] >>> lastColumnBit) & 1;
+		case MIRROR:
+			return currentWords[rowStart] & 1;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * @return État (0 ou 1) de la cellule à l'est de la dernière colonne de la ligne, selon {@code boundaryMode}
+	 */
+	private long eastGhost(int rowStart) {
+		switch (boundaryMode) {
+		case TORUS:
+		case KLEIN:
+			return currentWords[rowStart] & 1;
+		case MIRROR:
+			return (currentWords[rowStart + wordsPerRow - 1] >>> lastColumnBit) & 1;
+		default:
+			return 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "GridWorker[port %d, lignes %d à %d]", getPort(), fromRow, fromRow + rowCount - 1);
+	}
+}
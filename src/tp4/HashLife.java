@@ -0,0 +1,653 @@
+package tp4;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Cette classe est un moteur de calcul HashLife. La grille est représentée par un arbre quaternaire : chaque noeud
+ * de niveau {@code k} représente un carré de 2^k x 2^k cellules divisé en 4 noeuds de niveau {@code k - 1}.
+ * Les noeuds identiques ne sont créés qu'une seule fois (voir {@code nodeTable}), et le résultat de l'évolution
+ * de chaque noeud est mémorisé. Les régions répétitives ou vides ne sont donc calculées qu'une seule fois, ce qui
+ * permet d'avancer de plusieurs puissances de 2 générations d'un coup (voir {@code jumpGenerations()}).
+ *
+ * Comme pour {@code Board}, les cellules en dehors de la grille sont toujours mortes. Un saut de 2^k générations
+ * n'est fait que si le motif est à plus de 2^k cellules de la bordure : aucune cellule ne peut alors atteindre
+ * la bordure pendant le saut. Près de la bordure, les générations sont calculées une à la fois et les cellules
+ * qui sortent de la grille sont retirées, ce qui donne exactement le même résultat que {@code Board.nextGeneration()}.
+ *
+ * Le cache de noeuds est limité à {@code maxNodes} noeuds, même pendant un saut : si un saut de 2^k générations
+ * remplit le cache, il est abandonné et le cache est vidé, puis le saut est recommencé; s'il le remplit encore, le
+ * reste des générations est calculé par sauts plus petits. La limite n'est dépassée que si une seule génération de
+ * la grille demande plus de noeuds.
+ */
+public class HashLife implements GridEngine {
+
+	/**
+	 * Nombre maximal de noeuds par défaut. Un noeud occupe environ 100 octets en comptant son entrée dans
+	 * {@code nodeTable}, ce qui limite la mémoire utilisée par le cache à environ 400 Mo.
+	 */
+	public static final int DEFAULT_MAX_NODES = 4_000_000;
+
+	// Les deux noeuds de niveau 0 : une cellule morte et une cellule vivante
+	private static final Node DEAD = new Node(0);
+	private static final Node ALIVE = new Node(1);
+
+	private final int sideLength;
+	private int maxNodes;
+
+	// Vrai pendant un saut : create() lance NODE_LIMIT_REACHED dès que le cache dépasse maxNodes
+	private boolean nodeLimitEnforced;
+
+	/**
+	 * Lancée par {@code create()} pour abandonner un saut qui remplit le cache. Une seule instance, sans pile d'appels.
+	 */
+	private static final RuntimeException NODE_LIMIT_REACHED = new RuntimeException("Cache de noeuds plein", null, false, false) {
+		private static final long serialVersionUID = 1L;
+	};
+
+	// Niveau de la plus petite racine qui couvre toute la grille
+	private final int gridLevel;
+
+	/**
+	 * Table contenant un seul exemplaire de chaque noeud. Deux noeuds sont identiques s'ils ont exactement
+	 * les mêmes 4 enfants.
+	 */
+	private HashMap<Node, Node> nodeTable = new HashMap<Node, Node>();
+
+	// Nombre de vidages du cache, qui sépare les instantanés comparables (voir getSnapshotEpoch())
+	private int snapshotEpoch;
+
+	/**
+	 * Noeud vide de chaque niveau, conservé pour éviter de les reconstruire.
+	 */
+	private Node[] emptyNodes = new Node[64];
+
+	/**
+	 * Racine de l'arbre. La racine de niveau {@code k} couvre les coordonnées de -2^(k-1) à 2^(k-1) - 1
+	 * sur les deux axes. La grille occupe les coordonnées de 0 à {@code sideLength - 1}.
+	 */
+	private Node root;
+
+	/**
+	 * Règle d'évolution, appliquée seulement aux noeuds de 4 x 4 cellules (voir {@code computeBaseCase()}).
+	 * Les nombres de voisins qui font naître ou survivre une cellule sont gardés sous forme de masques.
+	 */
+	private Rule rule = Rule.CONWAY;
+	private int birthMask = Rule.CONWAY.getBirthMask(), survivalMask = Rule.CONWAY.getSurvivalMask();
+
+	/**
+	 * Constructeur avec paramètre. Toutes les cellules sont mortes au départ et le cache est limité
+	 * à {@code DEFAULT_MAX_NODES} noeuds.
+	 * @param sideLength Nombre de cellules actives sur un côté de la grille
+	 */
+	public HashLife(int sideLength) {
+		this(sideLength, DEFAULT_MAX_NODES);
+	}
+
+	/**
+	 * Constructeur avec paramètres. Toutes les cellules sont mortes au départ.
+	 * @param sideLength Nombre de cellules actives sur un côté de la grille
+	 * @param maxNodes Nombre de noeuds à partir duquel le cache est vidé
+	 */
+	public HashLife(int sideLength, int maxNodes) {
+		this.sideLength = sideLength;
+		this.maxNodes = maxNodes;
+
+		// La racine doit couvrir les coordonnées de 0 à sideLength - 1
+		int level = 3;
+		while ((1L << (level - 1)) < sideLength) level++;
+		gridLevel = level;
+		root = emptyNode(level);
+	}
+
+	@Override
+	public int getSideLength() {
+		return sideLength;
+	}
+
+	@Override
+	public boolean isAlive(int row, int col) {
+		Node node = root;
+		long half = 1L << (root.level - 1);
+		long x = col + half, y = row + half;
+
+		if (x < 0 || y < 0 || x >= 2 * half || y >= 2 * half) return false;
+
+		// Descendre dans l'arbre jusqu'à la cellule
+		while (node.level > 0 && node.population > 0) {
+			half = 1L << (node.level - 1);
+			boolean east = x >= half, south = y >= half;
+
+			node = south ? (east ? node.se : node.sw) : (east ? node.ne : node.nw);
+			if (east) x -= half;
+			if (south) y -= half;
+		}
+		return node == ALIVE;
+	}
+
+	@Override
+	public void setAlive(int row, int col, boolean state) {
+		
+		// La racine peut rapetisser après un saut : elle doit de nouveau couvrir la cellule
+		while ((1L << (root.level - 1)) <= Math.max(row, col)) root = expand(root);
+		
+		long half = 1L << (root.level - 1);
+		root = setCell(root, col + half, row + half, state);
+
+		if (nodeTable.size() > maxNodes) collectNodes();
+	}
+
+	/**
+	 * @param node noeud à modifier
+	 * @param x colonne de la cellule à l'intérieur du noeud
+	 * @param y ligne de la cellule à l'intérieur du noeud
+	 * @param state nouvel état de la cellule
+	 * @return Nouveau noeud dans lequel la cellule donnée a l'état donné
+	 */
+	private Node setCell(Node node, long x, long y, boolean state) {
+		if (node.level == 0) return state ? ALIVE : DEAD;
+
+		long half = 1L << (node.level - 1);
+		Node nw = node.nw, ne = node.ne, sw = node.sw, se = node.se;
+
+		if (y < half) {
+			if (x < half) nw = setCell(nw, x, y, state);
+			else ne = setCell(ne, x - half, y, state);
+		} else {
+			if (x < half) sw = setCell(sw, x, y - half, state);
+			else se = setCell(se, x - half, y - half, state);
+		}
+		return create(nw, ne, sw, se);
+	}
+
+	@Override
+	public void nextGeneration() {
+		jumpGenerations(1);
+	}
+
+	/**
+	 * Cette méthode fait avancer la grille du nombre de générations donné. Le nombre de générations est
+	 * décomposé en puissances de 2, et chaque puissance de 2 est calculée en un seul saut lorsque le motif
+	 * est assez loin de la bordure.
+	 * @param generations Nombre de générations à calculer
+	 */
+	@Override
+	public void jumpGenerations(long generations) {
+		// Plus grand saut qui tient dans le cache, réduit chaque fois qu'un saut le remplit
+		int maxStep = 62;
+
+		while (generations > 0 && root.population > 0) {
+			int step = Math.min(maxStep, 63 - Long.numberOfLeadingZeros(generations));
+			long margin = getBorderMargin();
+
+			// Le motif ne doit pas pouvoir atteindre la bordure pendant le saut
+			if (margin > 0)
+				step = Math.min(step, 63 - Long.numberOfLeadingZeros(margin));
+			else
+				step = 0;
+
+			if (!advance(step, margin == 0)) {
+				maxStep = step - 1;
+				continue;
+			}
+			generations -= 1L << step;
+		}
+	}
+
+	/**
+	 * Cette méthode fait avancer la racine de 2^{@code step} générations sans dépasser {@code maxNodes} noeuds. Si le
+	 * cache se remplit, le saut est abandonné, le cache est vidé et le saut est recommencé une fois. La racine n'est
+	 * remplacée qu'à la fin du saut : un saut abandonné ne modifie pas la grille. Une seule génération est toujours
+	 * calculée, même si elle demande plus de noeuds que la limite.
+	 * @param step logarithme en base 2 du nombre de générations
+	 * @param clipToBorder {@code true} si les cellules nées en dehors de la grille doivent être retirées
+	 * @return {@code true} si la racine a avancé, {@code false} si le saut demande plus de {@code maxNodes} noeuds
+	 */
+	private boolean advance(int step, boolean clipToBorder) {
+		for (int attempt = 0; attempt < 2; attempt++) {
+			// Après un vidage, une seule génération est calculée même si elle dépasse la limite
+			nodeLimitEnforced = step > 0 || attempt == 0;
+			try {
+				root = computeAdvance(step, clipToBorder);
+			} catch (RuntimeException e) {
+				if (e != NODE_LIMIT_REACHED) throw e;
+
+				nodeLimitEnforced = false;
+				collectNodes();
+				continue;
+			} finally {
+				nodeLimitEnforced = false;
+			}
+
+			if (nodeTable.size() > maxNodes) collectNodes();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param step logarithme en base 2 du nombre de générations
+	 * @param clipToBorder {@code true} si les cellules nées en dehors de la grille doivent être retirées
+	 * @return Racine après 2^{@code step} générations
+	 */
+	private Node computeAdvance(int step, boolean clipToBorder) {
+		Node node = root;
+
+		// Agrandir la racine jusqu'à ce que le motif soit dans son quart central
+		while (node.level < step + 3 || getInnerPopulation(node) != node.population)
+			node = expand(node);
+
+		node = successor(node, step);
+
+		if (clipToBorder) {
+			long half = 1L << (node.level - 1);
+			node = clip(node, -half, -half);
+		}
+		return node;
+	}
+
+	/**
+	 * @return Distance minimale entre une cellule vivante et l'extérieur de la grille, ou 0 si une cellule vivante touche la bordure
+	 */
+	private long getBorderMargin() {
+		long half = 1L << (root.level - 1);
+		long[] bounds = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE };
+
+		findBounds(root, -half, -half, bounds);
+
+		return Math.min(Math.min(bounds[0], bounds[1]), Math.min(sideLength - 1 - bounds[2], sideLength - 1 - bounds[3]));
+	}
+
+	/**
+	 * Cette méthode trouve le rectangle qui contient toutes les cellules vivantes du noeud donné.
+	 * @param node noeud à parcourir
+	 * @param x colonne du coin supérieur gauche du noeud
+	 * @param y ligne du coin supérieur gauche du noeud
+	 * @param bounds colonne minimale, ligne minimale, colonne maximale et ligne maximale trouvées jusqu'à maintenant
+	 */
+	private void findBounds(Node node, long x, long y, long[] bounds) {
+		if (node.population == 0) return;
+
+		// Le noeud est déjà entièrement à l'intérieur du rectangle trouvé
+		long size = 1L << node.level;
+		if (x >= bounds[0] && y >= bounds[1] && x + size - 1 <= bounds[2] && y + size - 1 <= bounds[3]) return;
+
+		if (node.level == 0) {
+			bounds[0] = Math.min(bounds[0], x);
+			bounds[1] = Math.min(bounds[1], y);
+			bounds[2] = Math.max(bounds[2], x);
+			bounds[3] = Math.max(bounds[3], y);
+			return;
+		}
+
+		long half = size / 2;
+		findBounds(node.nw, x, y, bounds);
+		findBounds(node.ne, x + half, y, bounds);
+		findBounds(node.sw, x, y + half, bounds);
+		findBounds(node.se, x + half, y + half, bounds);
+	}
+
+	/**
+	 * Cette méthode retire toutes les cellules vivantes en dehors de la grille.
+	 * @param node noeud à parcourir
+	 * @param x colonne du coin supérieur gauche du noeud
+	 * @param y ligne du coin supérieur gauche du noeud
+	 * @return Noeud sans cellules vivantes à l'extérieur de la grille
+	 */
+	private Node clip(Node node, long x, long y) {
+		long size = 1L << node.level;
+
+		if (node.population == 0) return node;
+		if (x >= 0 && y >= 0 && x + size <= sideLength && y + size <= sideLength) return node;
+		if (x + size <= 0 || y + size <= 0 || x >= sideLength || y >= sideLength) return emptyNode(node.level);
+
+		long half = size / 2;
+		return create(clip(node.nw, x, y), clip(node.ne, x + half, y),
+				clip(node.sw, x, y + half), clip(node.se, x + half, y + half));
+	}
+
+	/**
+	 * Cette méthode calcule l'évolution du centre d'un noeud. Pour un noeud de niveau {@code k}, le résultat est le
+	 * carré central de niveau {@code k - 1} après 2^{@code step} générations, où {@code step} est au plus {@code k - 2}.
+	 * Le résultat est mémorisé dans le noeud.
+	 * @param node noeud à faire évoluer
+	 * @param step logarithme en base 2 du nombre de générations
+	 * @return Centre du noeud après 2^{@code step} générations
+	 */
+	private Node successor(Node node, int step) {
+		if (node.population == 0) return emptyNode(node.level - 1);
+		if (node.result != null && node.resultStep == step) return node.result;
+
+		Node result;
+
+		if (node.level == 2) {
+			result = computeBaseCase(node);
+		} else {
+			// 9 sous-noeuds de niveau k - 1 qui se chevauchent
+			Node n00 = node.nw, n01 = centerHorizontal(node.nw, node.ne), n02 = node.ne;
+			Node n10 = centerVertical(node.nw, node.sw), n11 = centerNode(node), n12 = centerVertical(node.ne, node.se);
+			Node n20 = node.sw, n21 = centerHorizontal(node.sw, node.se), n22 = node.se;
+
+			if (step == node.level - 2) {
+				// Vitesse maximale : deux demi-sauts successifs
+				n00 = successor(n00, step - 1); n01 = successor(n01, step - 1); n02 = successor(n02, step - 1);
+				n10 = successor(n10, step - 1); n11 = successor(n11, step - 1); n12 = successor(n12, step - 1);
+				n20 = successor(n20, step - 1); n21 = successor(n21, step - 1); n22 = successor(n22, step - 1);
+
+				result = create(successor(create(n00, n01, n10, n11), step - 1),
+						successor(create(n01, n02, n11, n12), step - 1),
+						successor(create(n10, n11, n20, n21), step - 1),
+						successor(create(n11, n12, n21, n22), step - 1));
+			} else {
+				// Saut plus petit : les sous-noeuds sont seulement recentrés avant un seul saut
+				n00 = centerNode(n00); n01 = centerNode(n01); n02 = centerNode(n02);
+				n10 = centerNode(n10); n11 = centerNode(n11); n12 = centerNode(n12);
+				n20 = centerNode(n20); n21 = centerNode(n21); n22 = centerNode(n22);
+
+				result = create(successor(create(n00, n01, n10, n11), step),
+						successor(create(n01, n02, n11, n12), step),
+						successor(create(n10, n11, n20, n21), step),
+						successor(create(n11, n12, n21, n22), step));
+			}
+		}
+
+		node.result = result;
+		node.resultStep = step;
+		return result;
+	}
+
+	/**
+	 * Cette méthode applique la règle d'évolution sur un noeud de 4 x 4 cellules.
+	 * @param node noeud de niveau 2
+	 * @return Noeud de niveau 1 contenant les 4 cellules centrales après une génération
+	 */
+	private Node computeBaseCase(Node node) {
+		// Le bit (4 * ligne + colonne) représente chaque cellule du noeud
+		int cells = 0;
+
+		for (int y = 0; y < 4; y++) {
+			for (int x = 0; x < 4; x++) {
+				Node quadrant = y < 2 ? (x < 2 ? node.nw : node.ne) : (x < 2 ? node.sw : node.se);
+				Node leaf = (y & 1) == 0 ? ((x & 1) == 0 ? quadrant.nw : quadrant.ne) : ((x & 1) == 0 ? quadrant.sw : quadrant.se);
+
+				if (leaf == ALIVE) cells |= 1 << (4 * y + x);
+			}
+		}
+
+		return create(nextCellState(cells, 1, 1), nextCellState(cells, 1, 2),
+				nextCellState(cells, 2, 1), nextCellState(cells, 2, 2));
+	}
+
+	/**
+	 * @param cells état des 16 cellules d'un noeud de niveau 2
+	 * @param y ligne de la cellule (1 ou 2)
+	 * @param x colonne de la cellule (1 ou 2)
+	 * @return État de la cellule à la génération suivante
+	 */
+	private Node nextCellState(int cells, int y, int x) {
+		int neighbors = 0;
+
+		for (int i = -1; i < 2; i++) {
+			for (int j = -1; j < 2; j++) {
+				if ((i != 0 || j != 0) && (cells & (1 << (4 * (y + i) + x + j))) != 0) neighbors++;
+			}
+		}
+
+		boolean alive = (cells & (1 << (4 * y + x))) != 0;
+		return (((alive ? survivalMask : birthMask) >>> neighbors) & 1) != 0 ? ALIVE : DEAD;
+	}
+
+	/**
+	 * @return Noeud de niveau k - 1 formé du centre du noeud donné
+	 */
+	private Node centerNode(Node node) {
+		return create(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+	}
+
+	/**
+	 * @return Noeud de niveau k - 1 centré entre deux noeuds voisins horizontalement
+	 */
+	private Node centerHorizontal(Node west, Node east) {
+		return create(west.ne, east.nw, west.se, east.sw);
+	}
+
+	/**
+	 * @return Noeud de niveau k - 1 centré entre deux noeuds voisins verticalement
+	 */
+	private Node centerVertical(Node north, Node south) {
+		return create(north.sw, north.se, south.nw, south.ne);
+	}
+
+	/**
+	 * @return Nombre de cellules vivantes dans le carré central de niveau k - 2 de la racine
+	 */
+	private long getInnerPopulation(Node node) {
+		return node.nw.se.se.population + node.ne.sw.sw.population
+				+ node.sw.ne.ne.population + node.se.nw.nw.population;
+	}
+
+	/**
+	 * @return Noeud de niveau k + 1 dont le centre est le noeud donné, entouré de cellules mortes
+	 */
+	private Node expand(Node node) {
+		Node empty = emptyNode(node.level - 1);
+
+		return create(create(empty, empty, empty, node.nw), create(empty, empty, node.ne, empty),
+				create(empty, node.sw, empty, empty), create(node.se, empty, empty, empty));
+	}
+
+	/**
+	 * @param level niveau du noeud
+	 * @return Noeud vide du niveau donné
+	 */
+	private Node emptyNode(int level) {
+		if (level == 0) return DEAD;
+		if (emptyNodes[level] == null) {
+			Node child = emptyNode(level - 1);
+			emptyNodes[level] = create(child, child, child, child);
+		}
+		return emptyNodes[level];
+	}
+
+	/**
+	 * @return L'unique exemplaire du noeud formé des 4 enfants donnés
+	 */
+	private Node create(Node nw, Node ne, Node sw, Node se) {
+		Node node = new Node(nw, ne, sw, se);
+		Node existing = nodeTable.putIfAbsent(node, node);
+		if (existing != null) return existing;
+
+		if (nodeLimitEnforced && nodeTable.size() > maxNodes) throw NODE_LIMIT_REACHED;
+		return node;
+	}
+
+	/**
+	 * Cette méthode vide le cache de noeuds lorsqu'il dépasse {@code maxNodes}, ou lorsqu'un saut le remplit. Seuls
+	 * les noeuds qui forment la grille actuelle sont conservés; les résultats mémorisés sont perdus et seront
+	 * recalculés au besoin.
+	 */
+	private void collectNodes() {
+		snapshotEpoch++;
+		nodeTable = new HashMap<Node, Node>();
+		emptyNodes = new Node[64];
+		root = rebuild(root, new IdentityHashMap<Node, Node>());
+	}
+
+	/**
+	 * @return Copie du noeud donné dans la nouvelle table de noeuds
+	 */
+	private Node rebuild(Node node, IdentityHashMap<Node, Node> rebuilt) {
+		if (node.level == 0) return node;
+
+		Node copy = rebuilt.get(node);
+		if (copy == null) {
+			copy = create(rebuild(node.nw, rebuilt), rebuild(node.ne, rebuilt),
+					rebuild(node.sw, rebuilt), rebuild(node.se, rebuilt));
+			rebuilt.put(node, copy);
+		}
+		return copy;
+	}
+
+	/**
+	 * Seules les règles semblables au jeu de la vie sans naissance à 0 voisin sont supportées : les régions vides doivent
+	 * rester vides et un motif ne doit pas avancer de plus d'une cellule par génération, sinon les sauts ne sont plus valides.
+	 * Les résultats mémorisés avec l'ancienne règle sont oubliés.
+	 */
+	@Override
+	public void setRule(Rule rule) {
+		if (!rule.isLifeLike() || rule.hasBirthWithoutNeighbors())
+			throw new IllegalArgumentException("Le moteur HASHLIFE supporte seulement les règles B/S à deux états sans B0 : " + rule);
+		if (rule.equals(this.rule)) return;
+
+		this.rule = rule;
+		birthMask = rule.getBirthMask();
+		survivalMask = rule.getSurvivalMask();
+		collectNodes();
+	}
+
+	@Override
+	public Rule getRule() {
+		return rule;
+	}
+
+	@Override
+	public long countLivingCells() {
+		return root.population;
+	}
+
+	/**
+	 * L'empreinte est calculée à partir du contenu des noeuds (voir {@code Node.contentHash}) plutôt qu'avec les clés
+	 * de chaque cellule : elle ne correspond donc pas à l'empreinte des autres moteurs pour la même grille.
+	 */
+	@Override
+	public long getStateHash() {
+		return getGridNode().contentHash;
+	}
+
+	/**
+	 * L'instantané est le noeud qui couvre exactement la grille. Puisque chaque noeud n'existe qu'en un seul exemplaire,
+	 * deux instantanés sont égaux si et seulement si les grilles sont identiques. Après un vidage du cache
+	 * ({@code collectNodes()}), les nouveaux instantanés ne sont plus égaux aux anciens, même pour une grille identique.
+	 * Un instantané retient aussi tous les noeuds de sa grille, qui ne sont plus comptés dans {@code maxNodes} après
+	 * un vidage : l'époque change donc à chaque vidage, pour que les anciens instantanés soient oubliés.
+	 */
+	@Override
+	public Object getStateSnapshot() {
+		return getGridNode();
+	}
+
+	@Override
+	public int getSnapshotEpoch() {
+		return snapshotEpoch;
+	}
+
+	/**
+	 * Puisque la racine est agrandie ou réduite d'une génération à l'autre, elle est ramenée au niveau {@code gridLevel}
+	 * pour que la même grille soit toujours représentée par le même noeud. Toutes les cellules vivantes sont dans la grille,
+	 * donc aucune n'est perdue en réduisant la racine.
+	 * @return Noeud de niveau {@code gridLevel} centré sur l'origine qui contient toute la grille
+	 */
+	private Node getGridNode() {
+		Node node = root;
+
+		while (node.level > gridLevel) node = centerNode(node);
+		while (node.level < gridLevel) node = expand(node);
+		return node;
+	}
+
+	/**
+	 * @return Nombre de noeuds présents dans le cache
+	 */
+	public int getNodeCount() {
+		return nodeTable.size();
+	}
+
+	/**
+	 * Méthode d'altération de la taille maximale du cache. Le cache est vidé immédiatement s'il dépasse la nouvelle limite.
+	 * @param maxNodes Nombre de noeuds à partir duquel le cache est vidé
+	 * @throws IllegalArgumentException si la limite n'est pas positive
+	 */
+	public void setMaxNodes(int maxNodes) {
+		if (maxNodes < 1) throw new IllegalArgumentException("Le nombre maximal de noeuds doit être positif");
+
+		this.maxNodes = maxNodes;
+		if (nodeTable.size() > maxNodes) collectNodes();
+	}
+
+	/**
+	 * @return Nombre de noeuds à partir duquel le cache est vidé
+	 */
+	public int getMaxNodes() {
+		return maxNodes;
+	}
+
+	/**
+	 * Noeud de l'arbre quaternaire. Un noeud ne change jamais après sa création, sauf pour le résultat mémorisé.
+	 */
+	private static final class Node {
+
+		final int level;
+		final Node nw, ne, sw, se;
+		final long population;
+		final int hash;
+
+		/**
+		 * Empreinte de 64 bits calculée seulement à partir des cellules du noeud. Contrairement à {@code hash},
+		 * elle ne dépend pas de l'adresse des enfants et reste la même après un vidage du cache.
+		 */
+		final long contentHash;
+
+		// Résultat mémorisé de successor() et logarithme du nombre de générations correspondant
+		Node result;
+		int resultStep;
+
+		/**
+		 * Constructeur d'un noeud de niveau 0 (une seule cellule).
+		 */
+		Node(int population) {
+			this.level = 0;
+			this.nw = this.ne = this.sw = this.se = null;
+			this.population = population;
+			this.hash = population;
+			this.contentHash = population;
+		}
+
+		/**
+		 * Constructeur d'un noeud formé de 4 enfants du même niveau.
+		 */
+		Node(Node nw, Node ne, Node sw, Node se) {
+			this.level = nw.level + 1;
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			this.population = nw.population + ne.population + sw.population + se.population;
+			this.hash = ((System.identityHashCode(nw) * 31 + System.identityHashCode(ne)) * 31
+					+ System.identityHashCode(sw)) * 31 + System.identityHashCode(se);
+			this.contentHash = mix(((nw.contentHash * 0x9E3779B97F4A7C15L + ne.contentHash) * 0x9E3779B97F4A7C15L
+					+ sw.contentHash) * 0x9E3779B97F4A7C15L + se.contentHash + level);
+		}
+
+		/**
+		 * Fonction de mélange de SplitMix64.
+		 */
+		private static long mix(long z) {
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			return z ^ (z >>> 31);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Node)) return false;
+
+			Node node = (Node) other;
+			return nw == node.nw && ne == node.ne && sw == node.sw && se == node.se;
+		}
+	}
+}
@@ -0,0 +1,378 @@
+package tp4;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Point d'entrée sans interface graphique. Ce programme crée une grille selon les options données, la fait évoluer
+ * le plus rapidement possible avec {@code Board} et {@code GenerationTracker}, puis affiche la vitesse de calcul
+ * et le point de stabilité dans la console. Aucune fenêtre ni {@code JOptionPane} n'est créé, ce qui permet de
+ * l'utiliser sur un serveur sans écran.
+ *
+ * Exemple : {@code java tp4.HeadlessRunner --size 2000 --density 0.35 --seed 42 --generations 5000 --engine PACKED}
+ *
+ * Options :
+ * - {@code --size} : nombre de cellules actives sur un côté de la grille (100 par défaut);
+ * - {@code --density} : taux de remplissage initial, entre 0.0 et 1.0 (0.5 par défaut);
+ * - {@code --seed} : germe de la population initiale (aléatoire par défaut, et affiché pour reproduire l'exécution);
+ * - {@code --generations} : nombre maximal de générations à calculer (1000 par défaut);
+ * - {@code --engine} : moteur de calcul, parmi les valeurs de {@code EngineType} (CELL par défaut);
+ * - {@code --rule} : règle d'évolution, par exemple {@code B36/S23}, {@code B2/S/C3} ou {@code R5,C0,M1,S34..58,B34..45,NM}
+ *   (B3/S23 par défaut, voir {@code Rule}). Les règles à plusieurs états ou de plus grande portée demandent le moteur CELL;
+ * - {@code --boundary} : comportement des bords, parmi les valeurs de {@code BoundaryMode} (DEAD par défaut). Les modes
+ *   TORUS, KLEIN et MIRROR demandent le moteur CELL, PACKED, OFFHEAP ou DISTRIBUTED;
+ * - {@code --threads} : nombre de fils d'exécution (1 par défaut);
+ * - {@code --max-nodes} : taille maximale du cache de noeuds du moteur HASHLIFE (4 000 000 par défaut, voir
+ *   {@code HashLife}), respectée même pendant un saut;
+ * - {@code --report} : intervalle de générations entre deux lignes de progression (0 par défaut, aucune ligne);
+ * - {@code --stop-at-stability} : arrêter dès que la grille se répète;
+ * - {@code --print-grid} : afficher la grille finale, une ligne de texte par ligne de la grille ('O' vivante, '.' morte);
+ * - {@code --restore} : reprendre à partir d'un fichier de sauvegarde (la taille, la densité, le germe et le moteur
+ *   sont alors ceux de la sauvegarde);
+ * - {@code --checkpoint} : fichier de sauvegarde écrit toutes les {@code --checkpoint-interval} générations (1000 par
+ *   défaut) et à la fin de l'exécution (voir {@code BoardCheckpoint});
+ * - {@code --pattern} : motif RLE, texte brut ou Life 1.06 placé au centre d'une grille vide, à la place de la
+ *   population aléatoire (voir {@code PatternIO});
+ * - {@code --export} : fichier où écrire la grille finale, dans le format donné par son extension;
+ * - {@code --record} : journal compressé de toutes les générations calculées, avec une image complète de la grille
+ *   toutes les {@code --keyframe-interval} générations (1000 par défaut, voir {@code GenerationRecorder});
+ * - {@code --metrics} : intervalle en secondes entre deux lignes de mesures dans le journal (0 par défaut, aucune
+ *   mesure). Les mesures sont aussi publiées dans JMX et résumées à la fin (voir {@code GenerationMetrics});
+ * - {@code --census} : recenser les objets de la grille finale si elle s'est stabilisée (voir {@code ObjectCensus});
+ * - {@code --census-file} : fichier où cumuler les recensements de plusieurs exécutions (implique {@code --census});
+ *
+ * Avec le moteur CELL et la règle de Conway, les générations sont calculées avec des instructions vectorielles (SIMD)
+ * si la machine virtuelle est lancée avec l'option {@code --add-modules jdk.incubator.vector} (voir {@code TileKernel}).
+ * Le moteur OFFHEAP stocke la grille hors du tas Java, en mémoire directe ou, avec l'option
+ * {@code -Dtp4.offheap.dir=DOSSIER}, dans un fichier de travail projeté en mémoire (voir {@code OffHeapGrid}).
+ * Le moteur DISTRIBUTED répartit la grille entre plusieurs processus : {@code -Dtp4.workers=4} en lance 4 sur cette
+ * machine, et {@code -Dtp4.workers=hôte:port,...} utilise des processus {@code GridWorker} déjà lancés
+ * (voir {@code DistributedGrid}).
+ */
+public class HeadlessRunner {
+
+	// Réglages de l'exécution
+	private int size = 100;
+	private double density = 0.5;
+	private long seed = new Random().nextLong();
+	private long generations = 1000;
+	private EngineType engineType = EngineType.CELL;
+	private Rule rule = Rule.CONWAY;
+	private BoundaryMode boundaryMode = BoundaryMode.DEAD;
+	private int threadCount = 1;
+	private long reportInterval = 0;
+	private boolean stopAtStability = false;
+	private boolean printGrid = false;
+	private Path restoreFile;
+	private Path checkpointFile;
+	private int checkpointInterval = 1000;
+	private Path patternFile;
+	private Path exportFile;
+	private Path recordFile;
+	private int keyframeInterval = 1000;
+	private double metricsInterval = 0;
+	private boolean census = false;
+	private Path censusFile;
+	private int maxNodes = HashLife.DEFAULT_MAX_NODES;
+
+	public static void main(String[] args) {
+		HeadlessRunner runner = new HeadlessRunner();
+
+		try {
+			runner.parseArguments(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			printUsage();
+			System.exit(1);
+		}
+		try {
+			runner.run();
+		} catch (IOException e) {
+			System.err.println("Erreur de lecture ou d'écriture : " + e.getMessage());
+			System.exit(1);
+		} catch (IllegalArgumentException e) {
+			// Par exemple une règle que le moteur choisi ne supporte pas
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Lire les options de la ligne de commande. Chaque option qui prend une valeur est suivie de cette valeur.
+	 * @param args arguments de la ligne de commande
+	 * @throws IllegalArgumentException si une option est inconnue ou si sa valeur est invalide
+	 */
+	private void parseArguments(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+
+			if (option.equals("--census")) {
+				census = true;
+				continue;
+			}
+			if (option.equals("--stop-at-stability")) {
+				stopAtStability = true;
+				continue;
+			}
+			if (option.equals("--print-grid")) {
+				printGrid = true;
+				continue;
+			}
+			if (i + 1 == args.length) throw new IllegalArgumentException("Valeur manquante pour l'option " + option);
+
+			String value = args[++i];
+			try {
+				switch (option) {
+				case "--size":
+					size = Integer.parseInt(value);
+					break;
+				case "--density":
+					density = Double.parseDouble(value);
+					break;
+				case "--seed":
+					seed = Long.parseLong(value);
+					break;
+				case "--generations":
+					generations = Long.parseLong(value);
+					break;
+				case "--engine":
+					engineType = EngineType.valueOf(value.toUpperCase(Locale.ROOT));
+					break;
+				case "--rule":
+					rule = Rule.parse(value);
+					break;
+				case "--boundary":
+					boundaryMode = BoundaryMode.valueOf(value.toUpperCase(Locale.ROOT));
+					break;
+				case "--threads":
+					threadCount = Integer.parseInt(value);
+					break;
+				case "--report":
+					reportInterval = Long.parseLong(value);
+					break;
+				case "--restore":
+					restoreFile = Paths.get(value);
+					break;
+				case "--checkpoint":
+					checkpointFile = Paths.get(value);
+					break;
+				case "--checkpoint-interval":
+					checkpointInterval = Integer.parseInt(value);
+					break;
+				case "--pattern":
+					patternFile = Paths.get(value);
+					break;
+				case "--export":
+					exportFile = Paths.get(value);
+					break;
+				case "--record":
+					recordFile = Paths.get(value);
+					break;
+				case "--keyframe-interval":
+					keyframeInterval = Integer.parseInt(value);
+					break;
+				case "--metrics":
+					metricsInterval = Double.parseDouble(value);
+					break;
+				case "--census-file":
+					censusFile = Paths.get(value);
+					census = true;
+					break;
+				case "--max-nodes":
+					maxNodes = Integer.parseInt(value);
+					break;
+				default:
+					throw new IllegalArgumentException("Option inconnue : " + option);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Valeur invalide pour l'option " + option + " : " + value);
+			}
+		}
+
+		if (size < 1) throw new IllegalArgumentException("La taille de la grille doit être positive");
+		if (density < 0 || density > 1) throw new IllegalArgumentException("La densité doit être entre 0.0 et 1.0");
+		if (generations < 0) throw new IllegalArgumentException("Le nombre de générations ne peut pas être négatif");
+		if (threadCount < 1) throw new IllegalArgumentException("Le nombre de fils d'exécution doit être positif");
+		if (keyframeInterval < 1) throw new IllegalArgumentException("L'intervalle des images clés doit être positif");
+		if (metricsInterval < 0) throw new IllegalArgumentException("L'intervalle des mesures ne peut pas être négatif");
+		if (maxNodes < 1) throw new IllegalArgumentException("Le nombre maximal de noeuds doit être positif");
+		if (checkpointFile != null && rule.getStateCount() > 2)
+			throw new IllegalArgumentException("Les règles à plusieurs états ne peuvent pas être sauvegardées : " + rule);
+		if (census && (rule.getStateCount() > 2 || rule.hasBirthWithoutNeighbors()))
+			throw new IllegalArgumentException("Les objets ne peuvent pas être classés avec la règle " + rule);
+	}
+
+	/**
+	 * Afficher la liste des options dans la console d'erreur.
+	 */
+	private static void printUsage() {
+		System.err.println("Usage : java tp4.HeadlessRunner [--size N] [--density D] [--seed S] [--generations G]");
+		System.err.println("        [--engine CELL|PACKED|HASHLIFE|SPARSE|OFFHEAP|DISTRIBUTED] [--rule REGLE] [--threads T] [--report R]");
+		System.err.println("        [--boundary DEAD|TORUS|KLEIN|MIRROR] [--max-nodes N]");
+		System.err.println("        [--stop-at-stability] [--print-grid]");
+		System.err.println("        [--restore FICHIER] [--checkpoint FICHIER] [--checkpoint-interval N]");
+		System.err.println("        [--pattern FICHIER] [--export FICHIER] [--record FICHIER] [--keyframe-interval N]");
+		System.err.println("        [--metrics SECONDES] [--census] [--census-file FICHIER]");
+	}
+
+	/**
+	 * Créer ou restaurer la grille, puis la simuler ({@code simulate()}). La grille est fermée même si la simulation
+	 * échoue, pour arrêter les fils du calcul parallèle ou distribué et supprimer le fichier de la grille hors du tas.
+	 * @throws IOException si la sauvegarde ne peut pas être lue ou écrite, ou si le journal ne peut pas être écrit
+	 */
+	private void run() throws IOException {
+		long setupStart = System.nanoTime();
+		Board board;
+		GenerationTracker tracker;
+
+		if (restoreFile != null) {
+			BoardCheckpoint checkpoint = BoardCheckpoint.load(restoreFile);
+			board = checkpoint.getBoard();
+			tracker = checkpoint.getTracker();
+
+			size = board.getActiveSideLength();
+			density = board.getInitialPopulation();
+			seed = board.getSeed();
+			engineType = board.getEngineType();
+			rule = board.getRule();
+			boundaryMode = board.getBoundaryMode();
+			System.out.printf(Locale.ROOT, "Sauvegarde restaurée à la génération %d%n", tracker.getGenerationCounter());
+		} else if (patternFile != null) {
+			board = new Board(size, 0.0, 1, engineType, seed);
+			try {
+				board.setRule(rule);
+				board.setBoundaryMode(boundaryMode);
+				PatternIO.load(patternFile, board);
+			} catch (IOException | RuntimeException e) {
+				board.close();
+				throw e;
+			}
+			tracker = new GenerationTracker(board);
+			density = (double) board.countLivingCells() / ((long) size * size);
+		} else {
+			board = new Board(size, density, 1, engineType, seed);
+			board.setRule(rule);
+			board.setBoundaryMode(boundaryMode);
+			tracker = new GenerationTracker(board);
+		}
+
+		try (board) {
+			simulate(board, tracker, setupStart);
+		}
+	}
+
+	/**
+	 * Calculer les générations sans pause et afficher les résultats.
+	 * @param board grille créée ou restaurée
+	 * @param tracker suivi des générations du board
+	 * @param setupStart début de la création de la grille ({@code System.nanoTime()})
+	 * @throws IOException si la sauvegarde ne peut pas être écrite, ou si le journal ne peut pas être écrit
+	 */
+	private void simulate(Board board, GenerationTracker tracker, long setupStart) throws IOException {
+		board.setThreadCount(threadCount);
+		board.setMaxNodes(maxNodes);
+
+		System.out.printf(Locale.ROOT, "Grille %d x %d, densité %.3f, germe %d, moteur %s, règle %s, bords %s, %d fil(s)%n",
+				size, size, density, seed, engineType + (board.isVectorized() ? " (vectoriel)" : ""), rule, boundaryMode, threadCount);
+		double setupSeconds = (System.nanoTime() - setupStart) / 1e9;
+
+		System.out.printf(Locale.ROOT, "Population initiale : %d (%.3f s)%n", board.countLivingCells(), setupSeconds);
+
+		GenerationMetrics metrics = new GenerationMetrics("headless", (long) size * size);
+		if (metricsInterval > 0) {
+			metrics.setEnabled(true);
+			metrics.registerMBean();
+			metrics.startReporting(Math.max(1, Math.round(metricsInterval * 1000)));
+		}
+
+		long start = System.nanoTime();
+		long computed = 0;
+
+		try (GenerationRecorder recorder = recordFile != null
+				? new GenerationRecorder(recordFile, board, tracker.getGenerationCounter(), keyframeInterval) : null) {
+			while (computed < generations) {
+				long stepStart = metrics.startTimer();
+				board.nextGeneration();
+				long stepped = metrics.recordStepTime(stepStart);
+				board.updateBoard();
+				metrics.recordCommitTime(stepped);
+				tracker.trackInfo();
+				metrics.recordGeneration(board.countLivingCells());
+				if (recorder != null) recorder.record(tracker.getGenerationCounter());
+				computed++;
+
+				if (reportInterval > 0 && computed % reportInterval == 0) {
+					System.out.printf(Locale.ROOT, "Génération %d : %d cellules vivantes%n", computed, board.countLivingCells());
+				}
+				if (checkpointFile != null && checkpointInterval > 0 && tracker.getGenerationCounter() % checkpointInterval == 0)
+					BoardCheckpoint.save(checkpointFile, board, tracker);
+				if (stopAtStability && tracker.getStabilityGeneration() >= 0) break;
+			}
+			if (checkpointFile != null) BoardCheckpoint.save(checkpointFile, board, tracker);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		// Chaque génération met à jour toutes les cellules actives
+		double cellUpdates = (double) computed * size * size;
+
+		System.out.printf(Locale.ROOT, "Générations calculées : %d en %.3f s%n", computed, seconds);
+		System.out.printf(Locale.ROOT, "Vitesse : %.1f générations/s, %.3e cellules/s%n",
+				computed / seconds, cellUpdates / seconds);
+		System.out.printf(Locale.ROOT, "Population finale : %d%n", board.countLivingCells());
+		if (board.getNodeCount() >= 0)
+			System.out.printf(Locale.ROOT, "Noeuds HashLife : %d (limite %d)%n", board.getNodeCount(), maxNodes);
+
+		if (tracker.getStabilityGeneration() >= 0)
+			System.out.printf(Locale.ROOT, "Stabilité : la grille se répète à partir de la génération %d (période %d)%n",
+					tracker.getStabilityGeneration(), tracker.getPeriod());
+		else
+			System.out.println("Stabilité : aucune répétition détectée");
+
+		if (census && tracker.getStabilityGeneration() >= 0) printCensus(board, tracker);
+
+		if (metrics.isEnabled()) {
+			metrics.stopReporting();
+			System.out.println("Durée du calcul (ns) : " + metrics.getStepTimeNanos());
+			System.out.println("Durée de la mise à jour (ns) : " + metrics.getCommitTimeNanos());
+			System.out.println("Cellules vivantes : " + metrics.getLiveCells());
+		}
+
+		if (printGrid) printGrid(board);
+		if (exportFile != null) PatternIO.save(exportFile, board, PatternIO.detectFormat(exportFile));
+	}
+
+	/**
+	 * Recenser les objets de la grille stabilisée, afficher les plus fréquents et cumuler le recensement dans
+	 * {@code censusFile}.
+	 * @param board grille stabilisée
+	 * @param tracker suivi des générations du board
+	 * @throws IOException si le fichier de recensement ne peut pas être lu ou écrit
+	 */
+	private void printCensus(Board board, GenerationTracker tracker) throws IOException {
+		ObjectCensus objects = ObjectCensus.take(board, tracker.getPeriod(), new ShapeClassifier(board.getRule()));
+
+		System.out.printf(Locale.ROOT, "Objets : %d%n", objects.getObjectCount());
+		for (String code : objects.getMostCommon(20))
+			System.out.printf(Locale.ROOT, "  %6d %s (%s)%n", objects.getCount(code), objects.getName(code), code);
+
+		if (censusFile != null) objects.mergeInto(censusFile);
+	}
+
+	/**
+	 * Afficher l'état actuel des cellules actives de la grille, sans la bordure.
+	 * @param board grille à afficher
+	 */
+	private void printGrid(Board board) {
+		Cell[][] cellGrid = board.getCellGrid();
+		StringBuilder line = new StringBuilder(size);
+
+		for (int row = 1; row <= size; row++) {
+			line.setLength(0);
+			for (int col = 1; col <= size; col++) line.append(cellGrid[row][col].isAlive() ? 'O' : '.');
+			System.out.println(line);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package tp4;
+
+import java.beans.ConstructorProperties;
+import java.util.Locale;
+
+/**
+ * Statistiques d'un {@code MetricHistogram} à un instant donné. Cette classe est immuable; ses méthodes d'accès
+ * deviennent les champs de l'attribut JMX correspondant (voir {@code GenerationMetricsMXBean}).
+ */
+public final class HistogramSnapshot {
+
+	private final long count;
+	private final long min;
+	private final long max;
+	private final double mean;
+	private final long p50;
+	private final long p90;
+	private final long p99;
+	private final long p999;
+
+	/**
+	 * Constructeur.
+	 * @param count nombre de valeurs
+	 * @param min plus petite valeur
+	 * @param max plus grande valeur
+	 * @param mean moyenne des valeurs
+	 * @param p50 médiane
+	 * @param p90 90e percentile
+	 * @param p99 99e percentile
+	 * @param p999 99,9e percentile
+	 */
+	@ConstructorProperties({ "count", "min", "max", "mean", "p50", "p90", "p99", "p999" })
+	public HistogramSnapshot(long count, long min, long max, double mean, long p50, long p90, long p99, long p999) {
+		this.count = count;
+		this.min = min;
+		this.max = max;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.p999 = p999;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMin() {
+		return min;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getP999() {
+		return p999;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "n=%d min=%d p50=%d p90=%d p99=%d p99.9=%d max=%d moyenne=%.1f",
+				count, min, p50, p90, p99, p999, max, mean);
+	}
+}
@@ -1,5 +1,11 @@
 package tp4;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+import javax.swing.SwingUtilities;
+
 /**
  * TRAVAIL PRATIQUE 4 - JEU DE LA VIE : 
  * Ce programme permet de suivre l'évolution des cellules à l'intérieur d'une grille selon les règles du jeu de la vie de Conway.
@@ -11,57 +17,93 @@ package tp4;
  * informé qu'un état de stabilité a été atteint. L'évolution finit seulement lorsque l'utilisateur 
  * ferme la fenetre.
  * 
+ * Les générations sont calculées dans un fil d'exécution séparé de l'interface graphique ({@code SimulationThread}).
+ * Le premier argument, optionnel, est le nombre de générations calculées par seconde (20 par défaut, 0 pour
+ * calculer aussi vite que possible). L'affichage est limité à {@code MainWindow.FRAMES_PER_SECOND} images par seconde.
+ * 
+ * Les mesures de la simulation ({@code GenerationMetrics}) sont publiées dans JMX et peuvent y être activées. Elles
+ * sont activées dès le départ avec l'option {@code -Dtp4.metrics=true} de la machine virtuelle; une ligne de résumé
+ * est alors écrite dans le journal toutes les {@code METRICS_INTERVAL_MILLIS} millisecondes.
+ * 
+ * La règle d'évolution est celle de Conway par défaut. Une autre règle peut être choisie avec l'option
+ * {@code -Dtp4.rule=...} de la machine virtuelle, par exemple {@code -Dtp4.rule=B36/S23} (voir {@code Rule}).
+ * Les bords de la grille sont morts par défaut; l'option {@code -Dtp4.boundary=TORUS} (ou {@code KLEIN}, {@code MIRROR})
+ * les relie entre eux (voir {@code BoundaryMode}).
+ * La règle de Conway est calculée avec des instructions vectorielles (SIMD) si la machine virtuelle est lancée avec
+ * l'option {@code --add-modules jdk.incubator.vector} (voir {@code TileKernel}).
+ * L'option {@code -Dtp4.record=FICHIER} enregistre toutes les générations calculées dans un journal compressé, avec une
+ * image clé toutes les {@code -Dtp4.keyframeInterval=N} générations (1000 par défaut, voir {@code GenerationRecorder}).
+ * Le journal est fermé à la fermeture de la fenêtre.
+ * L'option {@code -Dtp4.checkpoint=FICHIER} sauvegarde la grille toutes les {@code -Dtp4.checkpointInterval=N}
+ * générations (1000 par défaut) et à la fermeture de la fenêtre (voir {@code BoardCheckpoint}).
+ * 
  * @version 2.0
  * @author MeriemeBouisri
  * 
  */
 public class Main {
 	
+	/**
+	 * Vitesse par défaut de la simulation. Correspond à l'ancienne pause de 50 ms entre deux générations.
+	 */
+	public static final double DEFAULT_GENERATIONS_PER_SECOND = 20;
+	
+	/**
+	 * Intervalle entre deux relevés des mesures de la simulation.
+	 */
+	public static final long METRICS_INTERVAL_MILLIS = 10_000;
+	
+	/**
+	 * Nombre de générations entre deux images clés du journal des générations, comme avec {@code HeadlessRunner}.
+	 */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 1000;
+	
+	/**
+	 * Nombre de générations entre deux sauvegardes automatiques, comme avec {@code HeadlessRunner}.
+	 */
+	public static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+	
 	public static Board board;
 	public static MainWindow window;
 	public static GenerationTracker generation;
-
-	public static int genCounter;
-	public static long liveCellCounter;
+	public static SimulationThread simulation;
 	
-	public static void main(String[] args) throws InterruptedException {
+	public static void main(String[] args) throws IOException {
+		double generationsPerSecond = args.length > 0 ? Double.parseDouble(args[0]) : DEFAULT_GENERATIONS_PER_SECOND;
 		
 		// Construire le board avec des reglages par défaut
 		board = new Board();
+		board.setRule(Rule.parse(System.getProperty("tp4.rule", Rule.CONWAY.toString())));
+		board.setBoundaryMode(BoundaryMode.valueOf(System.getProperty("tp4.boundary", BoundaryMode.DEAD.name()).toUpperCase(Locale.ROOT)));
 		
 		// Initialiser les classes dépendantes du board
 		generation = new GenerationTracker(board);
-		window = new MainWindow(board);
+		simulation = new SimulationThread(board, generation, generationsPerSecond, MainWindow.FRAMES_PER_SECOND);
+		window = new MainWindow(board, simulation);
 		
-		window.initialize();
+		String recordFile = System.getProperty("tp4.record");
+		if (recordFile != null) {
+			simulation.setRecorder(new GenerationRecorder(Paths.get(recordFile), board, generation.getGenerationCounter(),
+					Integer.getInteger("tp4.keyframeInterval", DEFAULT_KEYFRAME_INTERVAL)));
+		}
 		
-		// Commencer l'evolution de la grille
-		while (window.isRunning()) {
-			
-			// récupérer les info de la génération actuelle
-			genCounter = generation.getGenerationCounter();
-			liveCellCounter = generation.countLivingCells();
-			
-			// Permet de ralentir la vitesse d'affichage pour mieux voir l'evolution
-			Thread.sleep(50);
-			
-			// Afficher l'état de la grille et nombre de cellules vivantes à l'intervalle donnée
-			window.displayGrid(genCounter, liveCellCounter);
-			
-			
-			if (window.showActiveEvolution()) {
-				
-				// Nouvelle génération
-				board.nextGeneration();
-				board.updateBoard();
-				
-				// Enregistrement les infos de la génération actuelle
-				generation.trackInfo();
-				
-				// Analyse de la stabilité de la grille
-				if (generation.hasReachedStability()) generation.showStabilityGeneration();
-	
-			}
+		String checkpointFile = System.getProperty("tp4.checkpoint");
+		if (checkpointFile != null) {
+			simulation.setCheckpoint(Paths.get(checkpointFile), Integer.getInteger("tp4.checkpointInterval", DEFAULT_CHECKPOINT_INTERVAL));
 		}
+		
+		// La fermeture de la fenêtre termine le programme : le fil de simulation est d'abord arrêté, ce qui ferme le journal
+		// et écrit la dernière sauvegarde
+		Runtime.getRuntime().addShutdownHook(new Thread(simulation::stop, "arrêt de la simulation"));
+		
+		// Les mesures sont toujours publiées, mais ne coûtent presque rien tant qu'elles sont désactivées
+		GenerationMetrics metrics = simulation.getMetrics();
+		metrics.setEnabled(Boolean.getBoolean("tp4.metrics"));
+		metrics.registerMBean();
+		metrics.startReporting(METRICS_INTERVAL_MILLIS);
+		
+		// La fenêtre est construite par le fil de l'interface graphique, puis l'evolution de la grille commence
+		SwingUtilities.invokeLater(window::initialize);
+		simulation.start();
 	}
 }
@@ -1,7 +1,6 @@
 package tp4;
 
 import java.awt.BorderLayout;
-import java.awt.Color;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
@@ -10,12 +9,19 @@ import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 import javax.swing.WindowConstants;
 
 public class MainWindow implements ActionListener {
 	
+	/**
+	 * Nombre maximal d'images affichées par seconde. L'affichage lit la dernière copie de la grille publiée par
+	 * le fil de simulation à cette fréquence, peu importe le nombre de générations calculées entre deux images.
+	 */
+	public static final int FRAMES_PER_SECOND = 60;
+	
 	private JFrame boardFrame;
-	private JPanel boardPane, rowPane;
+	private GridRenderer gridRenderer;
 	private JPanel sidePane, buttonPane, infoPane;
 	
 	private JButton stopButton;
@@ -23,17 +29,22 @@ public class MainWindow implements ActionListener {
 	private JLabel liveCellCountLabel;
 	private JLabel genCountLabel;
 	
-	private int displayRate;
-	private Cell[][] grid;
-	
-	private JPanel[][] gridPanel;
+	private Board board;
+	private SimulationThread simulation;
 	
-	private boolean activeEvolution = true;
+	// Minuterie de l'affichage et génération de la dernière image affichée
+	private Timer renderTimer;
+	private long displayedGeneration = -1;
 	
-	public MainWindow(Board board) {
-		displayRate = board.getDisplayRate();
-		grid = board.getCellGrid();
-		
+	/**
+	 * Constructeur. La fenêtre affiche les copies de la grille publiées par le fil de simulation donné, et
+	 * le boutton d'interruption suspend ce fil.
+	 * @param board grille affichée
+	 * @param simulation fil qui calcule les générations du board
+	 */
+	public MainWindow(Board board, SimulationThread simulation) {
+		this.board = board;
+		this.simulation = simulation;
 	}
 	
 	public void initialize() {
@@ -68,100 +79,53 @@ public class MainWindow implements ActionListener {
 		sidePane.add(infoPane);
 		
 		
-		// Creer la zone qui contiendra le board
-		boardPane = new JPanel();
-		boardPane.setLayout(new BoxLayout(boardPane, BoxLayout.Y_AXIS));
+		// Creer la zone qui affichera le board. La roulette de la souris permet de zoomer et glisser la souris déplace la vue
+		gridRenderer = new GridRenderer(board.getSideLength(), 1000, 1000);
+		gridRenderer.setMetrics(simulation.getMetrics());
 	
 		// Ajouter les composantes au frame
-		boardFrame.add(boardPane, BorderLayout.LINE_START);
+		boardFrame.add(gridRenderer, BorderLayout.LINE_START);
 		boardFrame.add(sidePane);
 		
-		// Construire la grille graphique
-		gridPanel = new JPanel[grid.length][grid.length];
-		
-		for (int row = 0; row < grid.length; row++) {
-			rowPane = new JPanel();
-			rowPane.setLayout(new BoxLayout(rowPane, BoxLayout.X_AXIS));
-			boardPane.add(rowPane);
-			
-			for (int col = 0; col < grid.length; col++) {
-				gridPanel[row][col] = new JPanel();
-				rowPane.add(gridPanel[row][col]);
-			}
-		}
-		
 		boardFrame.setVisible(true);
-	}
-	
-	
-	/**
-	 * Cette methode affiche l'etat de la grille et le nombre de 
-	 * cellules vivantes apres un certain nombre de generations déterminé 
-	 * par {@code displayRate}.
-	 * @param generationCount Nombre de generations
-	 * @param liveCellCount Nombre de cellules vivantes
-	 */
-	public void displayGrid(int generationCount, long liveCellCount) {
-		if (generationCount % displayRate == 0) {
-			for (int row = 1; row < grid.length - 1; row++) {
-				for (int col = 1; col < grid.length - 1; col++) {
-					gridPanel[row][col].setBackground(getCellColor(row, col));
-					gridPanel[row][col].setToolTipText(getCellInfo(row, col));
-				}
-			}
-			
-			// Actualiser les valeurs de la generation actuelle
-			genCountLabel.setText("GÉNÉRATION : " + generationCount);
-			liveCellCountLabel.setText("CELLULES VIVANTES : " + liveCellCount);
-			
-		}
-	}
-	
-	/**
-	 * Cette methode determine la couleur de la cellule selon son etat
-	 * @param row ligne de la cellule
-	 * @param col colonne de la cellule
-	 * @return Couleur de la cellule
-	 */
-	private Color getCellColor(int row, int col) {
-		return grid[row][col].isAlive() ? Color.black : Color.white;
-	}
-	
-	/**
-	 * Cette methode construit une chaine de caractères qui donne des informations
-	 * sur une cellule individuelle.
-	 * @param row ligne de la cellule
-	 * @param col colonne de la cellule
-	 * @return État et coordonnées de la cellule
-	 */
-	private String getCellInfo(int row, int col) {
-		String cellState = grid[row][col].isAlive() ? "ALIVE" : "DEAD";
-		String cellCoordinates = "(" + col + ", " + row + ")";
 		
-		return cellState + " " + cellCoordinates;
+		// Afficher la dernière copie de la grille à intervalle régulier
+		renderTimer = new Timer(1000 / FRAMES_PER_SECOND, this);
+		renderTimer.start();
 	}
 	
-	/**
-	 * @return {@code true} tant que l'utilisateur ne clique pas sur le boutton d'interruption
-	 */
-	public boolean showActiveEvolution() {
-		return activeEvolution;
-	}
 	
 	/**
-	 * @return {@code true} tant que la fenetre est active.
+	 * Cette methode affiche l'etat de la grille et le nombre de cellules vivantes de la dernière copie publiée
+	 * par le fil de simulation. Les copies publiées depuis l'image précédente sont ignorées, et rien n'est redessiné
+	 * si aucune nouvelle copie n'a été publiée. Seuls les pixels des cellules qui ont changé d'état sont redessinés.
 	 */
-	public boolean isRunning() {
-		return boardFrame.isActive();
+	private void displayGrid() {
+		FrameSnapshot snapshot = simulation.getLatestSnapshot();
+		if (snapshot.getGeneration() == displayedGeneration) return;
+		
+		// L'historique des cellules doit être réservé avant d'être affiché; si une copie plus récente vient d'être
+		// publiée, elle sera affichée à la prochaine image
+		if (snapshot.getCellHistory() != null && !snapshot.getCellHistory().acquire()) return;
+		
+		long start = simulation.getMetrics().startTimer();
+		displayedGeneration = snapshot.getGeneration();
+		gridRenderer.updateImage(snapshot);
+		simulation.getMetrics().recordRenderTime(start);
+		
+		// Actualiser les valeurs de la generation actuelle
+		genCountLabel.setText("GÉNÉRATION : " + snapshot.getGeneration());
+		liveCellCountLabel.setText("CELLULES VIVANTES : " + snapshot.getLiveCellCount());
 	}
 	
 
 	@Override
 	public void actionPerformed(ActionEvent e) {
-		if (e.getSource() == stopButton) {
-			activeEvolution = !activeEvolution;
-			stopButton.setText(activeEvolution ? "INTERROMPRE" : "REPRENDRE");
-			
+		if (e.getSource() == renderTimer) {
+			displayGrid();
+		} else if (e.getSource() == stopButton) {
+			simulation.setPaused(!simulation.isPaused());
+			stopButton.setText(simulation.isPaused() ? "REPRENDRE" : "INTERROMPRE");
 		}	
 	}
 }
\ No newline at end of file
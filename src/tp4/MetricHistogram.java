@@ -0,0 +1,129 @@
+package tp4;
+
+import java.util.Arrays;
+
+/**
+ * Cette classe compte des valeurs positives (durées, débits, nombres de cellules) par intervalles, pour en calculer
+ * les percentiles sans garder chaque valeur. Les intervalles sont des puissances de 2 divisées en 8 parts égales :
+ * une valeur est donc connue à 12,5 % près, peu importe sa grandeur, et l'histogramme occupe toujours la même mémoire.
+ *
+ * Un seul fil d'exécution doit écrire dans un histogramme ({@code record()}), mais n'importe quel fil peut le lire
+ * ({@code snapshot()}) pendant l'écriture : la lecture peut alors manquer les dernières valeurs, sans autre erreur.
+ * Une remise à zéro demandée par un autre fil ({@code reset()}) est faite par le fil qui écrit, à la valeur suivante.
+ */
+public class MetricHistogram {
+
+	// Valeurs de 0 à 15 comptées exactement, puis 8 intervalles par puissance de 2 jusqu'à 2^63
+	private static final int EXACT_VALUES = 16;
+	private static final int SUB_BUCKETS = 8;
+	private static final int BUCKET_COUNT = EXACT_VALUES + (63 - 4) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long sum;
+	private long min = Long.MAX_VALUE;
+	private long max;
+
+	// Écrit en dernier par record(), ce qui publie les autres champs aux fils qui lisent
+	private volatile long count;
+	private volatile boolean resetRequested;
+
+	/**
+	 * Ajouter une valeur à l'histogramme. Une valeur négative est comptée comme 0.
+	 * @param value valeur à compter
+	 */
+	public void record(long value) {
+		if (resetRequested) clear();
+
+		value = Math.max(value, 0);
+		counts[bucketOf(value)]++;
+		sum += value;
+		if (value < min) min = value;
+		if (value > max) max = value;
+		count = count + 1;
+	}
+
+	/**
+	 * Demander la remise à zéro de l'histogramme. Elle est faite à la prochaine valeur ajoutée, par le fil qui écrit.
+	 */
+	public void reset() {
+		resetRequested = true;
+	}
+
+	/**
+	 * Remettre l'histogramme à zéro. Appelée seulement par le fil qui écrit.
+	 */
+	private void clear() {
+		Arrays.fill(counts, 0);
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+		count = 0;
+		resetRequested = false;
+	}
+
+	/**
+	 * @param value valeur positive
+	 * @return Indice de l'intervalle qui contient la valeur
+	 */
+	private static int bucketOf(long value) {
+		if (value < EXACT_VALUES) return (int) value;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+		return EXACT_VALUES + (exponent - 4) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @param bucket indice d'un intervalle
+	 * @return Plus grande valeur de l'intervalle
+	 */
+	private static long upperBoundOf(int bucket) {
+		if (bucket < EXACT_VALUES) return bucket;
+
+		int exponent = (bucket - EXACT_VALUES) / SUB_BUCKETS + 4;
+		long subBucket = (bucket - EXACT_VALUES) % SUB_BUCKETS;
+		long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - 3);
+		return lowerBound + (1L << (exponent - 3)) - 1;
+	}
+
+	/**
+	 * @return Nombre de valeurs comptées
+	 */
+	public long getCount() {
+		return resetRequested ? 0 : count;
+	}
+
+	/**
+	 * Calculer les statistiques actuelles de l'histogramme. Les percentiles sont la plus grande valeur de l'intervalle
+	 * qui les contient, limitée à la plus grande valeur comptée.
+	 * @return Statistiques de l'histogramme, toutes à 0 s'il ne contient aucune valeur
+	 */
+	public HistogramSnapshot snapshot() {
+		long total = getCount();
+		if (total == 0) return new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0, 0);
+
+		long[] copy = counts.clone();
+		long maxValue = max;
+		return new HistogramSnapshot(total, min, maxValue, (double) sum / total, percentile(copy, total, 0.50, maxValue),
+				percentile(copy, total, 0.90, maxValue), percentile(copy, total, 0.99, maxValue),
+				percentile(copy, total, 0.999, maxValue));
+	}
+
+	/**
+	 * @param counts copie des compteurs des intervalles
+	 * @param total nombre de valeurs comptées
+	 * @param fraction fraction des valeurs inférieures ou égales au percentile (0.99 pour le 99e percentile)
+	 * @param maxValue plus grande valeur comptée
+	 * @return Valeur du percentile
+	 */
+	private static long percentile(long[] counts, long total, double fraction, long maxValue) {
+		long rank = Math.max(1, (long) Math.ceil(fraction * total));
+		long seen = 0;
+
+		for (int bucket = 0; bucket < counts.length; bucket++) {
+			seen += counts[bucket];
+			if (seen >= rank) return Math.min(upperBoundOf(bucket), maxValue);
+		}
+		return maxValue;
+	}
+}
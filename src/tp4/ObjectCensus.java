@@ -0,0 +1,258 @@
+package tp4;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Recensement des objets d'une grille stabilisée : nombre d'objets de chaque forme, par code de forme
+ * (voir {@code ObjectType.getCode()}). Un recensement est pris avec {@code take()}, puis peut être additionné
+ * à d'autres ({@code addAll()}), écrit dans un fichier texte et relu ({@code save()} et {@code load()}) : les codes
+ * ne dépendant que de la forme des objets, les recensements de plusieurs exécutions s'additionnent directement.
+ *
+ * Les objets sont les groupes de cellules voisines (8 voisines) parmi toutes les cellules vivantes d'un cycle complet
+ * de la grille : les deux moitiés d'une balise, séparées dans une de ses phases, forment ainsi un seul objet. Chaque
+ * objet est ensuite classé seul par un {@code ShapeClassifier}. Deux objets qui se touchent, ou un objet qui dépend
+ * des bords de la grille, forment un objet inconnu.
+ *
+ * Un recensement n'est pas sûr entre plusieurs fils d'exécution : chaque fil prend ses recensements, qui sont
+ * additionnés ensuite par un seul fil.
+ */
+public class ObjectCensus {
+
+	// Nombre d'objets et nom usuel de chaque forme, par code
+	private final Map<String, Long> counts = new TreeMap<>();
+	private final Map<String, String> names = new HashMap<>();
+
+	/**
+	 * Recenser les objets d'une grille stabilisée. La grille n'est pas modifiée : le cycle est simulé à part.
+	 * Avec {@code EngineType.SPARSE}, seules les cellules de la fenêtre de la grille sont recensées.
+	 * @param board grille stabilisée
+	 * @param period période de la grille (voir {@code GenerationTracker.getPeriod()}), ou 1 si elle est inconnue
+	 * @param classifier classeur des objets, pour la règle de la grille
+	 * @return Recensement des objets de la grille
+	 * @throws IllegalArgumentException si la règle du classeur n'est pas celle de la grille
+	 */
+	public static ObjectCensus take(Board board, int period, ShapeClassifier classifier) {
+		Rule rule = board.getRule();
+		if (!rule.equals(classifier.getRule()))
+			throw new IllegalArgumentException("Le classeur suit la règle " + classifier.getRule() + " au lieu de " + rule);
+
+		int size = board.getEngineType() == EngineType.SPARSE ? 0 : board.getActiveSideLength();
+		BoundaryMode boundaryMode = board.getBoundaryMode();
+		Set<Long> current = liveCells(board);
+
+		// Cellules vivantes pendant un cycle complet
+		Set<Long> cycle = new HashSet<>(current);
+		Set<Long> phase = current;
+		int[][] offsets = ShapeClassifier.neighborOffsets(rule);
+		for (int generation = 1; generation < period; generation++) {
+			phase = ShapeClassifier.step(phase, rule, offsets, boundaryMode, size);
+			cycle.addAll(phase);
+		}
+
+		ObjectCensus census = new ObjectCensus();
+		Set<Long> visited = new HashSet<>();
+		ArrayDeque<Long> pending = new ArrayDeque<>();
+		List<Long> objectCells = new ArrayList<>();
+
+		for (long start : cycle) {
+			if (!visited.add(start)) continue;
+
+			// Les positions sont suivies sans les replier sur la grille : un objet qui traverse un bord reste entier
+			pending.add(start);
+			objectCells.clear();
+			while (!pending.isEmpty()) {
+				long position = pending.poll();
+				int row = CellChangeLog.unpackRow(position), col = CellChangeLog.unpackCol(position);
+				if (current.contains(locate(row, col, boundaryMode, size))) objectCells.add(position);
+
+				for (int dr = -1; dr <= 1; dr++) {
+					for (int dc = -1; dc <= 1; dc++) {
+						long neighbor = locate(row + dr, col + dc, boundaryMode, size);
+						if (cycle.contains(neighbor) && visited.add(neighbor)) pending.add(CellChangeLog.pack(row + dr, col + dc));
+					}
+				}
+			}
+
+			// Un groupe sans cellule vivante dans la phase actuelle n'est pas un objet de cette phase
+			if (objectCells.isEmpty()) continue;
+
+			long[] cells = new long[objectCells.size()];
+			for (int i = 0; i < cells.length; i++) cells[i] = objectCells.get(i);
+			census.add(classifier.classify(cells));
+		}
+		return census;
+	}
+
+	/**
+	 * @return Cellule qui apparaît à la position donnée (voir {@code ShapeClassifier.step()}), ou -1 si elle est morte
+	 */
+	private static long locate(int row, int col, BoundaryMode boundaryMode, int size) {
+		return size == 0 ? CellChangeLog.pack(row, col) : boundaryMode.map(row, col, size);
+	}
+
+	/**
+	 * @return Cellules vivantes de la génération actuelle, sans la bordure, lues mot par mot
+	 */
+	private static Set<Long> liveCells(Board board) {
+		int size = board.getActiveSideLength();
+		int wordsPerRow = (size + 63) >>> 6;
+		Set<Long> cells = new HashSet<>();
+
+		for (int row = 0; row < size; row++) {
+			for (int w = 0; w < wordsPerRow; w++) {
+				for (long word = board.getRowWord(row, w); word != 0; word &= word - 1)
+					cells.add(CellChangeLog.pack(row, (w << 6) + Long.numberOfTrailingZeros(word)));
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * Ajouter un objet au recensement.
+	 * @param type type de l'objet
+	 */
+	public void add(ObjectType type) {
+		counts.merge(type.getCode(), 1L, Long::sum);
+		names.put(type.getCode(), type.getName());
+	}
+
+	/**
+	 * Additionner un autre recensement à celui-ci.
+	 * @param other recensement à ajouter
+	 */
+	public void addAll(ObjectCensus other) {
+		for (Map.Entry<String, Long> entry : other.counts.entrySet()) {
+			counts.merge(entry.getKey(), entry.getValue(), Long::sum);
+			names.put(entry.getKey(), other.names.get(entry.getKey()));
+		}
+	}
+
+	/**
+	 * @param code code d'une forme
+	 * @return Nombre d'objets de cette forme
+	 */
+	public long getCount(String code) {
+		return counts.getOrDefault(code, 0L);
+	}
+
+	/**
+	 * @param code code d'une forme
+	 * @return Nom usuel de la forme, ou son code
+	 */
+	public String getName(String code) {
+		return names.getOrDefault(code, code);
+	}
+
+	/**
+	 * @return Codes des formes recensées, en ordre alphabétique
+	 */
+	public Set<String> getCodes() {
+		return counts.keySet();
+	}
+
+	/**
+	 * @return Nombre total d'objets recensés
+	 */
+	public long getObjectCount() {
+		long total = 0;
+		for (long count : counts.values()) total += count;
+		return total;
+	}
+
+	/**
+	 * @param limit nombre maximal de formes
+	 * @return Codes des formes les plus fréquentes, de la plus fréquente à la moins fréquente
+	 */
+	public List<String> getMostCommon(int limit) {
+		List<String> codes = new ArrayList<>(counts.keySet());
+		codes.sort((a, b) -> Long.compare(counts.get(b), counts.get(a)));
+		return codes.subList(0, Math.min(limit, codes.size()));
+	}
+
+	/**
+	 * @param limit nombre maximal de formes
+	 * @return Résumé des formes les plus fréquentes, par exemple {@code 12 bloc, 5 clignotant, 1 xp3_...}
+	 */
+	public String summary(int limit) {
+		StringBuilder text = new StringBuilder();
+
+		for (String code : getMostCommon(limit)) {
+			if (text.length() > 0) text.append(", ");
+			text.append(counts.get(code)).append(' ').append(getName(code));
+		}
+		if (counts.size() > limit) text.append(", ...");
+		return text.length() > 0 ? text.toString() : "aucun objet";
+	}
+
+	/**
+	 * Écrire le recensement dans un fichier texte, une forme par ligne : code, nombre d'objets et nom usuel,
+	 * séparés par des virgules.
+	 * @param file fichier à écrire, remplacé s'il existe déjà
+	 * @throws IOException si le fichier ne peut pas être écrit
+	 */
+	public void save(Path file) throws IOException {
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+			writer.println("code,nombre,nom");
+			for (String code : getMostCommon(counts.size())) writer.println(code + "," + counts.get(code) + "," + getName(code));
+		}
+	}
+
+	/**
+	 * Additionner ce recensement à celui d'un fichier écrit par {@code save()}, qui est créé s'il n'existe pas.
+	 * Plusieurs exécutions peuvent ainsi cumuler leurs recensements dans le même fichier.
+	 * @param file fichier du recensement cumulé
+	 * @throws IOException si le fichier ne peut pas être lu ou écrit
+	 */
+	public void mergeInto(Path file) throws IOException {
+		ObjectCensus total = Files.exists(file) ? load(file) : new ObjectCensus();
+		total.addAll(this);
+		total.save(file);
+	}
+
+	/**
+	 * Lire un recensement écrit par {@code save()}.
+	 * @param file fichier à lire
+	 * @return Recensement lu
+	 * @throws IOException si le fichier ne peut pas être lu ou n'est pas un recensement
+	 */
+	public static ObjectCensus load(Path file) throws IOException {
+		ObjectCensus census = new ObjectCensus();
+
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line = reader.readLine();
+			if (!"code,nombre,nom".equals(line)) throw new IOException("Ce fichier n'est pas un recensement : " + file);
+
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) continue;
+
+				String[] fields = line.split(",", 3);
+				try {
+					if (fields.length != 3) throw new NumberFormatException();
+					census.counts.merge(fields[0], Long.parseLong(fields[1]), Long::sum);
+					census.names.put(fields[0], fields[2]);
+				} catch (NumberFormatException e) {
+					throw new IOException("Ligne de recensement invalide : " + line);
+				}
+			}
+		}
+		return census;
+	}
+
+	@Override
+	public String toString() {
+		return getObjectCount() + " objet(s) : " + summary(counts.size());
+	}
+}
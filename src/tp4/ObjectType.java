@@ -0,0 +1,112 @@
+package tp4;
+
+/**
+ * Description immuable d'une forme reconnue par {@code ShapeClassifier} : nature de l'objet, période, déplacement
+ * et code. Le code ne dépend que de la forme de l'objet, peu importe sa position, son orientation ou sa phase :
+ * deux recensements ({@code ObjectCensus}) peuvent donc être additionnés code par code, même s'ils viennent
+ * d'exécutions différentes.
+ *
+ * Le code commence par la nature de l'objet, dans la notation habituelle des recensements du jeu de la vie :
+ * {@code xs} suivi du nombre de cellules pour un objet stable, {@code xp} suivi de la période pour un oscillateur,
+ * {@code xq} suivi de la période pour un vaisseau et {@code xx} suivi du nombre de cellules pour un objet qui n'a pas
+ * pu être classé. Il se termine par l'empreinte de 64 bits de la forme canonique, en hexadécimal.
+ */
+public final class ObjectType {
+
+	/**
+	 * Nature d'un objet.
+	 */
+	public enum Kind {
+		/** Objet qui ne change pas d'une génération à l'autre (période 1). */
+		STILL_LIFE,
+		/** Objet qui revient à sa forme initiale, au même endroit, après sa période. */
+		OSCILLATOR,
+		/** Objet qui revient à sa forme initiale après sa période, mais déplacé. */
+		SPACESHIP,
+		/** Objet qui meurt, grandit trop ou ne se répète pas assez vite lorsqu'il est isolé. */
+		UNKNOWN
+	}
+
+	private final Kind kind;
+	private final String code;
+	private final String name;
+	private final int cellCount;
+	private final int period;
+	private final int majorShift, minorShift;
+
+	/**
+	 * Constructeur.
+	 * @param kind nature de l'objet
+	 * @param code code de la forme
+	 * @param name nom usuel de la forme, ou {@code null}
+	 * @param cellCount nombre de cellules vivantes de la phase qui en contient le moins
+	 * @param period période, ou -1 pour un objet inconnu
+	 * @param majorShift plus grand déplacement (vertical ou horizontal, en valeur absolue) après une période
+	 * @param minorShift plus petit déplacement après une période
+	 */
+	ObjectType(Kind kind, String code, String name, int cellCount, int period, int majorShift, int minorShift) {
+		this.kind = kind;
+		this.code = code;
+		this.name = name;
+		this.cellCount = cellCount;
+		this.period = period;
+		this.majorShift = majorShift;
+		this.minorShift = minorShift;
+	}
+
+	/**
+	 * @return Nature de l'objet
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return Code de la forme, identique d'une exécution à l'autre
+	 */
+	public String getCode() {
+		return code;
+	}
+
+	/**
+	 * @return Nom usuel de la forme (par exemple « bloc » ou « planeur »), ou son code si elle n'a pas de nom connu
+	 */
+	public String getName() {
+		return name != null ? name : code;
+	}
+
+	/**
+	 * @return Nombre de cellules vivantes de la phase qui en contient le moins
+	 */
+	public int getCellCount() {
+		return cellCount;
+	}
+
+	/**
+	 * @return Période de l'objet, ou -1 si l'objet est inconnu
+	 */
+	public int getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Le déplacement ne dépend pas de l'orientation de l'objet : un planeur se déplace de (1, 1) par période,
+	 * un vaisseau léger de (2, 0).
+	 * @return Plus grand des déplacements vertical et horizontal de l'objet après une période (0 sauf pour un vaisseau)
+	 */
+	public int getMajorShift() {
+		return majorShift;
+	}
+
+	/**
+	 * @return Plus petit des déplacements vertical et horizontal de l'objet après une période
+	 */
+	public int getMinorShift() {
+		return minorShift;
+	}
+
+	@Override
+	public String toString() {
+		return name != null ? name + " (" + code + ")" : code;
+	}
+}
@@ -0,0 +1,451 @@
+package tp4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Cette classe est le moteur compact de {@code BitGrid}, avec les mêmes mots de 64 bits et les mêmes additionneurs
+ * binaires, mais dont les deux générations sont stockées hors du tas Java (voir {@code OffHeapWords}). Le tas ne
+ * contient que le suivi des tuiles : une grille de 100 000 x 100 000 cellules (10 milliards de cellules) occupe
+ * environ 2,5 Go hors du tas pour ses deux générations, sans aucune pause supplémentaire du ramasse-miettes.
+ *
+ * Par défaut, les mots sont réservés en mémoire directe, limitée par l'option {@code -XX:MaxDirectMemorySize} de la
+ * machine virtuelle. Avec la propriété système {@code tp4.offheap.dir}, ils sont plutôt stockés dans un fichier de
+ * travail projeté en mémoire, créé dans ce dossier : le système peut alors écrire sur le disque les pages qui ne
+ * tiennent pas en mémoire. La mémoire (et le fichier) est libérée dès l'appel à {@code close()}, par exemple par
+ * {@code Board.close()}; la grille ne peut plus être utilisée ensuite.
+ */
+public class OffHeapGrid implements GridEngine {
+
+	private final int sideLength;
+	private final int wordsPerRow;
+	private final long lastWordMask;
+	private final int lastColumnBit;
+
+	/**
+	 * Les deux générations sont stockées l'une après l'autre, avec chacune sa bordure : {@code sideLength + 2} lignes
+	 * à partir de la ligne {@code currentBase} pour la génération actuelle, et autant à partir de {@code nextBase}.
+	 */
+	private final OffHeapWords words;
+	private long currentBase, nextBase;
+
+	private ParallelStepper stepper;
+
+	/**
+	 * Nombre de lignes dans une tuile. Une tuile fait la largeur d'un mot (64 colonnes) sur {@code TILE_ROWS} lignes.
+	 */
+	private static final int TILE_ROWS = 32;
+
+	private final TileTracker tileTracker;
+
+	private long population;
+	private long birthCount, deathCount;
+	private final long[] tileRowBirths, tileRowDeaths;
+
+	private long stateHash;
+	private final long[] tileRowHashes;
+
+	private boolean changeTracking;
+	private final CellChangeLog changeLog = new CellChangeLog();
+	private CellChangeLog[] tileRowLogs;
+
+	private Rule rule = Rule.CONWAY;
+	private boolean conway = true;
+	private int birthMask, survivalMask;
+
+	private BoundaryMode boundaryMode = BoundaryMode.DEAD;
+
+	/**
+	 * Constructeur avec paramètre. Toutes les cellules sont mortes au départ. La mémoire est réservée selon
+	 * la propriété système {@code tp4.offheap.dir}.
+	 * @param sideLength Nombre de cellules actives sur un côté de la grille
+	 * @throws IOException si le fichier de travail ne peut pas être créé
+	 */
+	public OffHeapGrid(int sideLength) throws IOException {
+		this(sideLength, workFile());
+	}
+
+	/**
+	 * Constructeur avec paramètres. Toutes les cellules sont mortes au départ.
+	 * @param sideLength Nombre de cellules actives sur un côté de la grille
+	 * @param file fichier de travail projeté en mémoire (remplacé s'il existe), ou {@code null} pour de la mémoire directe
+	 * @throws IOException si le fichier de travail ne peut pas être créé
+	 */
+	public OffHeapGrid(int sideLength, Path file) throws IOException {
+		this.sideLength = sideLength;
+		this.wordsPerRow = (sideLength + 63) >>> 6;
+
+		int lastBits = sideLength & 63;
+		this.lastWordMask = lastBits == 0 ? -1L : (1L << lastBits) - 1;
+		this.lastColumnBit = (sideLength - 1) & 63;
+
+		long rowCount = 2L * (sideLength + 2);
+		words = file != null ? OffHeapWords.map(file, rowCount, wordsPerRow) : OffHeapWords.allocate(rowCount, wordsPerRow);
+		currentBase = 0;
+		nextBase = sideLength + 2;
+
+		int tileRowCount = (sideLength + TILE_ROWS - 1) / TILE_ROWS;
+		tileTracker = new TileTracker(tileRowCount, wordsPerRow);
+		tileRowBirths = new long[tileRowCount];
+		tileRowDeaths = new long[tileRowCount];
+		tileRowHashes = new long[tileRowCount];
+	}
+
+	/**
+	 * @return Nouveau fichier de travail dans le dossier {@code tp4.offheap.dir}, ou {@code null} si la propriété est absente
+	 */
+	private static Path workFile() throws IOException {
+		String directory = System.getProperty("tp4.offheap.dir");
+
+		return directory != null ? Files.createTempFile(Path.of(directory), "grille-", ".mots") : null;
+	}
+
+	/**
+	 * @param row ligne de la cellule (la ligne -1 est la bordure du haut)
+	 * @return Ligne de {@code words} qui contient la ligne donnée de la génération actuelle
+	 */
+	private long currentRow(int row) {
+		return currentBase + row + 1;
+	}
+
+	@Override
+	public int getSideLength() {
+		return sideLength;
+	}
+
+	/**
+	 * @return {@code true} si les mots sont stockés dans un fichier de travail plutôt qu'en mémoire directe
+	 */
+	public boolean isMapped() {
+		return words.isMapped();
+	}
+
+	/**
+	 * @return Taille des deux générations hors du tas, en octets
+	 */
+	public long getByteCount() {
+		return words.getByteCount();
+	}
+
+	@Override
+	public boolean isAlive(int row, int col) {
+		return (words.get(currentRow(row), col >>> 6) & (1L << col)) != 0;
+	}
+
+	@Override
+	public void setAlive(int row, int col, boolean state) {
+		long word = words.get(currentRow(row), col >>> 6);
+		long updated = state ? word | (1L << col) : word & ~(1L << col);
+
+		words.set(currentRow(row), col >>> 6, updated);
+		population += Long.bitCount(updated) - Long.bitCount(word);
+		if (word != updated) stateHash ^= CellChangeLog.hashKey(row, col);
+
+		tileTracker.markDirty(row / TILE_ROWS, col >>> 6);
+	}
+
+	@Override
+	public long getWord(int row, int wordIndex) {
+		return words.get(currentRow(row), wordIndex);
+	}
+
+	@Override
+	public void setWord(int row, int wordIndex, long word) {
+		long current = words.get(currentRow(row), wordIndex);
+		long updated = wordIndex == wordsPerRow - 1 ? word & lastWordMask : word;
+
+		population += Long.bitCount(updated) - Long.bitCount(current);
+		for (long changes = updated ^ current; changes != 0; changes &= changes - 1)
+			stateHash ^= CellChangeLog.hashKey(row, (wordIndex << 6) + Long.numberOfTrailingZeros(changes));
+
+		words.set(currentRow(row), wordIndex, updated);
+		tileTracker.markDirty(row / TILE_ROWS, wordIndex);
+	}
+
+	@Override
+	public void nextGeneration() {
+		// Une grille stable ne lit aucun mot : la libération doit être vérifiée ici
+		if (!words.isOpen()) throw new IllegalStateException(OffHeapWords.RELEASED);
+		
+		int tileRowCount = tileRowHashes.length;
+		if (boundaryMode != BoundaryMode.DEAD) fillGhostRows();
+		tileTracker.beginGeneration();
+
+		if (stepper != null)
+			stepper.forEachBand(0, tileRowCount, 1, this::computeTileRows);
+		else
+			computeTileRows(0, tileRowCount);
+
+		tileTracker.endGeneration();
+
+		long temp = currentBase;
+		currentBase = nextBase;
+		nextBase = temp;
+
+		birthCount = 0;
+		deathCount = 0;
+		changeLog.clear();
+		for (int tileRow = 0; tileRow < tileRowCount; tileRow++) {
+			birthCount += tileRowBirths[tileRow];
+			deathCount += tileRowDeaths[tileRow];
+			stateHash ^= tileRowHashes[tileRow];
+
+			if (changeTracking) changeLog.addAll(tileRowLogs[tileRow]);
+		}
+		population += birthCount - deathCount;
+	}
+
+	/**
+	 * Cette méthode calcule la génération suivante des rangées de tuiles {@code fromTileRow} (inclusivement)
+	 * à {@code toTileRow} (exclusivement). Les rangées dont aucune tuile n'est active ne sont pas lues.
+	 */
+	private void computeTileRows(int fromTileRow, int toTileRow) {
+		// Lignes lues et ligne calculée, copiées dans le tas le temps du calcul
+		long[][] rows = new long[4][wordsPerRow];
+
+		for (int tileRow = fromTileRow; tileRow < toTileRow; tileRow++) {
+			tileRowBirths[tileRow] = 0;
+			tileRowDeaths[tileRow] = 0;
+			tileRowHashes[tileRow] = 0;
+			if (changeTracking) tileRowLogs[tileRow].clear();
+
+			if (hasActiveTile(tileRow))
+				computeRows(tileRow * TILE_ROWS, Math.min((tileRow + 1) * TILE_ROWS, sideLength), tileRow, rows);
+		}
+	}
+
+	/**
+	 * @return {@code true} si au moins une tuile de la rangée doit être calculée
+	 */
+	private boolean hasActiveTile(int tileRow) {
+		for (int w = 0; w < wordsPerRow; w++) {
+			if (tileTracker.isActive(tileRow, w)) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void setStepper(ParallelStepper stepper) {
+		this.stepper = stepper;
+	}
+
+	/**
+	 * Cette méthode calcule la génération suivante des lignes {@code fromRow} à {@code toRow} comme
+	 * {@code BitGrid.computeRows()}, mais sur des copies des lignes : chaque ligne est lue d'un seul bloc hors du tas,
+	 * une seule fois par rangée de tuiles, et la ligne calculée y est écrite d'un seul bloc. Les mots des tuiles
+	 * stables reçoivent leur valeur actuelle, qui est aussi celle de la génération précédente.
+	 * @param rows quatre tableaux d'une ligne : ligne du haut, ligne actuelle, ligne du bas et ligne calculée
+	 */
+	private void computeRows(int fromRow, int toRow, int tileRow, long[][] rows) {
+		long[] above = rows[0], center = rows[1], below = rows[2], result = rows[3];
+		int lastWord = wordsPerRow - 1;
+		long births = 0, deaths = 0, hash = 0;
+
+		CellChangeLog log = changeTracking ? tileRowLogs[tileRow] : null;
+
+		words.getRow(currentRow(fromRow - 1), above);
+		words.getRow(currentRow(fromRow), center);
+
+		for (int row = fromRow; row < toRow; row++) {
+			words.getRow(currentRow(row + 1), below);
+
+			for (int w = 0; w <= lastWord; w++) {
+				long mid = center[w];
+				if (!tileTracker.isActive(tileRow, w)) {
+					result[w] = mid;
+					continue;
+				}
+
+				boolean hasWest = w > 0, hasEast = w < lastWord;
+				long up = above[w];
+				long down = below[w];
+
+				long upWest = (up << 1) | (hasWest ? above[w - 1] >>> 63 : westGhost(above));
+				long midWest = (mid << 1) | (hasWest ? center[w - 1] >>> 63 : westGhost(center));
+				long downWest = (down << 1) | (hasWest ? below[w - 1] >>> 63 : westGhost(below));
+
+				long upEast = (up >>> 1) | (hasEast ? above[w + 1] << 63 : eastGhost(above) << lastColumnBit);
+				long midEast = (mid >>> 1) | (hasEast ? center[w + 1] << 63 : eastGhost(center) << lastColumnBit);
+				long downEast = (down >>> 1) | (hasEast ? below[w + 1] << 63 : eastGhost(below) << lastColumnBit);
+
+				long next = conway ? BitGrid.applyRule(upWest, up, upEast, midWest, mid, midEast, downWest, down, downEast)
+						: BitGrid.applyRule(birthMask, survivalMask, upWest, up, upEast, midWest, mid, midEast, downWest, down, downEast);
+				if (w == lastWord) next &= lastWordMask;
+
+				result[w] = next;
+
+				if (next != mid) {
+					tileTracker.markChanged(tileRow, w);
+					births += Long.bitCount(next & ~mid);
+					deaths += Long.bitCount(mid & ~next);
+
+					for (long changes = next ^ mid; changes != 0; changes &= changes - 1) {
+						int col = (w << 6) + Long.numberOfTrailingZeros(changes);
+
+						hash ^= CellChangeLog.hashKey(row, col);
+						if (log != null) log.add(row, col);
+					}
+				}
+			}
+			words.setRow(nextBase + row + 1, result);
+
+			// La ligne actuelle devient la ligne du haut de la ligne suivante
+			long[] temp = above;
+			above = center;
+			center = below;
+			below = temp;
+		}
+		tileRowBirths[tileRow] = births;
+		tileRowDeaths[tileRow] = deaths;
+		tileRowHashes[tileRow] = hash;
+	}
+
+	/**
+	 * @param row mots d'une ligne
+	 * @return État (0 ou 1) de la cellule à l'ouest de la première colonne de la ligne, selon {@code boundaryMode}
+	 */
+	private long westGhost(long[] row) {
+		switch (boundaryMode) {
+		case TORUS:
+		case KLEIN:
+			return (row[wordsPerRow - 1] >>> lastColumnBit) & 1;
+		case MIRROR:
+			return row[0] & 1;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * @param row mots d'une ligne
+	 * @return État (0 ou 1) de la cellule à l'est de la dernière colonne de la ligne, selon {@code boundaryMode}
+	 */
+	private long eastGhost(long[] row) {
+		switch (boundaryMode) {
+		case TORUS:
+		case KLEIN:
+			return row[0] & 1;
+		case MIRROR:
+			return (row[wordsPerRow - 1] >>> lastColumnBit) & 1;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * Cette méthode remplit les deux lignes de la bordure de la génération actuelle comme {@code BitGrid.fillGhostRows()}.
+	 */
+	private void fillGhostRows() {
+		long[] first = new long[wordsPerRow], last = new long[wordsPerRow];
+		words.getRow(currentRow(0), first);
+		words.getRow(currentRow(sideLength - 1), last);
+
+		switch (boundaryMode) {
+		case TORUS:
+			words.setRow(currentRow(-1), last);
+			words.setRow(currentRow(sideLength), first);
+			break;
+		case KLEIN:
+			words.setRow(currentRow(-1), BitGrid.reverseRow(last, sideLength));
+			words.setRow(currentRow(sideLength), BitGrid.reverseRow(first, sideLength));
+			break;
+		case MIRROR:
+			words.setRow(currentRow(-1), first);
+			words.setRow(currentRow(sideLength), last);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Seules les règles semblables au jeu de la vie sont supportées (voir {@code Rule.isLifeLike()}).
+	 */
+	@Override
+	public void setRule(Rule rule) {
+		if (!rule.isLifeLike())
+			throw new IllegalArgumentException("Le moteur OFFHEAP supporte seulement les règles B/S à deux états : " + rule);
+
+		this.rule = rule;
+		conway = rule.isConway();
+		birthMask = rule.getBirthMask();
+		survivalMask = rule.getSurvivalMask();
+
+		tileTracker.markAllDirty();
+	}
+
+	@Override
+	public Rule getRule() {
+		return rule;
+	}
+
+	@Override
+	public void setBoundaryMode(BoundaryMode boundaryMode) {
+		this.boundaryMode = boundaryMode;
+
+		// Avec des bords morts, les lignes de la bordure des deux générations doivent rester vides
+		if (boundaryMode == BoundaryMode.DEAD) {
+			long[] empty = new long[wordsPerRow];
+			for (long base : new long[] { currentBase, nextBase }) {
+				words.setRow(base, empty);
+				words.setRow(base + sideLength + 1, empty);
+			}
+		}
+		tileTracker.setEdgeDepth(boundaryMode.connectsOppositeEdges() ? 1 : 0);
+	}
+
+	@Override
+	public BoundaryMode getBoundaryMode() {
+		return boundaryMode;
+	}
+
+	@Override
+	public TileTracker getTileTracker() {
+		return tileTracker;
+	}
+
+	@Override
+	public long countLivingCells() {
+		return population;
+	}
+
+	@Override
+	public long getBirthCount() {
+		return birthCount;
+	}
+
+	@Override
+	public long getDeathCount() {
+		return deathCount;
+	}
+
+	@Override
+	public long getStateHash() {
+		return stateHash;
+	}
+
+	@Override
+	public void setChangeTracking(boolean enabled) {
+		changeTracking = enabled;
+
+		if (enabled && tileRowLogs == null) {
+			tileRowLogs = new CellChangeLog[tileRowHashes.length];
+			for (int i = 0; i < tileRowLogs.length; i++) tileRowLogs[i] = new CellChangeLog();
+		}
+	}
+
+	@Override
+	public CellChangeLog getChangeLog() {
+		return changeTracking ? changeLog : null;
+	}
+
+	/**
+	 * Libérer immédiatement la mémoire hors du tas et le fichier de travail. Toute utilisation de la grille lance
+	 * ensuite une {@code IllegalStateException}.
+	 */
+	@Override
+	public void close() {
+		words.close();
+	}
+}
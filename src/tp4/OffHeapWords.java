@@ -0,0 +1,253 @@
+package tp4;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Tableau de mots de 64 bits rangés en lignes de même longueur, stocké hors du tas Java : le ramasse-miettes ne le
+ * parcourt jamais et sa taille n'est pas limitée par celle du tas. Comme un tableau Java ne peut pas dépasser 2^31
+ * éléments, les lignes sont réparties dans des blocs d'au plus 1 Gio ({@code MAX_CHUNK_WORDS} mots), et une ligne
+ * ne chevauche jamais deux blocs : chaque ligne se lit donc dans un seul {@code LongBuffer}.
+ *
+ * Les blocs sont soit de la mémoire directe ({@code allocate()}), limitée par l'option {@code -XX:MaxDirectMemorySize}
+ * de la machine virtuelle, soit les pages d'un fichier de travail projeté en mémoire ({@code map()}), qui peuvent
+ * dépasser la mémoire physique. Dans les deux cas, {@code close()} libère la mémoire immédiatement, sans attendre
+ * le ramasse-miettes; le fichier de travail est alors supprimé.
+ */
+public final class OffHeapWords implements AutoCloseable {
+
+	/**
+	 * Nombre maximal de mots d'un bloc (1 Gio). Un bloc doit rester sous 2^31 octets.
+	 */
+	static final int MAX_CHUNK_WORDS = 1 << 27;
+
+	/**
+	 * Libère un {@code ByteBuffer} direct ou projeté ({@code sun.misc.Unsafe.invokeCleaner()}), ou {@code null} si
+	 * la machine virtuelle ne le permet pas : la mémoire est alors libérée par le ramasse-miettes.
+	 */
+	private static final MethodHandle CLEANER = findCleaner();
+
+	static final String RELEASED = "La mémoire hors du tas a déjà été libérée";
+
+	private final long rowCount;
+	private final int rowWords;
+	private final int rowsPerChunk;
+
+	// Blocs de mémoire et leur vue en mots de 64 bits
+	private ByteBuffer[] buffers;
+	private LongBuffer[] chunks;
+
+	// Fichier de travail, ou null pour de la mémoire directe
+	private final FileChannel channel;
+
+	private OffHeapWords(long rowCount, int rowWords, FileChannel channel) throws IOException {
+		if (rowCount < 1 || rowWords < 1 || rowWords > MAX_CHUNK_WORDS)
+			throw new IllegalArgumentException("Dimensions invalides : " + rowCount + " lignes de " + rowWords + " mots");
+
+		this.rowCount = rowCount;
+		this.rowWords = rowWords;
+		this.rowsPerChunk = (int) Math.min(MAX_CHUNK_WORDS / rowWords, rowCount);
+		this.channel = channel;
+
+		int chunkCount = (int) ((rowCount + rowsPerChunk - 1) / rowsPerChunk);
+		buffers = new ByteBuffer[chunkCount];
+		chunks = new LongBuffer[chunkCount];
+
+		try {
+			for (int chunk = 0; chunk < chunkCount; chunk++) {
+				long bytes = Math.min(rowsPerChunk, rowCount - (long) chunk * rowsPerChunk) * rowWords * Long.BYTES;
+
+				// La mémoire directe et les nouvelles pages d'un fichier sont remplies de zéros
+				buffers[chunk] = channel == null ? ByteBuffer.allocateDirect((int) bytes)
+						: channel.map(FileChannel.MapMode.READ_WRITE, (long) chunk * rowsPerChunk * rowWords * Long.BYTES, bytes);
+				chunks[chunk] = buffers[chunk].order(ByteOrder.nativeOrder()).asLongBuffer();
+			}
+		} catch (IOException | RuntimeException | OutOfMemoryError e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Réserver des mots en mémoire directe.
+	 * @param rowCount nombre de lignes
+	 * @param rowWords nombre de mots d'une ligne
+	 * @return Mots à 0
+	 * @throws OutOfMemoryError si la mémoire directe disponible est insuffisante
+	 */
+	public static OffHeapWords allocate(long rowCount, int rowWords) {
+		try {
+			return new OffHeapWords(rowCount, rowWords, null);
+		} catch (IOException e) {
+			// Aucun fichier n'est utilisé
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Réserver des mots dans un fichier de travail projeté en mémoire. Le fichier est remplacé s'il existe déjà,
+	 * et supprimé par {@code close()} : il ne sert pas de sauvegarde (voir {@code BoardCheckpoint}).
+	 * @param file fichier de travail
+	 * @param rowCount nombre de lignes
+	 * @param rowWords nombre de mots d'une ligne
+	 * @return Mots à 0
+	 * @throws IOException si le fichier ne peut pas être créé ou projeté
+	 */
+	public static OffHeapWords map(Path file, long rowCount, int rowWords) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+		try {
+			return new OffHeapWords(rowCount, rowWords, channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return Nombre de lignes
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return Nombre de mots d'une ligne
+	 */
+	public int getRowWords() {
+		return rowWords;
+	}
+
+	/**
+	 * @return Taille totale des mots, en octets
+	 */
+	public long getByteCount() {
+		return rowCount * rowWords * Long.BYTES;
+	}
+
+	/**
+	 * @return {@code true} si les mots sont stockés dans un fichier de travail
+	 */
+	public boolean isMapped() {
+		return channel != null;
+	}
+
+	/**
+	 * @return {@code true} si la mémoire n'a pas encore été libérée
+	 */
+	public boolean isOpen() {
+		return chunks != null;
+	}
+
+	/**
+	 * Les mots d'une ligne se trouvent à partir de la position {@code rowStart(row)} de ce bloc.
+	 * @param row ligne
+	 * @return Bloc qui contient la ligne
+	 * @throws IllegalStateException si la mémoire a été libérée
+	 */
+	public LongBuffer rowChunk(long row) {
+		if (chunks == null) throw new IllegalStateException(RELEASED);
+
+		return chunks[(int) (row / rowsPerChunk)];
+	}
+
+	/**
+	 * @param row ligne
+	 * @return Position du premier mot de la ligne dans son bloc (voir {@code rowChunk()})
+	 */
+	public int rowStart(long row) {
+		return (int) (row % rowsPerChunk) * rowWords;
+	}
+
+	/**
+	 * @param row ligne
+	 * @param wordIndex indice du mot dans la ligne
+	 * @return Mot lu
+	 */
+	public long get(long row, int wordIndex) {
+		return rowChunk(row).get(rowStart(row) + wordIndex);
+	}
+
+	/**
+	 * @param row ligne
+	 * @param wordIndex indice du mot dans la ligne
+	 * @param word mot à écrire
+	 */
+	public void set(long row, int wordIndex, long word) {
+		rowChunk(row).put(rowStart(row) + wordIndex, word);
+	}
+
+	/**
+	 * Lire tous les mots d'une ligne.
+	 * @param row ligne
+	 * @param words tableau d'au moins {@code getRowWords()} mots qui reçoit la ligne
+	 */
+	public void getRow(long row, long[] words) {
+		rowChunk(row).get(rowStart(row), words, 0, rowWords);
+	}
+
+	/**
+	 * Écrire tous les mots d'une ligne.
+	 * @param row ligne
+	 * @param words tableau d'au moins {@code getRowWords()} mots à écrire
+	 */
+	public void setRow(long row, long[] words) {
+		rowChunk(row).put(rowStart(row), words, 0, rowWords);
+	}
+
+	/**
+	 * Libérer la mémoire, et supprimer le fichier de travail s'il y en a un. Les mots ne doivent plus être lus par
+	 * aucun fil d'exécution : les {@code LongBuffer} obtenus avant la libération ne sont plus valides.
+	 */
+	@Override
+	public void close() {
+		if (buffers == null) return;
+
+		ByteBuffer[] released = buffers;
+		buffers = null;
+		chunks = null;
+
+		for (ByteBuffer buffer : released) {
+			if (buffer != null && CLEANER != null) {
+				try {
+					CLEANER.invokeExact(buffer);
+				} catch (Throwable e) {
+					// La mémoire sera libérée par le ramasse-miettes
+				}
+			}
+		}
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Le fichier est supprimé à la fermeture; une erreur à ce moment ne concerne plus la grille
+			}
+		}
+	}
+
+	/**
+	 * @return Accès à {@code sun.misc.Unsafe.invokeCleaner()}, ou {@code null} s'il n'est pas disponible
+	 */
+	private static MethodHandle findCleaner() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field instance = unsafeClass.getDeclaredField("theUnsafe");
+			instance.setAccessible(true);
+
+			return MethodHandles.lookup()
+					.findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+					.bindTo(instance.get(null));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+}
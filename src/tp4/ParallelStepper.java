@@ -0,0 +1,131 @@
+package tp4;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Cette classe permet de répartir le calcul d'une génération sur plusieurs coeurs. La grille est découpée en bandes
+ * horizontales de lignes consécutives, et chaque bande est traitée par une tâche d'un {@code ForkJoinPool}.
+ *
+ * Chaque bande lit seulement la génération actuelle et écrit seulement ses propres cellules de la génération suivante.
+ * Le résultat est donc toujours identique à celui du calcul en série, peu importe le nombre de fils d'exécution.
+ */
+public class ParallelStepper {
+
+	/**
+	 * Traitement appliqué à une bande de lignes, de {@code fromRow} (inclusivement) à {@code toRow} (exclusivement).
+	 */
+	@FunctionalInterface
+	public interface BandTask {
+		void compute(int fromRow, int toRow);
+	}
+
+	/**
+	 * Nombre de bandes créées pour chaque fil d'exécution. Plusieurs petites bandes par fil permettent au
+	 * {@code ForkJoinPool} de mieux équilibrer le travail lorsque certaines régions sont plus lentes que d'autres.
+	 */
+	private final int BANDS_PER_THREAD = 4;
+
+	/**
+	 * Nombre minimal de lignes dans une bande. En dessous de cette valeur, le coût de création des tâches
+	 * devient plus grand que le travail lui-même.
+	 */
+	private final int MIN_BAND_ROWS = 8;
+
+	private final ForkJoinPool pool;
+	private final boolean ownsPool;
+
+	/**
+	 * Constructeur avec paramètre. Un nouveau {@code ForkJoinPool} est créé avec le nombre de fils d'exécution donné.
+	 * @param threadCount Nombre de fils d'exécution utilisés pour calculer une génération
+	 */
+	public ParallelStepper(int threadCount) {
+		this.pool = new ForkJoinPool(threadCount);
+		this.ownsPool = true;
+	}
+
+	/**
+	 * Constructeur avec paramètre. Les bandes seront traitées par un {@code ForkJoinPool} existant, qui
+	 * peut être partagé entre plusieurs grilles.
+	 * @param pool Exécuteur utilisé pour traiter les bandes
+	 */
+	public ParallelStepper(ForkJoinPool pool) {
+		this.pool = pool;
+		this.ownsPool = false;
+	}
+
+	/**
+	 * Cette méthode applique le traitement donné à toutes les lignes de {@code fromRow} à {@code toRow} en les
+	 * découpant en bandes. La méthode retourne seulement lorsque toutes les bandes ont été traitées.
+	 * @param fromRow première ligne à traiter
+	 * @param toRow ligne suivant la dernière ligne à traiter
+	 * @param task Traitement appliqué à chaque bande
+	 */
+	public void forEachBand(int fromRow, int toRow, BandTask task) {
+		forEachBand(fromRow, toRow, MIN_BAND_ROWS, task);
+	}
+	
+	/**
+	 * Cette méthode applique le traitement donné à toutes les lignes de {@code fromRow} à {@code toRow} en les
+	 * découpant en bandes d'au moins {@code minBandRows} lignes. Permet de traiter des unités plus grandes qu'une
+	 * ligne, comme des rangées de tuiles.
+	 * @param fromRow première ligne à traiter
+	 * @param toRow ligne suivant la dernière ligne à traiter
+	 * @param minBandRows Nombre minimal de lignes dans une bande
+	 * @param task Traitement appliqué à chaque bande
+	 */
+	public void forEachBand(int fromRow, int toRow, int minBandRows, BandTask task) {
+		int bandCount = pool.getParallelism() * BANDS_PER_THREAD;
+		int bandRows = Math.max(minBandRows, (toRow - fromRow + bandCount - 1) / bandCount);
+
+		if (toRow - fromRow <= bandRows)
+			task.compute(fromRow, toRow);
+		else
+			pool.invoke(new BandAction(fromRow, toRow, bandRows, task));
+	}
+
+	/**
+	 * @return Nombre de fils d'exécution utilisés
+	 */
+	public int getThreadCount() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Arrêter les fils d'exécution, seulement si le {@code ForkJoinPool} a été créé par cette classe.
+	 */
+	public void shutdown() {
+		if (ownsPool) pool.shutdown();
+	}
+
+	/**
+	 * Tâche qui divise récursivement un intervalle de lignes en deux jusqu'à obtenir des bandes
+	 * d'au plus {@code bandRows} lignes.
+	 */
+	private static class BandAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int fromRow, toRow, bandRows;
+		private final BandTask task;
+
+		BandAction(int fromRow, int toRow, int bandRows, BandTask task) {
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+			this.bandRows = bandRows;
+			this.task = task;
+		}
+
+		@Override
+		protected void compute() {
+			if (toRow - fromRow <= bandRows) {
+				task.compute(fromRow, toRow);
+				return;
+			}
+
+			int middle = (fromRow + toRow) >>> 1;
+			invokeAll(new BandAction(fromRow, middle, bandRows, task),
+					new BandAction(middle, toRow, bandRows, task));
+		}
+	}
+}
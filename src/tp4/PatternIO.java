@@ -0,0 +1,533 @@
+package tp4;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Cette classe lit et écrit des motifs du jeu de la vie dans les formats usuels : RLE ({@code .rle}), texte brut
+ * ({@code .cells}) et Life 1.06 ({@code .lif}). Les fichiers sont lus octet par octet avec un tampon fixe : aucune
+ * ligne n'est copiée dans une chaîne de caractères et aucun objet n'est créé par cellule. Chaque cellule vivante
+ * lue est envoyée directement à un {@code PopulationSeeder.CellActivator}, par exemple pour l'écrire dans un board.
+ *
+ * Pour placer un motif, le fichier est lu deux fois : une première fois pour trouver le rectangle qui contient
+ * les cellules vivantes, puis une seconde fois pour écrire les cellules à la bonne position. Les cellules qui
+ * tombent en dehors de la grille sont ignorées. L'écriture parcourt la grille par mots de 64 cellules
+ * ({@code Board.getRowWord()}), ce qui permet de sauter rapidement les régions vides.
+ */
+public class PatternIO {
+
+	/**
+	 * Formats de fichiers de motifs.
+	 */
+	public enum Format {
+
+		/**
+		 * Run Length Encoded : chaque ligne est une suite de longueurs suivies de 'b' (morte), 'o' (vivante) ou '$' (fin de ligne),
+		 * précédée d'une ligne d'en-tête {@code x = largeur, y = hauteur}, et terminée par '!'.
+		 */
+		RLE,
+
+		/**
+		 * Texte brut : une ligne de texte par ligne de la grille, '.' pour une cellule morte et 'O' pour une cellule vivante.
+		 * Les lignes qui commencent par '!' sont des commentaires.
+		 */
+		PLAINTEXT,
+
+		/**
+		 * Life 1.06 : une ligne {@code #Life 1.06}, puis les coordonnées {@code x y} de chaque cellule vivante.
+		 */
+		LIFE_106
+	}
+
+	// Taille des tampons de lecture et d'écriture
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// Longueur maximale d'une ligne d'un fichier RLE écrit
+	private static final int RLE_LINE_LENGTH = 70;
+
+	/**
+	 * Rectangle qui contient les cellules vivantes d'un motif, dans les coordonnées du fichier.
+	 */
+	private static final class Bounds implements PopulationSeeder.CellActivator {
+
+		long minRow = Long.MAX_VALUE, minCol = Long.MAX_VALUE, maxRow = Long.MIN_VALUE, maxCol = Long.MIN_VALUE;
+
+		@Override
+		public void activate(int row, int col) {
+			minRow = Math.min(minRow, row);
+			minCol = Math.min(minCol, col);
+			maxRow = Math.max(maxRow, row);
+			maxCol = Math.max(maxCol, col);
+		}
+
+		boolean isEmpty() {
+			return maxRow < minRow;
+		}
+	}
+
+	private PatternIO() {
+	}
+
+	/**
+	 * @param file fichier de motif
+	 * @return Format du fichier selon son extension, ou selon son contenu si l'extension est inconnue
+	 * (RLE si le fichier n'existe pas)
+	 * @throws IOException si le fichier ne peut pas être lu
+	 */
+	public static Format detectFormat(Path file) throws IOException {
+		String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+
+		if (name.endsWith(".rle")) return Format.RLE;
+		if (name.endsWith(".cells")) return Format.PLAINTEXT;
+		if (name.endsWith(".lif") || name.endsWith(".life")) return Format.LIFE_106;
+
+		// Un fichier qui n'existe pas encore (exportation) est écrit en RLE
+		if (!Files.exists(file)) return Format.RLE;
+
+		try (InputStream in = Files.newInputStream(file)) {
+			byte[] start = new byte[10];
+			int length = in.read(start);
+			String header = length > 0 ? new String(start, 0, length, StandardCharsets.US_ASCII) : "";
+
+			if (header.startsWith("#Life 1.06")) return Format.LIFE_106;
+			if (header.startsWith("!") || header.startsWith(".") || header.startsWith("O")) return Format.PLAINTEXT;
+			return Format.RLE;
+		}
+	}
+
+	/**
+	 * Charger un motif au centre de la grille. Les cellules déjà vivantes restent vivantes.
+	 * @param file fichier de motif
+	 * @param board grille où écrire le motif
+	 * @return Nombre de cellules vivantes du motif écrites dans la grille
+	 * @throws IOException si le fichier ne peut pas être lu ou n'est pas valide
+	 */
+	public static long load(Path file, Board board) throws IOException {
+		Format format = detectFormat(file);
+		Bounds bounds = new Bounds();
+		read(file, format, bounds);
+
+		if (bounds.isEmpty()) return 0;
+
+		int size = board.getActiveSideLength();
+		long row = (size - (bounds.maxRow - bounds.minRow + 1)) / 2;
+		long col = (size - (bounds.maxCol - bounds.minCol + 1)) / 2;
+		return place(file, format, board, row - bounds.minRow, col - bounds.minCol);
+	}
+
+	/**
+	 * Charger un motif dont le coin supérieur gauche du rectangle des cellules vivantes est à la position donnée.
+	 * @param file fichier de motif
+	 * @param board grille où écrire le motif
+	 * @param row ligne du coin supérieur gauche (sans la bordure)
+	 * @param col colonne du coin supérieur gauche (sans la bordure)
+	 * @return Nombre de cellules vivantes du motif écrites dans la grille
+	 * @throws IOException si le fichier ne peut pas être lu ou n'est pas valide
+	 */
+	public static long load(Path file, Board board, int row, int col) throws IOException {
+		Format format = detectFormat(file);
+		Bounds bounds = new Bounds();
+		read(file, format, bounds);
+
+		if (bounds.isEmpty()) return 0;
+		return place(file, format, board, row - bounds.minRow, col - bounds.minCol);
+	}
+
+	/**
+	 * Écrire les cellules d'un motif dans la grille, décalées de {@code rowOffset} lignes et {@code colOffset} colonnes.
+	 */
+	private static long place(Path file, Format format, Board board, long rowOffset, long colOffset) throws IOException {
+		int size = board.getActiveSideLength();
+		long[] placed = new long[1];
+
+		read(file, format, (row, col) -> {
+			long targetRow = row + rowOffset, targetCol = col + colOffset;
+
+			if (targetRow >= 0 && targetCol >= 0 && targetRow < size && targetCol < size) {
+				board.setAlive((int) targetRow + 1, (int) targetCol + 1, true);
+				placed[0]++;
+			}
+		});
+		return placed[0];
+	}
+
+	/**
+	 * Lire un fichier de motif et envoyer chaque cellule vivante au traitement donné, dans les coordonnées du fichier.
+	 * @param file fichier de motif
+	 * @param format format du fichier
+	 * @param activator traitement appliqué à chaque cellule vivante
+	 * @throws IOException si le fichier ne peut pas être lu ou n'est pas valide
+	 */
+	public static void read(Path file, Format format, PopulationSeeder.CellActivator activator) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			ByteReader reader = new ByteReader(in);
+
+			switch (format) {
+			case RLE:
+				readRle(reader, activator);
+				break;
+			case PLAINTEXT:
+				readPlaintext(reader, activator);
+				break;
+			default:
+				readLife106(reader, activator);
+			}
+		}
+	}
+
+	/**
+	 * Lire le contenu d'un fichier RLE. Les lignes de commentaires ({@code #}) et la ligne d'en-tête ({@code x = ...})
+	 * sont ignorées; la position des cellules ne dépend que des longueurs et des fins de ligne. Les états 'b' et '.'
+	 * sont morts, et toute autre lettre est considérée comme vivante.
+	 */
+	private static void readRle(ByteReader reader, PopulationSeeder.CellActivator activator) throws IOException {
+		int row = 0, col = 0;
+		int count = 0;
+		boolean lineStart = true, bodyStarted = false;
+		int c;
+
+		while ((c = reader.next()) != -1) {
+			// Commentaires et en-tête : ignorer le reste de la ligne
+			if (lineStart && !bodyStarted && (c == '#' || c == 'x')) {
+				reader.skipLine();
+				continue;
+			}
+			lineStart = c == '\n';
+			if (c > ' ') bodyStarted = true;
+
+			if (c >= '0' && c <= '9') {
+				count = count * 10 + (c - '0');
+				if (count > 100_000_000) throw new IOException("Longueur invalide dans le fichier RLE");
+			} else if (c == '$') {
+				row += Math.max(count, 1);
+				col = 0;
+				count = 0;
+			} else if (c == '!') {
+				return;
+			} else if (c == 'b' || c == '.') {
+				col += Math.max(count, 1);
+				count = 0;
+			} else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+				int run = Math.max(count, 1);
+				for (int i = 0; i < run; i++) activator.activate(row, col + i);
+				col += run;
+				count = 0;
+			} else if (c > ' ') {
+				throw new IOException("Caractère inattendu dans le fichier RLE : " + (char) c);
+			}
+		}
+	}
+
+	/**
+	 * Lire le contenu d'un fichier texte brut. Chaque ligne qui n'est pas un commentaire est une ligne de la grille;
+	 * 'O' et '*' sont vivantes et tous les autres caractères sont morts.
+	 */
+	private static void readPlaintext(ByteReader reader, PopulationSeeder.CellActivator activator) throws IOException {
+		int row = 0, col = 0;
+		boolean lineStart = true;
+		int c;
+
+		while ((c = reader.next()) != -1) {
+			if (lineStart && c == '!') {
+				reader.skipLine();
+				continue;
+			}
+			lineStart = false;
+
+			if (c == '\n') {
+				row++;
+				col = 0;
+				lineStart = true;
+			} else if (c != '\r') {
+				if (c == 'O' || c == '*') activator.activate(row, col);
+				col++;
+			}
+		}
+	}
+
+	/**
+	 * Lire le contenu d'un fichier Life 1.06 : les lignes qui commencent par '#' sont ignorées, et chaque autre ligne
+	 * contient la colonne puis la ligne d'une cellule vivante, qui peuvent être négatives.
+	 */
+	private static void readLife106(ByteReader reader, PopulationSeeder.CellActivator activator) throws IOException {
+		while (true) {
+			int c = reader.skipWhitespace();
+			if (c == -1) return;
+
+			if (c == '#') {
+				reader.skipLine();
+				continue;
+			}
+			int col = reader.readInt(c);
+			int row = reader.readInt(reader.skipWhitespace());
+			activator.activate(row, col);
+		}
+	}
+
+	/**
+	 * Écrire les cellules vivantes de la grille dans un fichier. Seul le rectangle qui contient les cellules vivantes
+	 * est écrit (sauf en Life 1.06, où les coordonnées de la grille sont conservées).
+	 * @param file fichier à écrire, remplacé s'il existe déjà
+	 * @param board grille à écrire
+	 * @param format format du fichier
+	 * @throws IOException si le fichier ne peut pas être écrit
+	 */
+	public static void save(Path file, Board board, Format format) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)) {
+			int[] bounds = findBounds(board);
+
+			switch (format) {
+			case RLE:
+				writeRle(out, board, bounds);
+				break;
+			case PLAINTEXT:
+				writePlaintext(out, board, bounds);
+				break;
+			default:
+				writeLife106(out, board, bounds);
+			}
+		}
+	}
+
+	/**
+	 * @return Ligne minimale, colonne minimale, ligne maximale et colonne maximale des cellules vivantes
+	 * (sans la bordure), ou un rectangle vide si la grille est vide
+	 */
+	private static int[] findBounds(Board board) {
+		int size = board.getActiveSideLength();
+		int wordsPerRow = (size + 63) >>> 6;
+		int[] bounds = { Integer.MAX_VALUE, Integer.MAX_VALUE, -1, -1 };
+
+		for (int row = 0; row < size; row++) {
+			for (int w = 0; w < wordsPerRow; w++) {
+				long word = board.getRowWord(row, w);
+				if (word == 0) continue;
+
+				bounds[0] = Math.min(bounds[0], row);
+				bounds[1] = Math.min(bounds[1], (w << 6) + Long.numberOfTrailingZeros(word));
+				bounds[2] = row;
+				bounds[3] = Math.max(bounds[3], (w << 6) + 63 - Long.numberOfLeadingZeros(word));
+			}
+		}
+		return bounds;
+	}
+
+	/**
+	 * Écrire la grille en RLE. Chaque ligne est parcourue par suites de cellules de même état; les cellules mortes
+	 * en fin de ligne et les lignes vides consécutives sont regroupées dans les fins de ligne.
+	 */
+	private static void writeRle(OutputStream out, Board board, int[] bounds) throws IOException {
+		int width = bounds[2] < 0 ? 0 : bounds[3] - bounds[1] + 1;
+		int height = bounds[2] < 0 ? 0 : bounds[2] - bounds[0] + 1;
+		RleWriter writer = new RleWriter(out);
+
+		writeAscii(out, "x = " + width + ", y = " + height + ", rule = " + board.getRule() + "\n");
+
+		int pendingRows = 0;
+		for (int row = bounds[0]; row <= bounds[2]; row++) {
+			int col = bounds[1];
+			boolean rowStarted = false;
+
+			while (col <= bounds[3]) {
+				boolean alive = board.isAlive(row + 1, col + 1);
+				int run = nextRunLength(board, row, col, bounds[3], alive);
+
+				// Les cellules mortes en fin de ligne ne sont pas écrites
+				if (!alive && col + run > bounds[3]) break;
+
+				if (!rowStarted) {
+					if (pendingRows > 0) writer.writeRun(pendingRows, '$');
+					pendingRows = 0;
+					rowStarted = true;
+				}
+				writer.writeRun(run, alive ? 'o' : 'b');
+				col += run;
+			}
+			pendingRows++;
+		}
+		writer.writeRun(1, '!');
+		out.write('\n');
+	}
+
+	/**
+	 * @return Nombre de cellules consécutives de l'état donné à partir de la colonne {@code col}, sans dépasser {@code lastCol}.
+	 * Les mots entiers de 64 cellules du même état sont sautés d'un coup.
+	 */
+	private static int nextRunLength(Board board, int row, int col, int lastCol, boolean alive) {
+		int start = col;
+
+		while (col <= lastCol) {
+			long word = board.getRowWord(row, col >>> 6) >>> (col & 63);
+			if (alive) word = ~word;
+
+			// Nombre de cellules de l'état donné au début du reste du mot
+			int remaining = 64 - (col & 63);
+			int same = word == 0 ? remaining : Math.min(Long.numberOfTrailingZeros(word), remaining);
+
+			col += same;
+			if (same < remaining) break;
+		}
+		return Math.min(col, lastCol + 1) - start;
+	}
+
+	/**
+	 * Écrire la grille en texte brut, une ligne par ligne du rectangle des cellules vivantes.
+	 */
+	private static void writePlaintext(OutputStream out, Board board, int[] bounds) throws IOException {
+		writeAscii(out, "!Name: board\n");
+
+		for (int row = bounds[0]; row <= bounds[2]; row++) {
+			// Les cellules mortes en fin de ligne ne sont pas écrites
+			int lastAlive = -1;
+			for (int w = bounds[3] >>> 6; w >= bounds[1] >>> 6 && lastAlive < 0; w--) {
+				long word = board.getRowWord(row, w);
+				if (word != 0) lastAlive = (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+			}
+			for (int col = bounds[1]; col <= lastAlive; col++) out.write(board.isAlive(row + 1, col + 1) ? 'O' : '.');
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * Écrire les coordonnées (colonne, ligne) de chaque cellule vivante en Life 1.06.
+	 */
+	private static void writeLife106(OutputStream out, Board board, int[] bounds) throws IOException {
+		writeAscii(out, "#Life 1.06\n");
+
+		int wordsPerRow = (board.getActiveSideLength() + 63) >>> 6;
+		byte[] digits = new byte[11];
+
+		for (int row = bounds[0]; row <= bounds[2]; row++) {
+			for (int w = 0; w < wordsPerRow; w++) {
+				for (long word = board.getRowWord(row, w); word != 0; word &= word - 1) {
+					writeInt(out, (w << 6) + Long.numberOfTrailingZeros(word), digits);
+					out.write(' ');
+					writeInt(out, row, digits);
+					out.write('\n');
+				}
+			}
+		}
+	}
+
+	private static void writeAscii(OutputStream out, String text) throws IOException {
+		out.write(text.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Écrire un entier positif sans créer de chaîne de caractères.
+	 * @param digits tampon d'au moins 10 octets
+	 */
+	private static void writeInt(OutputStream out, int value, byte[] digits) throws IOException {
+		int digitCount = 0;
+		do {
+			digits[digitCount++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+
+		while (digitCount > 0) out.write(digits[--digitCount]);
+	}
+
+	/**
+	 * Écrit les suites d'un fichier RLE en coupant les lignes à {@code RLE_LINE_LENGTH} caractères.
+	 */
+	private static final class RleWriter {
+
+		private final OutputStream out;
+		private final byte[] digits = new byte[11];
+		private int lineLength = 0;
+
+		RleWriter(OutputStream out) {
+			this.out = out;
+		}
+
+		void writeRun(int run, char tag) throws IOException {
+			int digitCount = 0;
+			if (run > 1) {
+				for (int value = run; value > 0; value /= 10) digits[digitCount++] = (byte) ('0' + value % 10);
+			}
+
+			if (lineLength + digitCount + 1 > RLE_LINE_LENGTH) {
+				out.write('\n');
+				lineLength = 0;
+			}
+			for (int i = digitCount - 1; i >= 0; i--) out.write(digits[i]);
+			out.write(tag);
+			lineLength += digitCount + 1;
+		}
+	}
+
+	/**
+	 * Lecteur d'octets avec un tampon fixe. Contrairement à {@code BufferedInputStream}, la lecture d'un octet
+	 * n'est pas synchronisée.
+	 */
+	private static final class ByteReader {
+
+		private final InputStream in;
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+		private int position = 0, limit = 0;
+
+		ByteReader(InputStream in) {
+			this.in = in;
+		}
+
+		/**
+		 * @return Octet suivant, ou -1 à la fin du fichier
+		 */
+		int next() throws IOException {
+			if (position == limit) {
+				limit = in.read(buffer);
+				position = 0;
+				if (limit <= 0) {
+					limit = 0;
+					return -1;
+				}
+			}
+			return buffer[position++] & 0xFF;
+		}
+
+		/**
+		 * Ignorer la fin de la ligne actuelle, fin de ligne comprise.
+		 */
+		void skipLine() throws IOException {
+			int c;
+			while ((c = next()) != -1 && c != '\n') {
+			}
+		}
+
+		/**
+		 * @return Premier octet qui n'est pas un espace ou une fin de ligne, ou -1 à la fin du fichier
+		 */
+		int skipWhitespace() throws IOException {
+			int c;
+			while ((c = next()) != -1 && c <= ' ') {
+			}
+			return c;
+		}
+
+		/**
+		 * Lire un entier, éventuellement négatif, dont le premier caractère est déjà lu.
+		 * @param first premier caractère de l'entier
+		 * @return Entier lu
+		 */
+		int readInt(int first) throws IOException {
+			boolean negative = first == '-';
+			int c = negative ? next() : first;
+			long value = 0;
+
+			if (c < '0' || c > '9') throw new IOException("Coordonnée invalide dans le fichier de motif");
+
+			while (c >= '0' && c <= '9') {
+				value = value * 10 + (c - '0');
+				if (value > Integer.MAX_VALUE) throw new IOException("Coordonnée trop grande dans le fichier de motif");
+				c = next();
+			}
+			return (int) (negative ? -value : value);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package tp4;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Cette classe crée la population initiale d'une grille en temps linéaire. Chaque cellule n'est visitée qu'une seule
+ * fois, sans liste d'indices déjà choisis. Le générateur aléatoire est initialisé avec un germe ({@code seed}) : deux
+ * grilles créées avec le même germe auront exactement la même population initiale.
+ *
+ * Deux façons de remplir la grille sont disponibles :
+ * - un nombre exact de cellules vivantes, choisies uniformément ({@code seedExactCount()});
+ * - une densité, où chaque cellule est vivante avec la probabilité donnée ({@code seedDensity()}). Chaque ligne a son propre
+ *   générateur, ce qui permet de remplir les lignes en parallèle en obtenant le même résultat qu'en série.
+ */
+public class PopulationSeeder {
+
+	/**
+	 * Traitement appliqué à chaque cellule choisie pour être vivante.
+	 */
+	@FunctionalInterface
+	public interface CellActivator {
+		void activate(int row, int col);
+	}
+
+	private final long seed;
+
+	/**
+	 * Constructeur sans paramètre. Le germe est choisi aléatoirement.
+	 */
+	public PopulationSeeder() {
+		this(new Random().nextLong());
+	}
+
+	/**
+	 * Constructeur avec paramètre.
+	 * @param seed Germe du générateur aléatoire
+	 */
+	public PopulationSeeder(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Cette méthode choisit exactement {@code liveCount} cellules parmi les {@code rows * cols} cellules de la grille.
+	 * Les cellules sont parcourues dans l'ordre : chaque cellule est choisie avec une probabilité égale au nombre de
+	 * cellules qu'il reste à choisir divisé par le nombre de cellules qu'il reste à parcourir (échantillonnage sélectif).
+	 * Toutes les combinaisons de cellules ont donc la même probabilité.
+	 * @param rows Nombre de lignes de la grille
+	 * @param cols Nombre de colonnes de la grille
+	 * @param liveCount Nombre de cellules vivantes à choisir
+	 * @param activator Traitement appliqué à chaque cellule choisie
+	 */
+	public void seedExactCount(int rows, int cols, long liveCount, CellActivator activator) {
+		SplittableRandom random = new SplittableRandom(seed);
+		long remainingCells = (long) rows * cols;
+		long remainingLive = Math.min(liveCount, remainingCells);
+
+		for (int row = 0; row < rows && remainingLive > 0; row++) {
+			for (int col = 0; col < cols && remainingLive > 0; col++) {
+
+				if (random.nextDouble() * remainingCells < remainingLive) {
+					activator.activate(row, col);
+					remainingLive--;
+				}
+				remainingCells--;
+			}
+		}
+	}
+
+	/**
+	 * Cette méthode rend chaque cellule vivante avec la probabilité {@code density}. Si un exécuteur parallèle est donné,
+	 * les lignes sont remplies en parallèle; le résultat est le même qu'en série puisque chaque ligne a son propre générateur.
+	 * Le traitement {@code activator} doit alors permettre de modifier des lignes différentes en même temps.
+	 * @param rows Nombre de lignes de la grille
+	 * @param cols Nombre de colonnes de la grille
+	 * @param density Probabilité qu'une cellule soit vivante, entre 0.0 et 1.0
+	 * @param activator Traitement appliqué à chaque cellule choisie
+	 * @param stepper Exécuteur parallèle, ou {@code null} pour remplir la grille en série
+	 */
+	public void seedDensity(int rows, int cols, double density, CellActivator activator, ParallelStepper stepper) {
+		ParallelStepper.BandTask task = (fromRow, toRow) -> {
+			for (int row = fromRow; row < toRow; row++) {
+				SplittableRandom random = new SplittableRandom(mix(seed + row));
+
+				for (int col = 0; col < cols; col++) {
+					if (random.nextDouble() < density) activator.activate(row, col);
+				}
+			}
+		};
+
+		if (stepper != null)
+			stepper.forEachBand(0, rows, task);
+		else
+			task.compute(0, rows);
+	}
+
+	/**
+	 * Fonction de mélange de SplitMix64. Permet d'obtenir des germes de ligne indépendants à partir d'un seul germe.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @return Germe du générateur aléatoire
+	 */
+	public long getSeed() {
+		return seed;
+	}
+}
@@ -0,0 +1,431 @@
+package tp4;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cette classe représente la règle d'évolution d'une grille : le nombre de voisins vivants qui fait naître une cellule
+ * morte ({@code B}, naissance) et celui qui garde une cellule vivante en vie ({@code S}, survie). Une règle est immuable
+ * et se lit à partir de sa notation habituelle ({@code parse()}) :
+ * - notation B/S des automates semblables au jeu de la vie : {@code B3/S23} (Conway), {@code B36/S23} (HighLife),
+ *   {@code B3678/S34678} (Day & Night), {@code B2/S} (Seeds). L'ancienne notation S/B ({@code 23/3}) est aussi acceptée;
+ * - règles « Generations » : le nombre d'états est ajouté après la règle ({@code B2/S/C3} ou {@code /2/3} pour
+ *   Brian's Brain). Une cellule vivante qui ne survit pas passe par les états 2, 3, ... avant de mourir; ces cellules
+ *   mourantes ne comptent pas comme voisines et ne peuvent pas renaître avant d'être mortes;
+ * - règles « Larger than Life » : {@code R5,C0,M1,S34..58,B34..45,NM} (Bosco). {@code R} est la portée du voisinage,
+ *   {@code C} le nombre d'états (0 ou 2 pour une règle à deux états), {@code M} indique si la cellule elle-même est
+ *   comptée, {@code S} et {@code B} sont des listes d'intervalles et {@code N} est la forme du voisinage
+ *   ({@code M} pour un carré, {@code N} pour un losange).
+ *
+ * Les ensembles de naissance et de survie sont compilés une seule fois, et les moteurs les lisent directement sans
+ * évaluer la règle cellule par cellule : deux masques de 9 bits pour les règles semblables au jeu de la vie
+ * ({@code getBirthMask()}, {@code getSurvivalMask()}), et une table de transitions pour les autres ({@code getTransitions()}).
+ * La règle de Conway ({@code CONWAY}) garde ses propres calculs spécialisés dans chaque moteur (voir {@code isConway()}).
+ */
+public final class Rule {
+
+	/**
+	 * Forme du voisinage d'une cellule.
+	 */
+	public enum Neighborhood {
+
+		/**
+		 * Carré de {@code 2 * portée + 1} cellules de côté (voisinage de Moore).
+		 */
+		MOORE,
+
+		/**
+		 * Cellules à une distance de Manhattan d'au plus la portée (voisinage de von Neumann).
+		 */
+		VON_NEUMANN
+	}
+
+	/**
+	 * Portée maximale d'une règle « Larger than Life ».
+	 */
+	public static final int MAX_RANGE = 500;
+
+	/**
+	 * Nombre maximal d'états d'une règle « Generations ». Chaque état doit tenir dans un octet.
+	 */
+	public static final int MAX_STATES = 256;
+
+	// Notations B/S, S/B et S/B/C des règles de portée 1
+	private static final Pattern BIRTH_SURVIVAL = Pattern.compile("B([0-8]*)/?S([0-8]*)(?:/?[CG]([0-9]+))?");
+	private static final Pattern SURVIVAL_BIRTH = Pattern.compile("S([0-8]*)/?B([0-8]*)(?:/?[CG]([0-9]+))?");
+	private static final Pattern NUMERIC = Pattern.compile("([0-8]*)/([0-8]*)(?:/([0-9]+))?");
+
+	// Intervalle d'une règle « Larger than Life » : un nombre seul ou deux nombres séparés par ".."
+	private static final Pattern INTERVAL = Pattern.compile("([0-9]+)(?:\\.\\.([0-9]+))?");
+
+	/**
+	 * Règle du jeu de la vie de Conway, utilisée par défaut par tous les moteurs.
+	 */
+	public static final Rule CONWAY = parse("B3/S23");
+
+	private final int range;
+	private final Neighborhood neighborhood;
+	private final boolean includesCenter;
+	private final int stateCount;
+
+	// Nombres de voisins qui font naître ou survivre une cellule, de 0 à getMaxNeighborCount()
+	private final boolean[] births;
+	private final boolean[] survivals;
+
+	/**
+	 * Table de transitions des cellules mortes (indices 0 à {@code maxNeighborCount}) puis des cellules vivantes
+	 * (indices {@code maxNeighborCount + 1} à {@code 2 * maxNeighborCount + 1}).
+	 */
+	private final byte[] transitions;
+
+	private final String notation;
+
+	private Rule(int range, Neighborhood neighborhood, boolean includesCenter, int stateCount, boolean[] births, boolean[] survivals) {
+		this.range = range;
+		this.neighborhood = neighborhood;
+		this.includesCenter = includesCenter;
+		this.stateCount = stateCount;
+		this.births = births;
+		this.survivals = survivals;
+
+		int stride = births.length;
+		transitions = new byte[2 * stride];
+		for (int count = 0; count < stride; count++) {
+			transitions[count] = (byte) (births[count] ? 1 : 0);
+			transitions[stride + count] = (byte) (survivals[count] ? 1 : stateCount > 2 ? 2 : 0);
+		}
+
+		notation = isRangeOne() ? formatRangeOne() : formatLargerThanLife();
+	}
+
+	/**
+	 * Lire une règle dans l'une des notations décrites plus haut. Les lettres peuvent être majuscules ou minuscules.
+	 * @param text notation de la règle
+	 * @return Règle correspondante
+	 * @throws IllegalArgumentException si la notation est invalide
+	 */
+	public static Rule parse(String text) {
+		String compact = text.trim().toUpperCase(Locale.ROOT).replace(" ", "");
+
+		if (compact.startsWith("R")) return parseLargerThanLife(compact, text);
+
+		Matcher matcher;
+		String birthDigits, survivalDigits;
+
+		if ((matcher = BIRTH_SURVIVAL.matcher(compact)).matches()) {
+			birthDigits = matcher.group(1);
+			survivalDigits = matcher.group(2);
+		} else if ((matcher = SURVIVAL_BIRTH.matcher(compact)).matches() || (matcher = NUMERIC.matcher(compact)).matches()) {
+			survivalDigits = matcher.group(1);
+			birthDigits = matcher.group(2);
+		} else {
+			throw new IllegalArgumentException("Règle invalide : " + text);
+		}
+
+		int stateCount = matcher.group(3) == null ? 2 : parseStateCount(matcher.group(3), text);
+		return new Rule(1, Neighborhood.MOORE, false, stateCount, toCountSet(birthDigits), toCountSet(survivalDigits));
+	}
+
+	/**
+	 * @param digits chiffres de 0 à 8
+	 * @return Ensemble des nombres de voisins donnés
+	 */
+	private static boolean[] toCountSet(String digits) {
+		boolean[] counts = new boolean[9];
+
+		for (int i = 0; i < digits.length(); i++) counts[digits.charAt(i) - '0'] = true;
+		return counts;
+	}
+
+	/**
+	 * @param value nombre d'états écrit dans la règle
+	 * @param text notation complète, pour le message d'erreur
+	 * @return Nombre d'états de la règle (0 est accepté comme synonyme de 2)
+	 */
+	private static int parseStateCount(String value, String text) {
+		int stateCount;
+		try {
+			stateCount = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Nombre d'états invalide : " + text);
+		}
+
+		if (stateCount == 0) return 2;
+		if (stateCount < 2 || stateCount > MAX_STATES)
+			throw new IllegalArgumentException("Le nombre d'états doit être entre 2 et " + MAX_STATES + " : " + text);
+		return stateCount;
+	}
+
+	/**
+	 * Lire une règle « Larger than Life ». Les éléments sont séparés par des virgules; les intervalles qui suivent
+	 * {@code S} ou {@code B} appartiennent à la même liste jusqu'à la lettre suivante ({@code S2..3,5..6,B3}).
+	 * @param compact notation en majuscules, sans espaces
+	 * @param text notation d'origine, pour les messages d'erreur
+	 */
+	private static Rule parseLargerThanLife(String compact, String text) {
+		int range = -1, stateCount = 2;
+		boolean includesCenter = false;
+		Neighborhood neighborhood = Neighborhood.MOORE;
+		StringBuilder birthIntervals = new StringBuilder(), survivalIntervals = new StringBuilder();
+		StringBuilder currentList = null;
+
+		for (String item : compact.split(",")) {
+			if (item.isEmpty()) throw new IllegalArgumentException("Règle invalide : " + text);
+
+			char key = item.charAt(0);
+			String value = item.substring(1);
+
+			if (Character.isDigit(key)) {
+				if (currentList == null) throw new IllegalArgumentException("Règle invalide : " + text);
+				currentList.append(',').append(item);
+				continue;
+			}
+			currentList = null;
+
+			try {
+				switch (key) {
+				case 'R':
+					range = Integer.parseInt(value);
+					break;
+				case 'C':
+					stateCount = parseStateCount(value, text);
+					break;
+				case 'M':
+					if (!value.equals("0") && !value.equals("1")) throw new IllegalArgumentException("Règle invalide : " + text);
+					includesCenter = value.equals("1");
+					break;
+				case 'S':
+					currentList = survivalIntervals;
+					currentList.append(',').append(value);
+					break;
+				case 'B':
+					currentList = birthIntervals;
+					currentList.append(',').append(value);
+					break;
+				case 'N':
+					if (value.equals("M")) neighborhood = Neighborhood.MOORE;
+					else if (value.equals("N")) neighborhood = Neighborhood.VON_NEUMANN;
+					else throw new IllegalArgumentException("Voisinage inconnu : " + text);
+					break;
+				default:
+					throw new IllegalArgumentException("Élément inconnu « " + item + " » dans la règle : " + text);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Règle invalide : " + text);
+			}
+		}
+
+		if (range < 1 || range > MAX_RANGE)
+			throw new IllegalArgumentException("La portée doit être entre 1 et " + MAX_RANGE + " : " + text);
+
+		int maxCount = neighborCount(range, neighborhood, includesCenter);
+		return new Rule(range, neighborhood, includesCenter, stateCount,
+				toCountSet(birthIntervals.toString(), maxCount, text), toCountSet(survivalIntervals.toString(), maxCount, text));
+	}
+
+	/**
+	 * @param intervals intervalles séparés par des virgules, par exemple {@code ,34..58,60}
+	 * @param maxCount plus grand nombre de voisins possible
+	 * @param text notation complète, pour les messages d'erreur
+	 * @return Ensemble des nombres de voisins compris dans les intervalles
+	 */
+	private static boolean[] toCountSet(String intervals, int maxCount, String text) {
+		boolean[] counts = new boolean[maxCount + 1];
+
+		for (String interval : intervals.split(",")) {
+			if (interval.isEmpty()) continue;
+
+			Matcher matcher = INTERVAL.matcher(interval);
+			if (!matcher.matches()) throw new IllegalArgumentException("Intervalle invalide « " + interval + " » : " + text);
+
+			int from = Integer.parseInt(matcher.group(1));
+			int to = matcher.group(2) == null ? from : Integer.parseInt(matcher.group(2));
+			if (from > to || to > maxCount)
+				throw new IllegalArgumentException("Intervalle invalide « " + interval + " » (maximum " + maxCount + ") : " + text);
+
+			Arrays.fill(counts, from, to + 1, true);
+		}
+		return counts;
+	}
+
+	/**
+	 * @return Nombre de cellules du voisinage donné
+	 */
+	private static int neighborCount(int range, Neighborhood neighborhood, boolean includesCenter) {
+		int cells = neighborhood == Neighborhood.MOORE ? (2 * range + 1) * (2 * range + 1) : 2 * range * (range + 1) + 1;
+		return includesCenter ? cells : cells - 1;
+	}
+
+	/**
+	 * @return {@code true} si la règle utilise le voisinage des 8 cellules adjacentes, sans la cellule elle-même
+	 */
+	private boolean isRangeOne() {
+		return range == 1 && neighborhood == Neighborhood.MOORE && !includesCenter;
+	}
+
+	/**
+	 * @return Notation B/S de la règle, suivie du nombre d'états pour une règle « Generations »
+	 */
+	private String formatRangeOne() {
+		StringBuilder text = new StringBuilder("B");
+
+		for (int count = 0; count <= 8; count++) if (births[count]) text.append(count);
+		text.append("/S");
+		for (int count = 0; count <= 8; count++) if (survivals[count]) text.append(count);
+		if (stateCount > 2) text.append("/C").append(stateCount);
+		return text.toString();
+	}
+
+	/**
+	 * @return Notation « Larger than Life » de la règle
+	 */
+	private String formatLargerThanLife() {
+		return "R" + range + ",C" + (stateCount > 2 ? stateCount : 0) + ",M" + (includesCenter ? 1 : 0)
+				+ ",S" + formatIntervals(survivals) + ",B" + formatIntervals(births)
+				+ ",N" + (neighborhood == Neighborhood.MOORE ? "M" : "N");
+	}
+
+	/**
+	 * @return Nombres de voisins de l'ensemble donné, regroupés en intervalles séparés par des virgules
+	 */
+	private static String formatIntervals(boolean[] counts) {
+		StringBuilder text = new StringBuilder();
+
+		for (int from = 0; from < counts.length; from++) {
+			if (!counts[from]) continue;
+
+			int to = from;
+			while (to + 1 < counts.length && counts[to + 1]) to++;
+
+			if (text.length() > 0) text.append(',');
+			text.append(from);
+			if (to > from) text.append("..").append(to);
+			from = to;
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Les moteurs gardent leurs calculs d'origine pour cette règle.
+	 * @return {@code true} si la règle est celle de Conway (B3/S23, deux états)
+	 */
+	public boolean isConway() {
+		return equals(CONWAY);
+	}
+
+	/**
+	 * Les règles semblables au jeu de la vie sont supportées par tous les moteurs, puisque le nombre de voisins de
+	 * chaque cellule tient sur 4 bits (voir {@code BitGrid.applyRule()}).
+	 * @return {@code true} si la règle a deux états et utilise les 8 cellules adjacentes comme voisinage
+	 */
+	public boolean isLifeLike() {
+		return isRangeOne() && stateCount == 2;
+	}
+
+	/**
+	 * Avec une telle règle, tout l'espace vide s'allume à la génération suivante : elle ne convient donc pas aux moteurs
+	 * qui ne représentent que les régions occupées ({@code SparseGrid}, {@code HashLife}).
+	 * @return {@code true} si une cellule morte sans voisins vivants naît
+	 */
+	public boolean hasBirthWithoutNeighbors() {
+		return births[0];
+	}
+
+	/**
+	 * @return Portée du voisinage (1 pour les 8 cellules adjacentes)
+	 */
+	public int getRange() {
+		return range;
+	}
+
+	/**
+	 * @return Forme du voisinage
+	 */
+	public Neighborhood getNeighborhood() {
+		return neighborhood;
+	}
+
+	/**
+	 * @return {@code true} si la cellule elle-même est comptée dans son nombre de voisins vivants
+	 */
+	public boolean includesCenter() {
+		return includesCenter;
+	}
+
+	/**
+	 * @return Nombre d'états d'une cellule : 2 pour une règle ordinaire, plus pour une règle « Generations »
+	 */
+	public int getStateCount() {
+		return stateCount;
+	}
+
+	/**
+	 * @return Plus grand nombre de voisins vivants possible (8 pour une règle semblable au jeu de la vie)
+	 */
+	public int getMaxNeighborCount() {
+		return births.length - 1;
+	}
+
+	/**
+	 * @return Masque des nombres de voisins qui font naître une cellule (bit {@code n} pour {@code n} voisins), pour une
+	 * règle semblable au jeu de la vie
+	 */
+	public int getBirthMask() {
+		return toMask(births);
+	}
+
+	/**
+	 * @return Masque des nombres de voisins qui gardent une cellule en vie, pour une règle semblable au jeu de la vie
+	 */
+	public int getSurvivalMask() {
+		return toMask(survivals);
+	}
+
+	private static int toMask(boolean[] counts) {
+		int mask = 0;
+
+		for (int count = 0; count < Math.min(counts.length, 32); count++) if (counts[count]) mask |= 1 << count;
+		return mask;
+	}
+
+	/**
+	 * Table de transitions compilée. L'état suivant d'une cellule morte (0) ou vivante (1) qui a {@code n} voisins vivants
+	 * est {@code transitions[état * (getMaxNeighborCount() + 1) + n]}. Les cellules mourantes d'une règle « Generations »
+	 * (états 2 et plus) avancent simplement à l'état suivant (voir {@code nextState()}). Le tableau est partagé :
+	 * il ne doit pas être modifié.
+	 * @return Table de transitions des états 0 et 1
+	 */
+	byte[] getTransitions() {
+		return transitions;
+	}
+
+	/**
+	 * @param state état actuel de la cellule
+	 * @param neighbors nombre de voisins vivants (état 1)
+	 * @return État de la cellule à la génération suivante
+	 */
+	public int nextState(int state, int neighbors) {
+		if (state <= 1) return transitions[state * births.length + neighbors];
+		return state + 1 < stateCount ? state + 1 : 0;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof Rule && notation.equals(((Rule) other).notation);
+	}
+
+	@Override
+	public int hashCode() {
+		return notation.hashCode();
+	}
+
+	/**
+	 * @return Notation normalisée de la règle, qui peut être relue par {@code parse()}
+	 */
+	@Override
+	public String toString() {
+		return notation;
+	}
+}
@@ -0,0 +1,358 @@
+package tp4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cette classe reconnaît la forme d'un objet isolé (un groupe de cellules vivantes) pour une règle d'évolution donnée.
+ * Un objet inconnu est simulé seul, sans limites, jusqu'à ce qu'il reprenne sa forme initiale : sa période et son
+ * déplacement déterminent sa nature (voir {@code ObjectType}).
+ *
+ * La forme d'un objet est réduite à une clé canonique : ses cellules sont ramenées à l'origine dans chacune des
+ * 8 orientations (rotations et symétries), et la plus petite des 8 clés est gardée. Le résultat d'une simulation est
+ * ensuite gardé dans un cache partagé sous la clé canonique de chacune des phases de l'objet : un objet déjà vu, dans
+ * n'importe quelle position, orientation ou phase, ne coûte donc qu'une recherche dans une table. Le cache est sûr
+ * entre plusieurs fils d'exécution, ce qui permet de partager un seul {@code ShapeClassifier} entre toutes les
+ * grilles d'une exécution (voir {@code SimulationFarm}).
+ */
+public class ShapeClassifier {
+
+	/**
+	 * Période maximale recherchée, comme {@code GenerationTracker} : un objet qui ne se répète pas avant est inconnu.
+	 */
+	private static final int MAX_PERIOD = 256;
+
+	/**
+	 * Nombre maximal de cellules d'un objet pendant sa simulation. Au-delà, l'objet grandit sans fin et est inconnu.
+	 */
+	private static final int MAX_OBJECT_CELLS = 10_000;
+
+	/**
+	 * Noms usuels des objets les plus fréquents avec la règle de Conway, par clé canonique de chacune de leurs phases.
+	 */
+	private static final Map<String, String> CONWAY_NAMES = new HashMap<>();
+
+	static {
+		String[][] patterns = {
+				{ "bloc", "OO", "OO" },
+				{ "ruche", ".OO.", "O..O", ".OO." },
+				{ "pain", ".OO.", "O..O", ".O.O", "..O." },
+				{ "bateau", "OO.", "O.O", ".O." },
+				{ "navire", "OO.", "O.O", ".OO" },
+				{ "baignoire", ".O.", "O.O", ".O." },
+				{ "mare", ".OO.", "O..O", "O..O", ".OO." },
+				{ "serpent", "OO.O", "O.OO" },
+				{ "long bateau", "OO..", "O.O.", ".O.O", "..O." },
+				{ "péniche", ".O..", "O.O.", ".O.O", "..O." },
+				{ "porte-avions", "OO..", "O..O", "..OO" },
+				{ "clignotant", "OOO" },
+				{ "crapaud", ".OOO", "OOO." },
+				{ "balise", "OO..", "OO..", "..OO", "..OO" },
+				{ "planeur", ".O.", "..O", "OOO" },
+				{ "vaisseau léger", ".O..O", "O....", "O...O", "OOOO." },
+				{ "pentadécathlon", "..O....O..", "OO.OOOO.OO", "..O....O.." },
+				{ "pulsar", "..OOO...OOO..", ".............", "O....O.O....O", "O....O.O....O", "O....O.O....O",
+						"..OOO...OOO..", ".............", "..OOO...OOO..", "O....O.O....O", "O....O.O....O",
+						"O....O.O....O", ".............", "..OOO...OOO.." } };
+
+		int[][] offsets = neighborOffsets(Rule.CONWAY);
+		for (String[] pattern : patterns) {
+			List<Long> cells = new ArrayList<>();
+			for (int row = 1; row < pattern.length; row++) {
+				for (int col = 0; col < pattern[row].length(); col++) {
+					if (pattern[row].charAt(col) == 'O') cells.add(CellChangeLog.pack(row, col));
+				}
+			}
+
+			List<String> phaseKeys = new ArrayList<>();
+			simulate(toArray(cells), Rule.CONWAY, offsets, phaseKeys);
+			for (String phaseKey : phaseKeys) CONWAY_NAMES.put(phaseKey, pattern[0]);
+		}
+	}
+
+	private final Rule rule;
+	private final int[][] offsets;
+
+	// Type de chaque forme déjà classée, par clé canonique de chacune de ses phases
+	private final ConcurrentHashMap<String, ObjectType> cache = new ConcurrentHashMap<>();
+
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder simulations = new LongAdder();
+
+	/**
+	 * Constructeur.
+	 * @param rule règle d'évolution des objets à classer
+	 * @throws IllegalArgumentException si la règle a plus de deux états ou fait naître des cellules sans voisines :
+	 * un objet ne peut alors pas être simulé seul
+	 */
+	public ShapeClassifier(Rule rule) {
+		if (rule.getStateCount() > 2 || rule.hasBirthWithoutNeighbors())
+			throw new IllegalArgumentException("Les objets ne peuvent pas être classés avec la règle " + rule);
+
+		this.rule = rule;
+		this.offsets = neighborOffsets(rule);
+	}
+
+	/**
+	 * @return Règle d'évolution des objets classés
+	 */
+	public Rule getRule() {
+		return rule;
+	}
+
+	/**
+	 * Cette méthode donne le type d'un objet. Les coordonnées des cellules peuvent être quelconques, même négatives.
+	 * @param cells cellules vivantes de l'objet, regroupées par {@code CellChangeLog.pack()}
+	 * @return Type de l'objet
+	 * @throws IllegalArgumentException si l'objet ne contient aucune cellule
+	 */
+	public ObjectType classify(long[] cells) {
+		if (cells.length == 0) throw new IllegalArgumentException("Un objet doit contenir au moins une cellule");
+
+		String key = canonicalKey(cells);
+		lookups.increment();
+
+		ObjectType type = cache.get(key);
+		if (type != null) return type;
+
+		// Deux fils peuvent simuler la même forme en même temps; ils obtiennent le même type
+		simulations.increment();
+		List<String> phaseKeys = new ArrayList<>();
+		type = simulate(cells, rule, offsets, phaseKeys);
+
+		for (String phaseKey : phaseKeys) cache.putIfAbsent(phaseKey, type);
+		ObjectType previous = cache.putIfAbsent(key, type);
+		return previous != null ? previous : type;
+	}
+
+	/**
+	 * @return Nombre d'objets classés depuis la création
+	 */
+	public long getLookupCount() {
+		return lookups.sum();
+	}
+
+	/**
+	 * @return Nombre d'objets qui n'étaient pas dans le cache et ont dû être simulés
+	 */
+	public long getSimulationCount() {
+		return simulations.sum();
+	}
+
+	/**
+	 * @return Nombre de clés dans le cache (une par phase de chaque forme connue)
+	 */
+	public int getCacheSize() {
+		return cache.size();
+	}
+
+	/**
+	 * Cette méthode simule un objet isolé jusqu'à ce qu'il reprenne sa forme initiale, au même endroit ou non.
+	 * @param cells cellules vivantes de l'objet
+	 * @param rule règle d'évolution
+	 * @param offsets voisinage de la règle (voir {@code neighborOffsets()})
+	 * @param phaseKeys liste qui reçoit la clé canonique de chaque phase, si l'objet se répète
+	 * @return Type de l'objet
+	 */
+	private static ObjectType simulate(long[] cells, Rule rule, int[][] offsets, List<String> phaseKeys) {
+		Set<Long> phase = toSet(cells);
+		String firstShape = shapeKey(cells, 0);
+		long firstCorner = minCorner(cells);
+
+		List<String> keys = new ArrayList<>();
+		keys.add(canonicalKey(cells));
+		int minCells = cells.length;
+
+		for (int generation = 1; generation <= MAX_PERIOD; generation++) {
+			phase = step(phase, rule, offsets, BoundaryMode.DEAD, 0);
+			if (phase.isEmpty() || phase.size() > MAX_OBJECT_CELLS) break;
+
+			long[] phaseCells = toArray(phase);
+			if (shapeKey(phaseCells, 0).equals(firstShape)) {
+				String canonical = keys.get(0);
+				for (String key : keys) if (key.compareTo(canonical) < 0) canonical = key;
+				phaseKeys.addAll(keys);
+
+				long corner = minCorner(phaseCells);
+				int rowShift = Math.abs(CellChangeLog.unpackRow(corner) - CellChangeLog.unpackRow(firstCorner));
+				int colShift = Math.abs(CellChangeLog.unpackCol(corner) - CellChangeLog.unpackCol(firstCorner));
+
+				ObjectType.Kind kind = rowShift != 0 || colShift != 0 ? ObjectType.Kind.SPACESHIP
+						: generation == 1 ? ObjectType.Kind.STILL_LIFE : ObjectType.Kind.OSCILLATOR;
+				String prefix = kind == ObjectType.Kind.SPACESHIP ? "xq" + generation
+						: kind == ObjectType.Kind.STILL_LIFE ? "xs" + minCells : "xp" + generation;
+				String name = rule.isConway() ? CONWAY_NAMES.get(canonical) : null;
+
+				return new ObjectType(kind, prefix + "_" + hashText(canonical), name, minCells, generation,
+						Math.max(rowShift, colShift), Math.min(rowShift, colShift));
+			}
+			keys.add(canonicalKey(phaseCells));
+			minCells = Math.min(minCells, phaseCells.length);
+		}
+		return new ObjectType(ObjectType.Kind.UNKNOWN, "xx" + cells.length + "_" + hashText(keys.get(0)), null,
+				cells.length, -1, 0, 0);
+	}
+
+	/**
+	 * Cette méthode calcule la génération suivante d'un ensemble de cellules vivantes. Seules les cellules à portée
+	 * d'une cellule vivante sont évaluées.
+	 * @param cells cellules vivantes, regroupées par {@code CellChangeLog.pack()}
+	 * @param rule règle d'évolution, à deux états
+	 * @param offsets voisinage de la règle (voir {@code neighborOffsets()})
+	 * @param boundaryMode comportement des bords, si la grille est bornée
+	 * @param size nombre de cellules sur un côté de la grille, ou 0 pour un univers sans limites
+	 * @return Cellules vivantes de la génération suivante
+	 */
+	static Set<Long> step(Set<Long> cells, Rule rule, int[][] offsets, BoundaryMode boundaryMode, int size) {
+		Set<Long> candidates = new HashSet<>(cells);
+		for (long cell : cells) {
+			int row = CellChangeLog.unpackRow(cell), col = CellChangeLog.unpackCol(cell);
+
+			for (int[] offset : offsets) {
+				long candidate = locate(row + offset[0], col + offset[1], boundaryMode, size);
+				if (candidate >= 0 || size == 0) candidates.add(candidate);
+			}
+		}
+
+		Set<Long> next = new HashSet<>();
+		for (long candidate : candidates) {
+			int row = CellChangeLog.unpackRow(candidate), col = CellChangeLog.unpackCol(candidate);
+			int neighbors = 0;
+
+			for (int[] offset : offsets) {
+				long neighbor = locate(row + offset[0], col + offset[1], boundaryMode, size);
+				if ((neighbor >= 0 || size == 0) && cells.contains(neighbor)) neighbors++;
+			}
+			if (rule.nextState(cells.contains(candidate) ? 1 : 0, neighbors) == 1) next.add(candidate);
+		}
+		return next;
+	}
+
+	/**
+	 * @param rule règle d'évolution
+	 * @return Déplacements {@code {ligne, colonne}} vers chaque voisine d'une cellule, y compris la cellule elle-même
+	 * si la règle la compte
+	 */
+	static int[][] neighborOffsets(Rule rule) {
+		int range = rule.getRange();
+		List<int[]> offsets = new ArrayList<>();
+
+		for (int row = -range; row <= range; row++) {
+			for (int col = -range; col <= range; col++) {
+				if (rule.getNeighborhood() == Rule.Neighborhood.VON_NEUMANN && Math.abs(row) + Math.abs(col) > range) continue;
+				if (row == 0 && col == 0 && !rule.includesCenter()) continue;
+
+				offsets.add(new int[] { row, col });
+			}
+		}
+		return offsets.toArray(new int[0][]);
+	}
+
+	/**
+	 * @return Cellule qui apparaît à la position donnée : la position elle-même dans un univers sans limites
+	 * ({@code size} à 0), sinon la cellule donnée par {@code BoundaryMode.map()}, ou -1 si la position est morte
+	 */
+	private static long locate(int row, int col, BoundaryMode boundaryMode, int size) {
+		return size == 0 ? CellChangeLog.pack(row, col) : boundaryMode.map(row, col, size);
+	}
+
+	/**
+	 * @param cells cellules d'un objet
+	 * @return Clé de la forme de l'objet, la même pour toutes ses positions et toutes ses orientations
+	 */
+	static String canonicalKey(long[] cells) {
+		String canonical = shapeKey(cells, 0);
+
+		for (int orientation = 1; orientation < 8; orientation++) {
+			String key = shapeKey(cells, orientation);
+			if (key.compareTo(canonical) < 0) canonical = key;
+		}
+		return canonical;
+	}
+
+	/**
+	 * Cette méthode tourne ou retourne les cellules d'un objet, les ramène à l'origine et les écrit dans l'ordre
+	 * des lignes, puis des colonnes. Chaque coordonnée occupe deux caractères.
+	 * @param cells cellules d'un objet
+	 * @param orientation orientation, de 0 (aucun changement) à 7 : le bit de valeur 4 échange les lignes et les colonnes,
+	 * le bit de valeur 1 inverse les lignes et le bit de valeur 2 inverse les colonnes
+	 * @return Clé de la forme de l'objet dans cette orientation, la même pour toutes ses positions
+	 */
+	private static String shapeKey(long[] cells, int orientation) {
+		long[] shape = new long[cells.length];
+		int minRow = Integer.MAX_VALUE, minCol = Integer.MAX_VALUE;
+
+		for (int i = 0; i < cells.length; i++) {
+			int row = CellChangeLog.unpackRow(cells[i]), col = CellChangeLog.unpackCol(cells[i]);
+			if ((orientation & 4) != 0) {
+				int swap = row;
+				row = col;
+				col = swap;
+			}
+			if ((orientation & 1) != 0) row = -row;
+			if ((orientation & 2) != 0) col = -col;
+
+			shape[i] = CellChangeLog.pack(row, col);
+			minRow = Math.min(minRow, row);
+			minCol = Math.min(minCol, col);
+		}
+
+		for (int i = 0; i < shape.length; i++)
+			shape[i] = CellChangeLog.pack(CellChangeLog.unpackRow(shape[i]) - minRow, CellChangeLog.unpackCol(shape[i]) - minCol);
+		Arrays.sort(shape);
+
+		StringBuilder key = new StringBuilder(4 * shape.length);
+		for (long cell : shape) {
+			int row = CellChangeLog.unpackRow(cell), col = CellChangeLog.unpackCol(cell);
+			key.append((char) (row >>> 16)).append((char) row).append((char) (col >>> 16)).append((char) col);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * @return Empreinte de 64 bits (FNV-1a) d'une clé, en hexadécimal sur 16 caractères
+	 */
+	private static String hashText(String key) {
+		long hash = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return String.format("%016x", hash);
+	}
+
+	/**
+	 * @return Plus petite ligne et plus petite colonne des cellules, regroupées par {@code CellChangeLog.pack()}
+	 */
+	private static long minCorner(long[] cells) {
+		int minRow = Integer.MAX_VALUE, minCol = Integer.MAX_VALUE;
+
+		for (long cell : cells) {
+			minRow = Math.min(minRow, CellChangeLog.unpackRow(cell));
+			minCol = Math.min(minCol, CellChangeLog.unpackCol(cell));
+		}
+		return CellChangeLog.pack(minRow, minCol);
+	}
+
+	private static Set<Long> toSet(long[] cells) {
+		Set<Long> set = new HashSet<>(cells.length * 2);
+		for (long cell : cells) set.add(cell);
+		return set;
+	}
+
+	private static long[] toArray(Collection<Long> cells) {
+		long[] array = new long[cells.size()];
+		int i = 0;
+		for (long cell : cells) array[i++] = cell;
+		return array;
+	}
+}
@@ -0,0 +1,391 @@
+package tp4;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Point d'entrée sans interface graphique qui fait évoluer un grand nombre de grilles aléatoires indépendantes
+ * (des « soupes ») en même temps. Chaque soupe a son propre {@code Board} et son propre {@code GenerationTracker},
+ * et évolue jusqu'à ce qu'elle se répète ou jusqu'au nombre maximal de générations. Les soupes sont réparties sur
+ * un {@code ForkJoinPool} : un fil d'exécution libre prend la soupe suivante, peu importe la durée des autres.
+ *
+ * Les germes des soupes sont tirés du germe principal : deux exécutions avec les mêmes options donnent les mêmes
+ * résultats, peu importe le nombre de fils d'exécution. Le résumé donne le débit (soupes par seconde), la génération
+ * de stabilisation, la période et la population finale des soupes.
+ *
+ * Exemple : {@code java tp4.SimulationFarm --soups 10000 --size 64 --seed 42 --engine PACKED}
+ *
+ * Options :
+ * - {@code --soups} : nombre de soupes à calculer (1000 par défaut);
+ * - {@code --size} : nombre de cellules actives sur un côté de chaque grille (64 par défaut);
+ * - {@code --density} : taux de remplissage initial, entre 0.0 et 1.0 (0.5 par défaut);
+ * - {@code --seed} : germe principal (aléatoire par défaut, et affiché pour reproduire l'exécution);
+ * - {@code --generations} : nombre maximal de générations d'une soupe (10000 par défaut);
+ * - {@code --engine} : moteur de calcul, parmi les valeurs de {@code EngineType} (PACKED par défaut);
+ * - {@code --rule} : règle d'évolution (B3/S23 par défaut, voir {@code Rule});
+ * - {@code --boundary} : comportement des bords, parmi les valeurs de {@code BoundaryMode} (DEAD par défaut);
+ * - {@code --threads} : nombre de fils d'exécution (nombre de processeurs par défaut). Chaque soupe est calculée
+ *   par un seul fil;
+ * - {@code --report} : nombre de soupes entre deux lignes de progression (0 par défaut, aucune ligne);
+ * - {@code --results} : fichier CSV où écrire le résultat de chaque soupe;
+ * - {@code --census} : recenser les objets de chaque soupe stabilisée et afficher le recensement total (voir
+ *   {@code ObjectCensus}). Toutes les soupes partagent le même {@code ShapeClassifier} : une forme déjà vue par une
+ *   soupe n'est jamais simulée de nouveau;
+ * - {@code --census-file} : fichier où cumuler le recensement total de plusieurs exécutions (implique {@code --census}).
+ */
+public class SimulationFarm {
+
+	// Réglages de l'exécution
+	private int soupCount = 1000;
+	private int size = 64;
+	private double density = 0.5;
+	private long seed = new Random().nextLong();
+	private long generations = 10000;
+	private EngineType engineType = EngineType.PACKED;
+	private Rule rule = Rule.CONWAY;
+	private BoundaryMode boundaryMode = BoundaryMode.DEAD;
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+	private int reportInterval = 0;
+	private Path resultsFile;
+	private boolean census = false;
+	private Path censusFile;
+
+	/**
+	 * Résultat d'une soupe. La génération de stabilisation et la période valent -1 si la soupe ne s'est pas répétée
+	 * avant le nombre maximal de générations.
+	 */
+	public static final class SoupResult {
+
+		private final int index;
+		private final long seed;
+		private final long generations;
+		private final long stabilityGeneration;
+		private final int period;
+		private final long finalPopulation;
+		private final ObjectCensus census;
+
+		SoupResult(int index, long seed, long generations, long stabilityGeneration, int period, long finalPopulation,
+				ObjectCensus census) {
+			this.index = index;
+			this.seed = seed;
+			this.generations = generations;
+			this.stabilityGeneration = stabilityGeneration;
+			this.period = period;
+			this.finalPopulation = finalPopulation;
+			this.census = census;
+		}
+
+		/**
+		 * @return Position de la soupe dans l'exécution, à partir de 0
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return Germe de la population initiale de la soupe
+		 */
+		public long getSeed() {
+			return seed;
+		}
+
+		/**
+		 * @return Nombre de générations calculées
+		 */
+		public long getGenerations() {
+			return generations;
+		}
+
+		/**
+		 * @return Première génération qui se répète, ou -1
+		 */
+		public long getStabilityGeneration() {
+			return stabilityGeneration;
+		}
+
+		/**
+		 * @return Période de la répétition, ou -1
+		 */
+		public int getPeriod() {
+			return period;
+		}
+
+		/**
+		 * @return Nombre de cellules vivantes à la dernière génération calculée
+		 */
+		public long getFinalPopulation() {
+			return finalPopulation;
+		}
+
+		/**
+		 * @return Recensement des objets de la soupe stabilisée, ou {@code null} s'il n'a pas été pris
+		 */
+		public ObjectCensus getCensus() {
+			return census;
+		}
+	}
+
+	public static void main(String[] args) {
+		SimulationFarm farm = new SimulationFarm();
+
+		try {
+			farm.parseArguments(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			printUsage();
+			System.exit(1);
+		}
+		try {
+			farm.run();
+		} catch (IOException e) {
+			System.err.println("Erreur d'écriture : " + e.getMessage());
+			System.exit(1);
+		} catch (IllegalArgumentException e) {
+			// Par exemple une règle que le moteur choisi ne supporte pas
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Lire les options de la ligne de commande. Chaque option est suivie de sa valeur.
+	 * @param args arguments de la ligne de commande
+	 * @throws IllegalArgumentException si une option est inconnue ou si sa valeur est invalide
+	 */
+	private void parseArguments(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+
+			if (option.equals("--census")) {
+				census = true;
+				continue;
+			}
+			if (i + 1 == args.length) throw new IllegalArgumentException("Valeur manquante pour l'option " + option);
+
+			String value = args[++i];
+			try {
+				switch (option) {
+				case "--soups":
+					soupCount = Integer.parseInt(value);
+					break;
+				case "--size":
+					size = Integer.parseInt(value);
+					break;
+				case "--density":
+					density = Double.parseDouble(value);
+					break;
+				case "--seed":
+					seed = Long.parseLong(value);
+					break;
+				case "--generations":
+					generations = Long.parseLong(value);
+					break;
+				case "--engine":
+					engineType = EngineType.valueOf(value.toUpperCase(Locale.ROOT));
+					break;
+				case "--rule":
+					rule = Rule.parse(value);
+					break;
+				case "--boundary":
+					boundaryMode = BoundaryMode.valueOf(value.toUpperCase(Locale.ROOT));
+					break;
+				case "--threads":
+					threadCount = Integer.parseInt(value);
+					break;
+				case "--report":
+					reportInterval = Integer.parseInt(value);
+					break;
+				case "--results":
+					resultsFile = Paths.get(value);
+					break;
+				case "--census-file":
+					censusFile = Paths.get(value);
+					census = true;
+					break;
+				default:
+					throw new IllegalArgumentException("Option inconnue : " + option);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Valeur invalide pour l'option " + option + " : " + value);
+			}
+		}
+
+		if (soupCount < 1) throw new IllegalArgumentException("Le nombre de soupes doit être positif");
+		if (size < 1) throw new IllegalArgumentException("La taille de la grille doit être positive");
+		if (density < 0 || density > 1) throw new IllegalArgumentException("La densité doit être entre 0.0 et 1.0");
+		if (generations < 0) throw new IllegalArgumentException("Le nombre de générations ne peut pas être négatif");
+		if (threadCount < 1) throw new IllegalArgumentException("Le nombre de fils d'exécution doit être positif");
+		if (reportInterval < 0) throw new IllegalArgumentException("L'intervalle de progression ne peut pas être négatif");
+	}
+
+	/**
+	 * Afficher la liste des options dans la console d'erreur.
+	 */
+	private static void printUsage() {
+		System.err.println("Usage : java tp4.SimulationFarm [--soups N] [--size N] [--density D] [--seed S] [--generations G]");
+		System.err.println("        [--engine CELL|PACKED|HASHLIFE|SPARSE|OFFHEAP|DISTRIBUTED] [--rule REGLE] [--boundary DEAD|TORUS|KLEIN|MIRROR]");
+		System.err.println("        [--threads T] [--report R] [--results FICHIER] [--census] [--census-file FICHIER]");
+	}
+
+	/**
+	 * Calculer toutes les soupes et afficher le résumé. Les résultats sont regroupés par le fil principal à mesure
+	 * que les soupes se terminent; les fils de calcul ne partagent donc aucun état.
+	 * @throws IOException si le fichier de résultats ne peut pas être écrit
+	 */
+	private void run() throws IOException {
+		System.out.printf(Locale.ROOT, "%d soupes de %d x %d, densité %.3f, germe %d, moteur %s, règle %s, bords %s, %d fil(s)%n",
+				soupCount, size, size, density, seed, engineType, rule, boundaryMode, threadCount);
+
+		// Vérifier une seule fois que le moteur supporte la règle et les bords, avant de lancer les soupes
+		Board check = new Board(1, 0.0, 1, engineType, seed);
+		check.setRule(rule);
+		check.setBoundaryMode(boundaryMode);
+		check.close();
+		ShapeClassifier classifier = census ? new ShapeClassifier(rule) : null;
+		ObjectCensus totalCensus = new ObjectCensus();
+
+		// Les germes sont tirés d'avance, dans l'ordre des soupes
+		SplittableRandom seeds = new SplittableRandom(seed);
+		SoupResult[] results = new SoupResult[soupCount];
+
+		MetricHistogram stabilityGenerations = new MetricHistogram();
+		MetricHistogram finalPopulations = new MetricHistogram();
+		Map<Integer, Integer> periods = new TreeMap<>();
+		long totalGenerations = 0;
+
+		ForkJoinPool pool = new ForkJoinPool(threadCount);
+		long start = System.nanoTime();
+
+		try {
+			CompletionService<SoupResult> completion = new ExecutorCompletionService<>(pool);
+			for (int index = 0; index < soupCount; index++) {
+				int soupIndex = index;
+				long soupSeed = seeds.nextLong();
+				completion.submit(() -> runSoup(soupIndex, soupSeed, classifier));
+			}
+
+			for (int done = 1; done <= soupCount; done++) {
+				SoupResult result = takeResult(completion);
+				results[result.getIndex()] = result;
+
+				totalGenerations += result.getGenerations();
+				finalPopulations.record(result.getFinalPopulation());
+				if (result.getStabilityGeneration() >= 0) {
+					stabilityGenerations.record(result.getStabilityGeneration());
+					periods.merge(result.getPeriod(), 1, Integer::sum);
+				}
+				if (result.getCensus() != null) totalCensus.addAll(result.getCensus());
+
+				if (reportInterval > 0 && done % reportInterval == 0) {
+					double elapsed = (System.nanoTime() - start) / 1e9;
+					System.out.printf(Locale.ROOT, "Soupes terminées : %d (%.1f soupes/s)%n", done, done / elapsed);
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		HistogramSnapshot stability = stabilityGenerations.snapshot();
+		System.out.printf(Locale.ROOT, "Soupes calculées : %d en %.3f s%n", soupCount, seconds);
+		System.out.printf(Locale.ROOT, "Débit : %.1f soupes/s, %.1f générations/s%n",
+				soupCount / seconds, totalGenerations / seconds);
+		System.out.printf(Locale.ROOT, "Soupes stabilisées : %d (%.1f %%), non stabilisées après %d générations : %d%n",
+				stability.getCount(), 100.0 * stability.getCount() / soupCount, generations, soupCount - stability.getCount());
+		System.out.println("Génération de stabilisation : " + stability);
+		System.out.println("Population finale : " + finalPopulations.snapshot());
+
+		StringBuilder periodLine = new StringBuilder("Périodes :");
+		for (Map.Entry<Integer, Integer> entry : periods.entrySet())
+			periodLine.append(' ').append(entry.getKey()).append(" (").append(entry.getValue()).append(')');
+		System.out.println(periodLine);
+
+		if (classifier != null) {
+			System.out.printf(Locale.ROOT, "Objets : %d (%d formes, %d objets classés dont %d simulés)%n",
+					totalCensus.getObjectCount(), totalCensus.getCodes().size(), classifier.getLookupCount(),
+					classifier.getSimulationCount());
+			for (String code : totalCensus.getMostCommon(20))
+				System.out.printf(Locale.ROOT, "  %8d %s (%s)%n", totalCensus.getCount(code), totalCensus.getName(code), code);
+
+			if (censusFile != null) totalCensus.mergeInto(censusFile);
+		}
+		if (resultsFile != null) writeResults(results);
+	}
+
+	/**
+	 * Faire évoluer une soupe jusqu'à sa première répétition ou jusqu'au nombre maximal de générations.
+	 * Appelée par les fils de calcul : la soupe n'utilise que ses propres objets.
+	 * @param index position de la soupe
+	 * @param soupSeed germe de la population initiale
+	 * @param classifier classeur partagé des objets, ou {@code null} si les objets ne sont pas recensés
+	 * @return Résultat de la soupe
+	 */
+	private SoupResult runSoup(int index, long soupSeed, ShapeClassifier classifier) {
+		Board board = new Board(size, density, 1, engineType, soupSeed);
+		board.setRule(rule);
+		board.setBoundaryMode(boundaryMode);
+		GenerationTracker tracker = new GenerationTracker(board);
+
+		long computed = 0;
+		while (computed < generations && tracker.getStabilityGeneration() < 0) {
+			board.nextGeneration();
+			board.updateBoard();
+			tracker.trackInfo();
+			computed++;
+		}
+		ObjectCensus objects = classifier != null && tracker.getStabilityGeneration() >= 0
+				? ObjectCensus.take(board, tracker.getPeriod(), classifier) : null;
+		SoupResult result = new SoupResult(index, soupSeed, computed, tracker.getStabilityGeneration(), tracker.getPeriod(),
+				board.countLivingCells(), objects);
+
+		// Avec le moteur OFFHEAP, la mémoire de la soupe est libérée sans attendre le ramasse-miettes
+		board.close();
+		return result;
+	}
+
+	/**
+	 * Attendre la prochaine soupe terminée. Une exception levée par une soupe est relancée telle quelle.
+	 * @param completion soupes soumises
+	 * @return Résultat de la soupe
+	 */
+	private static SoupResult takeResult(CompletionService<SoupResult> completion) {
+		try {
+			return completion.take().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Calcul des soupes interrompu", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Écrire le résultat de chaque soupe, dans l'ordre des soupes, dans {@code resultsFile} (une ligne par soupe).
+	 * @param results résultats des soupes
+	 * @throws IOException si le fichier ne peut pas être écrit
+	 */
+	private void writeResults(SoupResult[] results) throws IOException {
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8))) {
+			writer.println("soupe,germe,generations,stabilisation,periode,population");
+			for (SoupResult result : results) {
+				writer.printf(Locale.ROOT, "%d,%d,%d,%d,%d,%d%n", result.getIndex(), result.getSeed(), result.getGenerations(),
+						result.getStabilityGeneration(), result.getPeriod(), result.getFinalPopulation());
+			}
+		}
+		System.out.println("Résultats écrits dans " + resultsFile);
+	}
+}
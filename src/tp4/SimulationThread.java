@@ -0,0 +1,347 @@
+package tp4;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Cette classe calcule les générations du board dans son propre fil d'exécution, séparé de l'interface graphique.
+ * Après chaque génération, une copie de la grille ({@code FrameSnapshot}) peut être publiée. L'interface lit seulement
+ * la dernière copie publiée, à sa propre fréquence d'affichage : les générations calculées entre deux affichages
+ * ne sont jamais copiées, ce qui permet de calculer plus de générations que d'images affichées.
+ *
+ * La vitesse est limitée à {@code generationsPerSecond} générations par seconde, ou illimitée si cette valeur est 0.
+ * Une copie est publiée au plus une fois par intervalle d'image ({@code frameIntervalNanos}), et au plus une fois
+ * par {@code displayRate} générations.
+ */
+public class SimulationThread implements Runnable {
+
+	private final Board board;
+	private final GenerationTracker tracker;
+	private final Thread thread;
+
+	// Réglages modifiables par l'interface pendant l'exécution
+	private volatile double generationsPerSecond;
+	private volatile long frameIntervalNanos;
+	private volatile int displayRate;
+	private volatile boolean paused = false;
+
+	// Vrai lorsque le calcul doit s'arrêter (voir stop())
+	private volatile boolean stopRequested = false;
+
+	/**
+	 * Dernière copie publiée. Une nouvelle copie remplace simplement la précédente, même si elle n'a pas été affichée.
+	 */
+	private volatile FrameSnapshot latestSnapshot;
+
+	/**
+	 * Génération du dernier changement de chaque cellule, actualisée avec la liste des changements du board et
+	 * publiée avec chaque copie de la grille. Vaut {@code null} si le moteur n'enregistre pas les changements
+	 * (voir {@code Board.getChangeLog()}).
+	 */
+	private final CellHistory cellHistory;
+
+	// Sauvegarde automatique toutes les checkpointInterval générations, ou aucune si checkpointFile est null
+	private volatile Path checkpointFile;
+	private volatile int checkpointInterval;
+
+	// Mesures du calcul et de l'affichage, désactivées par défaut (voir GenerationMetrics)
+	private final GenerationMetrics metrics;
+
+	// Journal de toutes les générations calculées, ou null si elles ne sont pas enregistrées
+	private GenerationRecorder recorder;
+	
+	// Classeur des objets recensés à la stabilité, créé au premier recensement (voir ObjectCensus)
+	private ShapeClassifier classifier;
+
+	/**
+	 * Constructeur. Le fil d'exécution n'est pas démarré (voir {@code start()}).
+	 * @param board grille à faire évoluer
+	 * @param tracker suivi des générations du board
+	 * @param generationsPerSecond vitesse maximale, ou 0 pour une vitesse illimitée
+	 * @param framesPerSecond nombre maximal de copies publiées par seconde
+	 */
+	public SimulationThread(Board board, GenerationTracker tracker, double generationsPerSecond, int framesPerSecond) {
+		this.board = board;
+		this.tracker = tracker;
+		this.displayRate = Math.max(board.getDisplayRate(), 1);
+		setGenerationsPerSecond(generationsPerSecond);
+		setFramesPerSecond(framesPerSecond);
+
+		cellHistory = board.getChangeLog() != null ? new CellHistory(board.getSideLength(), tracker.getGenerationCounter()) : null;
+		latestSnapshot = takeSnapshot(tracker.getGenerationCounter());
+		metrics = new GenerationMetrics("simulation", (long) board.getActiveSideLength() * board.getActiveSideLength());
+
+		// Le fil de simulation ne doit pas empêcher le programme de se terminer lorsque la fenêtre est fermée
+		thread = new Thread(this, "simulation");
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * Copier la grille et figer l'historique des cellules à la génération actuelle. Les deux sont publiés ensemble
+	 * par l'écriture de {@code latestSnapshot}. L'historique ne peut pas être figé tant que l'interface n'a pas
+	 * réservé l'image précédente (voir {@code CellHistory.publish()}) : l'image est alors publiée plus tard.
+	 * @param generation numéro de la génération actuelle
+	 * @return Copie de la grille à publier, ou {@code null} si l'image ne peut pas être publiée maintenant
+	 */
+	private FrameSnapshot takeSnapshot(long generation) {
+		if (cellHistory == null) return new FrameSnapshot(board, generation, null);
+
+		CellHistory.View view = cellHistory.publish();
+		return view != null ? new FrameSnapshot(board, generation, view) : null;
+	}
+
+	/**
+	 * Recenser les objets de la grille stabilisée.
+	 * @return Recensement des objets, ou {@code null} si la règle de la grille ne permet pas de classer ses objets
+	 */
+	private ObjectCensus takeCensus() {
+		try {
+			if (classifier == null || !classifier.getRule().equals(board.getRule())) classifier = new ShapeClassifier(board.getRule());
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		return ObjectCensus.take(board, tracker.getPeriod(), classifier);
+	}
+	
+	/**
+	 * Démarrer le calcul des générations.
+	 */
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * Arrêter le calcul des générations et attendre la fin du fil d'exécution, qui ferme alors le journal des
+	 * générations. Le fil n'est pas interrompu, pour qu'aucune écriture en cours ne soit abandonnée. Cette méthode
+	 * est appelée à la fermeture du programme (voir {@code Main}).
+	 */
+	public void stop() {
+		stopRequested = true;
+		LockSupport.unpark(thread);
+
+		try {
+			if (Thread.currentThread() != thread) thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			runGenerations();
+		} finally {
+			closeRecorder();
+		}
+	}
+
+	/**
+	 * Boucle du calcul des générations, jusqu'à l'arrêt du fil d'exécution.
+	 */
+	private void runGenerations() {
+		long nextGenerationTime = System.nanoTime();
+		long nextFrameTime = nextGenerationTime;
+		long lastPublished = tracker.getGenerationCounter();
+
+		while (!stopRequested && !Thread.currentThread().isInterrupted()) {
+			if (paused) {
+				// La génération où le calcul a été suspendu doit être visible, même si elle n'a pas été publiée
+				if (lastPublished != tracker.getGenerationCounter()) {
+					FrameSnapshot snapshot = takeSnapshot(tracker.getGenerationCounter());
+					if (snapshot != null) {
+						latestSnapshot = snapshot;
+						lastPublished = snapshot.getGeneration();
+					}
+				}
+				LockSupport.parkNanos(frameIntervalNanos);
+				nextGenerationTime = System.nanoTime();
+				continue;
+			}
+
+			long start = metrics.startTimer();
+			board.nextGeneration();
+			long stepped = metrics.recordStepTime(start);
+			board.updateBoard();
+			metrics.recordCommitTime(stepped);
+			tracker.trackInfo();
+			metrics.recordGeneration(board.countLivingCells());
+			if (cellHistory != null) cellHistory.record(board.getChangeLog(), tracker.getGenerationCounter());
+			recordGeneration();
+			saveCheckpoint();
+
+			// Le recensement est pris par ce fil, qui possède le board; le message est affiché par le fil de l'interface graphique
+			if (tracker.hasReachedStability()) {
+				ObjectCensus census = takeCensus();
+				SwingUtilities.invokeLater(() -> tracker.showStabilityGeneration(census));
+			}
+
+			long now = System.nanoTime();
+			long generation = tracker.getGenerationCounter();
+
+			if (now >= nextFrameTime && generation - lastPublished >= displayRate) {
+				FrameSnapshot snapshot = takeSnapshot(generation);
+				if (snapshot != null) {
+					latestSnapshot = snapshot;
+					lastPublished = generation;
+					nextFrameTime = now + frameIntervalNanos;
+				}
+			}
+
+			// Attendre la prochaine génération si la vitesse est limitée. Après un long retard, on ne rattrape pas le temps perdu
+			double speed = generationsPerSecond;
+			if (speed > 0) {
+				nextGenerationTime += (long) (1e9 / speed);
+				if (now - nextGenerationTime > 1_000_000_000L) nextGenerationTime = now;
+
+				while (!stopRequested && (now = System.nanoTime()) < nextGenerationTime) LockSupport.parkNanos(nextGenerationTime - now);
+			} else {
+				nextGenerationTime = now;
+			}
+		}
+
+		// La dernière génération calculée est sauvegardée à l'arrêt, comme à la fin de HeadlessRunner
+		Path file = checkpointFile;
+		if (file != null) writeCheckpoint(file);
+	}
+
+	/**
+	 * Sauvegarder le board si la génération actuelle est un multiple de {@code checkpointInterval}. Une erreur d'écriture
+	 * est affichée dans la console sans arrêter la simulation; la sauvegarde précédente reste alors intacte.
+	 */
+	private void saveCheckpoint() {
+		Path file = checkpointFile;
+		int interval = checkpointInterval;
+
+		if (file == null || interval <= 0 || tracker.getGenerationCounter() % interval != 0) return;
+		writeCheckpoint(file);
+	}
+
+	/**
+	 * Sauvegarder le board dans le fichier donné. Une erreur d'écriture est affichée dans la console.
+	 * @param file fichier de sauvegarde
+	 */
+	private void writeCheckpoint(Path file) {
+		try {
+			BoardCheckpoint.save(file, board, tracker);
+		} catch (IOException e) {
+			System.err.println("Échec de la sauvegarde automatique : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Ajouter la génération actuelle au journal. Après une erreur d'écriture, l'enregistrement est arrêté et l'erreur
+	 * est affichée dans la console, sans arrêter la simulation.
+	 */
+	private void recordGeneration() {
+		if (recorder == null) return;
+
+		try {
+			recorder.record(tracker.getGenerationCounter());
+		} catch (IOException e) {
+			System.err.println("Échec de l'enregistrement des générations : " + e.getMessage());
+			try {
+				recorder.close();
+			} catch (IOException ignored) {
+				// L'erreur a déjà été affichée
+			}
+			recorder = null;
+		}
+	}
+
+	/**
+	 * Écrire les générations en attente et fermer le journal, à l'arrêt du fil d'exécution. Sans cette fermeture,
+	 * le dernier bloc du journal serait perdu.
+	 */
+	private void closeRecorder() {
+		if (recorder == null) return;
+
+		try {
+			recorder.close();
+		} catch (IOException e) {
+			System.err.println("Échec de l'enregistrement des générations : " + e.getMessage());
+		}
+		recorder = null;
+	}
+
+	/**
+	 * Méthode d'altération du journal des générations. Le journal doit être créé à la génération actuelle du board,
+	 * avant le démarrage du fil d'exécution (voir {@code start()}), puisqu'il est ensuite utilisé seulement par ce fil.
+	 * Il est fermé par ce fil lorsque le calcul s'arrête (voir {@code stop()}).
+	 * @param recorder journal où ajouter chaque génération calculée, ou {@code null}
+	 */
+	public void setRecorder(GenerationRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	/**
+	 * Méthode d'altération de la sauvegarde automatique. Le board est aussi sauvegardé lorsque le calcul s'arrête
+	 * (voir {@code stop()}).
+	 * @param checkpointFile fichier de sauvegarde, ou {@code null} pour désactiver la sauvegarde automatique
+	 * @param checkpointInterval nombre de générations entre deux sauvegardes
+	 * @throws IllegalArgumentException si la règle du board a plus de deux états (voir {@code BoardCheckpoint})
+	 */
+	public void setCheckpoint(Path checkpointFile, int checkpointInterval) {
+		if (checkpointFile != null && board.getRule().getStateCount() > 2)
+			throw new IllegalArgumentException("Les règles à plusieurs états ne peuvent pas être sauvegardées : " + board.getRule());
+
+		this.checkpointFile = checkpointFile;
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	/**
+	 * @return Dernière copie de la grille publiée par le fil de simulation
+	 */
+	public FrameSnapshot getLatestSnapshot() {
+		return latestSnapshot;
+	}
+
+	/**
+	 * @return Mesures du calcul des générations, aussi utilisées par l'interface pour mesurer l'affichage
+	 */
+	public GenerationMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Méthode d'altération de la vitesse de la simulation.
+	 * @param generationsPerSecond nombre maximal de générations par seconde, ou 0 pour une vitesse illimitée
+	 */
+	public void setGenerationsPerSecond(double generationsPerSecond) {
+		this.generationsPerSecond = Math.max(generationsPerSecond, 0);
+	}
+
+	/**
+	 * Méthode d'altération de la fréquence de publication des copies.
+	 * @param framesPerSecond nombre maximal de copies publiées par seconde
+	 */
+	public void setFramesPerSecond(int framesPerSecond) {
+		this.frameIntervalNanos = 1_000_000_000L / Math.max(framesPerSecond, 1);
+	}
+
+	/**
+	 * Méthode d'altération de l'intervalle d'affichage. Une copie est publiée au plus une fois par {@code displayRate}
+	 * générations, ce qui permet par exemple de n'afficher qu'une phase d'un oscillateur.
+	 * @param displayRate nombre minimal de générations entre deux copies
+	 */
+	public void setDisplayRate(int displayRate) {
+		this.displayRate = Math.max(displayRate, 1);
+	}
+
+	/**
+	 * Suspendre ou reprendre le calcul des générations.
+	 * @param paused {@code true} pour suspendre le calcul
+	 */
+	public void setPaused(boolean paused) {
+		this.paused = paused;
+	}
+
+	/**
+	 * @return {@code true} si le calcul des générations est suspendu
+	 */
+	public boolean isPaused() {
+		return paused;
+	}
+}
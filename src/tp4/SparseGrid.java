@@ -0,0 +1,473 @@
+package tp4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Cette classe est un moteur de calcul pour un univers sans limites. L'univers est divisé en blocs de 64 x 64 cellules
+ * ({@code Chunk}), et seuls les blocs qui contiennent au moins une cellule vivante existent en mémoire. Un bloc est créé
+ * lorsqu'une cellule naît dans une région vide, et il est supprimé dès qu'il ne contient plus de cellules vivantes.
+ * Un motif isolé au milieu d'un immense espace vide coûte donc seulement quelques blocs, et il peut se déplacer
+ * aussi loin qu'il le veut.
+ *
+ * Chaque bloc est stocké comme dans {@code BitGrid} : une ligne de 64 cellules forme un mot de 64 bits. Contrairement
+ * aux autres moteurs, il n'y a pas de bordure : {@code getSideLength()} indique seulement la taille de la fenêtre
+ * (coordonnées de 0 à {@code sideLength - 1}) utilisée pour la population initiale et la vue {@code Cell}. Les cellules
+ * en dehors de cette fenêtre continuent d'évoluer et peuvent être lues avec des coordonnées quelconques, même négatives.
+ */
+public class SparseGrid implements GridEngine {
+
+	// Un bloc fait 2^6 = 64 cellules de côté
+	private static final int CHUNK_BITS = 6;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	// Bloc vide utilisé à la place des blocs qui n'existent pas
+	private static final long[] EMPTY_CHUNK = new long[CHUNK_SIZE];
+
+	private final int sideLength;
+
+	/**
+	 * Blocs existants, identifiés par leurs coordonnées de bloc regroupées dans un {@code long} (voir {@code chunkKey()}).
+	 * La table des blocs de la génération suivante est réutilisée d'une génération à l'autre.
+	 */
+	private ChunkTable chunks = new ChunkTable();
+	private ChunkTable nextChunks = new ChunkTable();
+
+	// Blocs calculés à la génération actuelle; la liste est réutilisée d'une génération à l'autre
+	private final ArrayList<Chunk> candidates = new ArrayList<Chunk>();
+
+	// Blocs vides réutilisables, dont toutes les cellules sont mortes
+	private final ArrayList<Chunk> freeChunks = new ArrayList<Chunk>();
+
+	private long population;
+	private long birthCount, deathCount;
+
+	/**
+	 * Empreinte de l'état actuel (voir {@code GridEngine.getStateHash()}). Chaque bloc calcule la part de l'empreinte
+	 * qui correspond à ses cellules qui changent d'état.
+	 */
+	private long stateHash;
+
+	private boolean changeTracking;
+	private final CellChangeLog changeLog = new CellChangeLog();
+
+	private ParallelStepper stepper;
+
+	// Règle d'évolution (voir BitGrid.setRule())
+	private Rule rule = Rule.CONWAY;
+	private boolean conway = true;
+	private int birthMask, survivalMask;
+
+	/**
+	 * Constructeur avec paramètre. L'univers est vide au départ.
+	 * @param sideLength Taille de la fenêtre utilisée pour la population initiale et la vue {@code Cell}
+	 */
+	public SparseGrid(int sideLength) {
+		this.sideLength = sideLength;
+	}
+
+	/**
+	 * @param chunkRow ligne du bloc
+	 * @param chunkCol colonne du bloc
+	 * @return Clé unique du bloc dans {@code chunks}
+	 */
+	private static long chunkKey(int chunkRow, int chunkCol) {
+		return ((long) chunkRow << 32) | (chunkCol & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @param chunkRow ligne du bloc
+	 * @param chunkCol colonne du bloc
+	 * @return Bloc vide aux coordonnées données, réutilisé si possible
+	 */
+	private Chunk takeChunk(int chunkRow, int chunkCol) {
+		Chunk chunk = freeChunks.isEmpty() ? new Chunk() : freeChunks.remove(freeChunks.size() - 1);
+		chunk.chunkRow = chunkRow;
+		chunk.chunkCol = chunkCol;
+		return chunk;
+	}
+
+	/**
+	 * @return Cellules du bloc donné, ou un bloc vide si le bloc n'existe pas
+	 */
+	private long[] chunkCells(int chunkRow, int chunkCol) {
+		Chunk chunk = chunks.get(chunkKey(chunkRow, chunkCol));
+		return chunk == null ? EMPTY_CHUNK : chunk.cells;
+	}
+
+	@Override
+	public int getSideLength() {
+		return sideLength;
+	}
+
+	@Override
+	public boolean isAlive(int row, int col) {
+		long[] cells = chunkCells(row >> CHUNK_BITS, col >> CHUNK_BITS);
+		return (cells[row & CHUNK_MASK] & (1L << col)) != 0;
+	}
+
+	@Override
+	public void setAlive(int row, int col, boolean state) {
+		long key = chunkKey(row >> CHUNK_BITS, col >> CHUNK_BITS);
+		Chunk chunk = chunks.get(key);
+
+		if (chunk == null) {
+			if (!state) return;
+
+			chunk = takeChunk(row >> CHUNK_BITS, col >> CHUNK_BITS);
+			chunks.put(key, chunk);
+		}
+
+		long word = chunk.cells[row & CHUNK_MASK];
+		long updated = state ? word | (1L << col) : word & ~(1L << col);
+
+		chunk.cells[row & CHUNK_MASK] = updated;
+		chunk.population += Long.bitCount(updated) - Long.bitCount(word);
+		population += Long.bitCount(updated) - Long.bitCount(word);
+		if (updated != word) stateHash ^= CellChangeLog.hashKey(row, col);
+
+		if (chunk.population == 0) {
+			chunks.remove(key);
+			freeChunks.add(chunk);
+		}
+	}
+
+	/**
+	 * Cette méthode calcule la génération suivante. Chaque bloc existant est calculé, ainsi que chaque bloc vide voisin
+	 * d'un bloc existant, puisque des cellules peuvent naître de l'autre côté de la frontière entre deux blocs.
+	 * Les blocs vides sont ajoutés temporairement à la table des blocs; ceux qui restent vides, ainsi que les blocs
+	 * qui deviennent vides, sont ensuite remis dans la réserve de blocs réutilisables.
+	 */
+	@Override
+	public void nextGeneration() {
+		for (Chunk chunk : chunks.values) if (chunk != null) candidates.add(chunk);
+
+		// Blocs vides qui touchent un bloc existant
+		int existing = candidates.size();
+		for (int c = 0; c < existing; c++) {
+			Chunk chunk = candidates.get(c);
+
+			for (int i = -1; i < 2; i++) {
+				for (int j = -1; j < 2; j++) {
+					long key = chunkKey(chunk.chunkRow + i, chunk.chunkCol + j);
+
+					if (chunks.get(key) == null) {
+						Chunk candidate = takeChunk(chunk.chunkRow + i, chunk.chunkCol + j);
+						chunks.put(key, candidate);
+						candidates.add(candidate);
+					}
+				}
+			}
+		}
+
+		// Chaque bloc écrit seulement dans ses propres cellules suivantes
+		if (stepper != null)
+			stepper.forEachBand(0, candidates.size(), (from, to) -> computeChunks(candidates, from, to));
+		else
+			computeChunks(candidates, 0, candidates.size());
+
+		nextChunks.clear();
+		birthCount = 0;
+		deathCount = 0;
+		changeLog.clear();
+
+		for (Chunk chunk : candidates) {
+			birthCount += chunk.births;
+			deathCount += chunk.deaths;
+			stateHash ^= chunk.hash;
+
+			if (changeTracking && chunk.log != null) changeLog.addAll(chunk.log);
+
+			// Un bloc devenu vide a seulement des cellules mortes après l'échange, et peut être réutilisé tel quel
+			chunk.swap();
+			if (chunk.population == 0)
+				freeChunks.add(chunk);
+			else
+				nextChunks.put(chunkKey(chunk.chunkRow, chunk.chunkCol), chunk);
+		}
+		candidates.clear();
+
+		ChunkTable previous = chunks;
+		chunks = nextChunks;
+		nextChunks = previous;
+		population += birthCount - deathCount;
+	}
+
+	/**
+	 * Cette méthode calcule la génération suivante des blocs de la liste donnée, entre les indices {@code from}
+	 * (inclusivement) et {@code to} (exclusivement).
+	 */
+	private void computeChunks(ArrayList<Chunk> candidates, int from, int to) {
+		for (int i = from; i < to; i++) computeChunk(candidates.get(i));
+	}
+
+	/**
+	 * Cette méthode calcule la génération suivante d'un bloc et l'écrit dans {@code nextCells}. Les lignes et colonnes
+	 * voisines sont lues dans les 8 blocs qui entourent le bloc.
+	 * @param chunk bloc à calculer
+	 */
+	private void computeChunk(Chunk chunk) {
+		int row = chunk.chunkRow, col = chunk.chunkCol;
+
+		long[] center = chunk.cells;
+		long[] north = chunkCells(row - 1, col), south = chunkCells(row + 1, col);
+		long[] west = chunkCells(row, col - 1), east = chunkCells(row, col + 1);
+		long[] northWest = chunkCells(row - 1, col - 1), northEast = chunkCells(row - 1, col + 1);
+		long[] southWest = chunkCells(row + 1, col - 1), southEast = chunkCells(row + 1, col + 1);
+
+		int last = CHUNK_SIZE - 1;
+		int chunkPopulation = 0, births = 0, deaths = 0;
+		long hash = 0;
+
+		if (chunk.log != null) chunk.log.clear();
+
+		for (int r = 0; r < CHUNK_SIZE; r++) {
+			// Mots de la ligne du haut, de la ligne actuelle et de la ligne du bas, dans ce bloc et les blocs voisins
+			long up = r == 0 ? north[last] : center[r - 1];
+			long upW = r == 0 ? northWest[last] : west[r - 1];
+			long upE = r == 0 ? northEast[last] : east[r - 1];
+			long down = r == last ? south[0] : center[r + 1];
+			long downW = r == last ? southWest[0] : west[r + 1];
+			long downE = r == last ? southEast[0] : east[r + 1];
+			long mid = center[r];
+
+			long upWest = (up << 1) | (upW >>> 63), upEast = (up >>> 1) | (upE << 63);
+			long midWest = (mid << 1) | (west[r] >>> 63), midEast = (mid >>> 1) | (east[r] << 63);
+			long downWest = (down << 1) | (downW >>> 63), downEast = (down >>> 1) | (downE << 63);
+
+			long result = conway ? BitGrid.applyRule(upWest, up, upEast, midWest, mid, midEast, downWest, down, downEast)
+					: BitGrid.applyRule(birthMask, survivalMask, upWest, up, upEast, midWest, mid, midEast, downWest, down, downEast);
+
+			chunk.nextCells[r] = result;
+			chunkPopulation += Long.bitCount(result);
+			births += Long.bitCount(result & ~mid);
+			deaths += Long.bitCount(mid & ~result);
+
+			// Appliquer la clé de chaque cellule qui a changé d'état
+			for (long changes = result ^ mid; changes != 0; changes &= changes - 1) {
+				int cellRow = (row << CHUNK_BITS) + r;
+				int cellCol = (col << CHUNK_BITS) + Long.numberOfTrailingZeros(changes);
+
+				hash ^= CellChangeLog.hashKey(cellRow, cellCol);
+				if (changeTracking) {
+					if (chunk.log == null) chunk.log = new CellChangeLog();
+					chunk.log.add(cellRow, cellCol);
+				}
+			}
+		}
+		chunk.population = chunkPopulation;
+		chunk.births = births;
+		chunk.deaths = deaths;
+		chunk.hash = hash;
+	}
+
+	@Override
+	public long countLivingCells() {
+		return population;
+	}
+
+	@Override
+	public long getBirthCount() {
+		return birthCount;
+	}
+
+	@Override
+	public long getDeathCount() {
+		return deathCount;
+	}
+
+	@Override
+	public long getStateHash() {
+		return stateHash;
+	}
+
+	@Override
+	public void setChangeTracking(boolean enabled) {
+		changeTracking = enabled;
+	}
+
+	@Override
+	public CellChangeLog getChangeLog() {
+		return changeTracking ? changeLog : null;
+	}
+
+	/**
+	 * La copie contient tous les blocs, y compris ceux en dehors de la fenêtre, dans l'ordre de leurs clés : la clé
+	 * de chaque bloc suivie de ses {@code CHUNK_SIZE} mots.
+	 */
+	@Override
+	public long[] copyState() {
+		long[] keys = new long[chunks.size];
+		int count = 0;
+		for (Chunk chunk : chunks.values) if (chunk != null) keys[count++] = chunkKey(chunk.chunkRow, chunk.chunkCol);
+		Arrays.sort(keys);
+
+		long[] state = new long[keys.length * (CHUNK_SIZE + 1)];
+		for (int i = 0; i < keys.length; i++) {
+			state[i * (CHUNK_SIZE + 1)] = keys[i];
+			System.arraycopy(chunks.get(keys[i]).cells, 0, state, i * (CHUNK_SIZE + 1) + 1, CHUNK_SIZE);
+		}
+		return state;
+	}
+
+	@Override
+	public void setStepper(ParallelStepper stepper) {
+		this.stepper = stepper;
+	}
+
+	/**
+	 * Seules les règles semblables au jeu de la vie sont supportées. Une cellule morte sans voisins ne doit pas naître,
+	 * sinon l'espace vide autour des blocs existants devrait aussi être calculé.
+	 */
+	@Override
+	public void setRule(Rule rule) {
+		if (!rule.isLifeLike() || rule.hasBirthWithoutNeighbors())
+			throw new IllegalArgumentException("Le moteur SPARSE supporte seulement les règles B/S à deux états sans B0 : " + rule);
+
+		this.rule = rule;
+		conway = rule.isConway();
+		birthMask = rule.getBirthMask();
+		survivalMask = rule.getSurvivalMask();
+	}
+
+	@Override
+	public Rule getRule() {
+		return rule;
+	}
+
+	/**
+	 * @return Nombre de blocs de 64 x 64 cellules présents en mémoire
+	 */
+	public int getChunkCount() {
+		return chunks.size;
+	}
+
+	/**
+	 * Bloc de 64 x 64 cellules. Comme pour {@code BitGrid}, la génération suivante est écrite dans {@code nextCells}
+	 * avant que les deux tableaux soient échangés.
+	 */
+	private static final class Chunk {
+
+		int chunkRow, chunkCol;
+		long[] cells = new long[CHUNK_SIZE];
+		long[] nextCells = new long[CHUNK_SIZE];
+		int population;
+
+		// Naissances, morts, part de l'empreinte et cellules changées du bloc lors de la dernière génération calculée
+		int births, deaths;
+		long hash;
+		CellChangeLog log;
+
+		void swap() {
+			long[] temp = cells;
+			cells = nextCells;
+			nextCells = temp;
+		}
+	}
+
+	/**
+	 * Table des blocs indexée par leur clé {@code long} (voir {@code chunkKey()}), sans objet pour chaque clé. Les clés
+	 * sont rangées par adressage ouvert avec sondage linéaire dans un tableau dont la taille est une puissance de 2,
+	 * rempli au plus à moitié. Une case vide a une valeur {@code null}.
+	 */
+	private static final class ChunkTable {
+
+		private static final int MIN_CAPACITY = 16;
+
+		long[] keys;
+		Chunk[] values;
+		int size;
+
+		// Décalage qui garde les bits de poids fort du produit de la clé, soit un indice de la table
+		private int shift;
+
+		ChunkTable() {
+			allocate(MIN_CAPACITY);
+		}
+
+		private void allocate(int capacity) {
+			keys = new long[capacity];
+			values = new Chunk[capacity];
+			shift = 64 - Integer.numberOfTrailingZeros(capacity);
+			size = 0;
+		}
+
+		private int slot(long key) {
+			return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+		}
+
+		/**
+		 * @return Bloc associé à la clé donnée, ou {@code null} s'il n'existe pas
+		 */
+		Chunk get(long key) {
+			int mask = keys.length - 1;
+
+			for (int i = slot(key); values[i] != null; i = (i + 1) & mask)
+				if (keys[i] == key) return values[i];
+			return null;
+		}
+
+		/**
+		 * Associer un bloc à une clé, en remplaçant le bloc précédent de cette clé s'il existe.
+		 */
+		void put(long key, Chunk chunk) {
+			if (2 * (size + 1) > keys.length) resize(keys.length * 2);
+
+			int mask = keys.length - 1;
+			int i = slot(key);
+			for (; values[i] != null; i = (i + 1) & mask) {
+				if (keys[i] == key) {
+					values[i] = chunk;
+					return;
+				}
+			}
+			keys[i] = key;
+			values[i] = chunk;
+			size++;
+		}
+
+		/**
+		 * Retirer le bloc d'une clé. Les clés suivantes de la même suite de cases sont reculées dans la case libérée
+		 * lorsque c'est possible, pour qu'aucune recherche ne s'arrête trop tôt sur une case vide.
+		 */
+		void remove(long key) {
+			int mask = keys.length - 1;
+			int hole = slot(key);
+
+			while (values[hole] != null && keys[hole] != key) hole = (hole + 1) & mask;
+			if (values[hole] == null) return;
+
+			for (int i = (hole + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+				// La clé peut reculer si la case libérée se trouve entre sa case de départ et sa case actuelle
+				if (((i - slot(keys[i])) & mask) >= ((i - hole) & mask)) {
+					keys[hole] = keys[i];
+					values[hole] = values[i];
+					hole = i;
+				}
+			}
+			values[hole] = null;
+			size--;
+		}
+
+		/**
+		 * Retirer tous les blocs. La table garde sa capacité, sauf si elle était presque vide.
+		 */
+		void clear() {
+			if (keys.length > MIN_CAPACITY && size * 8 < keys.length) {
+				allocate(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(size, 1)) << 2));
+			} else {
+				Arrays.fill(values, null);
+				size = 0;
+			}
+		}
+
+		private void resize(int capacity) {
+			long[] oldKeys = keys;
+			Chunk[] oldValues = values;
+
+			allocate(capacity);
+			for (int i = 0; i < oldValues.length; i++) if (oldValues[i] != null) put(oldKeys[i], oldValues[i]);
+		}
+	}
+}
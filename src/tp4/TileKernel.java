@@ -0,0 +1,40 @@
+package tp4;
+
+/**
+ * Calcul d'une ligne de tuile selon la règle de Conway, pour le moteur {@code EngineType.CELL}. Le noyau vectoriel
+ * ({@code VectorTileKernel}) utilise l'API Vector du JDK, qui est encore un module en incubation : il n'est disponible
+ * que si la machine virtuelle est lancée avec {@code --add-modules jdk.incubator.vector}. Sinon, la grille garde son
+ * calcul cellule par cellule ({@code Board.computeTile()}), qui donne exactement le même résultat.
+ */
+interface TileKernel {
+
+	/**
+	 * Calculer une ligne de tuile : les cellules {@code index} à {@code index + length - 1} de {@code nextStates}
+	 * reçoivent l'état suivant des mêmes cellules de {@code states}, et aucune autre cellule n'est écrite. Les états
+	 * valent 0 ou 1, et les lignes voisines se trouvent à {@code stride} cellules de distance.
+	 * @param states états de la génération actuelle, avec la bordure
+	 * @param nextStates états de la génération suivante
+	 * @param index position de la première cellule de la ligne
+	 * @param length nombre de cellules de la ligne, au plus 32
+	 * @param stride nombre de cellules d'une ligne complète de la grille
+	 * @return Naissances dans les 32 bits de poids faible et morts dans les 32 bits de poids fort : le bit {@code i}
+	 * correspond à la cellule {@code index + i}
+	 */
+	long computeRow(byte[] states, byte[] nextStates, int index, int length, int stride);
+
+	/**
+	 * Le noyau vectoriel peut être désactivé avec la propriété système {@code tp4.vector=false}.
+	 * @return Noyau vectoriel, ou {@code null} si le module {@code jdk.incubator.vector} n'est pas chargé
+	 */
+	static TileKernel loadVectorKernel() {
+		if (!Boolean.parseBoolean(System.getProperty("tp4.vector", "true"))) return null;
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+
+		// La classe est chargée seulement ici : sans le module, la charger échouerait
+		try {
+			return (TileKernel) Class.forName("tp4.VectorTileKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+}
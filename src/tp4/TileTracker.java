@@ -0,0 +1,177 @@
+package tp4;
+
+import java.util.Arrays;
+
+/**
+ * Cette classe divise une grille en tuiles rectangulaires et garde en mémoire les tuiles qui ont changé lors de la
+ * dernière génération. Une cellule ne peut changer d'état que si au moins une cellule de son voisinage a changé à la
+ * génération précédente. Une tuile doit donc seulement être recalculée si elle-même ou l'une de ses 8 tuiles voisines
+ * a changé; toutes les autres tuiles sont stables et peuvent être ignorées.
+ *
+ * Les moteurs qui utilisent cette classe conservent deux générations en mémoire. Lorsqu'une tuile est ignorée,
+ * la génération précédente de cette tuile est déjà identique à la génération actuelle, et il n'est donc pas
+ * nécessaire de la recopier.
+ */
+public class TileTracker {
+
+	private final int tileRows, tileCols;
+
+	// Tuiles modifiées lors de la génération précédente
+	private boolean[] changedTiles;
+
+	// Tuiles modifiées lors de la génération en cours de calcul
+	private boolean[] updatedTiles;
+
+	// Tuiles qui doivent être calculées lors de la génération en cours
+	private final boolean[] activeTiles;
+
+	private int skippedTileCount;
+
+	/**
+	 * Lorsque les bords opposés de la grille sont collés (voir {@code BoundaryMode.connectsOppositeEdges()}), les tuiles
+	 * du bord forment un seul voisinage : elles sont toutes recalculées dès que l'une d'elles a changé. Nombre de rangées
+	 * et de colonnes de tuiles qui forment le bord de chaque côté, ou 0 si les bords ne sont pas collés.
+	 */
+	private int edgeDepth;
+
+	/**
+	 * Constructeur avec paramètres. Au départ, toutes les tuiles sont considérées comme modifiées.
+	 * @param tileRows Nombre de rangées de tuiles
+	 * @param tileCols Nombre de colonnes de tuiles
+	 */
+	public TileTracker(int tileRows, int tileCols) {
+		this.tileRows = tileRows;
+		this.tileCols = tileCols;
+
+		changedTiles = new boolean[tileRows * tileCols];
+		updatedTiles = new boolean[tileRows * tileCols];
+		activeTiles = new boolean[tileRows * tileCols];
+
+		Arrays.fill(changedTiles, true);
+	}
+
+	/**
+	 * Cette méthode détermine quelles tuiles doivent être calculées pour la nouvelle génération, selon les tuiles
+	 * qui ont changé à la génération précédente. Elle doit être appelée avant le calcul de chaque génération.
+	 */
+	public void beginGeneration() {
+		skippedTileCount = 0;
+		boolean edgeChanged = edgeDepth > 0 && hasChangedEdge();
+
+		for (int row = 0; row < tileRows; row++) {
+			for (int col = 0; col < tileCols; col++) {
+				boolean active = hasChangedNeighborhood(row, col) || (edgeChanged && isEdge(row, col));
+
+				activeTiles[row * tileCols + col] = active;
+				if (!active) skippedTileCount++;
+			}
+		}
+
+		Arrays.fill(updatedTiles, false);
+	}
+
+	/**
+	 * @param row rangée de la tuile
+	 * @param col colonne de la tuile
+	 * @return {@code true} si la tuile ou l'une de ses voisines a changé lors de la génération précédente
+	 */
+	private boolean hasChangedNeighborhood(int row, int col) {
+		for (int i = Math.max(row - 1, 0); i <= Math.min(row + 1, tileRows - 1); i++) {
+			for (int j = Math.max(col - 1, 0); j <= Math.min(col + 1, tileCols - 1); j++) {
+
+				if (changedTiles[i * tileCols + j]) return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return {@code true} si au moins une tuile du bord de la grille a changé lors de la génération précédente
+	 */
+	private boolean hasChangedEdge() {
+		for (int row = 0; row < tileRows; row++) {
+			for (int col = 0; col < tileCols; col++) {
+				if (isEdge(row, col) && changedTiles[row * tileCols + col]) return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return {@code true} si la tuile fait partie du bord de la grille
+	 */
+	private boolean isEdge(int row, int col) {
+		return row < edgeDepth || col < edgeDepth || row >= tileRows - edgeDepth || col >= tileCols - edgeDepth;
+	}
+
+	/**
+	 * Méthode d'altération du lien entre les bords opposés de la grille. Toutes les tuiles seront calculées à la
+	 * prochaine génération.
+	 * @param edgeDepth nombre de rangées et de colonnes de tuiles, de chaque côté, dont les cellules sont voisines
+	 * de cellules du bord opposé, ou 0 si les bords opposés ne sont pas collés
+	 */
+	public void setEdgeDepth(int edgeDepth) {
+		this.edgeDepth = edgeDepth;
+		markAllDirty();
+	}
+
+	/**
+	 * Les tuiles modifiées pendant cette génération deviennent les tuiles modifiées de la génération précédente.
+	 * Cette méthode doit être appelée après le calcul de chaque génération.
+	 */
+	public void endGeneration() {
+		boolean[] temp = changedTiles;
+		changedTiles = updatedTiles;
+		updatedTiles = temp;
+	}
+
+	/**
+	 * @param row rangée de la tuile
+	 * @param col colonne de la tuile
+	 * @return {@code true} si la tuile doit être calculée lors de la génération en cours
+	 */
+	public boolean isActive(int row, int col) {
+		return activeTiles[row * tileCols + col];
+	}
+
+	/**
+	 * Indiquer qu'au moins une cellule de la tuile a changé d'état lors de la génération en cours.
+	 * @param row rangée de la tuile
+	 * @param col colonne de la tuile
+	 */
+	public void markChanged(int row, int col) {
+		updatedTiles[row * tileCols + col] = true;
+	}
+
+	/**
+	 * Indiquer qu'une cellule de la tuile a été modifiée en dehors du calcul des générations (par exemple lors de
+	 * la création de la population initiale). La tuile et ses voisines seront calculées à la prochaine génération.
+	 * @param row rangée de la tuile
+	 * @param col colonne de la tuile
+	 */
+	public void markDirty(int row, int col) {
+		changedTiles[row * tileCols + col] = true;
+	}
+
+	/**
+	 * Indiquer que toutes les tuiles doivent être calculées à la prochaine génération, par exemple lorsque la règle
+	 * d'évolution change.
+	 */
+	public void markAllDirty() {
+		Arrays.fill(changedTiles, true);
+	}
+
+	/**
+	 * @return Nombre de tuiles qui n'ont pas été calculées lors de la dernière génération
+	 */
+	public int getSkippedTileCount() {
+		return skippedTileCount;
+	}
+
+	/**
+	 * @return Nombre total de tuiles dans la grille
+	 */
+	public int getTileCount() {
+		return tileRows * tileCols;
+	}
+}
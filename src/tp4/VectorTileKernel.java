@@ -0,0 +1,78 @@
+package tp4;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Noyau vectoriel (SIMD) de la règle de Conway : les voisines de toute une ligne de tuile sont additionnées en
+ * 8 additions d'octets, une par direction, au lieu de 8 lectures par cellule. Une tuile de 32 cellules de large
+ * tient dans un vecteur de 256 bits (AVX2) ; sur une machine sans vecteurs aussi larges, la ligne est découpée.
+ * La fin d'une ligne plus courte qu'un vecteur (dernière colonne de tuiles) est calculée cellule par cellule.
+ * Ne pas charger cette classe directement : voir {@code TileKernel.loadVectorKernel()}.
+ */
+final class VectorTileKernel implements TileKernel {
+
+	// Les vecteurs plus larges qu'une ligne de tuile ne serviraient qu'à moitié
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.length() > 32
+			? ByteVector.SPECIES_256 : ByteVector.SPECIES_PREFERRED;
+
+	private static final ByteVector ZERO = ByteVector.zero(SPECIES);
+
+	// Lecture de 8 états à la fois, pour extraire les naissances et les morts d'une ligne
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Multiplier un mot dont chaque octet vaut 0 ou 1 par cette constante rassemble les 8 octets dans les 8 bits
+	 * de poids fort du produit, le premier octet dans le bit 56.
+	 */
+	private static final long GATHER_BYTES = 0x0102040810204080L;
+
+	@Override
+	public long computeRow(byte[] states, byte[] nextStates, int index, int length, int stride) {
+		long births = 0, deaths = 0;
+		int offset = 0;
+
+		for (; offset + SPECIES.length() <= length; offset += SPECIES.length()) {
+			int i = index + offset;
+
+			ByteVector neighbors = ByteVector.fromArray(SPECIES, states, i - stride - 1)
+					.add(ByteVector.fromArray(SPECIES, states, i - stride))
+					.add(ByteVector.fromArray(SPECIES, states, i - stride + 1))
+					.add(ByteVector.fromArray(SPECIES, states, i - 1))
+					.add(ByteVector.fromArray(SPECIES, states, i + 1))
+					.add(ByteVector.fromArray(SPECIES, states, i + stride - 1))
+					.add(ByteVector.fromArray(SPECIES, states, i + stride))
+					.add(ByteVector.fromArray(SPECIES, states, i + stride + 1));
+
+			// Regles du jeu de la vie
+			VectorMask<Byte> alive = ByteVector.fromArray(SPECIES, states, i).compare(VectorOperators.NE, 0);
+			VectorMask<Byte> next = neighbors.compare(VectorOperators.EQ, 3)
+					.or(neighbors.compare(VectorOperators.EQ, 2).and(alive));
+			ZERO.blend((byte) 1, next).intoArray(nextStates, i);
+		}
+
+		// VectorMask.toLong() n'est pas compilé en une seule instruction par le JDK 17 : les masques sont extraits 8 cellules à la fois
+		for (int word = 0; word + 8 <= offset; word += 8) {
+			long current = (long) LONGS.get(states, index + word), next = (long) LONGS.get(nextStates, index + word);
+			births |= ((next & ~current) * GATHER_BYTES) >>> 56 << word;
+			deaths |= ((current & ~next) * GATHER_BYTES) >>> 56 << word;
+		}
+
+		for (; offset < length; offset++) {
+			int i = index + offset;
+			int neighbors = states[i - stride - 1] + states[i - stride] + states[i - stride + 1] + states[i - 1]
+					+ states[i + 1] + states[i + stride - 1] + states[i + stride] + states[i + stride + 1];
+
+			nextStates[i] = (byte) (neighbors == 3 || (neighbors == 2 && states[i] != 0) ? 1 : 0);
+			births |= (long) (nextStates[i] & ~states[i]) << offset;
+			deaths |= (long) (states[i] & ~nextStates[i]) << offset;
+		}
+		return deaths << 32 | births;
+	}
+}